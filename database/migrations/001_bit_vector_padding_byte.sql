@@ -0,0 +1,16 @@
+-- Bit vectors are persisted with a trailing byte that holds the number of padding bits in the last
+-- data byte (see BitVector#toBytes). Rows written before that change end with their last data byte
+-- and always have a length that is a multiple of 8, so appending a zero padding byte converts them
+-- exactly. The version row makes the migration safe to run more than once.
+CREATE TABLE IF NOT EXISTS Schema_version(
+    Version INTEGER PRIMARY KEY
+);
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM Schema_version WHERE Version = 1) THEN
+        UPDATE Health_data SET Prr = Prr || '\x00'::bytea WHERE Prr IS NOT NULL;
+        UPDATE Health_data SET Irr = Irr || '\x00'::bytea WHERE Irr IS NOT NULL;
+        INSERT INTO Schema_version (Version) VALUES (1);
+    END IF;
+END $$;
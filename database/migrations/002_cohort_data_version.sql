@@ -0,0 +1,10 @@
+-- Data versions of the cohorts, incremented whenever reports of a cohort are saved or removed.
+-- Cohorts without a row are at version 0 until their reports change next.
+CREATE TABLE IF NOT EXISTS Cohort_data_version(
+    Cohort         VARCHAR(255),
+    Parameter_id   VARCHAR(255),
+    Version        BIGINT,
+    PRIMARY KEY (Cohort, Parameter_id)
+);
+
+INSERT INTO Schema_version (Version) VALUES (2) ON CONFLICT DO NOTHING;
@@ -17,9 +17,33 @@ CREATE TABLE Health_data(
     Cohort         VARCHAR(255) REFERENCES Cohorts,
     Interval_start VARCHAR(255),
     Interval_end   VARCHAR(255),
-    Irr            VARCHAR(255),
-    Prr            VARCHAR(255),
+    Irr            BYTEA,
+    Prr            BYTEA,
     Step_count     VARCHAR(255),
     Parameter_id   VARCHAR(255) REFERENCES Parameters
 );
+CREATE INDEX Health_data_cohort_parameter_report_idx ON Health_data (Cohort, Parameter_id, Report_id);
 
+CREATE TABLE Health_data_rollup(
+    Cohort         VARCHAR(255),
+    Parameter_id   VARCHAR(255),
+    Granularity    VARCHAR(16),
+    Bucket_start   TIMESTAMP,
+    Bit_counts     BYTEA,
+    Report_count   BIGINT,
+    Max_step_count INTEGER,
+    PRIMARY KEY (Cohort, Parameter_id, Granularity, Bucket_start)
+);
+
+CREATE TABLE Cohort_data_version(
+    Cohort         VARCHAR(255),
+    Parameter_id   VARCHAR(255),
+    Version        BIGINT,
+    PRIMARY KEY (Cohort, Parameter_id)
+);
+
+-- Migrations in database/migrations up to this version are already part of the schema above
+CREATE TABLE Schema_version(
+    Version INTEGER PRIMARY KEY
+);
+INSERT INTO Schema_version (Version) VALUES (1), (2);
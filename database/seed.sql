@@ -2,23 +2,23 @@ INSERT INTO Parameters (Parameter_id, Profile_name, P_value, q_value, f_value, h
 VALUES ('0da438d6-0fa2-4801-903e-6931c80e5923', 'default', '0.50', '0.75', '0.50', '2', '32');
 
 INSERT INTO Health_data (Report_id, Device_id, Cohort, Interval_start, Interval_end, Irr, Prr, Step_count, Parameter_id)
-VALUES ('69c6e6d6-395c-4c49-99dc-f3be30612e1a','6b8f6a22-b0d7-4f31-9b7a-8d2e4b9d1a33', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0101010000101001',
-        '0001000000100000', '8450', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('b3a611cf-82d8-49a9-a372-6cf27081d95a','0ce2f0c1-2a58-4b1a-9c0e-0e3a8d7e5a10', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0010011000000100',
-        '0000001000000100', '6120', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('1db46b40-1745-4355-bd52-d2206cdd6e8d','2f47d6b9-9f4a-4c22-9f2d-8b7b8a9e1c55', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '1000001100100001',
-        '1000001000100000', '9325', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('5e78f608-6995-46f5-8505-818c2a8dea16','13a3b7b44-3f2e-4c9a-96e3-5e1c4c2a7d01', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0110000000010100',
-        '0100000000010000', '10410', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('140aa243-7c88-4f03-926d-77325d48deca','f1d0c6e8-5b1f-4c4b-9a0e-2a7b3c9d8e12', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0001001000011000',
-        '0001000000011000', '7560', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('d42ac55b-34d3-44bd-8341-96b42aa45b46','a7c3e9b1-4d2f-4a7e-8b1c-0d9e2f6a1b34', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0010100001000100',
-        '0010000001000000', '6815', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('f2429269-1ed8-4551-84a5-a1888d1556fd','b9e1c2d3-4f5a-6b7c-8d9e-0a1b2c3d4e5f', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0000010011000001',
-        '0000010001000000', '5240', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('d5dac08b-d403-4b02-8e0a-c8995a723c53','c3d2e1f0-a9b8-4c7d-8e6f-1a2b3c4d5e6f', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '1000001001000010',
-        '1000001000000001', '8890', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('3d24cd6a-1372-473c-a6b6-5a29bcc5a0bd','d1c2b3a4-5e6f-7a8b-9c0d-1e2f3a4b5c6d', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0001000001010001',
-        '0001000001000000', '7320', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
-       ('c759c15a-1b5e-4689-b6ed-6cc046775082','e0f1a2b3-c4d5-6e7f-8019-1a2b3c4d5e6f', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', '0100100000011000',
-        '0100000000011000', '9685', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11');
\ No newline at end of file
+VALUES ('69c6e6d6-395c-4c49-99dc-f3be30612e1a','6b8f6a22-b0d7-4f31-9b7a-8d2e4b9d1a33', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('2a9400', 'hex'),
+        decode('080400', 'hex'), '8450', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('b3a611cf-82d8-49a9-a372-6cf27081d95a','0ce2f0c1-2a58-4b1a-9c0e-0e3a8d7e5a10', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('642000', 'hex'),
+        decode('402000', 'hex'), '6120', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('1db46b40-1745-4355-bd52-d2206cdd6e8d','2f47d6b9-9f4a-4c22-9f2d-8b7b8a9e1c55', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('c18400', 'hex'),
+        decode('410400', 'hex'), '9325', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('5e78f608-6995-46f5-8505-818c2a8dea16','13a3b7b44-3f2e-4c9a-96e3-5e1c4c2a7d01', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('062800', 'hex'),
+        decode('020800', 'hex'), '10410', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('140aa243-7c88-4f03-926d-77325d48deca','f1d0c6e8-5b1f-4c4b-9a0e-2a7b3c9d8e12', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('481800', 'hex'),
+        decode('081800', 'hex'), '7560', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('d42ac55b-34d3-44bd-8341-96b42aa45b46','a7c3e9b1-4d2f-4a7e-8b1c-0d9e2f6a1b34', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('142200', 'hex'),
+        decode('040200', 'hex'), '6815', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('f2429269-1ed8-4551-84a5-a1888d1556fd','b9e1c2d3-4f5a-6b7c-8d9e-0a1b2c3d4e5f', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('208300', 'hex'),
+        decode('200200', 'hex'), '5240', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('d5dac08b-d403-4b02-8e0a-c8995a723c53','c3d2e1f0-a9b8-4c7d-8e6f-1a2b3c4d5e6f', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('414200', 'hex'),
+        decode('418000', 'hex'), '8890', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('3d24cd6a-1372-473c-a6b6-5a29bcc5a0bd','d1c2b3a4-5e6f-7a8b-9c0d-1e2f3a4b5c6d', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('088a00', 'hex'),
+        decode('080200', 'hex'), '7320', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11'),
+       ('c759c15a-1b5e-4689-b6ed-6cc046775082','e0f1a2b3-c4d5-6e7f-8019-1a2b3c4d5e6f', '0', '2025-09-06T08:00:00Z', '2025-09-06T09:00:00Z', decode('121800', 'hex'),
+        decode('021800', 'hex'), '9685', '3f9dd2e8-6a74-4f71-9c3c-5b3a1b8f9d11');
\ No newline at end of file
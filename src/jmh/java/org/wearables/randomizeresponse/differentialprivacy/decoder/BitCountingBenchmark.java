@@ -0,0 +1,67 @@
+package org.wearables.randomizeresponse.differentialprivacy.decoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.AggregationPipe;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+/**
+ * Compares the former character-by-character bit counting over {@code '0'/'1'} strings with the
+ * packed {@link BitVector} path used by {@link AggregationPipe}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BitCountingBenchmark {
+
+  @Param({"100000", "1000000"})
+  int records;
+
+  @Param({"32", "128"})
+  int messageBitSize;
+
+  List<String> bitStrings;
+  List<HealthDataEntity> entities;
+  AggregationPipe<HealthDataEntity> aggregationPipe;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random rnd = new Random(42L);
+    bitStrings = new ArrayList<>(records);
+    entities = new ArrayList<>(records);
+    for (int i = 0; i < records; i++) {
+      StringBuilder sb = new StringBuilder(messageBitSize);
+      for (int b = 0; b < messageBitSize; b++) sb.append(rnd.nextBoolean() ? '1' : '0');
+      bitStrings.add(sb.toString());
+      HealthDataEntity entity = new HealthDataEntity();
+      entity.setPrrBits(BitVector.fromBitString(sb.toString()));
+      entities.add(entity);
+    }
+    aggregationPipe = new AggregationPipe<>();
+  }
+
+  @Benchmark
+  public int[] count_string_path() {
+    int[] bitCounts = new int[messageBitSize];
+    for (String binary : bitStrings) {
+      for (int i = 0; i < binary.length(); i++) {
+        if (binary.charAt(i) == '1') {
+          bitCounts[i]++;
+        }
+      }
+    }
+    return bitCounts;
+  }
+
+  @Benchmark
+  public int[] count_packed_path() {
+    return aggregationPipe.countNumberOfIndexInCohort(entities, messageBitSize);
+  }
+}
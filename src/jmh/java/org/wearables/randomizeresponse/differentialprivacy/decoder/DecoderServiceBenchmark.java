@@ -1,13 +1,16 @@
 package org.wearables.randomizeresponse.differentialprivacy.decoder;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.Blackhole;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.AggregationPipe;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.DecoderService;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
 import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
 
@@ -23,20 +26,29 @@ import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
 @State(Scope.Benchmark)
 public class DecoderServiceBenchmark {
 
-  @Param({"100000"})
+  @Param({"100000", "1000000", "10000000"})
   int records;
 
+  @Param({"1", "2", "4", "8", "16", "32"})
+  int threads;
+
   @Param({"32"})
   int messageBitSize;
 
   DecoderService<HealthDataEntity> service;
-  Substance<HealthDataEntity> substance;
+  AggregationPipe<HealthDataEntity> aggregationPipe;
+  ForkJoinPool pool;
   List<HealthDataEntity> entities;
   ParameterEntity params;
 
   @Setup(Level.Trial)
   public void setup() {
-    service = new DecoderService<>();
+    HyperParameterConfiguration configuration = new HyperParameterConfiguration();
+    configuration.setAggregationPoolSize(threads);
+    configuration.setAggregationParallelismThreshold(1);
+    service = new DecoderService<>(configuration);
+    pool = new ForkJoinPool(threads);
+    aggregationPipe = new AggregationPipe<>(pool, 1);
 
     entities = generateEntities(records, messageBitSize, 42L);
     params = new ParameterEntity(); // if your type needs specific ctor/fields, set them here.
@@ -45,8 +57,12 @@ public class DecoderServiceBenchmark {
     params.setPermanentProbability(0.5);
     params.setInstantaneousProbabilityForZero(0.5);
     params.setNumberOfHashFunctions(2);
+  }
 
-    substance = new Substance<>();
+  @Benchmark
+  public void run_pipeline(Blackhole bh) {
+    // A decode enriches its substance, so every invocation starts from a fresh one
+    Substance<HealthDataEntity> substance = new Substance<>();
     substance.setEntities(entities);
     substance.setMessageBitSize(messageBitSize);
     substance.setParameterEntity(params);
@@ -54,14 +70,20 @@ public class DecoderServiceBenchmark {
     substance.setMaxRange(1000);
     substance.setLambdas(new double[] {0.1, 0.2, 0.3});
     substance.setStartRange(0);
-    service.setSubstance(substance);
+    Substance<HealthDataEntity> result = service.decode(substance);
+    // Prevent DCE; you might also consume specific fields from result if available.
+    bh.consume(result);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
   }
 
   @Benchmark
-  public void run_pipeline(Blackhole bh) {
-    Substance<HealthDataEntity> result = service.runPipeline();
-    // Prevent DCE; you might also consume specific fields from result if available.
-    bh.consume(result);
+  public int[] count_bits_aggregation() {
+    // Isolates the bit counting so the scaling over threads is not hidden by the regression
+    return aggregationPipe.countNumberOfIndexInCohort(entities, messageBitSize);
   }
 
   @Benchmark
@@ -0,0 +1,103 @@
+package org.wearables.randomizeresponse.differentialprivacy.decoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecoderService;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+/**
+ * Throughput of concurrent decodes on one shared DecoderService. Every decode runs single threaded
+ * on its own cohort, so the scaling over the thread counts shows how well independent requests run
+ * side by side on the stateless service.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecoderServiceThroughputBenchmark {
+
+  @Param({"10000"})
+  int records;
+
+  @Param({"32"})
+  int messageBitSize;
+
+  DecoderService<HealthDataEntity> service;
+  ParameterEntity params;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HyperParameterConfiguration configuration = new HyperParameterConfiguration();
+    configuration.setAggregationParallelismThreshold(Integer.MAX_VALUE);
+    service = new DecoderService<>(configuration);
+    params = new ParameterEntity(messageBitSize, 2, 0.5, 0.75, 0.5);
+  }
+
+  /** Cohort decoded by one benchmark thread. */
+  @State(Scope.Thread)
+  public static class Cohort {
+    List<HealthDataEntity> entities;
+
+    @Setup(Level.Trial)
+    public void setup(DecoderServiceThroughputBenchmark benchmark) {
+      Random rnd = new Random(Thread.currentThread().threadId());
+      entities = new ArrayList<>(benchmark.records);
+      for (int i = 0; i < benchmark.records; i++) {
+        long[] words = new long[BitVector.wordsFor(benchmark.messageBitSize)];
+        for (int w = 0; w < words.length; w++) words[w] = rnd.nextLong();
+        if (benchmark.messageBitSize % 64 != 0) {
+          words[words.length - 1] &= (1L << benchmark.messageBitSize) - 1;
+        }
+        HealthDataEntity entity = new HealthDataEntity();
+        entity.setPrrBits(BitVector.of(benchmark.messageBitSize, words));
+        entity.setStepCount(rnd.nextInt(1000));
+        entities.add(entity);
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Substance<HealthDataEntity> decode_1_thread(Cohort cohort) {
+    return decode(cohort);
+  }
+
+  @Benchmark
+  @Threads(2)
+  public Substance<HealthDataEntity> decode_2_threads(Cohort cohort) {
+    return decode(cohort);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Substance<HealthDataEntity> decode_4_threads(Cohort cohort) {
+    return decode(cohort);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Substance<HealthDataEntity> decode_max_threads(Cohort cohort) {
+    return decode(cohort);
+  }
+
+  private Substance<HealthDataEntity> decode(Cohort cohort) {
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setEntities(cohort.entities);
+    substance.setMessageBitSize(messageBitSize);
+    substance.setParameterEntity(params);
+    substance.setRangeIterator(100);
+    substance.setMaxRange(1000);
+    substance.setLambdas(new double[] {0.1, 0.2, 0.3});
+    substance.setStartRange(0);
+    return service.decode(substance);
+  }
+}
@@ -0,0 +1,117 @@
+package org.wearables.randomizeresponse.differentialprivacy.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.AggregationPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CoordinateDescentLasso;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.EmPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.RegressionPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+/**
+ * Compares the EM estimator with the LASSO estimators on bit counts simulated from a known
+ * distribution. Time-to-solution is measured by JMH; the accuracy of every estimator (L1 distance
+ * of the clamped, normalized estimate to the true distribution) is printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmDecoderBenchmark {
+
+  private static final double[] LAMBDAS = {0.01, 0.05, 0.1, 0.2, 0.4};
+
+  private static final int REPORTS = 100_000;
+
+  @Param({"10", "50", "200"})
+  int bins;
+
+  @Param({"64", "256"})
+  int messageBitSize;
+
+  SparseDesignMatrix designMatrix;
+  double[] truth;
+  int[] bitCounts;
+  double[] expectedTrueCounts;
+  ParameterEntity params;
+  EmPipe<HealthDataEntity> emPipe;
+  RegressionPipe<HealthDataEntity> smilePipe;
+  CoordinateDescentLasso coordinateDescentLasso;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random rnd = new Random(42L);
+    int[][] rows = new int[bins][];
+    for (int j = 0; j < bins; j++) {
+      int first = rnd.nextInt(messageBitSize);
+      rows[j] = new int[] {first, (first + 1 + rnd.nextInt(messageBitSize - 1)) % messageBitSize};
+    }
+    designMatrix = SparseDesignMatrix.fromRows(rows, messageBitSize);
+    truth = new double[bins];
+    double total = 0;
+    for (int j = 0; j < bins; j += 5) {
+      truth[j] = 1 + rnd.nextInt(10);
+      total += truth[j];
+    }
+    for (int j = 0; j < bins; j++) truth[j] /= total;
+
+    params = new ParameterEntity(messageBitSize, 2, 0.5, 0.25, 0.75);
+    double p = params.getInstantaneousProbabilityForOne();
+    double f = params.getPermanentProbability();
+    double q = params.getInstantaneousProbabilityForZero();
+    double falseOne = p + 0.5 * f * (q - p);
+    double trueOne = falseOne + (1.0 - f) * (q - p);
+    double[] share = designMatrix.leftMultiply(truth);
+    bitCounts = new int[messageBitSize];
+    for (int i = 0; i < messageBitSize; i++) {
+      double theta = falseOne + (trueOne - falseOne) * share[i];
+      double mean = REPORTS * theta;
+      double sd = Math.sqrt(REPORTS * theta * (1 - theta));
+      bitCounts[i] = (int) Math.round(mean + rnd.nextGaussian() * sd);
+    }
+    expectedTrueCounts =
+        new AggregationPipe<HealthDataEntity>()
+            .estimateExpectedTrueCounts(bitCounts, REPORTS, params);
+    emPipe = new EmPipe<>();
+    smilePipe = new RegressionPipe<>();
+    coordinateDescentLasso = new CoordinateDescentLasso(false);
+  }
+
+  @TearDown(Level.Trial)
+  public void reportAccuracy() {
+    System.out.printf(
+        "%nL1 error bins=%d k=%d: em=%.4f lasso_smile=%.4f lasso_coordinateDescent=%.4f%n",
+        bins, messageBitSize, l1(em()), l1(lasso_smile()), l1(lasso_coordinateDescent()));
+  }
+
+  @Benchmark
+  public double[] em() {
+    return emPipe.estimateDistribution(designMatrix, bitCounts, REPORTS, params);
+  }
+
+  @Benchmark
+  public double[] lasso_smile() {
+    return smilePipe.predictMostLikeliestClasses(designMatrix, expectedTrueCounts, LAMBDAS);
+  }
+
+  @Benchmark
+  public double[] lasso_coordinateDescent() {
+    return coordinateDescentLasso.fitBest(designMatrix, expectedTrueCounts, LAMBDAS);
+  }
+
+  /** L1 distance of the clamped, normalized estimate to the true distribution. */
+  private double l1(double[] estimate) {
+    double sum = 0;
+    for (double value : estimate) sum += Math.max(0, value);
+    double error = 0;
+    for (int j = 0; j < bins; j++) {
+      error += Math.abs((sum == 0 ? 0 : Math.max(0, estimate[j]) / sum) - truth[j]);
+    }
+    return error;
+  }
+}
@@ -0,0 +1,61 @@
+package org.wearables.randomizeresponse.differentialprivacy.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CoordinateDescentLasso;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.RegressionPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+/**
+ * Compares the Smile LASSO fit loop with the coordinate descent lambda path over the default five
+ * lambdas, for different numbers of bins and Bloom filter sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegressionBenchmark {
+
+  private static final double[] LAMBDAS = {0.01, 0.05, 0.1, 0.2, 0.4};
+
+  @Param({"10", "50", "200"})
+  int bins;
+
+  @Param({"64", "256"})
+  int messageBitSize;
+
+  SparseDesignMatrix designMatrix;
+  double[] expectedTrueCounts;
+  RegressionPipe<HealthDataEntity> smilePipe;
+  CoordinateDescentLasso coordinateDescentLasso;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random rnd = new Random(42L);
+    int[][] rows = new int[bins][];
+    for (int j = 0; j < bins; j++) {
+      rows[j] = new int[] {rnd.nextInt(messageBitSize), rnd.nextInt(messageBitSize)};
+    }
+    designMatrix = SparseDesignMatrix.fromRows(rows, messageBitSize);
+    double[] truth = new double[bins];
+    for (int j = 0; j < bins; j += 7) truth[j] = 100 + rnd.nextInt(900);
+    expectedTrueCounts = designMatrix.leftMultiply(truth);
+    for (int i = 0; i < messageBitSize; i++) expectedTrueCounts[i] += rnd.nextGaussian() * 20;
+    smilePipe = new RegressionPipe<>();
+    coordinateDescentLasso = new CoordinateDescentLasso(false);
+  }
+
+  @Benchmark
+  public double[] lasso_smile() {
+    return smilePipe.predictMostLikeliestClasses(designMatrix, expectedTrueCounts, LAMBDAS);
+  }
+
+  @Benchmark
+  public double[] lasso_coordinateDescent() {
+    return coordinateDescentLasso.fitBest(designMatrix, expectedTrueCounts, LAMBDAS);
+  }
+}
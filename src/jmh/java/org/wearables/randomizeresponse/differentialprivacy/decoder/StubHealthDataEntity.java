@@ -8,24 +8,13 @@ import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
  */
 public class StubHealthDataEntity extends HealthDataEntity {
 
-  private String prr;
   private int stepCount;
 
-  @Override
-  public void setPrr(String prr) {
-    this.prr = prr;
-  }
-
   @Override
   public void setStepCount(int stepCount) {
     this.stepCount = stepCount;
   }
 
-  @Override
-  public String getPrr() {
-    return prr;
-  }
-
   @Override
   public int getStepCount() {
     return stepCount;
@@ -0,0 +1,74 @@
+package org.wearables.randomizeresponse.differentialprivacy.decoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.AggregationPipe;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+/**
+ * Compares the scalar aggregation kernels with the Vector API kernels for different message bit
+ * sizes, single threaded so only the kernels differ.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VectorKernelBenchmark {
+
+  @Param({"100000"})
+  int records;
+
+  @Param({"32", "64", "128", "256"})
+  int messageBitSize;
+
+  List<HealthDataEntity> entities;
+  int[] bitCounts;
+  ParameterEntity params;
+  AggregationPipe<HealthDataEntity> scalarPipe;
+  AggregationPipe<HealthDataEntity> vectorPipe;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random rnd = new Random(42L);
+    entities = new ArrayList<>(records);
+    for (int i = 0; i < records; i++) {
+      long[] words = new long[BitVector.wordsFor(messageBitSize)];
+      for (int w = 0; w < words.length; w++) words[w] = rnd.nextLong();
+      if (messageBitSize % 64 != 0) words[words.length - 1] &= (1L << messageBitSize) - 1;
+      HealthDataEntity entity = new HealthDataEntity();
+      entity.setPrrBits(BitVector.of(messageBitSize, words));
+      entities.add(entity);
+    }
+    params = new ParameterEntity(messageBitSize, 2, 0.5, 0.75, 0.5);
+    scalarPipe = new AggregationPipe<>(null, Integer.MAX_VALUE, false);
+    vectorPipe = new AggregationPipe<>(null, Integer.MAX_VALUE, true);
+    bitCounts = scalarPipe.countNumberOfIndexInCohort(entities, messageBitSize);
+  }
+
+  @Benchmark
+  public int[] count_scalar() {
+    return scalarPipe.countNumberOfIndexInCohort(entities, messageBitSize);
+  }
+
+  @Benchmark
+  public int[] count_vector() {
+    return vectorPipe.countNumberOfIndexInCohort(entities, messageBitSize);
+  }
+
+  @Benchmark
+  public double[] debias_scalar() {
+    return scalarPipe.estimateExpectedTrueCounts(bitCounts, records, params);
+  }
+
+  @Benchmark
+  public double[] debias_vector() {
+    return vectorPipe.estimateExpectedTrueCounts(bitCounts, records, params);
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import java.nio.ByteBuffer;
+
+/**
+ * Persists per-bit counts as a binary column of big-endian 64-bit integers, so a rollup row keeps
+ * one column regardless of the message bit size.
+ */
+@Converter
+public class BitCountsConverter implements AttributeConverter<long[], byte[]> {
+
+  @Override
+  public byte[] convertToDatabaseColumn(long[] bitCounts) {
+    if (bitCounts == null) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(bitCounts.length * Long.BYTES);
+    buffer.asLongBuffer().put(bitCounts);
+    return buffer.array();
+  }
+
+  @Override
+  public long[] convertToEntityAttribute(byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    long[] bitCounts = new long[bytes.length / Long.BYTES];
+    ByteBuffer.wrap(bytes).asLongBuffer().get(bitCounts);
+    return bitCounts;
+  }
+}
@@ -0,0 +1,208 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, packed representation of a randomized response bit string.
+ *
+ * <p>Bit {@code i} of the report (the i-th character of the client's {@code "0101..."} string) is
+ * stored in bit {@code i & 63} of word {@code i >>> 6}. Packing the reports into 64-bit words lets
+ * the decoder count bits a word at a time instead of walking a character array.
+ */
+public final class BitVector {
+
+  /** Number of bits in a word. */
+  public static final int WORD_SIZE = Long.SIZE;
+
+  /** Number of valid bits in the vector, the paper's "k". */
+  private final int length;
+
+  /** Packed bits, least significant bit first. */
+  private final long[] words;
+
+  private BitVector(int length, long[] words) {
+    this.length = length;
+    this.words = words;
+  }
+
+  /**
+   * Creates a bit vector from words that are already packed.
+   *
+   * @param length Number of valid bits
+   * @param words Packed words, least significant bit first
+   * @return Bit vector backed by a copy of the given words
+   * @throws IllegalArgumentException if the words cannot hold the given length
+   */
+  public static BitVector of(int length, long[] words) {
+    if (length < 0 || words.length != wordsFor(length)) {
+      throw new IllegalArgumentException(
+          "A bit vector of length " + length + " needs " + wordsFor(length) + " words.");
+    }
+    return new BitVector(length, words.clone());
+  }
+
+  /**
+   * Parses a string of {@code '0'} and {@code '1'} characters into a packed bit vector.
+   *
+   * @param bits Bit string without the {@code 0b} prefix
+   * @return Packed bit vector, or null if the string is null
+   * @throws IllegalArgumentException if the string contains characters other than 0 and 1
+   */
+  public static BitVector fromBitString(String bits) {
+    if (bits == null) {
+      return null;
+    }
+    long[] words = new long[wordsFor(bits.length())];
+    for (int i = 0; i < bits.length(); i++) {
+      char c = bits.charAt(i);
+      if (c == '1') {
+        words[i >>> 6] |= 1L << i;
+      } else if (c != '0') {
+        throw new IllegalArgumentException("Invalid character '" + c + "' in bit string.");
+      }
+    }
+    return new BitVector(bits.length(), words);
+  }
+
+  /**
+   * Restores a bit vector from its persisted byte form, see {@link #toBytes()}.
+   *
+   * @param bytes Packed bytes, least significant bit first, followed by the padding byte
+   * @return Bit vector with the length it was serialized with, or null if bytes is null
+   * @throws IllegalArgumentException if the bytes are not in the persisted form
+   */
+  public static BitVector fromBytes(byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    int padding = bytes.length == 0 ? -1 : bytes[bytes.length - 1];
+    if (padding < 0 || padding >= Byte.SIZE || (bytes.length == 1 && padding != 0)) {
+      throw new IllegalArgumentException("Invalid padding byte in persisted bit vector.");
+    }
+    int length = (bytes.length - 1) * Byte.SIZE - padding;
+    long[] words = new long[wordsFor(length)];
+    unpackBytes(bytes, words, 0, words.length);
+    return new BitVector(length, words);
+  }
+
+  /**
+   * Unpacks the persisted byte form into a slot of a packed word array without creating a bit
+   * vector, see {@link #toBytes()}. The slot is cleared first; bits beyond it and the trailing
+   * padding byte are ignored.
+   *
+   * @param bytes Packed bytes, least significant bit first, followed by the padding byte
+   * @param words Target word array
+   * @param offset Index of the first word of the slot
+   * @param wordCount Number of words in the slot
+   */
+  public static void unpackBytes(byte[] bytes, long[] words, int offset, int wordCount) {
+    Arrays.fill(words, offset, offset + wordCount, 0L);
+    int byteCount = Math.min(bytes.length - 1, wordCount * Long.BYTES);
+    for (int i = 0; i < byteCount; i++) {
+      words[offset + (i >>> 3)] |= (bytes[i] & 0xFFL) << ((i & 7) * Byte.SIZE);
+    }
+  }
+
+  /**
+   * Number of words needed to store the given number of bits.
+   *
+   * @param length Number of bits
+   * @return Number of 64-bit words
+   */
+  public static int wordsFor(int length) {
+    return (length + WORD_SIZE - 1) >>> 6;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Returns the backing words. The array is shared to keep the decoder's hot loops allocation free
+   * and must not be modified by the caller.
+   *
+   * @return Packed words, least significant bit first
+   */
+  public long[] words() {
+    return words;
+  }
+
+  /**
+   * Returns whether the bit at the given index is set.
+   *
+   * @param index Zero based bit index
+   * @return true if the bit is 1
+   */
+  public boolean get(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Bit index " + index + " out of range " + length);
+    }
+    return (words[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * Counts the bits set to 1.
+   *
+   * @return Number of set bits
+   */
+  public int cardinality() {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * Serializes the vector into {@code ceil(length / 8)} bytes followed by one byte holding the
+   * number of padding bits in the last of them, so lengths that are not a multiple of 8 survive a
+   * round trip. Byte {@code i >>> 3} holds bit {@code i} at position {@code i & 7}, which is the
+   * bit order of PostgreSQL's {@code get_bit}; the padding bits are zero.
+   *
+   * @return Packed bytes and the padding byte
+   */
+  public byte[] toBytes() {
+    int dataBytes = (length + Byte.SIZE - 1) / Byte.SIZE;
+    byte[] bytes = new byte[dataBytes + 1];
+    for (int i = 0; i < dataBytes; i++) {
+      bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) * Byte.SIZE));
+    }
+    bytes[dataBytes] = (byte) (dataBytes * Byte.SIZE - length);
+    return bytes;
+  }
+
+  /**
+   * Renders the vector as a string of {@code '0'} and {@code '1'} characters.
+   *
+   * @return Bit string without the {@code 0b} prefix
+   */
+  public String toBitString() {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (words[i >>> 6] & (1L << i)) != 0 ? '1' : '0';
+    }
+    return new String(chars);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof BitVector other)) return false;
+    return length == other.length && Arrays.equals(words, other.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * length + Arrays.hashCode(words);
+  }
+
+  @Override
+  public String toString() {
+    return toBitString();
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Persists {@link BitVector} reports as packed binary columns instead of {@code '0'}/{@code '1'}
+ * strings. A 32 bit report therefore occupies 5 bytes in the database: 4 bytes of bits and one byte
+ * recording the padding of the last of them, so a report length is restored exactly.
+ */
+@Converter
+public class BitVectorConverter implements AttributeConverter<BitVector, byte[]> {
+
+  @Override
+  public byte[] convertToDatabaseColumn(BitVector bitVector) {
+    return bitVector == null ? null : bitVector.toBytes();
+  }
+
+  @Override
+  public BitVector convertToEntityAttribute(byte[] bytes) {
+    return BitVector.fromBytes(bytes);
+  }
+}
@@ -5,7 +5,9 @@
  */
 package org.wearables.randomizedresponse.differentialprivacy;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
 import java.util.UUID;
@@ -13,7 +15,8 @@ import java.util.UUID;
 /**
  * Base entity class representing a persisted client report in the randomized response system.
  * Serves as a mapped superclass for entities that extend report functionality, providing common
- * fields such as identifiers and randomized bit strings.
+ * fields such as identifiers and randomized bit strings. The bit strings are kept packed as {@link
+ * BitVector}s; the String accessors exist for the JSON representation.
  */
 @MappedSuperclass
 public class ReportEntity {
@@ -30,13 +33,15 @@ public class ReportEntity {
   @Column(name = "Cohort")
   protected UUID cohort;
 
-  /** Permanent randomized response bit string. */
+  /** Permanent randomized response, packed into 64-bit words. */
   @Column(name = "Prr")
-  protected String prr;
+  @Convert(converter = BitVectorConverter.class)
+  protected BitVector prr;
 
-  /** Instantaneous randomized response bit string. */
+  /** Instantaneous randomized response, packed into 64-bit words. */
   @Column(name = "Irr")
-  protected String irr;
+  @Convert(converter = BitVectorConverter.class)
+  protected BitVector irr;
 
   /** Identifier of the parameter configuration used for encoding. */
   @Column(name = "Parameter_id")
@@ -51,21 +56,50 @@ public class ReportEntity {
   }
 
   public String getIrr() {
-    return irr;
+    return irr == null ? null : irr.toBitString();
   }
 
   public void setIrr(String irr) {
-    this.irr = irr;
+    this.irr = BitVector.fromBitString(irr);
   }
 
   public String getPrr() {
-    return prr;
+    return prr == null ? null : prr.toBitString();
   }
 
   public void setPrr(String prr) {
+    this.prr = BitVector.fromBitString(prr);
+  }
+
+  @JsonIgnore
+  public BitVector getIrrBits() {
+    return irr;
+  }
+
+  public void setIrrBits(BitVector irr) {
+    this.irr = irr;
+  }
+
+  @JsonIgnore
+  public BitVector getPrrBits() {
+    return prr;
+  }
+
+  public void setPrrBits(BitVector prr) {
     this.prr = prr;
   }
 
+  /**
+   * Returns the plain value the report encodes, used for the value statistics of the aggregation
+   * step. Report types without such a value return 0.
+   *
+   * @return Encoded value of the report
+   */
+  @JsonIgnore
+  public int getEncodedValue() {
+    return 0;
+  }
+
   public UUID getDeviceId() {
     return deviceId;
   }
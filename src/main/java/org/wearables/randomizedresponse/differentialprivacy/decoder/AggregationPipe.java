@@ -9,8 +9,14 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
 import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
@@ -19,32 +25,104 @@ import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterE
  * Pipeline step that aggregates the noisy strings received from clients and produces an estimated
  * target vector. The resulting vector is later used as the target for the regression model.
  *
+ * <p>The reports are read once: a single {@link ReportScan} collects the bit counts together with
+ * the report count, the value range and a coarse value histogram over the configured bins, and is
+ * left on the substance for the later steps. If the substance has no upper bound for the bins yet,
+ * it is derived from the largest scanned value.
+ *
+ * <p>Cohorts with at least {@code parallelismThreshold} reports are scanned on a fork/join pool:
+ * the entity list is split into chunks, every chunk is scanned into its own private {@link
+ * ReportScan} and the scans are merged when the tasks join.
+ *
+ * <p>If vectorization is enabled and the {@code jdk.incubator.vector} module is available, the bit
+ * columns are counted and debiased with the SIMD kernels of {@link VectorBitKernel}; otherwise the
+ * scalar code is used.
+ *
  * @param <T> The entity type to be processed
  */
 @Service
 @Validated
 public class AggregationPipe<T extends ReportEntity> implements Pipe<T> {
+
+  /** Smallest number of reports a fork/join task counts without splitting further. */
+  private static final int MIN_CHUNK_SIZE = 4096;
+
+  /** Number of reports packed into one buffer before it is handed to the SIMD kernel. */
+  private static final int VECTOR_BATCH_SIZE = 1024;
+
+  /** Whether the Vector API module was resolved at startup. */
+  private static final boolean VECTOR_API_AVAILABLE =
+      ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+  private final Logger logger = LoggerFactory.getLogger(AggregationPipe.class);
+
+  /** Pool used for parallel counting, or null to always count sequentially. */
+  private final ForkJoinPool forkJoinPool;
+
+  /** Minimum number of reports before the counting is done in parallel. */
+  private final int parallelismThreshold;
+
+  /** Whether the SIMD kernels are used. */
+  private final boolean vectorized;
+
+  public AggregationPipe() {
+    this(null, Integer.MAX_VALUE);
+  }
+
+  public AggregationPipe(ForkJoinPool forkJoinPool, int parallelismThreshold) {
+    this(forkJoinPool, parallelismThreshold, false);
+  }
+
+  public AggregationPipe(ForkJoinPool forkJoinPool, int parallelismThreshold, boolean vectorized) {
+    this.forkJoinPool = forkJoinPool;
+    this.parallelismThreshold = parallelismThreshold;
+    if (vectorized && !VECTOR_API_AVAILABLE) {
+      logger.warn("Vectorized aggregation requested but jdk.incubator.vector is not available.");
+    }
+    this.vectorized = vectorized && VECTOR_API_AVAILABLE;
+  }
+
   /**
    * Executes the aggregation step in the pipeline. This method calculates bit counts for the
    * provided entities, estimates expected true counts using differential privacy parameters, and
    * updates the substance object with these values before returning it.
    *
+   * <p>If the substance already carries bit counts, for example from a {@link BitCountSummary}, the
+   * scan is skipped and only the expected true counts are estimated.
+   *
    * @param substance The container holding entities and related data for processing
    * @return The updated substance containing bit counts and expected true counts
    */
   public Substance<T> process(@NotNull Substance<T> substance) throws ExecutionException {
-    int[] bitCounts =
-        countNumberOfIndexInCohort(substance.getEntities(), substance.getMessageBitSize());
+    if (substance.getBitCounts() == null) {
+      ReportScan scan =
+          substance.getRangeIterator() > 0
+              ? scan(
+                  substance.getEntities(),
+                  substance.getMessageBitSize(),
+                  substance.getStartRange(),
+                  substance.getRangeIterator())
+              : scan(substance.getEntities(), substance.getMessageBitSize());
+      substance.setReportScan(scan);
+      substance.setBitCounts(scan.toIntBitCounts());
+      substance.setNumberOfReports(Math.toIntExact(scan.reports()));
+      if (substance.getMaxRange() == 0 && substance.getRangeIterator() > 0) {
+        substance.setMaxRange(BinLayout.maxRangeFor(scan.maxValue(), substance.getRangeIterator()));
+      }
+    }
     double[] expectedTrueCounts =
         estimateExpectedTrueCounts(
-            bitCounts, substance.getEntities().size(), substance.getParameterEntity());
-    substance.setBitCounts(bitCounts);
+            substance.getBitCounts(),
+            substance.getNumberOfReports(),
+            substance.getParameterEntity());
     substance.setExpectedTrueCounts(expectedTrueCounts);
     return substance;
   }
 
   /**
-   * Counts the number of times each bit position is set to 1 across all reports.
+   * Counts the number of times each bit position is set to 1 across all reports. The packed
+   * permanent responses are added word by word with a {@link BitColumnCounter} as part of a {@link
+   * #scan}, in parallel if the cohort reaches the parallelism threshold.
    *
    * @param healthDataEntities The list of reports containing randomized bit strings
    * @param messageBitSize The length of the bit string representation
@@ -52,16 +130,125 @@ public class AggregationPipe<T extends ReportEntity> implements Pipe<T> {
    */
   public int[] countNumberOfIndexInCohort(
       @NotNull List<T> healthDataEntities, @Positive int messageBitSize) {
-    int[] bitCounts = new int[messageBitSize];
-    for (T healthDataEntity : healthDataEntities) {
-      String binary = healthDataEntity.getPrr();
-      for (int i = 0; i < binary.length(); i++) {
-        if (binary.charAt(i) == '1') {
-          bitCounts[i]++;
-        }
+    return scan(healthDataEntities, messageBitSize).toIntBitCounts();
+  }
+
+  /**
+   * Scans all reports once with the default histogram range, see {@link #scan(List, int, int,
+   * int)}.
+   *
+   * @param healthDataEntities The list of reports containing randomized bit strings
+   * @param messageBitSize The length of the bit string representation
+   * @return The statistics of all reports
+   */
+  public ReportScan scan(@NotNull List<T> healthDataEntities, @Positive int messageBitSize) {
+    return scan(healthDataEntities, messageBitSize, 0, ReportScan.DEFAULT_BUCKET_WIDTH);
+  }
+
+  /**
+   * Scans all reports once, collecting the bit counts, the report count, the value range and the
+   * value histogram. The scan runs in parallel if the cohort reaches the parallelism threshold.
+   *
+   * @param healthDataEntities The list of reports containing randomized bit strings
+   * @param messageBitSize The length of the bit string representation
+   * @param rangeStart Lower bound of the first histogram bucket
+   * @param bucketWidth Width of a histogram bucket
+   * @return The statistics of all reports
+   */
+  public ReportScan scan(
+      @NotNull List<T> healthDataEntities,
+      @Positive int messageBitSize,
+      int rangeStart,
+      @Positive int bucketWidth) {
+    int size = healthDataEntities.size();
+    Supplier<ReportScan> newScan = () -> new ReportScan(messageBitSize, rangeStart, bucketWidth);
+    if (forkJoinPool == null
+        || forkJoinPool.getParallelism() < 2
+        || size < Math.max(parallelismThreshold, 2 * MIN_CHUNK_SIZE)) {
+      return scanRange(healthDataEntities, 0, size, newScan, vectorized);
+    }
+    int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (forkJoinPool.getParallelism() * 4));
+    return forkJoinPool.invoke(
+        new ScanTask<>(healthDataEntities, 0, size, newScan, chunkSize, vectorized));
+  }
+
+  /**
+   * Scans the reports in {@code [from, to)} into a new scan.
+   *
+   * @param entities The reports to scan
+   * @param from First index, inclusive
+   * @param to Last index, exclusive
+   * @param newScan Creates the empty scan to fill
+   * @param vectorized Whether to count the bits with the SIMD kernel
+   * @return Statistics of the range
+   */
+  private static <T extends ReportEntity> ReportScan scanRange(
+      List<T> entities, int from, int to, Supplier<ReportScan> newScan, boolean vectorized) {
+    ReportScan scan = newScan.get();
+    int messageBitSize = scan.messageBitSize();
+    if (!vectorized) {
+      for (int i = from; i < to; i++) {
+        T entity = entities.get(i);
+        scan.add(entity.getPrrBits(), entity.getEncodedValue());
+      }
+      return scan;
+    }
+    int wordsPerReport = BitVector.wordsFor(messageBitSize);
+    long[] buffer = new long[VECTOR_BATCH_SIZE * wordsPerReport];
+    long[] totals = new long[messageBitSize];
+    for (int start = from; start < to; start += VECTOR_BATCH_SIZE) {
+      int end = Math.min(to, start + VECTOR_BATCH_SIZE);
+      for (int i = start; i < end; i++) {
+        T entity = entities.get(i);
+        System.arraycopy(
+            entity.getPrrBits().words(), 0, buffer, (i - start) * wordsPerReport, wordsPerReport);
+        scan.addValue(entity.getEncodedValue());
       }
+      VectorBitKernel.countColumns(buffer, wordsPerReport, end - start, totals);
+    }
+    scan.addTotals(totals, to - from);
+    return scan;
+  }
+
+  /**
+   * Fork/join task that splits a range of reports in halves until it is at most one chunk long.
+   * Each leaf scans into its own {@link ReportScan}, so no scan is shared between threads.
+   */
+  private static final class ScanTask<T extends ReportEntity> extends RecursiveTask<ReportScan> {
+    private final List<T> entities;
+    private final int from;
+    private final int to;
+    private final Supplier<ReportScan> newScan;
+    private final int chunkSize;
+    private final boolean vectorized;
+
+    private ScanTask(
+        List<T> entities,
+        int from,
+        int to,
+        Supplier<ReportScan> newScan,
+        int chunkSize,
+        boolean vectorized) {
+      this.entities = entities;
+      this.from = from;
+      this.to = to;
+      this.newScan = newScan;
+      this.chunkSize = chunkSize;
+      this.vectorized = vectorized;
+    }
+
+    @Override
+    protected ReportScan compute() {
+      if (to - from <= chunkSize) {
+        return scanRange(entities, from, to, newScan, vectorized);
+      }
+      int middle = (from + to) >>> 1;
+      ScanTask<T> left = new ScanTask<>(entities, from, middle, newScan, chunkSize, vectorized);
+      left.fork();
+      ReportScan right =
+          new ScanTask<>(entities, middle, to, newScan, chunkSize, vectorized).compute();
+      return right.merge(left.join());
     }
-    return bitCounts;
   }
 
   /**
@@ -78,15 +265,15 @@ public class AggregationPipe<T extends ReportEntity> implements Pipe<T> {
       @NotNull int[] bitCounts,
       @Positive int numberReportsInCohort,
       @NotNull ParameterEntity parameterEntity) {
+    DebiasConstants constants = DebiasConstants.of(parameterEntity);
+    double offset = constants.offset();
+    double denominator = constants.denominator();
+    if (vectorized) {
+      return VectorBitKernel.debias(bitCounts, numberReportsInCohort, offset, denominator);
+    }
     double[] expectedTrueCounts = new double[bitCounts.length];
     for (int i = 0; i < expectedTrueCounts.length; i++) {
-      expectedTrueCounts[i] =
-          estimate(
-              bitCounts[i],
-              parameterEntity.getInstantaneousProbabilityForOne(),
-              parameterEntity.getPermanentProbability(),
-              parameterEntity.getInstantaneousProbabilityForZero(),
-              numberReportsInCohort);
+      expectedTrueCounts[i] = estimate(bitCounts[i], offset, denominator, numberReportsInCohort);
     }
     return expectedTrueCounts;
   }
@@ -96,15 +283,12 @@ public class AggregationPipe<T extends ReportEntity> implements Pipe<T> {
    * count, randomized response probabilities, and the size of the cohort.
    *
    * @param c Observed count of bits set to 1 at this index
-   * @param p Instantaneous probability for reporting a 1
-   * @param f Permanent probability parameter
-   * @param q Instantaneous probability for reporting a 0
+   * @param offset Expected share of ones caused by the randomization, {@code p + f(q - p)/2}
+   * @param denominator Scale of the true signal, {@code (1 - f)(q - p)}
    * @param n Number of reports in the cohort
    * @return Estimated true count for this bit index
    */
-  private double estimate(int c, double p, double f, double q, int n) {
-    double offset = p + 0.5 * f * (q - p);
-    double denominate = (1.0 - f) * (q - p);
-    return (c - offset * n) / denominate;
+  private double estimate(int c, double offset, double denominator, int n) {
+    return (c - offset * n) / denominator;
   }
 }
@@ -0,0 +1,103 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Numeric description of the candidate bins of a decode: {@code count} consecutive bins of equal
+ * {@code width}, the first one starting at {@code start}. Bin {@code i} covers {@code [start + i *
+ * width, start + (i + 1) * width)} and corresponds to row {@code i} of the design matrix and entry
+ * {@code i} of the coefficients and probabilities.
+ *
+ * <p>Labels like {@code "0-100"} are only rendered where they leave the decoder, for example in the
+ * JSON response, and when the candidate strings are hashed once per {@link CandidateIndexTable}.
+ *
+ * @param start Lower bound of the first bin
+ * @param width Width of every bin
+ * @param count Number of bins
+ */
+public record BinLayout(int start, int width, int count) {
+
+  public BinLayout {
+    if (width <= 0) {
+      throw new IllegalArgumentException("The bin width must be positive.");
+    }
+    if (count <= 0) {
+      throw new IllegalArgumentException("There must be at least one bin.");
+    }
+  }
+
+  /**
+   * Creates the bins covering {@code [start, maxRange)}. At least one bin is created, even if
+   * {@code maxRange} does not exceed {@code start}.
+   *
+   * @param start Lower bound of the first bin
+   * @param width Width of every bin
+   * @param maxRange Upper bound of the value range
+   * @return The bin layout
+   */
+  public static BinLayout covering(int start, int width, int maxRange) {
+    return new BinLayout(start, width, Math.max(1, Math.ceilDiv(maxRange - start, width)));
+  }
+
+  /**
+   * Rounds the largest observed value up to the next multiple of the bin width, the upper bound of
+   * the value range used for binning. If the width exceeds the value, the width is returned.
+   *
+   * @param maxValue Largest observed value
+   * @param width Width of every bin
+   * @return Upper bound of the value range
+   */
+  public static int maxRangeFor(int maxValue, int width) {
+    if (width > maxValue) {
+      return width;
+    }
+    return Math.ceilDiv(maxValue, width) * width;
+  }
+
+  /**
+   * Returns the lower bound of a bin.
+   *
+   * @param bin Index of the bin
+   * @return Inclusive lower bound
+   */
+  public int binStart(int bin) {
+    return start + bin * width;
+  }
+
+  /**
+   * Returns the upper bound of a bin.
+   *
+   * @param bin Index of the bin
+   * @return Exclusive upper bound
+   */
+  public int binEnd(int bin) {
+    return binStart(bin) + width;
+  }
+
+  /**
+   * Returns the bin containing a value.
+   *
+   * @param value Value to look up
+   * @return Index of the bin, or -1 if the value is outside all bins
+   */
+  public int indexOf(int value) {
+    if (value < start) {
+      return -1;
+    }
+    int bin = (value - start) / width;
+    return bin < count ? bin : -1;
+  }
+
+  /**
+   * Renders the candidate string of a bin as encoded by the clients.
+   *
+   * @param bin Index of the bin
+   * @return Label of the form {@code "start-end"}
+   */
+  public String label(int bin) {
+    return binStart(bin) + "-" + binEnd(bin);
+  }
+}
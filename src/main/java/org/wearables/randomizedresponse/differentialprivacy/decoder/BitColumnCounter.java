@@ -0,0 +1,171 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+
+/**
+ * Counts how often each bit position is set across many packed reports.
+ *
+ * <p>Instead of testing every bit of every report, the counter keeps a small bit-sliced binary
+ * counter per 64-bit word: plane {@code b} holds bit {@code b} of the running count of all 64
+ * columns at once. Adding a report is a ripple-carry addition of one word into the planes, which
+ * usually terminates after one or two planes. Once the planes could overflow they are flushed into
+ * the per-column totals using {@link Long#numberOfTrailingZeros(long)}.
+ *
+ * <p>Instances are not thread-safe; use one counter per thread and {@link #merge merge} them.
+ */
+public final class BitColumnCounter {
+
+  /** Number of bit planes per word; the planes can hold counts up to {@code 2^PLANES - 1}. */
+  private static final int PLANES = 8;
+
+  /** Number of reports that can be added before the planes have to be flushed. */
+  private static final int FLUSH_INTERVAL = (1 << PLANES) - 1;
+
+  private final int messageBitSize;
+
+  private final int wordsPerReport;
+
+  /** Bit planes, {@code PLANES} consecutive longs per report word. */
+  private final long[] planes;
+
+  /** Flushed per-column totals. */
+  private final long[] counts;
+
+  /** Number of reports added since the last flush. */
+  private int pending;
+
+  /** Total number of reports added. */
+  private long reports;
+
+  public BitColumnCounter(int messageBitSize) {
+    this.messageBitSize = messageBitSize;
+    this.wordsPerReport = BitVector.wordsFor(messageBitSize);
+    this.planes = new long[wordsPerReport * PLANES];
+    this.counts = new long[messageBitSize];
+  }
+
+  /**
+   * Adds one report.
+   *
+   * @param bitVector Packed report with at least {@code messageBitSize} bits
+   */
+  public void add(BitVector bitVector) {
+    add(bitVector.words(), 0);
+  }
+
+  /**
+   * Adds one report stored at the given offset of a packed word array.
+   *
+   * @param words Packed words
+   * @param offset Index of the first word of the report
+   */
+  public void add(long[] words, int offset) {
+    for (int w = 0; w < wordsPerReport; w++) {
+      long carry = words[offset + w];
+      int base = w * PLANES;
+      for (int b = 0; b < PLANES && carry != 0; b++) {
+        long plane = planes[base + b];
+        planes[base + b] = plane ^ carry;
+        carry &= plane;
+      }
+    }
+    reports++;
+    if (++pending == FLUSH_INTERVAL) {
+      flush();
+    }
+  }
+
+  /**
+   * Adds all per-column totals of another counter to this one.
+   *
+   * @param other Counter for the same message bit size
+   * @return this counter
+   */
+  public BitColumnCounter merge(BitColumnCounter other) {
+    if (other.messageBitSize != messageBitSize) {
+      throw new IllegalArgumentException("Cannot merge counters of different message bit sizes.");
+    }
+    long[] otherCounts = other.counts();
+    long[] ownCounts = counts();
+    for (int i = 0; i < messageBitSize; i++) {
+      ownCounts[i] += otherCounts[i];
+    }
+    reports += other.reports;
+    return this;
+  }
+
+  /**
+   * Adds per-column totals that were counted elsewhere, for example by a SIMD kernel.
+   *
+   * @param totals Number of reports with each bit set
+   * @param numberOfReports Number of reports the totals were counted over
+   */
+  public void addTotals(long[] totals, long numberOfReports) {
+    for (int i = 0; i < messageBitSize; i++) {
+      counts[i] += totals[i];
+    }
+    reports += numberOfReports;
+  }
+
+  /**
+   * Returns the number of reports added so far.
+   *
+   * @return Number of reports
+   */
+  public long reports() {
+    return reports;
+  }
+
+  /**
+   * Returns the per-column totals. The returned array is live and must not be modified.
+   *
+   * @return Number of reports with each bit set
+   */
+  public long[] counts() {
+    flush();
+    return counts;
+  }
+
+  /**
+   * Returns the per-column totals as integers, the representation used by the {@code Substance}.
+   *
+   * @return Number of reports with each bit set
+   * @throws ArithmeticException if a count exceeds the integer range
+   */
+  public int[] toIntCounts() {
+    long[] totals = counts();
+    int[] result = new int[messageBitSize];
+    for (int i = 0; i < messageBitSize; i++) {
+      result[i] = Math.toIntExact(totals[i]);
+    }
+    return result;
+  }
+
+  /** Moves the bit-sliced counts into the per-column totals and clears the planes. */
+  private void flush() {
+    if (pending == 0) {
+      return;
+    }
+    for (int w = 0; w < wordsPerReport; w++) {
+      int base = w * PLANES;
+      int column = w * BitVector.WORD_SIZE;
+      for (int b = 0; b < PLANES; b++) {
+        long plane = planes[base + b];
+        while (plane != 0) {
+          int index = column + Long.numberOfTrailingZeros(plane);
+          if (index < messageBitSize) {
+            counts[index] += 1L << b;
+          }
+          plane &= plane - 1;
+        }
+        planes[base + b] = 0;
+      }
+    }
+    pending = 0;
+  }
+}
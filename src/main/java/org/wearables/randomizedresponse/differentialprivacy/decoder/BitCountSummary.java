@@ -0,0 +1,63 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Pre-aggregated input of the decoder: everything the pipeline needs from the reports of a cohort
+ * once the bits have been counted. A summary can be fed into the pipeline instead of the entities,
+ * in which case the aggregation step skips the scan and starts at the debias step.
+ *
+ * <p>Summaries are mergeable, so partial summaries of disjoint report sets can be added up.
+ *
+ * @param bitCounts Number of reports with each bit set
+ * @param reportCount Number of reports the bits were counted over
+ * @param maxStepCount Largest step count among the reports
+ */
+public record BitCountSummary(long[] bitCounts, long reportCount, int maxStepCount) {
+
+  /**
+   * Creates an empty summary.
+   *
+   * @param messageBitSize Number of bits per report
+   * @return Summary without reports
+   */
+  public static BitCountSummary empty(int messageBitSize) {
+    return new BitCountSummary(new long[messageBitSize], 0, 0);
+  }
+
+  /**
+   * Adds another summary over a disjoint set of reports to this one.
+   *
+   * @param other Summary with the same message bit size
+   * @return New summary over the reports of both
+   * @throws IllegalArgumentException if the message bit sizes differ
+   */
+  public BitCountSummary merge(BitCountSummary other) {
+    if (other.bitCounts.length != bitCounts.length) {
+      throw new IllegalArgumentException("Cannot merge summaries of different message bit sizes.");
+    }
+    long[] merged = bitCounts.clone();
+    for (int i = 0; i < merged.length; i++) {
+      merged[i] += other.bitCounts[i];
+    }
+    return new BitCountSummary(
+        merged, reportCount + other.reportCount, Math.max(maxStepCount, other.maxStepCount));
+  }
+
+  /**
+   * Returns the bit counts as integers, the representation used by the {@code Substance}.
+   *
+   * @return Number of reports with each bit set
+   * @throws ArithmeticException if a count exceeds the integer range
+   */
+  public int[] toIntBitCounts() {
+    int[] counts = new int[bitCounts.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = Math.toIntExact(bitCounts[i]);
+    }
+    return counts;
+  }
+}
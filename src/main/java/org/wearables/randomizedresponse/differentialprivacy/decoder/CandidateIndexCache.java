@@ -0,0 +1,62 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Size-bounded cache of {@link CandidateIndexTable}s shared by all decodes of a {@link
+ * DecoderService}. Tables are compiled on the first miss and evicted least recently used first; hit
+ * and miss counts are recorded.
+ */
+public final class CandidateIndexCache {
+
+  private final LoadingCache<CandidateIndexKey, CandidateIndexTable> cache;
+
+  public CandidateIndexCache(long maximumSize) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build(CacheLoader.from(CandidateIndexTable::compile));
+  }
+
+  /**
+   * Returns the table of a key, compiling it if it is not cached.
+   *
+   * @param key Seeds, Bloom filter geometry and bin layout
+   * @return The compiled table
+   */
+  public CandidateIndexTable get(CandidateIndexKey key) {
+    return cache.getUnchecked(key);
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts since the cache was created.
+   *
+   * @return Snapshot of the cache statistics
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of cached tables.
+   *
+   * @return Approximate number of entries
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Discards all cached tables. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
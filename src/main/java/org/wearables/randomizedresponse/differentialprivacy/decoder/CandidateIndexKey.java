@@ -0,0 +1,27 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Everything that determines the Bloom filter indexes of the candidate bins. Two decodes with equal
+ * keys share the same {@link CandidateIndexTable}.
+ *
+ * @param hashSeedFirst Seed of the first Murmur3 hash function
+ * @param hashSeedSecond Seed of the second Murmur3 hash function
+ * @param bloomFilterSize Size k of the Bloom filter bit array
+ * @param numberOfHashFunctions Number h of indexes per candidate
+ * @param startRange Lower bound of the first bin
+ * @param rangeIterator Width of a bin
+ * @param maxRange Upper bound of the value range
+ */
+public record CandidateIndexKey(
+    int hashSeedFirst,
+    int hashSeedSecond,
+    int bloomFilterSize,
+    int numberOfHashFunctions,
+    int startRange,
+    int rangeIterator,
+    int maxRange) {}
@@ -0,0 +1,123 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Precompiled Bloom filter indexes of all candidate bins of a decode.
+ *
+ * <p>Every bin of the {@link BinLayout} is encoded by the clients as the string {@code "start-end"}
+ * and hashed into {@code h} of the {@code k} Bloom filter bits with double hashing over two seeded
+ * Murmur3 functions. The table does this once per {@link CandidateIndexKey}, together with the
+ * sparse design matrix, so decodes that reuse it neither hash nor build a matrix.
+ *
+ * <p>Instances are immutable and safe to share between threads. The arrays returned by the
+ * accessors are shared and must not be modified.
+ */
+public final class CandidateIndexTable {
+
+  private final CandidateIndexKey key;
+
+  /** Layout of the bins, row {@code i} of every array below belongs to bin {@code i}. */
+  private final BinLayout bins;
+
+  /** Sorted Bloom filter indexes per bin, in ascending order of the bins. */
+  private final int[][] binIndexes;
+
+  /** Bloom filter indexes of the whole range {@code "startRange-maxRange"}. */
+  private final int[] rangeIndexes;
+
+  /** Design matrix with one row per bin. */
+  private final SparseDesignMatrix designMatrix;
+
+  private CandidateIndexTable(
+      CandidateIndexKey key, BinLayout bins, int[][] binIndexes, int[] rangeIndexes) {
+    this.key = key;
+    this.bins = bins;
+    this.binIndexes = binIndexes;
+    this.rangeIndexes = rangeIndexes;
+    this.designMatrix = SparseDesignMatrix.fromRows(binIndexes, key.bloomFilterSize());
+  }
+
+  /**
+   * Hashes all bins described by the key. At least one bin is created, even if {@code maxRange}
+   * does not exceed {@code startRange}.
+   *
+   * @param key Seeds, Bloom filter geometry and bin layout
+   * @return The compiled table
+   */
+  public static CandidateIndexTable compile(CandidateIndexKey key) {
+    HashFunction first = Hashing.murmur3_128(key.hashSeedFirst());
+    HashFunction second = Hashing.murmur3_128(key.hashSeedSecond());
+    BinLayout bins = BinLayout.covering(key.startRange(), key.rangeIterator(), key.maxRange());
+    int[][] binIndexes = new int[bins.count()][];
+    for (int bin = 0; bin < bins.count(); bin++) {
+      binIndexes[bin] =
+          indexesOf(
+              bins.label(bin), first, second, key.bloomFilterSize(), key.numberOfHashFunctions());
+    }
+    int[] rangeIndexes =
+        indexesOf(
+            key.startRange() + "-" + key.maxRange(),
+            first,
+            second,
+            key.bloomFilterSize(),
+            key.numberOfHashFunctions());
+    return new CandidateIndexTable(key, bins, binIndexes, rangeIndexes);
+  }
+
+  /**
+   * Hashes one candidate string into sorted Bloom filter indexes using double hashing: index {@code
+   * t} is {@code (h1 + t * h2) mod k}.
+   *
+   * @param candidate The candidate string
+   * @param first First hash function
+   * @param second Second hash function
+   * @param bloomFilterSize Size of the Bloom filter bit array
+   * @param numberOfHashFunctions Number of indexes to derive
+   * @return Sorted Bloom filter indexes
+   */
+  public static int[] indexesOf(
+      String candidate,
+      HashFunction first,
+      HashFunction second,
+      int bloomFilterSize,
+      int numberOfHashFunctions) {
+    byte[] keyBytes = candidate.getBytes(StandardCharsets.UTF_8);
+    int h1 = first.hashBytes(keyBytes).asInt();
+    int h2 = second.hashBytes(keyBytes).asInt();
+    int[] indexes = new int[numberOfHashFunctions];
+    for (int t = 0; t < numberOfHashFunctions; t++) {
+      indexes[t] = Math.floorMod(h1 + t * h2, bloomFilterSize);
+    }
+    Arrays.sort(indexes);
+    return indexes;
+  }
+
+  public CandidateIndexKey getKey() {
+    return key;
+  }
+
+  public BinLayout getBins() {
+    return bins;
+  }
+
+  public int[][] getBinIndexes() {
+    return binIndexes;
+  }
+
+  public int[] getRangeIndexes() {
+    return rangeIndexes;
+  }
+
+  public SparseDesignMatrix getDesignMatrix() {
+    return designMatrix;
+  }
+}
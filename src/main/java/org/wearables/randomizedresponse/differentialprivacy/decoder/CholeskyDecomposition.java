@@ -0,0 +1,67 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Cholesky decomposition of symmetric positive definite matrices stored row-major in a {@code
+ * double[]}, on caller-provided buffers so repeated solves do not allocate.
+ */
+final class CholeskyDecomposition {
+
+  private CholeskyDecomposition() {}
+
+  /**
+   * Factors the principal submatrix of {@code matrix} selected by {@code members} into a lower
+   * triangular {@code L} with {@code L L^T = A + ridge * I}. Pivots are floored at {@code ridge},
+   * so a singular matrix still yields a usable, regularized factor.
+   *
+   * @param matrix Row-major matrix with {@code stride} columns
+   * @param stride Number of columns of {@code matrix}
+   * @param members Rows and columns of the submatrix
+   * @param size Number of entries of {@code members} to use
+   * @param ridge Value added to the diagonal
+   * @param factor Output buffer of at least {@code size * size} entries, row-major with stride
+   *     {@code size}
+   */
+  static void factor(
+      double[] matrix, int stride, int[] members, int size, double ridge, double[] factor) {
+    for (int a = 0; a < size; a++) {
+      int rowA = members[a] * stride;
+      for (int c = 0; c <= a; c++) {
+        double sum = matrix[rowA + members[c]] + (a == c ? ridge : 0);
+        for (int m = 0; m < c; m++) {
+          sum -= factor[a * size + m] * factor[c * size + m];
+        }
+        factor[a * size + c] =
+            a == c ? Math.sqrt(Math.max(sum, ridge)) : sum / factor[c * size + c];
+      }
+    }
+  }
+
+  /**
+   * Solves {@code L L^T x = b} in place.
+   *
+   * @param factor Factor computed by {@link #factor}
+   * @param size Dimension of the factor
+   * @param vector Right-hand side on input, solution on output; at least {@code size} entries
+   */
+  static void solve(double[] factor, int size, double[] vector) {
+    for (int a = 0; a < size; a++) {
+      double sum = vector[a];
+      for (int m = 0; m < a; m++) {
+        sum -= factor[a * size + m] * vector[m];
+      }
+      vector[a] = sum / factor[a * size + a];
+    }
+    for (int a = size - 1; a >= 0; a--) {
+      double sum = vector[a];
+      for (int m = a + 1; m < size; m++) {
+        sum -= factor[m * size + a] * vector[m];
+      }
+      vector[a] = sum / factor[a * size + a];
+    }
+  }
+}
@@ -0,0 +1,357 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * LASSO regression by cyclic coordinate descent on primitive arrays, as an alternative to Smile's
+ * {@code LASSO.fit}.
+ *
+ * <p>The regression uses the Bloom filter bits as observations and the bins as features, i.e. the
+ * transpose of the {@link SparseDesignMatrix}. Like Smile, the features are standardized to zero
+ * mean and unit sample standard deviation, an intercept is fitted, and {@code ||y - Xw - b||^2 +
+ * lambda * ||w||_1} is minimized; the returned coefficients are scaled back to the original
+ * features and exclude the intercept.
+ *
+ * <p>The coordinate updates work on the precomputed {@link Gram} matrix of the standardized
+ * features, so one sweep costs {@code O(bins^2)} independent of the number of bits. A lambda path
+ * is solved from the largest lambda down, each fit starting from the previous solution.
+ *
+ * <p>Instances are immutable and safe to share between threads.
+ */
+public final class CoordinateDescentLasso implements LassoFitter {
+
+  /** Default convergence tolerance on the largest scaled coefficient change of a sweep. */
+  public static final double DEFAULT_TOLERANCE = 1e-6;
+
+  /** Default maximum number of sweeps over all coefficients per lambda. */
+  public static final int DEFAULT_MAX_ITERATIONS = 1000;
+
+  private final double tolerance;
+
+  private final int maxIterations;
+
+  private final boolean nonNegative;
+
+  public CoordinateDescentLasso(boolean nonNegative) {
+    this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS, nonNegative);
+  }
+
+  public CoordinateDescentLasso(double tolerance, int maxIterations, boolean nonNegative) {
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+    this.nonNegative = nonNegative;
+  }
+
+  /**
+   * Fits a single lambda from a cold start, together with the intercept.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Observed value of every column
+   * @param lambda Regularization strength
+   * @return The fitted model
+   */
+  @Override
+  public LassoFit fit(SparseDesignMatrix designMatrix, double[] y, double lambda) {
+    return fit(Gram.of(designMatrix), designMatrix, y, lambda);
+  }
+
+  /**
+   * Fits a single lambda from a cold start with a precomputed Gram matrix, together with the
+   * intercept.
+   *
+   * @param gram Gram matrix of the design matrix
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Observed value of every column
+   * @param lambda Regularization strength
+   * @return The fitted model
+   */
+  public LassoFit fit(Gram gram, SparseDesignMatrix designMatrix, double[] y, double lambda) {
+    return fitModels(gram, designMatrix, y, new double[] {lambda})[0];
+  }
+
+  /**
+   * Solves the whole lambda grid as one warm-started path on a single Gram matrix.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Observed value of every column
+   * @param lambdas Regularization strengths, in any order
+   * @return The fitted models, in the order of {@code lambdas}
+   */
+  @Override
+  public LassoFit[] fitPath(SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+    return fitModels(Gram.of(designMatrix), designMatrix, y, lambdas);
+  }
+
+  @Override
+  public boolean fitsPathJointly() {
+    return true;
+  }
+
+  /**
+   * Solves the whole lambda grid as one warm-started path with a precomputed Gram matrix and fits
+   * the intercept of every model.
+   *
+   * @param gram Gram matrix of the design matrix
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Observed value of every column
+   * @param lambdas Regularization strengths, in any order
+   * @return The fitted models, in the order of {@code lambdas}
+   */
+  public LassoFit[] fitModels(
+      Gram gram, SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+    double[][] path = fitPath(gram, designMatrix, y, lambdas);
+    LassoFit[] fits = new LassoFit[path.length];
+    for (int l = 0; l < path.length; l++) {
+      double[] fitted = designMatrix.leftMultiply(path[l]);
+      double intercept = 0;
+      for (int i = 0; i < y.length; i++) {
+        intercept += y[i] - fitted[i];
+      }
+      fits[l] = new LassoFit(path[l], intercept / y.length);
+    }
+    return fits;
+  }
+
+  /**
+   * Fits every lambda and returns the coefficients with the smallest in-sample mean squared error.
+   * On ties the lambda that comes first in {@code lambdas} wins, as in the Smile based fit loop.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @param lambdas Regularization strengths to evaluate
+   * @return Coefficients of the best model, one per bin
+   */
+  public double[] fitBest(SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+    return fitBest(Gram.of(designMatrix), designMatrix, y, lambdas);
+  }
+
+  /**
+   * Fits every lambda with a precomputed Gram matrix and returns the coefficients with the smallest
+   * in-sample mean squared error.
+   *
+   * @param gram Gram matrix of the design matrix
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @param lambdas Regularization strengths to evaluate
+   * @return Coefficients of the best model, one per bin
+   */
+  public double[] fitBest(
+      Gram gram, SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+    double[][] path = fitPath(gram, designMatrix, y, lambdas);
+    double[] best = null;
+    double bestMse = Double.POSITIVE_INFINITY;
+    for (double[] coefficients : path) {
+      double mse = meanSquaredError(designMatrix, y, coefficients);
+      if (mse < bestMse) {
+        bestMse = mse;
+        best = coefficients;
+      }
+    }
+    if (best == null) {
+      throw new IllegalStateException("The coefficients are null; regression failed");
+    }
+    return best;
+  }
+
+  /**
+   * Solves the LASSO for every lambda with warm starts.
+   *
+   * @param gram Gram matrix of the design matrix
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @param lambdas Regularization strengths, in any order
+   * @return Coefficients per lambda, in the order of {@code lambdas}
+   */
+  public double[][] fitPath(
+      Gram gram, SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+    if (y.length != gram.observations) {
+      throw new IllegalArgumentException(
+          "y length (" + y.length + ") must equal the number of bits (" + gram.observations + ")");
+    }
+    double[] correlations = gram.correlations(designMatrix, y);
+    Integer[] order =
+        IntStream.range(0, lambdas.length)
+            .boxed()
+            .sorted(Comparator.comparingDouble((Integer i) -> lambdas[i]).reversed())
+            .toArray(Integer[]::new);
+    double[] w = new double[gram.features];
+    double[] gw = new double[gram.features];
+    double[][] path = new double[lambdas.length][];
+    for (int i : order) {
+      solve(gram, correlations, lambdas[i], w, gw);
+      double[] coefficients = new double[gram.features];
+      for (int j = 0; j < gram.features; j++) {
+        coefficients[j] = w[j] / gram.scale[j];
+      }
+      path[i] = coefficients;
+    }
+    return path;
+  }
+
+  /**
+   * Runs coordinate descent for one lambda, updating the standardized coefficients {@code w} and
+   * {@code gw = G * w} in place.
+   */
+  private void solve(Gram gram, double[] correlations, double lambda, double[] w, double[] gw) {
+    int p = gram.features;
+    double threshold = lambda / 2;
+    for (int iteration = 0; iteration < maxIterations; iteration++) {
+      double maxChange = 0;
+      double maxWeight = 0;
+      for (int j = 0; j < p; j++) {
+        double diagonal = gram.values[j * p + j];
+        if (diagonal == 0) {
+          continue;
+        }
+        double rho = correlations[j] - gw[j] + diagonal * w[j];
+        double updated = softThreshold(rho, threshold) / diagonal;
+        double change = updated - w[j];
+        if (change != 0) {
+          int row = j * p;
+          for (int l = 0; l < p; l++) {
+            gw[l] += gram.values[row + l] * change;
+          }
+          w[j] = updated;
+          maxChange = Math.max(maxChange, Math.abs(change) * Math.sqrt(diagonal));
+        }
+        maxWeight = Math.max(maxWeight, Math.abs(updated) * Math.sqrt(diagonal));
+      }
+      if (maxChange <= tolerance * Math.max(1, maxWeight)) {
+        return;
+      }
+    }
+  }
+
+  private double softThreshold(double rho, double threshold) {
+    if (rho > threshold) {
+      return rho - threshold;
+    }
+    if (nonNegative || rho >= -threshold) {
+      return 0;
+    }
+    return rho + threshold;
+  }
+
+  /**
+   * Computes the in-sample mean squared error of a model whose intercept is fitted to the mean
+   * residual, as Smile does.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @param coefficients Coefficients per bin in the original feature scale
+   * @return Mean squared error of the fitted values
+   */
+  public static double meanSquaredError(
+      SparseDesignMatrix designMatrix, double[] y, double[] coefficients) {
+    double[] fitted = designMatrix.leftMultiply(coefficients);
+    double intercept = 0;
+    for (int i = 0; i < y.length; i++) {
+      intercept += y[i] - fitted[i];
+    }
+    intercept /= y.length;
+    double sum = 0;
+    for (int i = 0; i < y.length; i++) {
+      double residual = y[i] - fitted[i] - intercept;
+      sum += residual * residual;
+    }
+    return sum / y.length;
+  }
+
+  /**
+   * Gram matrix {@code Z^T Z} of the standardized regression features, together with the column
+   * means and standard deviations used for the standardization. It only depends on the design
+   * matrix and can be reused for any target vector.
+   */
+  public static final class Gram {
+
+    /** Number of observations, i.e. Bloom filter bits. */
+    private final int observations;
+
+    /** Number of features, i.e. bins. */
+    private final int features;
+
+    private final double[] center;
+
+    /** Sample standard deviation per feature, 1 for constant features. */
+    private final double[] scale;
+
+    /** Row-major {@code features x features} matrix; constant features have a zero row. */
+    private final double[] values;
+
+    private Gram(int observations, int features, double[] center, double[] scale, double[] values) {
+      this.observations = observations;
+      this.features = features;
+      this.center = center;
+      this.scale = scale;
+      this.values = values;
+    }
+
+    /**
+     * Computes the Gram matrix of a design matrix by standardizing {@link
+     * SparseDesignMatrix#gram()}.
+     *
+     * @param designMatrix Sparse design matrix with one row per bin
+     * @return The Gram matrix
+     */
+    public static Gram of(SparseDesignMatrix designMatrix) {
+      int n = designMatrix.columns();
+      int p = designMatrix.rows();
+      int[] rowPointers = designMatrix.rowPointers();
+      double[] center = new double[p];
+      double[] scale = new double[p];
+      boolean[] constant = new boolean[p];
+      for (int j = 0; j < p; j++) {
+        int ones = rowPointers[j + 1] - rowPointers[j];
+        center[j] = (double) ones / n;
+        double variance = n > 1 ? (ones - n * center[j] * center[j]) / (n - 1) : 0;
+        constant[j] = variance <= 1e-12;
+        scale[j] = constant[j] ? 1 : Math.sqrt(variance);
+      }
+      double[] cross = designMatrix.gram();
+      double[] values = new double[p * p];
+      for (int j = 0; j < p; j++) {
+        if (constant[j]) {
+          continue;
+        }
+        for (int l = 0; l < p; l++) {
+          if (!constant[l]) {
+            values[j * p + l] =
+                (cross[j * p + l] - n * center[j] * center[l]) / (scale[j] * scale[l]);
+          }
+        }
+      }
+      return new Gram(n, p, center, scale, values);
+    }
+
+    /**
+     * Computes {@code Z^T (y - mean(y))}, the correlation of every standardized feature with the
+     * centered target.
+     */
+    private double[] correlations(SparseDesignMatrix designMatrix, double[] y) {
+      double mean = Arrays.stream(y).sum() / observations;
+      double[] xty = designMatrix.multiply(y);
+      double[] correlations = new double[features];
+      for (int j = 0; j < features; j++) {
+        if (values[j * features + j] != 0) {
+          correlations[j] = (xty[j] - observations * center[j] * mean) / scale[j];
+        }
+      }
+      return correlations;
+    }
+
+    public int features() {
+      return features;
+    }
+
+    public int observations() {
+      return observations;
+    }
+  }
+}
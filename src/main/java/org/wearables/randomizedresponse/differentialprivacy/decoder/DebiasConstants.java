@@ -0,0 +1,50 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+
+/**
+ * Constants of the randomized response of a parameter profile that relate observed bit counts to
+ * true ones: a bit is expected to be reported as 1 by {@code offset * n + denominator * t} of
+ * {@code n} reports when {@code t} of them have it set in their Bloom filter.
+ *
+ * @param offset Expected share of ones caused by the randomization, {@code p + f(q - p)/2}
+ * @param denominator Scale of the true signal in the observed counts, {@code (1 - f)(q - p)}
+ */
+public record DebiasConstants(double offset, double denominator) {
+
+  /**
+   * Derives the constants from the f, p and q of a parameter profile.
+   *
+   * @param parameterEntity Parameter profile
+   * @return The debias constants
+   */
+  public static DebiasConstants of(ParameterEntity parameterEntity) {
+    double p = parameterEntity.getInstantaneousProbabilityForOne();
+    double f = parameterEntity.getPermanentProbability();
+    double q = parameterEntity.getInstantaneousProbabilityForZero();
+    return new DebiasConstants(p + 0.5 * f * (q - p), (1.0 - f) * (q - p));
+  }
+
+  /**
+   * Returns the probability that a bit outside the Bloom filter of a report is reported as 1.
+   *
+   * @return Probability of a false one
+   */
+  public double falseOne() {
+    return offset;
+  }
+
+  /**
+   * Returns the probability that a bit of the Bloom filter of a report is reported as 1.
+   *
+   * @return Probability of a true one
+   */
+  public double trueOne() {
+    return offset + denominator;
+  }
+}
@@ -10,17 +10,14 @@ import com.google.common.hash.Hashing;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
 import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterService;
 
 /**
@@ -28,68 +25,160 @@ import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterS
  * filter indexes and converting them into a design matrix. The resulting design matrix is later
  * used for regression analysis to recover unbiased class distributions.
  *
+ * <p>The candidate indexes are taken from the {@link DecodePlan} of the decode, which a {@link
+ * DecodePlanCache} builds once per parameter profile, seeds and bin layout. Repeated decodes with
+ * the same profile do not hash anything, and the later steps reuse the matrices of the plan.
+ *
  * @param <T> The entity type to be processed
  */
 @Service
 @Validated
 public class DebiasPipe<T extends ReportEntity> implements Pipe<T> {
 
+  /** Number of candidate index tables kept by a pipe created without a shared cache. */
+  private static final int DEFAULT_CACHE_SIZE = 64;
+
+  /** Number of hash functions used if the substance carries no parameter entity. */
+  private static final int DEFAULT_NUMBER_OF_HASH_FUNCTIONS = 2;
+
+  /** Cache of compiled decode plans and their candidate index tables. */
+  private final DecodePlanCache decodePlanCache;
+
+  private final int hashSeedFirst;
+
+  private final int hashSeedSecond;
+
+  private final HashFunction firstHashFunction;
+
+  private final HashFunction secondHashFunction;
+
+  /** Creates a pipe with the default hash seeds and its own cache. */
+  public DebiasPipe() {
+    this(
+        new CandidateIndexCache(DEFAULT_CACHE_SIZE),
+        HyperParameterConfiguration.DEFAULT_HASH_SEED_FIRST,
+        HyperParameterConfiguration.DEFAULT_HASH_SEED_SECOND);
+  }
+
+  public DebiasPipe(
+      CandidateIndexCache candidateIndexCache, int hashSeedFirst, int hashSeedSecond) {
+    this(
+        new DecodePlanCache(candidateIndexCache, DEFAULT_CACHE_SIZE),
+        hashSeedFirst,
+        hashSeedSecond);
+  }
+
+  public DebiasPipe(DecodePlanCache decodePlanCache, int hashSeedFirst, int hashSeedSecond) {
+    this.decodePlanCache = decodePlanCache;
+    this.hashSeedFirst = hashSeedFirst;
+    this.hashSeedSecond = hashSeedSecond;
+    this.firstHashFunction = Hashing.murmur3_128(hashSeedFirst);
+    this.secondHashFunction = Hashing.murmur3_128(hashSeedSecond);
+  }
+
   /**
    * Executes the debiasing step of the pipeline.
    *
-   * <p>This method builds a bin map, calculates Bloom filter indexes, converts them into a design
-   * matrix, and updates the substance.
+   * <p>This method looks up the decode plan of the substance, and updates the substance with the
+   * plan, its bin layout, the indexes of every bin and of the whole range, and its sparse design
+   * matrix.
    *
    * @param substance The container holding entities and decoding metadata
-   * @return The updated substance with bin map, indexes, and design matrix
+   * @return The updated substance with bins, indexes, and design matrix
    */
   @Override
   public Substance<T> process(@NotNull Substance<T> substance) throws ExecutionException {
-    Map<String, int[]> binMap = buildBinMap(substance.getMaxRange(), substance.getRangeIterator());
-    substance.setBinMap(binMap);
-    int[] indexes =
-        mapNumericCandidateStringsToIndex(
-            substance.getStartRange(),
-            substance.getMaxRange(),
-            substance.getMessageBitSize(),
-            null);
-    substance.setIndexes(indexes);
-    double[][] designMatrix =
-        convertClassesToArray(binMap, substance.getMessageBitSize(), substance.getRangeIterator());
-    substance.setDesignMatrix(designMatrix);
+    DecodePlan plan = decodePlanCache.get(decodePlanKey(substance));
+    CandidateIndexTable table = plan.getTable();
+    substance.setDecodePlan(plan);
+    substance.setBins(table.getBins());
+    substance.setBinIndexes(table.getBinIndexes());
+    substance.setIndexes(table.getRangeIndexes());
+    substance.setSparseDesignMatrix(table.getDesignMatrix());
     return substance;
   }
 
   /**
-   * Builds a mapping of value ranges to Bloom filter indexes.
+   * Builds the key of the decode plan a substance needs.
+   *
+   * @param substance The container holding the decoding metadata
+   * @return Key of the decode plan
+   */
+  public DecodePlanKey decodePlanKey(@NotNull Substance<T> substance) {
+    return new DecodePlanKey(
+        candidateIndexKey(substance),
+        substance.getParameterEntity() == null
+            ? null
+            : DebiasConstants.of(substance.getParameterEntity()));
+  }
+
+  /**
+   * Builds the key of the candidate index table a substance needs.
+   *
+   * @param substance The container holding the decoding metadata
+   * @return Key of the candidate index table
+   */
+  public CandidateIndexKey candidateIndexKey(@NotNull Substance<T> substance) {
+    int numberOfHashFunctions =
+        substance.getParameterEntity() == null
+            ? DEFAULT_NUMBER_OF_HASH_FUNCTIONS
+            : substance.getParameterEntity().getNumberOfHashFunctions();
+    return new CandidateIndexKey(
+        hashSeedFirst,
+        hashSeedSecond,
+        substance.getMessageBitSize(),
+        numberOfHashFunctions,
+        substance.getStartRange(),
+        substance.getRangeIterator(),
+        substance.getMaxRange());
+  }
+
+  /**
+   * Returns the cache of compiled candidate index tables, for example to read its statistics.
+   *
+   * @return The cache used by this pipe
+   */
+  public CandidateIndexCache getCandidateIndexCache() {
+    return decodePlanCache.getCandidateIndexCache();
+  }
+
+  /**
+   * Returns the cache of compiled decode plans, for example to read its statistics.
    *
-   * <p>Each range is represented as a string key (for example "0-10") and mapped to an array of bit
-   * positions in the Bloom filter. Ranges are generated by stepping through the maximum range using
-   * the iterator size.
+   * @return The cache used by this pipe
+   */
+  public DecodePlanCache getDecodePlanCache() {
+    return decodePlanCache;
+  }
+
+  /**
+   * Maps every bin to its Bloom filter indexes.
+   *
+   * <p>Row {@code i} of the result holds the sorted indexes of bin {@code i}. The Bloom filter
+   * geometry of the default parameter profile is used.
    *
-   * @param maxRange The upper bound of the value range
-   * @param rangeIterator Step size used to divide the range into bins
-   * @return Map of string range labels to arrays of Bloom filter indexes
-   * @throws IllegalArgumentException If rangeIterator or maxRange are invalid
+   * @param bins Layout of the bins
+   * @return Bloom filter indexes per bin
    */
-  public Map<String, int[]> buildBinMap(@PositiveOrZero int maxRange, @Positive int rangeIterator) {
-    int messageBitSize = new ParameterService().getDefaultParameterEntity().messageBitSize;
-    Map<String, int[]> binMap = new HashMap<>();
-    int previousRange = 0;
-    do {
-      int nextRange = previousRange + rangeIterator;
-      String range = Integer.toString(previousRange) + "-" + Integer.toString(nextRange);
-      binMap.put(
-          range, mapNumericCandidateStringsToIndex(previousRange, nextRange, messageBitSize, null));
-      previousRange = nextRange;
-    } while (previousRange < maxRange);
-    return binMap;
+  public int[][] buildBinIndexes(@NotNull BinLayout bins) {
+    ParameterEntity defaultParameterEntity = new ParameterService().getDefaultParameterEntity();
+    return getCandidateIndexCache()
+        .get(
+            new CandidateIndexKey(
+                hashSeedFirst,
+                hashSeedSecond,
+                defaultParameterEntity.getMessageBitSize(),
+                defaultParameterEntity.getNumberOfHashFunctions(),
+                bins.start(),
+                bins.width(),
+                bins.binEnd(bins.count() - 1)))
+        .getBinIndexes();
   }
 
   /**
    * Maps a numeric candidate range into Bloom filter indexes using hash functions.
    *
-   * <p>By default, Murmur3 hashes with fixed seeds are used unless a custom hash function is
+   * <p>By default, the seeded Murmur3 hashes of this pipe are used unless a custom hash function is
    * provided.
    *
    * @param startRange Starting value of the range
@@ -97,74 +186,44 @@ public class DebiasPipe<T extends ReportEntity> implements Pipe<T> {
    * @param bloomFilterSize Size of the Bloom filter bit array
    * @param hashFunction Optional custom hash function; null to use defaults
    * @return Array of Bloom filter indexes for the given range
-   * @throws ArrayIndexOutOfBoundsException If a calculated index exceeds the Bloom filter size
    */
   public int[] mapNumericCandidateStringsToIndex(
       @PositiveOrZero int startRange,
       @Positive int endRange,
       @Positive int bloomFilterSize,
       HashFunction hashFunction) {
-    HashFunction firstDefaultHashFunction =
-        Hashing.murmur3_128(new HyperParameterConfiguration().getHashSeedFirst());
-    HashFunction secondDefaultHashfunction =
-        Hashing.murmur3_128(new HyperParameterConfiguration().getHashSeedSecond());
-    if (hashFunction != null) {
-      firstDefaultHashFunction = hashFunction;
-      secondDefaultHashfunction = hashFunction;
-    }
-    String binRange = String.valueOf(startRange) + '-' + endRange;
-    byte[] keyBytes = binRange.getBytes(StandardCharsets.UTF_8);
-    int[] indexes = new int[2];
-    estimateIndexesFromHash(
-        firstDefaultHashFunction.hashBytes(keyBytes).asInt(),
-        secondDefaultHashfunction.hashBytes(keyBytes).asInt(),
-        bloomFilterSize,
-        indexes);
-    Arrays.sort(indexes);
-    return indexes;
+    return mapCandidateStringsToIndex(startRange + "-" + endRange, bloomFilterSize, hashFunction);
   }
 
- /**
-  * Maps a candidate range into Bloom filter indexes using hash functions.
-  *
-  * <p>By default, Murmur3 hashes with fixed seeds are used unless a custom hash function is
-  * provided.
-  *
-  * @param value the candidate string
-  * @param bloomFilterSize Size of the Bloom filter bit array
-  * @param hashFunction Optional custom hash function; null to use defaults
-  * @return Array of Bloom filter indexes for the given range
-  * @throws ArrayIndexOutOfBoundsException If a calculated index exceeds the Bloom filter size
-  */
+  /**
+   * Maps a candidate range into Bloom filter indexes using hash functions.
+   *
+   * <p>By default, the seeded Murmur3 hashes of this pipe are used unless a custom hash function is
+   * provided.
+   *
+   * @param value the candidate string
+   * @param bloomFilterSize Size of the Bloom filter bit array
+   * @param hashFunction Optional custom hash function; null to use defaults
+   * @return Array of Bloom filter indexes for the given range
+   */
   public int[] mapCandidateStringsToIndex(
       @NotNull String value, @Positive int bloomFilterSize, HashFunction hashFunction) {
-    HashFunction firstDefaultHashFunction =
-        Hashing.murmur3_128(new HyperParameterConfiguration().getHashSeedFirst());
-    HashFunction secondDefaultHashfunction =
-        Hashing.murmur3_128(new HyperParameterConfiguration().getHashSeedSecond());
-    if (hashFunction != null) {
-      firstDefaultHashFunction = hashFunction;
-      secondDefaultHashfunction = hashFunction;
-    }
-    byte[] keyBytes = value.getBytes(StandardCharsets.UTF_8);
-    int[] indexes = new int[2];
-    estimateIndexesFromHash(
-        firstDefaultHashFunction.hashBytes(keyBytes).asInt(),
-        secondDefaultHashfunction.hashBytes(keyBytes).asInt(),
+    return CandidateIndexTable.indexesOf(
+        value,
+        hashFunction != null ? hashFunction : firstHashFunction,
+        hashFunction != null ? hashFunction : secondHashFunction,
         bloomFilterSize,
-        indexes);
-    Arrays.sort(indexes);
-    return indexes;
+        DEFAULT_NUMBER_OF_HASH_FUNCTIONS);
   }
 
- /**
-  * Estimates Bloom filter indexes from hash values.
-  *
-  * @param i1 first hash value
-  * @param i2 second hash value
-  * @param bloomFilterSize size of Bloom filter
-  * @param indexes output array for indexes
-  */
+  /**
+   * Estimates Bloom filter indexes from hash values.
+   *
+   * @param i1 first hash value
+   * @param i2 second hash value
+   * @param bloomFilterSize size of Bloom filter
+   * @param indexes output array for indexes
+   */
   public void estimateIndexesFromHash(int i1, int i2, int bloomFilterSize, int[] indexes) {
     for (int t = 0; t < 2; t++) {
       indexes[t] = Math.floorMod(i1 + t * i2, bloomFilterSize);
@@ -176,31 +235,22 @@ public class DebiasPipe<T extends ReportEntity> implements Pipe<T> {
   }
 
   /**
-   * Converts the bin map into a design matrix.
+   * Converts the Bloom filter indexes of the bins into a dense design matrix.
    *
-   * <p>Each row of the matrix corresponds to a range, and each column to a Bloom filter bit. A
-   * value of 1 indicates that the bit index belongs to the range.
+   * <p>Each row of the matrix corresponds to a bin, and each column to a Bloom filter bit. A value
+   * of 1 indicates that the bit index belongs to the bin.
    *
-   * @param binMap Mapping of ranges to Bloom filter indexes
+   * @param binIndexes Bloom filter indexes per bin
    * @param messageBitSize Size of the Bloom filter bit array
-   * @param rangeIterator Step size used to divide ranges into bins
    * @return Two-dimensional array representing the design matrix
    */
   public double[][] convertClassesToArray(
-      @NotNull Map<String, int[]> binMap,
-      @Positive int messageBitSize,
-      @Positive int rangeIterator) {
-    TreeMap<String, int[]> treeBinMap = new TreeMap<>();
-    if (!(binMap instanceof TreeMap<String, int[]>)) treeBinMap.putAll(binMap);
-    double[][] designMatrix = new double[treeBinMap.size()][messageBitSize];
-    int previousRange = 0;
-    for (int i = 0; i < designMatrix.length; i++) {
-      int nextRange = previousRange + rangeIterator;
-      String range = Integer.toString(previousRange) + "-" + Integer.toString(nextRange);
-      for (int t = 0; t < treeBinMap.get(range).length; t++) {
-        designMatrix[i][treeBinMap.get(range)[t]] = 1;
+      @NotNull int[][] binIndexes, @Positive int messageBitSize) {
+    double[][] designMatrix = new double[binIndexes.length][messageBitSize];
+    for (int bin = 0; bin < binIndexes.length; bin++) {
+      for (int index : binIndexes[bin]) {
+        designMatrix[bin][index] = 1;
       }
-      previousRange = nextRange;
     }
     return designMatrix;
   }
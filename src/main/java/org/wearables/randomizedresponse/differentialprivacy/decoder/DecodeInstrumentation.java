@@ -0,0 +1,330 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+
+/**
+ * Times the stages of a decode with a Micrometer timer and a {@link DecodeStageEvent} JFR event.
+ *
+ * <p>All stages share the timer {@value #TIMER_NAME}, tagged with the stage, the outcome, the
+ * parameter profile, the number of Bloom filter bits k and the number of bins. To keep the number
+ * of timers bounded, the report and bin counts are tagged by their order of magnitude and only the
+ * first {@value #MAX_PROFILE_TAGS} profiles get their own tag value; the JFR event carries the
+ * exact counts and profile. A measurement costs a clock read, a timer lookup and, while a recording
+ * is running, one event, which is negligible next to a decode.
+ *
+ * <p>Measurements are closed in a {@code finally} block or try-with-resources statement, so a stage
+ * that throws is still recorded, with outcome {@value #FAILURE}.
+ *
+ * <p>A caller that reports progress, such as a decode job, can {@link #observeStages observe} the
+ * stages started on its thread.
+ */
+@Component
+public class DecodeInstrumentation {
+
+  /** Name of the timer of all decode stages. */
+  public static final String TIMER_NAME = "rappor.decode.stage";
+
+  /** Tag value of a dimension that is not known for a stage. */
+  public static final String UNKNOWN = "none";
+
+  /** Tag value of the profiles beyond the first {@value #MAX_PROFILE_TAGS}. */
+  public static final String OTHER = "other";
+
+  /** Outcome tag value of a stage that completed. */
+  public static final String SUCCESS = "success";
+
+  /** Outcome tag value of a stage that threw. */
+  public static final String FAILURE = "failure";
+
+  /** Number of parameter profiles tagged by name. */
+  public static final int MAX_PROFILE_TAGS = 32;
+
+  private final MeterRegistry meterRegistry;
+
+  /** Profiles tagged by name so far. */
+  private final Set<String> profileTags = ConcurrentHashMap.newKeySet();
+
+  /** Number of profile tags reserved so far, never more than {@value #MAX_PROFILE_TAGS}. */
+  private final AtomicInteger reservedProfileTags = new AtomicInteger();
+
+  /** Listener of the stages started on the current thread, if any. */
+  private final ThreadLocal<StageListener> stageListener = new ThreadLocal<>();
+
+  public DecodeInstrumentation(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Creates the instrumentation on the application's meter registry, or without a backing registry
+   * if the context has none, as in the JPA test slices.
+   *
+   * @param meterRegistry Registry of the application, if any
+   */
+  @Autowired
+  public DecodeInstrumentation(ObjectProvider<MeterRegistry> meterRegistry) {
+    this(meterRegistry.getIfAvailable(CompositeMeterRegistry::new));
+  }
+
+  /**
+   * Creates an instrumentation whose timers are discarded, for decoders built outside Spring.
+   *
+   * @return Instrumentation without a backing registry
+   */
+  public static DecodeInstrumentation noop() {
+    return new DecodeInstrumentation(new CompositeMeterRegistry());
+  }
+
+  /**
+   * Starts measuring a stage.
+   *
+   * @param stage Name of the stage, for example {@code fetch}
+   * @return The running measurement
+   */
+  public Measurement start(String stage) {
+    return new Measurement(stage, null);
+  }
+
+  /**
+   * Starts measuring the execution of a pipe. If the pipe throws, the measurement is recorded with
+   * the dimensions of its input.
+   *
+   * @param pipe The pipe about to run
+   * @param input The substance passed to the pipe
+   * @return The running measurement
+   */
+  public Measurement start(Pipe<?> pipe, Substance<?> input) {
+    return new Measurement(stageOf(pipe), input);
+  }
+
+  /**
+   * Runs work and passes every stage it starts on the calling thread to a listener, in order.
+   * Stages that the work runs on other threads are not passed on.
+   *
+   * @param listener Receiver of the stages
+   * @param work Work to observe
+   * @param <T> Type of the result
+   * @return Result of the work
+   * @throws Exception if the work throws
+   */
+  public <T> T observeStages(StageListener listener, Callable<T> work) throws Exception {
+    StageListener previous = stageListener.get();
+    stageListener.set(listener);
+    try {
+      return work.call();
+    } finally {
+      stageListener.set(previous);
+    }
+  }
+
+  /**
+   * Returns the registry the timers are registered with.
+   *
+   * @return The meter registry
+   */
+  public MeterRegistry getMeterRegistry() {
+    return meterRegistry;
+  }
+
+  /**
+   * Returns the stage name of a pipe: its class name without the {@code Pipe} suffix, in lower
+   * case.
+   *
+   * @param pipe The pipe
+   * @return Stage name, for example {@code regression}
+   */
+  static String stageOf(Pipe<?> pipe) {
+    String name = pipe.getClass().getSimpleName();
+    if (name.endsWith("Pipe")) {
+      name = name.substring(0, name.length() - "Pipe".length());
+    }
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the tag value of a parameter profile: its name if it is among the first {@value
+   * #MAX_PROFILE_TAGS} profiles seen, {@value #OTHER} otherwise.
+   *
+   * @param profile Name of the parameter profile, or null if unknown
+   * @return Tag value
+   */
+  String profileTag(String profile) {
+    if (profile == null) {
+      return UNKNOWN;
+    }
+    if (profileTags.contains(profile)) {
+      return profile;
+    }
+    if (reservedProfileTags.getAndUpdate(n -> n < MAX_PROFILE_TAGS ? n + 1 : n)
+        >= MAX_PROFILE_TAGS) {
+      return profileTags.contains(profile) ? profile : OTHER;
+    }
+    if (!profileTags.add(profile)) {
+      // Another thread tagged the same profile first, so the reserved slot is not needed
+      reservedProfileTags.decrementAndGet();
+    }
+    return profile;
+  }
+
+  /**
+   * Returns the order of magnitude of a count as a tag value, for example {@code 1e3} for 1000 to
+   * 9999 reports.
+   *
+   * @param count Number of reports or bins, or a negative value if unknown
+   * @return Tag value
+   */
+  static String magnitude(long count) {
+    if (count < 0) {
+      return UNKNOWN;
+    }
+    if (count == 0) {
+      return "0";
+    }
+    return "1e" + (int) Math.log10(count);
+  }
+
+  /** Receiver of the stages started on an observed thread. */
+  @FunctionalInterface
+  public interface StageListener {
+
+    /**
+     * Called when a stage starts.
+     *
+     * @param stage Name of the stage, for example {@code regression}
+     */
+    void stageStarted(String stage);
+  }
+
+  /**
+   * Measurement of one stage, stopped once the dimensions of the stage are known. Closing a
+   * measurement that was not stopped records it as failed.
+   */
+  public final class Measurement implements AutoCloseable {
+
+    private final String stage;
+
+    private final Substance<?> input;
+
+    private final Timer.Sample sample;
+
+    private final DecodeStageEvent event;
+
+    private boolean stopped;
+
+    private Measurement(String stage, Substance<?> input) {
+      this.stage = stage;
+      this.input = input;
+      this.sample = Timer.start(meterRegistry);
+      this.event = new DecodeStageEvent();
+      event.begin();
+      StageListener listener = stageListener.get();
+      if (listener != null) {
+        listener.stageStarted(stage);
+      }
+    }
+
+    /**
+     * Stops the measurement and records it with the dimensions of a substance.
+     *
+     * @param substance The substance the stage worked on
+     */
+    public void stop(Substance<?> substance) {
+      record(SUCCESS, substance);
+    }
+
+    /**
+     * Stops the measurement and records it.
+     *
+     * @param profile Name of the parameter profile, or null if unknown
+     * @param reports Number of reports, or a negative value if unknown
+     * @param k Number of Bloom filter bits, or a non-positive value if unknown
+     * @param bins Number of bins, or a negative value if unknown
+     */
+    public void stop(String profile, long reports, int k, int bins) {
+      record(SUCCESS, profile, reports, k, bins);
+    }
+
+    /**
+     * Records the measurement as failed if it was not stopped, with the dimensions of the input
+     * substance if there is one.
+     */
+    @Override
+    public void close() {
+      if (stopped) {
+        return;
+      }
+      if (input != null) {
+        record(FAILURE, input);
+      } else {
+        record(FAILURE, null, -1, 0, -1);
+      }
+    }
+
+    private void record(String outcome, Substance<?> substance) {
+      int bins = substance.getBins() != null ? substance.getBins().count() : -1;
+      if (bins < 0 && substance.getRangeIterator() > 0) {
+        bins = (substance.getMaxRange() - substance.getStartRange()) / substance.getRangeIterator();
+      }
+      long reports =
+          substance.getBitCounts() != null || substance.getEntities() == null
+              ? substance.getNumberOfReports()
+              : substance.getEntities().size();
+      record(
+          outcome,
+          substance.getParameterEntity() != null
+              ? substance.getParameterEntity().getProfile()
+              : null,
+          reports,
+          substance.getMessageBitSize(),
+          bins);
+    }
+
+    private void record(String outcome, String profile, long reports, int k, int bins) {
+      stopped = true;
+      sample.stop(
+          Timer.builder(TIMER_NAME)
+              .description("Duration of one stage of a decode")
+              .tags(
+                  Tags.of(
+                      "stage",
+                      stage,
+                      "outcome",
+                      outcome,
+                      "profile",
+                      profileTag(profile),
+                      "reports",
+                      magnitude(reports),
+                      "k",
+                      k > 0 ? Integer.toString(k) : UNKNOWN,
+                      "bins",
+                      magnitude(bins)))
+              .register(meterRegistry));
+      event.end();
+      if (event.shouldCommit()) {
+        event.stage = stage;
+        event.outcome = outcome;
+        event.profile = profile != null ? profile : UNKNOWN;
+        event.reports = reports;
+        event.k = k;
+        event.bins = bins;
+        event.commit();
+      }
+    }
+  }
+}
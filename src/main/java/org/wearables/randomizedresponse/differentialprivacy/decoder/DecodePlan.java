@@ -0,0 +1,77 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+/**
+ * Everything about a decode that does not depend on the reports, compiled once per parameter
+ * profile, hash seeds and bin layout: the candidate index table with its design matrix, the debias
+ * constants, the Gram matrix {@code X^T X} of the design, and the standardized Gram matrix of the
+ * coordinate descent LASSO. With a plan a decode only counts the bits and solves a small system.
+ *
+ * <p>The matrices are derived on first use, since not every estimator needs every matrix; each is
+ * computed at most once. Instances are immutable and safe to share between threads.
+ */
+public final class DecodePlan {
+
+  private final DecodePlanKey key;
+
+  private final CandidateIndexTable table;
+
+  private final Supplier<double[]> gram;
+
+  private final Supplier<CoordinateDescentLasso.Gram> lassoGram;
+
+  public DecodePlan(DecodePlanKey key, CandidateIndexTable table) {
+    this.key = key;
+    this.table = table;
+    SparseDesignMatrix designMatrix = table.getDesignMatrix();
+    this.gram = Suppliers.memoize(designMatrix::gram);
+    this.lassoGram = Suppliers.memoize(() -> CoordinateDescentLasso.Gram.of(designMatrix));
+  }
+
+  public DecodePlanKey getKey() {
+    return key;
+  }
+
+  public CandidateIndexTable getTable() {
+    return table;
+  }
+
+  public SparseDesignMatrix getDesignMatrix() {
+    return table.getDesignMatrix();
+  }
+
+  /**
+   * Returns the debias constants of the parameter profile.
+   *
+   * @return The constants, or {@code null} if the plan was built without a profile
+   */
+  public DebiasConstants getDebiasConstants() {
+    return key.debiasConstants();
+  }
+
+  /**
+   * Returns the Gram matrix {@code X^T X} of the design, i.e. the number of Bloom filter bits every
+   * pair of bins shares. The array is shared and must not be modified.
+   *
+   * @return Row-major {@code bins x bins} matrix
+   */
+  public double[] getGram() {
+    return gram.get();
+  }
+
+  /**
+   * Returns the Gram matrix of the standardized design used by the coordinate descent LASSO.
+   *
+   * @return The standardized Gram matrix
+   */
+  public CoordinateDescentLasso.Gram getLassoGram() {
+    return lassoGram.get();
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Size-bounded cache of {@link DecodePlan}s shared by all decodes of a {@link DecoderService}.
+ * Plans are built on the first miss from the candidate index table of a {@link CandidateIndexCache}
+ * and evicted least recently used first; hit and miss counts are recorded.
+ *
+ * <p>Plans are keyed by the values they are built from, so a changed profile or hyperparameter
+ * leads to a new plan; {@link #invalidateAll()} additionally drops all plans when a profile is
+ * saved.
+ */
+public final class DecodePlanCache {
+
+  private final CandidateIndexCache candidateIndexCache;
+
+  private final LoadingCache<DecodePlanKey, DecodePlan> cache;
+
+  public DecodePlanCache(long maximumSize) {
+    this(new CandidateIndexCache(maximumSize), maximumSize);
+  }
+
+  public DecodePlanCache(CandidateIndexCache candidateIndexCache, long maximumSize) {
+    this.candidateIndexCache = candidateIndexCache;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build(
+                CacheLoader.from(
+                    key -> new DecodePlan(key, candidateIndexCache.get(key.indexKey()))));
+  }
+
+  /**
+   * Returns the plan of a key, building it if it is not cached.
+   *
+   * @param key Candidate index key and debias constants
+   * @return The decode plan
+   */
+  public DecodePlan get(DecodePlanKey key) {
+    return cache.getUnchecked(key);
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts since the cache was created.
+   *
+   * @return Snapshot of the cache statistics
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of cached plans.
+   *
+   * @return Approximate number of entries
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the cache of candidate index tables the plans are built from.
+   *
+   * @return The candidate index cache
+   */
+  public CandidateIndexCache getCandidateIndexCache() {
+    return candidateIndexCache;
+  }
+
+  /** Discards all cached plans and candidate index tables. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+    candidateIndexCache.invalidateAll();
+  }
+}
@@ -0,0 +1,17 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Everything a {@link DecodePlan} depends on: the hash seeds, Bloom filter geometry and bin layout
+ * of its candidate index table, and the randomized response constants of the parameter profile. Two
+ * decodes with equal keys share one plan.
+ *
+ * @param indexKey Key of the candidate index table
+ * @param debiasConstants Debias constants of the profile, or {@code null} if the decode has no
+ *     parameter profile
+ */
+public record DecodePlanKey(CandidateIndexKey indexKey, DebiasConstants debiasConstants) {}
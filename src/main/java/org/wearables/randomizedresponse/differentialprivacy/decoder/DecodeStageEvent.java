@@ -0,0 +1,44 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering one stage of a decode: a pipe of the {@link DecoderService}, or the fetch and
+ * serialization around it. The event is only recorded while a flight recording with it enabled is
+ * running.
+ */
+@Name("org.wearables.randomizedresponse.DecodeStage")
+@Label("Decode Stage")
+@Category({"RAPPOR", "Decoder"})
+@Description("Execution of one stage of a decode")
+@StackTrace(false)
+class DecodeStageEvent extends Event {
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Outcome")
+  String outcome;
+
+  @Label("Parameter Profile")
+  String profile;
+
+  @Label("Reports")
+  long reports;
+
+  @Label("Bloom Filter Bits")
+  int k;
+
+  @Label("Bins")
+  int bins;
+}
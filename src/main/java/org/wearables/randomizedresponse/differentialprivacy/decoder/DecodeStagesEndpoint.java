@@ -0,0 +1,109 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/decodestages} listing the timings of all decode stages, one
+ * entry per stage and tag combination. The raw timers are also available under {@code
+ * /actuator/metrics/rappor.decode.stage}; the same stages are recorded as JFR events named {@value
+ * #JFR_EVENT_NAME}.
+ */
+@Component
+@Endpoint(id = "decodestages")
+public class DecodeStagesEndpoint {
+
+  /** Name of the JFR event of a decode stage. */
+  public static final String JFR_EVENT_NAME = "org.wearables.randomizedresponse.DecodeStage";
+
+  private final DecodeInstrumentation instrumentation;
+
+  public DecodeStagesEndpoint(DecodeInstrumentation instrumentation) {
+    this.instrumentation = instrumentation;
+  }
+
+  /**
+   * Returns the timings of all stages, slowest total first.
+   *
+   * @return Timing per stage and tag combination
+   */
+  @ReadOperation
+  public List<StageTiming> stages() {
+    return timings(null);
+  }
+
+  /**
+   * Returns the timings of one stage, slowest total first.
+   *
+   * @param stage Name of the stage, for example {@code regression}
+   * @return Timing per tag combination of the stage
+   */
+  @ReadOperation
+  public List<StageTiming> stage(@Selector String stage) {
+    return timings(stage);
+  }
+
+  private List<StageTiming> timings(String stage) {
+    var search = instrumentation.getMeterRegistry().find(DecodeInstrumentation.TIMER_NAME);
+    if (stage != null) {
+      search = search.tag("stage", stage);
+    }
+    return search.timers().stream()
+        .map(StageTiming::of)
+        .sorted(Comparator.comparingDouble(StageTiming::totalMillis).reversed())
+        .toList();
+  }
+
+  /**
+   * Timing of one stage and tag combination.
+   *
+   * @param stage Name of the stage
+   * @param outcome Whether the stage completed or threw
+   * @param profile Parameter profile
+   * @param reports Order of magnitude of the report count
+   * @param k Number of Bloom filter bits
+   * @param bins Number of bins
+   * @param count Number of executions
+   * @param totalMillis Sum of all execution times
+   * @param meanMillis Mean execution time
+   * @param maxMillis Longest recent execution time
+   */
+  public record StageTiming(
+      String stage,
+      String outcome,
+      String profile,
+      String reports,
+      String k,
+      String bins,
+      long count,
+      double totalMillis,
+      double meanMillis,
+      double maxMillis) {
+
+    static StageTiming of(Timer timer) {
+      var id = timer.getId();
+      return new StageTiming(
+          id.getTag("stage"),
+          id.getTag("outcome"),
+          id.getTag("profile"),
+          id.getTag("reports"),
+          id.getTag("k"),
+          id.getTag("bins"),
+          timer.count(),
+          timer.totalTime(TimeUnit.MILLISECONDS),
+          timer.mean(TimeUnit.MILLISECONDS),
+          timer.max(TimeUnit.MILLISECONDS));
+    }
+  }
+}
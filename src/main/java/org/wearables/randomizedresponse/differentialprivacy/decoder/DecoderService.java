@@ -9,11 +9,17 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterChangedEvent;
 import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
 
 /**
@@ -22,40 +28,164 @@ import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
  * bit counts. 2. DebiasPipe: maps candidate ranges into Bloom filter indexes and removes bias. 3.
  * RegressionPipe: uses regression to estimate class counts and probabilities.
  *
+ * <p>The service is stateless: every decode works on the substance passed in by the caller, and the
+ * pipes only hold immutable configuration and thread-safe caches. One instance can therefore serve
+ * any number of concurrent decodes.
+ *
  * @param <T> The entity type processed by the pipeline
  */
 @Service
 @Validated
-public class DecoderService<T extends HealthDataEntity> {
+public class DecoderService<T extends HealthDataEntity> implements DisposableBean {
   /** logger * */
   private final Logger logger = LoggerFactory.getLogger(DecoderService.class);
 
-  /** Shared container object that passes through all pipeline steps. */
-  private Substance<T> substance;
-
   /** The decoding pipeline consisting of aggregation, debiasing, and regression. */
-  private final List<Pipe<T>> pipeline =
-      List.of(new AggregationPipe<T>() {}, new DebiasPipe<T>(), new RegressionPipe<T>());
+  private final List<Pipe<T>> pipeline;
+
+  /** Compiled decode plans shared by all decodes, dropped when a parameter profile changes. */
+  private final DecodePlanCache decodePlanCache;
+
+  /** Timers and JFR events of the pipes. */
+  private final DecodeInstrumentation instrumentation;
+
+  /** Pools created for the pipes, shut down with the service. */
+  private final List<ForkJoinPool> pools = new ArrayList<>();
+
+  /** Creates a decoder that aggregates sequentially. */
+  public DecoderService() {
+    this.instrumentation = DecodeInstrumentation.noop();
+    DebiasPipe<T> debiasPipe = new DebiasPipe<>();
+    this.decodePlanCache = debiasPipe.getDecodePlanCache();
+    this.pipeline = List.of(new AggregationPipe<T>(), debiasPipe, new RegressionPipe<T>());
+  }
+
+  /**
+   * Creates a decoder whose aggregation step runs on a dedicated fork/join pool sized by the
+   * hyperparameter configuration and optionally uses the SIMD kernels. The debias step hashes with
+   * the configured seeds and shares one cache of decode plans across all decodes. The regression
+   * step uses the configured LASSO implementation and fits the lambdas on a second pool, selecting
+   * by cross-validation if folds are configured. A non-negative least squares step replaces or
+   * follows the regression step if configured. With the EM estimator an {@link EmPipe} takes the
+   * place of both.
+   *
+   * @param hyperParameterConfiguration Configuration providing pool size and parallelism threshold
+   */
+  public DecoderService(HyperParameterConfiguration hyperParameterConfiguration) {
+    this(hyperParameterConfiguration, DecodeInstrumentation.noop());
+  }
+
+  /**
+   * Creates a configured decoder as {@link #DecoderService(HyperParameterConfiguration)} that times
+   * every pipe execution.
+   *
+   * @param hyperParameterConfiguration Configuration providing pool size and parallelism threshold
+   * @param instrumentation Timers and JFR events of the pipes
+   */
+  @Autowired
+  public DecoderService(
+      HyperParameterConfiguration hyperParameterConfiguration,
+      DecodeInstrumentation instrumentation) {
+    this.instrumentation = instrumentation;
+    List<Pipe<T>> steps = new ArrayList<>();
+    steps.add(
+        new AggregationPipe<T>(
+            newPool(hyperParameterConfiguration.getAggregationPoolSize()),
+            hyperParameterConfiguration.getAggregationParallelismThreshold(),
+            hyperParameterConfiguration.isVectorizedAggregation()));
+    this.decodePlanCache =
+        new DecodePlanCache(
+            new CandidateIndexCache(hyperParameterConfiguration.getCandidateIndexCacheSize()),
+            hyperParameterConfiguration.getDecodePlanCacheSize());
+    steps.add(
+        new DebiasPipe<T>(
+            decodePlanCache,
+            hyperParameterConfiguration.getHashSeedFirst(),
+            hyperParameterConfiguration.getHashSeedSecond()));
+    if (hyperParameterConfiguration.getEstimator() == Estimator.EM) {
+      steps.add(
+          new EmPipe<T>(
+              hyperParameterConfiguration.getEmTolerance(),
+              hyperParameterConfiguration.getEmMaxIterations()));
+      this.pipeline = List.copyOf(steps);
+      return;
+    }
+    NnlsMode nnlsMode = hyperParameterConfiguration.getNnlsMode();
+    if (nnlsMode != NnlsMode.REPLACE) {
+      steps.add(
+          new RegressionPipe<T>(
+              hyperParameterConfiguration.getRegressionSolver(),
+              hyperParameterConfiguration.isNonNegativeLasso(),
+              newPool(hyperParameterConfiguration.getLambdaSelectionPoolSize()),
+              hyperParameterConfiguration.getCrossValidationFolds()));
+    }
+    if (nnlsMode != NnlsMode.OFF) {
+      steps.add(new NnlsPipe<T>(new NonNegativeLeastSquares(), nnlsMode));
+    }
+    this.pipeline = List.copyOf(steps);
+  }
+
+  private ForkJoinPool newPool(int parallelism) {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    pools.add(pool);
+    return pool;
+  }
+
+  /** Shuts down the pools of the pipes; running decodes are interrupted. */
+  @Override
+  public void destroy() {
+    pools.forEach(ForkJoinPool::shutdownNow);
+  }
+
+  /**
+   * Drops all compiled decode plans once a parameter profile has been saved, since a profile may
+   * have been changed in place.
+   *
+   * @param event The saved profile
+   */
+  @EventListener
+  public void onParameterChanged(ParameterChangedEvent event) {
+    decodePlanCache.invalidateAll();
+  }
 
   /**
-   * Runs the full decoding pipeline.
+   * Returns the cache of compiled decode plans, for example to read its statistics.
    *
-   * <p>Each pipe processes the shared substance object in sequence, enriching it with intermediate
-   * results until the final decoded outcome is produced.
+   * @return The decode plan cache
+   */
+  public DecodePlanCache getDecodePlanCache() {
+    return decodePlanCache;
+  }
+
+  /**
+   * Runs the full decoding pipeline on a substance.
    *
-   * @return The final substance containing decoded results
+   * <p>Each pipe processes the given substance in sequence, enriching it with intermediate results
+   * until the final decoded outcome is produced. A substance that already carries bit counts is
+   * decoded without entities. The substance is owned by the calling request and must not be shared
+   * with concurrent decodes. Every pipe execution is timed; see {@link DecodeInstrumentation}.
+   *
+   * @param substance Inputs of the decode, enriched in place with the results
+   * @return The substance containing the decoded results, or null if a pipe failed
    * @throws IllegalArgumentException if the message bit size does not match the length of the
    *     actual data
    */
-  public Substance<T> runPipeline() {
+  public Substance<T> decode(@NotNull Substance<T> substance) {
     try {
-      Substance<T> intermediate = new Substance<>();
-      int prrLength = substance.getEntities().getFirst().getPrr().length();
-      if (substance.getEntities().isEmpty() || substance.getMessageBitSize() != prrLength) {
+      Substance<T> intermediate = substance;
+      int prrLength =
+          substance.getBitCounts() != null
+              ? substance.getBitCounts().length
+              : substance.getEntities().getFirst().getPrrBits().length();
+      if (substance.getMessageBitSize() != prrLength) {
         throw new IllegalArgumentException("The message bit size is not equal the actual data.");
       }
       for (Pipe<T> pipe : pipeline) {
-        intermediate = pipe.process(substance);
+        try (DecodeInstrumentation.Measurement measurement =
+            instrumentation.start(pipe, intermediate)) {
+          intermediate = pipe.process(intermediate);
+          measurement.stop(intermediate);
+        }
       }
       return intermediate;
     } catch (ExecutionException e) {
@@ -65,45 +195,31 @@ public class DecoderService<T extends HealthDataEntity> {
   }
 
   /**
-   * This is a utility method which help to visualize the probability for the given bin range.
+   * This is a utility method which help to visualize the probability for the given bin range. The
+   * bin labels are rendered here, at the JSON boundary, in ascending order of the bins.
    *
    * @param substance The substance DTO which is passed through the regression pipeline.
-   * @return The coefficient TreeMap (ordered) where each key is a bin range.
+   * @return The coefficient map (ordered by bin) where each key is a bin range.
    */
   public Map<String, Double> buildOutputRangeToProbabiltiesMap(Substance<T> substance) {
-    Map<String, Double> coefficientMap = new TreeMap<>();
-    int startRange = substance.getStartRange();
-    for (double coefficient : substance.getProbabilities()) {
-      int nextRange = startRange + substance.getRangeIterator();
-      coefficientMap.put(startRange + "-" + nextRange, coefficient < 0 ? 0 : coefficient);
-      startRange = nextRange;
+    double[] probabilities = substance.getProbabilities();
+    BinLayout bins =
+        substance.getBins() != null
+            ? substance.getBins()
+            : new BinLayout(
+                substance.getStartRange(), substance.getRangeIterator(), probabilities.length);
+    Map<String, Double> coefficientMap = new LinkedHashMap<>();
+    for (int bin = 0; bin < probabilities.length; bin++) {
+      coefficientMap.put(bins.label(bin), probabilities[bin] < 0 ? 0 : probabilities[bin]);
     }
     return coefficientMap;
   }
 
-  /**
-   * Returns the current substance object.
-   *
-   * @return The current substance
-   */
-  public Substance<T> getSubstance() {
-    return substance;
-  }
-
-  /**
-   * Sets the current substance object.
-   *
-   * @param substance Substance to be set
-   */
-  public void setSubstance(Substance<T> substance) {
-    this.substance = substance;
-  }
-
   /**
    * Calculates the maximum range value for binning step counts.
    *
-   * <p>The method finds the maximum step count among the entities and adjusts it upwards until it
-   * is divisible by the given range iterator.
+   * <p>The method finds the maximum step count among the entities in a single pass and rounds it up
+   * to the next multiple of the given range iterator.
    *
    * <p>If the range iterator is greater than the maximum, the iterator value is returned.
    *
@@ -113,18 +229,24 @@ public class DecoderService<T extends HealthDataEntity> {
    */
   public int calculateMaxRangeForStepCountBin(
       @NotNull List<T> entities, @Positive int rangeIterator) {
-
-    int max =
-        entities.stream()
-            .max(Comparator.comparing(HealthDataEntity::getStepCount))
-            .get()
-            .getStepCount();
-    if (rangeIterator > max) {
-      return rangeIterator;
+    if (entities.isEmpty()) {
+      throw new NoSuchElementException("No step counts to calculate the range from.");
     }
-    while (max % rangeIterator != 0) {
-      max++;
+    int max = Integer.MIN_VALUE;
+    for (T entity : entities) {
+      max = Math.max(max, entity.getStepCount());
     }
-    return max;
+    return calculateMaxRangeForStepCountBin(max, rangeIterator);
+  }
+
+  /**
+   * Calculates the maximum range value for binning from an already known maximum step count.
+   *
+   * @param maxStepCount Largest step count among the reports
+   * @param rangeIterator Step size used for binning
+   * @return Maximum range value adjusted to the binning step
+   */
+  public int calculateMaxRangeForStepCountBin(int maxStepCount, @Positive int rangeIterator) {
+    return BinLayout.maxRangeFor(maxStepCount, rangeIterator);
   }
 }
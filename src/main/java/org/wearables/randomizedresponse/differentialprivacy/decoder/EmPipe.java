@@ -0,0 +1,306 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+
+/**
+ * Pipeline step that estimates the distribution over the bins by Expectation-Maximization instead
+ * of regression. It takes the place of the {@link RegressionPipe}.
+ *
+ * <p>Every report is modeled as drawn from a mixture over the bins: a report of bin {@code v}
+ * reports bit {@code j} as 1 with probability {@code p1} if {@code j} is one of the Bloom filter
+ * bits of {@code v} and {@code p0} otherwise, where {@code p0} and {@code p1} follow from the f, p
+ * and q of the parameter profile exactly as in the debias step. Since only the bit counts are
+ * known, the bits are treated as independent observations, and EM maximizes this composite
+ * likelihood over the mixture weights. The estimate is a proper distribution: non-negative and
+ * summing to 1.
+ *
+ * <p>An iteration costs {@code O(k + bins * h)} using the sparse design matrix and works in
+ * preallocated primitive arrays. Plain EM converges slowly when bins are empty, so the iterations
+ * are accelerated with SQUAREM, falling back to the plain EM step whenever the extrapolation would
+ * lower the likelihood. Iteration stops once no weight changes by more than the tolerance between
+ * two accelerated steps, or after the iteration cap on the number of EM steps.
+ *
+ * @param <T> The entity type to be processed
+ */
+@Component
+@Validated
+public class EmPipe<T extends ReportEntity> implements Pipe<T> {
+
+  /** Default largest change of a bin probability between iterations at which EM stops. */
+  public static final double DEFAULT_TOLERANCE = 1e-9;
+
+  /** Default maximum number of EM iterations. */
+  public static final int DEFAULT_MAX_ITERATIONS = 10_000;
+
+  /** Smallest bit probability used in the likelihood, guarding against division by zero. */
+  private static final double EPSILON = 1e-12;
+
+  /** Number of times an infeasible extrapolation step is shortened before plain EM is used. */
+  private static final int MAX_BACKTRACKING = 20;
+
+  private final double tolerance;
+
+  private final int maxIterations;
+
+  public EmPipe() {
+    this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+  }
+
+  /**
+   * Creates an EM step.
+   *
+   * @param tolerance Largest change of a bin probability between iterations at which EM stops
+   * @param maxIterations Maximum number of iterations
+   */
+  public EmPipe(double tolerance, int maxIterations) {
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * Runs the EM step of the pipeline.
+   *
+   * @param substance The container with bit counts, report count, parameter profile and design
+   *     matrix
+   * @return The updated substance with class counts and probabilities
+   */
+  @Override
+  public Substance<T> process(Substance<T> substance) throws ExecutionException {
+    SparseDesignMatrix designMatrix =
+        substance.getSparseDesignMatrix() != null
+            ? substance.getSparseDesignMatrix()
+            : SparseDesignMatrix.fromDense(substance.getDesignMatrix());
+    DebiasConstants constants =
+        substance.getDecodePlan() != null && substance.getDecodePlan().getDebiasConstants() != null
+            ? substance.getDecodePlan().getDebiasConstants()
+            : DebiasConstants.of(substance.getParameterEntity());
+    double[] probabilities =
+        estimateDistribution(
+            designMatrix,
+            substance.getBitCounts(),
+            substance.getNumberOfReports(),
+            constants.falseOne(),
+            constants.trueOne());
+    double[] counts = new double[probabilities.length];
+    for (int v = 0; v < counts.length; v++) {
+      counts[v] = probabilities[v] * substance.getNumberOfReports();
+    }
+    substance.setCoefficients(counts);
+    substance.setFinalClassCounts(counts);
+    substance.setProbabilities(probabilities);
+    return substance;
+  }
+
+  /**
+   * Estimates the share of reports in every bin.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param bitCounts Observed number of reports with each bit set
+   * @param numberOfReports Number of reports the bits were counted over
+   * @param parameterEntity Parameter profile providing f, p and q
+   * @return Probability per bin
+   */
+  public double[] estimateDistribution(
+      @NotNull SparseDesignMatrix designMatrix,
+      @NotNull int[] bitCounts,
+      @Positive int numberOfReports,
+      @NotNull ParameterEntity parameterEntity) {
+    DebiasConstants constants = DebiasConstants.of(parameterEntity);
+    return estimateDistribution(
+        designMatrix, bitCounts, numberOfReports, constants.falseOne(), constants.trueOne());
+  }
+
+  /**
+   * Estimates the share of reports in every bin from the per-bit report probabilities.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param bitCounts Observed number of reports with each bit set
+   * @param numberOfReports Number of reports the bits were counted over
+   * @param falseOne Probability that a bit outside the Bloom filter of a report is reported as 1
+   * @param trueOne Probability that a bit of the Bloom filter of a report is reported as 1
+   * @return Probability per bin
+   */
+  public double[] estimateDistribution(
+      SparseDesignMatrix designMatrix,
+      int[] bitCounts,
+      int numberOfReports,
+      double falseOne,
+      double trueOne) {
+    if (bitCounts.length != designMatrix.columns()) {
+      throw new IllegalArgumentException(
+          "bitCounts length ("
+              + bitCounts.length
+              + ") must equal the number of bits ("
+              + designMatrix.columns()
+              + ")");
+    }
+    Iteration em = new Iteration(designMatrix, bitCounts, numberOfReports, falseOne, trueOne);
+    int bins = designMatrix.rows();
+    double[] weights = new double[bins];
+    Arrays.fill(weights, 1.0 / bins);
+    double[] first = new double[bins];
+    double[] second = new double[bins];
+    double[] extrapolated = new double[bins];
+    double[] stabilized = new double[bins];
+    int iterations = 0;
+    while (iterations < maxIterations) {
+      em.step(weights, first);
+      em.step(first, second);
+      iterations += 2;
+      double[] next = extrapolate(weights, first, second, extrapolated);
+      if (next != second && iterations < maxIterations) {
+        em.step(next, stabilized);
+        iterations++;
+        next = em.logLikelihood(stabilized) >= em.logLikelihood(second) ? stabilized : second;
+      }
+      double maxChange = 0;
+      for (int v = 0; v < bins; v++) {
+        maxChange = Math.max(maxChange, Math.abs(next[v] - weights[v]));
+      }
+      System.arraycopy(next, 0, weights, 0, bins);
+      if (maxChange <= tolerance) {
+        break;
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * SQUAREM extrapolation (Varadhan and Roland, 2008) from three consecutive EM iterates. The step
+   * length is shortened towards the plain EM step until all weights are non-negative.
+   *
+   * @return {@code extrapolated} holding the accelerated weights, or {@code second} if
+   *     extrapolation does not apply
+   */
+  private static double[] extrapolate(
+      double[] weights, double[] first, double[] second, double[] extrapolated) {
+    double rr = 0;
+    double vv = 0;
+    for (int v = 0; v < weights.length; v++) {
+      double r = first[v] - weights[v];
+      double w = second[v] - 2 * first[v] + weights[v];
+      rr += r * r;
+      vv += w * w;
+    }
+    if (vv == 0 || rr == 0) {
+      return second;
+    }
+    double alpha = Math.min(-1, -Math.sqrt(rr / vv));
+    for (int attempt = 0; attempt < MAX_BACKTRACKING && alpha < -1; attempt++) {
+      boolean feasible = true;
+      double sum = 0;
+      for (int v = 0; v < weights.length; v++) {
+        double r = first[v] - weights[v];
+        double w = second[v] - 2 * first[v] + weights[v];
+        extrapolated[v] = weights[v] - 2 * alpha * r + alpha * alpha * w;
+        if (extrapolated[v] < 0) {
+          feasible = false;
+          break;
+        }
+        sum += extrapolated[v];
+      }
+      if (feasible) {
+        for (int v = 0; v < weights.length; v++) {
+          extrapolated[v] /= sum;
+        }
+        return extrapolated;
+      }
+      alpha = (alpha - 1) / 2;
+    }
+    return second;
+  }
+
+  /** One EM iteration on preallocated buffers of a single decode. */
+  private static final class Iteration {
+    private final int bins;
+    private final int k;
+    private final int[] rowPointers;
+    private final int[] columnIndexes;
+    private final int[] bitCounts;
+    private final double n;
+    private final double falseOne;
+    private final double trueOne;
+    private final double[] theta;
+    private final double[] lift;
+
+    private Iteration(
+        SparseDesignMatrix designMatrix,
+        int[] bitCounts,
+        int numberOfReports,
+        double falseOne,
+        double trueOne) {
+      this.bins = designMatrix.rows();
+      this.k = designMatrix.columns();
+      this.rowPointers = designMatrix.rowPointers();
+      this.columnIndexes = designMatrix.columnIndexes();
+      this.bitCounts = bitCounts;
+      this.n = numberOfReports;
+      this.falseOne = falseOne;
+      this.trueOne = trueOne;
+      this.theta = new double[k];
+      this.lift = new double[k];
+    }
+
+    /** Computes the probability of a 1 at every bit under the given weights into {@link #theta}. */
+    private void bitProbabilities(double[] weights) {
+      Arrays.fill(theta, 0);
+      for (int v = 0; v < bins; v++) {
+        double weight = weights[v];
+        for (int entry = rowPointers[v]; entry < rowPointers[v + 1]; entry++) {
+          theta[columnIndexes[entry]] += weight;
+        }
+      }
+      double signal = trueOne - falseOne;
+      for (int j = 0; j < k; j++) {
+        theta[j] = Math.min(1 - EPSILON, Math.max(EPSILON, falseOne + signal * theta[j]));
+      }
+    }
+
+    /**
+     * E-step and M-step: every bin keeps the expected share of the bit observations it explains.
+     */
+    private void step(double[] weights, double[] updated) {
+      bitProbabilities(weights);
+      double base = 0;
+      for (int j = 0; j < k; j++) {
+        double ones = bitCounts[j];
+        double zeros = n - ones;
+        double outside = ones * falseOne / theta[j] + zeros * (1 - falseOne) / (1 - theta[j]);
+        double inside = ones * trueOne / theta[j] + zeros * (1 - trueOne) / (1 - theta[j]);
+        base += outside;
+        lift[j] = inside - outside;
+      }
+      double normalizer = n * k;
+      for (int v = 0; v < bins; v++) {
+        double responsibility = base;
+        for (int entry = rowPointers[v]; entry < rowPointers[v + 1]; entry++) {
+          responsibility += lift[columnIndexes[entry]];
+        }
+        updated[v] = weights[v] * responsibility / normalizer;
+      }
+    }
+
+    /** Composite log-likelihood of the bit counts under the given weights. */
+    private double logLikelihood(double[] weights) {
+      bitProbabilities(weights);
+      double sum = 0;
+      for (int j = 0; j < k; j++) {
+        sum += bitCounts[j] * Math.log(theta[j]) + (n - bitCounts[j]) * Math.log(1 - theta[j]);
+      }
+      return sum;
+    }
+  }
+}
@@ -0,0 +1,15 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/** Estimator the decoder uses after the debias step. */
+public enum Estimator {
+  /** {@link RegressionPipe}, optionally followed or replaced by the {@link NnlsPipe}. */
+  LASSO,
+
+  /** {@link EmPipe} on the raw bit counts. */
+  EM
+}
@@ -0,0 +1,229 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Chooses the regularization strength of the LASSO and returns the model fitted with it.
+ *
+ * <p>Without cross-validation every lambda is fitted on all Bloom filter bits and scored by its
+ * in-sample mean squared error, the selection the decoder has always used. With {@code folds >= 2}
+ * the bits are split into folds by position ({@code bit % folds}); every lambda is fitted once per
+ * fold on the remaining bits and scored by the mean squared error on the held-out bits, averaged
+ * over the folds. The lambda with the smallest error is then refitted on all bits. Ties go to the
+ * lambda that comes first.
+ *
+ * <p>The fits of a selection are submitted to the executor at once, so the wall-clock time stays
+ * close to that of a single task as long as the executor has enough threads. If the fitter {@link
+ * LassoFitter#fitsPathJointly() fits a path jointly}, one task fits the whole lambda grid on one
+ * fold, so a warm-started solver builds its Gram matrix once per fold; with cross-validation the
+ * path on all bits runs as one more task next to the folds. Otherwise every lambda of every fold is
+ * a task of its own and only the chosen lambda is refitted on all bits. Without an executor the
+ * tasks run one after another in the calling thread.
+ */
+public final class LambdaSelector {
+
+  private final LassoFitter fitter;
+
+  private final ExecutorService executor;
+
+  private final int folds;
+
+  /**
+   * Creates a selector.
+   *
+   * @param fitter Fits one LASSO model; called concurrently
+   * @param executor Bounded executor the fits run on, or {@code null} to fit in the calling thread
+   * @param folds Number of cross-validation folds; values below 2 select by in-sample error
+   */
+  public LambdaSelector(LassoFitter fitter, ExecutorService executor, int folds) {
+    this.fitter = fitter;
+    this.executor = executor;
+    this.folds = folds;
+  }
+
+  /**
+   * Selects a lambda and fits the final model.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @param lambdas Candidate regularization strengths
+   * @return The chosen lambda, its model and the error of every candidate
+   * @throws ExecutionException if a fit fails or the selection is interrupted
+   */
+  public Selection select(SparseDesignMatrix designMatrix, double[] y, double[] lambdas)
+      throws ExecutionException {
+    if (lambdas.length == 0) {
+      throw new IllegalArgumentException("At least one lambda is required.");
+    }
+    if (folds < 2) {
+      return selectInSample(designMatrix, y, lambdas);
+    }
+    if (folds > y.length) {
+      throw new IllegalArgumentException(
+          "Cannot split " + y.length + " bits into " + folds + " folds.");
+    }
+    return selectCrossValidated(designMatrix, y, lambdas);
+  }
+
+  private Selection selectInSample(SparseDesignMatrix designMatrix, double[] y, double[] lambdas)
+      throws ExecutionException {
+    LassoFit[] fits = fitGrids(List.of(new Data(designMatrix, y)), lambdas).getFirst();
+    double[] errors = new double[lambdas.length];
+    for (int i = 0; i < lambdas.length; i++) {
+      errors[i] = fits[i].meanSquaredError(designMatrix, y);
+    }
+    int best = indexOfMinimum(errors);
+    return new Selection(lambdas[best], fits[best], errors);
+  }
+
+  private Selection selectCrossValidated(
+      SparseDesignMatrix designMatrix, double[] y, double[] lambdas) throws ExecutionException {
+    List<Fold> splits = new ArrayList<>(folds);
+    List<Data> data = new ArrayList<>(folds + 1);
+    for (int fold = 0; fold < folds; fold++) {
+      Fold split = Fold.of(designMatrix, y, fold, folds);
+      splits.add(split);
+      data.add(new Data(split.trainMatrix, split.trainY));
+    }
+    boolean fullPath = fitter.fitsPathJointly();
+    if (fullPath) {
+      data.add(new Data(designMatrix, y));
+    }
+    List<LassoFit[]> grids = fitGrids(data, lambdas);
+    double[] errors = new double[lambdas.length];
+    for (int fold = 0; fold < folds; fold++) {
+      Fold split = splits.get(fold);
+      for (int i = 0; i < lambdas.length; i++) {
+        errors[i] += grids.get(fold)[i].meanSquaredError(split.testMatrix, split.testY) / folds;
+      }
+    }
+    int best = indexOfMinimum(errors);
+    LassoFit fit = fullPath ? grids.get(folds)[best] : fitter.fit(designMatrix, y, lambdas[best]);
+    return new Selection(lambdas[best], fit, errors);
+  }
+
+  /**
+   * Fits the lambda grid on every data set, as one task per data set if the fitter fits a path
+   * jointly and as one task per data set and lambda otherwise.
+   *
+   * @return The fitted models per data set, in the order of {@code lambdas}
+   */
+  private List<LassoFit[]> fitGrids(List<Data> data, double[] lambdas) throws ExecutionException {
+    List<LassoFit[]> grids = new ArrayList<>(data.size());
+    if (fitter.fitsPathJointly()) {
+      List<Callable<LassoFit[]>> tasks = new ArrayList<>(data.size());
+      for (Data set : data) {
+        tasks.add(() -> fitter.fitPath(set.matrix, set.y, lambdas));
+      }
+      grids.addAll(runAll(tasks));
+      return grids;
+    }
+    List<Callable<LassoFit>> tasks = new ArrayList<>(data.size() * lambdas.length);
+    for (Data set : data) {
+      for (double lambda : lambdas) {
+        tasks.add(() -> fitter.fit(set.matrix, set.y, lambda));
+      }
+    }
+    List<LassoFit> fits = runAll(tasks);
+    for (int d = 0; d < data.size(); d++) {
+      grids.add(
+          fits.subList(d * lambdas.length, (d + 1) * lambdas.length).toArray(new LassoFit[0]));
+    }
+    return grids;
+  }
+
+  private <R> List<R> runAll(List<Callable<R>> tasks) throws ExecutionException {
+    List<R> results = new ArrayList<>(tasks.size());
+    if (executor == null) {
+      for (Callable<R> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (Exception e) {
+          throw new ExecutionException(e);
+        }
+      }
+      return results;
+    }
+    try {
+      for (Future<R> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutionException("Lambda selection was interrupted", e);
+    }
+    return results;
+  }
+
+  private static int indexOfMinimum(double[] errors) {
+    int best = 0;
+    for (int i = 1; i < errors.length; i++) {
+      if (errors[i] < errors[best]) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  public int getFolds() {
+    return folds;
+  }
+
+  /**
+   * Result of a lambda selection.
+   *
+   * @param lambda The chosen regularization strength
+   * @param fit Model fitted on all bits with the chosen lambda
+   * @param errors In-sample or cross-validated mean squared error per candidate lambda
+   */
+  public record Selection(double lambda, LassoFit fit, double[] errors) {}
+
+  /** Design matrix and target of one fit. */
+  private record Data(SparseDesignMatrix matrix, double[] y) {}
+
+  /** Training and held-out bits of one cross-validation fold. */
+  private record Fold(
+      SparseDesignMatrix trainMatrix,
+      double[] trainY,
+      SparseDesignMatrix testMatrix,
+      double[] testY) {
+
+    private static Fold of(SparseDesignMatrix designMatrix, double[] y, int fold, int folds) {
+      int testSize = (y.length - fold + folds - 1) / folds;
+      int[] train = new int[y.length - testSize];
+      int[] test = new int[testSize];
+      int trainSize = 0;
+      int held = 0;
+      for (int bit = 0; bit < y.length; bit++) {
+        if (bit % folds == fold) {
+          test[held++] = bit;
+        } else {
+          train[trainSize++] = bit;
+        }
+      }
+      return new Fold(
+          designMatrix.selectColumns(train),
+          select(y, train),
+          designMatrix.selectColumns(test),
+          select(y, test));
+    }
+
+    private static double[] select(double[] values, int[] positions) {
+      double[] selected = new double[positions.length];
+      for (int i = 0; i < positions.length; i++) {
+        selected[i] = values[positions[i]];
+      }
+      return selected;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * A fitted LASSO model over the bins of a design matrix.
+ *
+ * @param coefficients Coefficient per bin, i.e. the estimated class counts
+ * @param intercept Fitted intercept, added to every predicted bit count
+ */
+public record LassoFit(double[] coefficients, double intercept) {
+
+  /**
+   * Predicts the true count of every Bloom filter bit of a design matrix.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @return Predicted count per column of the design matrix
+   */
+  public double[] predict(SparseDesignMatrix designMatrix) {
+    double[] predicted = designMatrix.leftMultiply(coefficients);
+    for (int i = 0; i < predicted.length; i++) {
+      predicted[i] += intercept;
+    }
+    return predicted;
+  }
+
+  /**
+   * Computes the mean squared error of the predictions for a design matrix.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Observed count of every column of the design matrix
+   * @return Mean squared error
+   */
+  public double meanSquaredError(SparseDesignMatrix designMatrix, double[] y) {
+    double[] predicted = predict(designMatrix);
+    double sum = 0;
+    for (int i = 0; i < y.length; i++) {
+      double residual = y[i] - predicted[i];
+      sum += residual * residual;
+    }
+    return sum / y.length;
+  }
+}
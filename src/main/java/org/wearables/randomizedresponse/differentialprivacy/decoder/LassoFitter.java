@@ -0,0 +1,52 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Fits LASSO models. Implementations must be safe to call from several threads at once, since the
+ * {@link LambdaSelector} fits lambdas and folds concurrently.
+ */
+@FunctionalInterface
+public interface LassoFitter {
+
+  /**
+   * Fits a LASSO model for one regularization strength.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin and one column per observation
+   * @param y Observed value of every column
+   * @param lambda Regularization strength
+   * @return The fitted model
+   */
+  LassoFit fit(SparseDesignMatrix designMatrix, double[] y, double lambda);
+
+  /**
+   * Fits a LASSO model for every regularization strength of a grid on the same data. The default
+   * fits every lambda on its own; solvers that share work between the lambdas override it together
+   * with {@link #fitsPathJointly()}.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin and one column per observation
+   * @param y Observed value of every column
+   * @param lambdas Regularization strengths
+   * @return The fitted models, in the order of {@code lambdas}
+   */
+  default LassoFit[] fitPath(SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+    LassoFit[] fits = new LassoFit[lambdas.length];
+    for (int i = 0; i < lambdas.length; i++) {
+      fits[i] = fit(designMatrix, y, lambdas[i]);
+    }
+    return fits;
+  }
+
+  /**
+   * Returns whether {@link #fitPath} is cheaper than fitting its lambdas one by one. The {@link
+   * LambdaSelector} then hands each fitter task a whole lambda grid instead of a single lambda.
+   *
+   * @return true if the lambdas of a grid should be fitted together
+   */
+  default boolean fitsPathJointly() {
+    return false;
+  }
+}
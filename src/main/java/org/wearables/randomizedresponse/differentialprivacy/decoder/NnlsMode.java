@@ -0,0 +1,18 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/** Whether and how the decoder uses the {@link NnlsPipe}. */
+public enum NnlsMode {
+  /** LASSO only; negative class counts are clamped when the probabilities are reported. */
+  OFF,
+
+  /** Non-negative least squares over all bins instead of the LASSO. */
+  REPLACE,
+
+  /** LASSO selects the bins, non-negative least squares refits the counts on them. */
+  REFINE
+}
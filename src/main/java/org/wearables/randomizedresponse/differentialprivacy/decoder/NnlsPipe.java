@@ -0,0 +1,153 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+
+/**
+ * Pipeline step that estimates the class counts by non-negative least squares, so no class gets a
+ * negative probability.
+ *
+ * <p>In {@link NnlsMode#REFINE} the step follows the {@link RegressionPipe}: only the bins with a
+ * positive LASSO coefficient are refitted and all other bins get a count of 0, the refit on the
+ * LASSO support described in the RAPPOR paper. In {@link NnlsMode#REPLACE} all bins are fitted and
+ * the step takes the place of the LASSO.
+ *
+ * @param <T> The entity type to be processed
+ */
+@Component
+@Validated
+public class NnlsPipe<T extends ReportEntity> implements Pipe<T> {
+
+  private final NonNegativeLeastSquares nonNegativeLeastSquares;
+
+  /** Whether only the bins selected by the LASSO are refitted. */
+  private final boolean lassoSupport;
+
+  /** Creates a step that refits the LASSO support. */
+  public NnlsPipe() {
+    this(new NonNegativeLeastSquares(), NnlsMode.REFINE);
+  }
+
+  /**
+   * Creates a step with the given solver.
+   *
+   * @param nonNegativeLeastSquares Solver used for the fit
+   * @param mode {@link NnlsMode#REFINE} to refit the LASSO support, {@link NnlsMode#REPLACE} to fit
+   *     all bins
+   */
+  public NnlsPipe(NonNegativeLeastSquares nonNegativeLeastSquares, NnlsMode mode) {
+    if (mode == NnlsMode.OFF) {
+      throw new IllegalArgumentException("The NNLS step cannot be created with mode OFF.");
+    }
+    this.nonNegativeLeastSquares = nonNegativeLeastSquares;
+    this.lassoSupport = mode == NnlsMode.REFINE;
+  }
+
+  /**
+   * Runs the non-negative least squares step of the pipeline. The Gram matrix is taken from the
+   * decode plan if the substance carries one.
+   *
+   * @param substance The container with the design matrix and expected true counts, and the LASSO
+   *     coefficients when refining
+   * @return The updated substance with non-negative coefficients, final class counts and
+   *     probabilities
+   */
+  @Override
+  public Substance<T> process(Substance<T> substance) throws ExecutionException {
+    SparseDesignMatrix designMatrix =
+        substance.getSparseDesignMatrix() != null
+            ? substance.getSparseDesignMatrix()
+            : SparseDesignMatrix.fromDense(substance.getDesignMatrix());
+    double[] coefficients = lassoSupport ? substance.getCoefficients() : null;
+    DecodePlan plan = substance.getDecodePlan();
+    double[] counts =
+        plan != null && plan.getDesignMatrix() == designMatrix
+            ? fitOnSupport(plan, substance.getExpectedTrueCounts(), coefficients)
+            : fitOnSupport(designMatrix, substance.getExpectedTrueCounts(), coefficients);
+    substance.setCoefficients(counts);
+    substance.setFinalClassCounts(counts);
+    double[] probabilities = new double[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      probabilities[i] = counts[i] / substance.getNumberOfReports();
+    }
+    substance.setProbabilities(probabilities);
+    return substance;
+  }
+
+  /**
+   * Fits non-negative class counts on the bins with a positive LASSO coefficient.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param expectedTrueCounts Expected true count of every Bloom filter bit
+   * @param coefficients LASSO coefficients selecting the bins, or {@code null} to fit all bins
+   * @return Non-negative count per bin
+   */
+  public double[] fitOnSupport(
+      SparseDesignMatrix designMatrix, double[] expectedTrueCounts, double[] coefficients) {
+    if (coefficients == null) {
+      return nonNegativeLeastSquares.fit(designMatrix, expectedTrueCounts);
+    }
+    int[] support =
+        IntStream.range(0, designMatrix.rows()).filter(bin -> coefficients[bin] > 0).toArray();
+    double[] counts = new double[designMatrix.rows()];
+    if (support.length == 0) {
+      return counts;
+    }
+    double[] fitted =
+        nonNegativeLeastSquares.fit(designMatrix.selectRows(support), expectedTrueCounts);
+    for (int i = 0; i < support.length; i++) {
+      counts[support[i]] = fitted[i];
+    }
+    return counts;
+  }
+
+  /**
+   * Fits non-negative class counts on the bins with a positive LASSO coefficient, using the cached
+   * matrices of a decode plan. The active-set solver always runs, even when all bins are fitted:
+   * with more bins than Bloom filter bits the Gram matrix is singular and the regularized
+   * unconstrained solution is numerically unstable, even when it happens to be non-negative.
+   *
+   * @param plan Decode plan whose design matrix the counts are fitted to
+   * @param expectedTrueCounts Expected true count of every Bloom filter bit
+   * @param coefficients LASSO coefficients selecting the bins, or {@code null} to fit all bins
+   * @return Non-negative count per bin
+   */
+  public double[] fitOnSupport(
+      DecodePlan plan, double[] expectedTrueCounts, double[] coefficients) {
+    SparseDesignMatrix designMatrix = plan.getDesignMatrix();
+    int n = designMatrix.rows();
+    double[] correlations = designMatrix.multiply(expectedTrueCounts);
+    if (coefficients == null) {
+      return nonNegativeLeastSquares.solve(plan.getGram(), correlations, n);
+    }
+    int[] support = IntStream.range(0, n).filter(bin -> coefficients[bin] > 0).toArray();
+    int size = support.length;
+    double[] counts = new double[n];
+    if (size == 0) {
+      return counts;
+    }
+    double[] gram = plan.getGram();
+    double[] supportGram = new double[size * size];
+    double[] supportCorrelations = new double[size];
+    for (int a = 0; a < size; a++) {
+      supportCorrelations[a] = correlations[support[a]];
+      for (int c = 0; c < size; c++) {
+        supportGram[a * size + c] = gram[support[a] * n + support[c]];
+      }
+    }
+    double[] fitted = nonNegativeLeastSquares.solve(supportGram, supportCorrelations, size);
+    for (int i = 0; i < size; i++) {
+      counts[support[i]] = fitted[i];
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/**
+ * Non-negative least squares by the active-set method of Lawson and Hanson, on primitive arrays.
+ *
+ * <p>Solves {@code min ||y - X b||^2} subject to {@code b >= 0} where {@code X} is the transpose of
+ * a {@link SparseDesignMatrix}: the Bloom filter bits are the observations and the bins the
+ * features. There is no intercept, since the bit counts are fully explained by the bins. The solver
+ * only needs the Gram matrix {@code X^T X} and {@code X^T y}; every iteration moves one bin into
+ * the passive set and solves the normal equations of the passive bins by Cholesky decomposition, so
+ * a solve costs a few small dense factorizations instead of repeated regression fits.
+ *
+ * <p>Instances are immutable and safe to share between threads.
+ */
+public final class NonNegativeLeastSquares {
+
+  /**
+   * Relative ridge added to the diagonal so bins with identical Bloom filter bits stay solvable.
+   */
+  private static final double RIDGE = 1e-10;
+
+  private final double tolerance;
+
+  private final int maxIterations;
+
+  public NonNegativeLeastSquares() {
+    this(1e-9, 1000);
+  }
+
+  /**
+   * Creates a solver.
+   *
+   * @param tolerance Relative tolerance on the gradient below which a bin stays at 0
+   * @param maxIterations Maximum number of bins moved into the passive set
+   */
+  public NonNegativeLeastSquares(double tolerance, int maxIterations) {
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * Fits the bins of a design matrix.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @return Non-negative coefficient per bin
+   */
+  public double[] fit(SparseDesignMatrix designMatrix, double[] y) {
+    if (y.length != designMatrix.columns()) {
+      throw new IllegalArgumentException(
+          "y length ("
+              + y.length
+              + ") must equal the number of bits ("
+              + designMatrix.columns()
+              + ")");
+    }
+    return solve(designMatrix.gram(), designMatrix.multiply(y), designMatrix.rows());
+  }
+
+  /**
+   * Solves the normal equations {@code G b = c} subject to {@code b >= 0}.
+   *
+   * @param gram Row-major {@code n x n} Gram matrix {@code X^T X}
+   * @param correlations {@code X^T y}
+   * @param n Number of features
+   * @return Non-negative coefficient per feature
+   */
+  public double[] solve(double[] gram, double[] correlations, int n) {
+    double scale = 0;
+    for (int j = 0; j < n; j++) {
+      scale = Math.max(scale, gram[j * n + j]);
+    }
+    double ridge = RIDGE * Math.max(scale, 1);
+    double threshold = tolerance * Math.max(scale, 1);
+
+    double[] b = new double[n];
+    double[] z = new double[n];
+    double[] gradient = correlations.clone();
+    boolean[] passive = new boolean[n];
+    int[] members = new int[n];
+    double[] factor = new double[n * n];
+    double[] solution = new double[n];
+    for (int iteration = 0; iteration < maxIterations; iteration++) {
+      int entering = -1;
+      for (int j = 0; j < n; j++) {
+        if (!passive[j]
+            && gradient[j] > threshold
+            && (entering < 0 || gradient[j] > gradient[entering])) {
+          entering = j;
+        }
+      }
+      if (entering < 0) {
+        break;
+      }
+      passive[entering] = true;
+      while (true) {
+        int size = 0;
+        for (int j = 0; j < n; j++) {
+          if (passive[j]) {
+            members[size++] = j;
+          }
+        }
+        solvePassive(gram, correlations, n, members, size, ridge, factor, solution, z);
+        double alpha = 1;
+        int blocking = -1;
+        for (int m = 0; m < size; m++) {
+          int j = members[m];
+          if (z[j] <= 0) {
+            double step = b[j] > 0 ? b[j] / (b[j] - z[j]) : 0;
+            if (blocking < 0 || step < alpha) {
+              alpha = step;
+              blocking = j;
+            }
+          }
+        }
+        if (blocking < 0) {
+          for (int m = 0; m < size; m++) {
+            b[members[m]] = z[members[m]];
+          }
+          break;
+        }
+        for (int m = 0; m < size; m++) {
+          int j = members[m];
+          b[j] += alpha * (z[j] - b[j]);
+          if (j == blocking || b[j] <= 0) {
+            b[j] = 0;
+            passive[j] = false;
+          }
+        }
+      }
+      for (int j = 0; j < n; j++) {
+        double sum = correlations[j];
+        int row = j * n;
+        for (int l = 0; l < n; l++) {
+          if (b[l] != 0) {
+            sum -= gram[row + l] * b[l];
+          }
+        }
+        gradient[j] = sum;
+      }
+    }
+    return b;
+  }
+
+  /**
+   * Solves the normal equations of the passive features by Cholesky decomposition and writes the
+   * solution into {@code z} at the feature indexes.
+   */
+  private static void solvePassive(
+      double[] gram,
+      double[] correlations,
+      int n,
+      int[] members,
+      int size,
+      double ridge,
+      double[] factor,
+      double[] solution,
+      double[] z) {
+    CholeskyDecomposition.factor(gram, n, members, size, ridge, factor);
+    for (int a = 0; a < size; a++) {
+      solution[a] = correlations[members[a]];
+    }
+    CholeskyDecomposition.solve(factor, size, solution);
+    for (int a = 0; a < size; a++) {
+      z[members[a]] = solution[a];
+    }
+  }
+}
@@ -8,8 +8,11 @@ package org.wearables.randomizedresponse.differentialprivacy.decoder;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
@@ -32,30 +35,114 @@ import smile.validation.metric.MSE;
 @Component
 @Validated
 public class RegressionPipe<T extends ReportEntity> implements Pipe<T> {
+
+  private final RegressionSolver solver;
+
+  private final CoordinateDescentLasso coordinateDescentLasso;
+
+  /** Executor of the {@link LambdaSelector}, or null to fit in the calling thread. */
+  private final ExecutorService selectionExecutor;
+
+  /** Number of cross-validation folds of the {@link LambdaSelector}. */
+  private final int folds;
+
+  /** Creates a regression step that fits with Smile. */
+  public RegressionPipe() {
+    this(RegressionSolver.SMILE, false);
+  }
+
+  /**
+   * Creates a regression step with the given LASSO implementation.
+   *
+   * @param solver LASSO implementation used to fit the lambda path
+   * @param nonNegative Whether the coordinate descent solver restricts coefficients to be
+   *     non-negative; ignored by Smile
+   */
+  public RegressionPipe(RegressionSolver solver, boolean nonNegative) {
+    this(solver, nonNegative, null, 0);
+  }
+
+  /**
+   * Creates a regression step that fits all lambdas concurrently and optionally selects the lambda
+   * by k-fold cross-validation over the Bloom filter bits.
+   *
+   * @param solver LASSO implementation used for every fit
+   * @param nonNegative Whether the coordinate descent solver restricts coefficients to be
+   *     non-negative; ignored by Smile
+   * @param executor Bounded executor the fits run on, or null to fit in the calling thread
+   * @param folds Number of cross-validation folds; values below 2 select by in-sample error
+   */
+  public RegressionPipe(
+      RegressionSolver solver, boolean nonNegative, ExecutorService executor, int folds) {
+    this.solver = solver;
+    this.coordinateDescentLasso = new CoordinateDescentLasso(nonNegative);
+    this.selectionExecutor = executor;
+    this.folds = folds;
+  }
+
   /**
    * Runs the regression step of the pipeline.
    *
-   * <p>Applies LASSO regression to estimate coefficients, then converts them into class
-   * probabilities.
+   * <p>Selects the lambda with a {@link LambdaSelector} and converts the coefficients of its model
+   * into class probabilities. The sparse design matrix is used if the substance carries one; the
+   * coordinate descent solver walks the whole lambda grid as one warm-started path per fold and
+   * takes the Gram matrix from the decode plan if there is one.
    *
    * @param substance The container with intermediate results from previous steps
    * @return The updated substance with regression coefficients and probabilities
    */
   @Override
   public Substance<T> process(Substance<T> substance) throws ExecutionException {
+    SparseDesignMatrix designMatrix =
+        substance.getSparseDesignMatrix() != null
+            ? substance.getSparseDesignMatrix()
+            : SparseDesignMatrix.fromDense(substance.getDesignMatrix());
     double[] coefficients =
-        predictMostLikeliestClasses(
-            substance.getDesignMatrix(),
-            substance.getMessageBitSize(),
-            substance.getExpectedTrueCounts(),
-            substance.getLambdas());
+        new LambdaSelector(fitterFor(substance.getDecodePlan()), selectionExecutor, folds)
+            .select(designMatrix, substance.getExpectedTrueCounts(), substance.getLambdas())
+            .fit()
+            .coefficients();
     substance.setCoefficients(coefficients);
     double[] probabilityForClasses =
-        getProbabilityForClass(substance.getCoefficients(), substance.getEntities().size());
+        getProbabilityForClass(substance.getCoefficients(), substance.getNumberOfReports());
     substance.setProbabilities(probabilityForClasses);
     return substance;
   }
 
+  /**
+   * Returns the fitter of the configured solver. The coordinate descent fitter reuses the Gram
+   * matrix of the decode plan whenever it fits the full design matrix of the plan.
+   *
+   * @param plan Decode plan of the substance, or {@code null}
+   * @return Fitter used by the {@link LambdaSelector}
+   */
+  private LassoFitter fitterFor(DecodePlan plan) {
+    if (solver != RegressionSolver.COORDINATE_DESCENT) {
+      return this::fitSmile;
+    }
+    if (plan == null) {
+      return coordinateDescentLasso;
+    }
+    return new LassoFitter() {
+      @Override
+      public LassoFit fit(SparseDesignMatrix designMatrix, double[] y, double lambda) {
+        return fitPath(designMatrix, y, new double[] {lambda})[0];
+      }
+
+      @Override
+      public LassoFit[] fitPath(SparseDesignMatrix designMatrix, double[] y, double[] lambdas) {
+        return designMatrix == plan.getDesignMatrix()
+            ? coordinateDescentLasso.fitModels(plan.getLassoGram(), designMatrix, y, lambdas)
+            : coordinateDescentLasso.fitPath(designMatrix, y, lambdas);
+      }
+
+      @Override
+      public boolean fitsPathJointly() {
+        return true;
+      }
+    };
+  }
+
   /**
    * Uses LASSO regression to identify the most likely class coefficients. Evaluates multiple lambda
    * values and selects the one minimizing mean squared error.
@@ -71,7 +158,36 @@ public class RegressionPipe<T extends ReportEntity> implements Pipe<T> {
       @Positive int messageBitSize,
       @NotNull double[] expectedTrueCounts,
       @NotNull double[] lambdas) {
-    DataFrame dataFrame = makeFrame(designMatrix, expectedTrueCounts);
+    return fitBestLasso(makeFrame(designMatrix, expectedTrueCounts), expectedTrueCounts, lambdas);
+  }
+
+  /**
+   * Uses LASSO regression on a sparse design matrix to identify the most likely class coefficients.
+   * The data frame is filled directly from the sparse rows, so neither a dense design matrix nor
+   * its transpose is materialized.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param expectedTrueCounts Expected true counts estimated from aggregation
+   * @param lambdas Set of lambda values to evaluate for regularization
+   * @return Coefficients of the best-performing LASSO model
+   */
+  public double[] predictMostLikeliestClasses(
+      @NotNull SparseDesignMatrix designMatrix,
+      @NotNull double[] expectedTrueCounts,
+      @NotNull double[] lambdas) {
+    return fitBestLasso(makeFrame(designMatrix, expectedTrueCounts), expectedTrueCounts, lambdas);
+  }
+
+  /**
+   * Fits one LASSO model per lambda and keeps the one with the smallest mean squared error.
+   *
+   * @param dataFrame Observations with the target column "y"
+   * @param expectedTrueCounts Expected true counts estimated from aggregation
+   * @param lambdas Set of lambda values to evaluate for regularization
+   * @return Coefficients of the best-performing LASSO model
+   */
+  private double[] fitBestLasso(
+      DataFrame dataFrame, double[] expectedTrueCounts, double[] lambdas) {
     Formula formula = Formula.lhs("y");
 
     LinearModel best = null;
@@ -92,6 +208,43 @@ public class RegressionPipe<T extends ReportEntity> implements Pipe<T> {
     return best.coefficients();
   }
 
+  /**
+   * Fits one Smile LASSO model on a sparse design matrix. Bins whose column is constant over the
+   * given bits, which happens when all their bits are held out by a cross-validation fold, are left
+   * out of the fit and get a coefficient of 0.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param y Expected true count of every Bloom filter bit
+   * @param lambda Regularization strength
+   * @return The fitted model
+   */
+  public LassoFit fitSmile(
+      @NotNull SparseDesignMatrix designMatrix, @NotNull double[] y, double lambda) {
+    int[] rowPointers = designMatrix.rowPointers();
+    int[] varying =
+        IntStream.range(0, designMatrix.rows())
+            .filter(
+                bin -> {
+                  int ones = rowPointers[bin + 1] - rowPointers[bin];
+                  return ones > 0 && ones < designMatrix.columns();
+                })
+            .toArray();
+    double[] coefficients = new double[designMatrix.rows()];
+    if (varying.length == 0) {
+      return new LassoFit(coefficients, Arrays.stream(y).average().orElse(0));
+    }
+    LinearModel model =
+        LASSO.fit(
+            Formula.lhs("y"),
+            makeFrame(designMatrix.selectRows(varying), y),
+            new LASSO.Options(lambda));
+    double[] fitted = model.coefficients();
+    for (int i = 0; i < varying.length; i++) {
+      coefficients[varying[i]] = fitted[i];
+    }
+    return new LassoFit(coefficients, model.intercept());
+  }
+
   /**
    * Currently this function is not integrated yet. Fits an ordinary least squares regression model
    * and returns coefficients.
@@ -208,6 +361,41 @@ public class RegressionPipe<T extends ReportEntity> implements Pipe<T> {
     return DataFrame.of(xy, names);
   }
 
+  /**
+   * Constructs a data frame from a sparse design matrix and expected results. Row {@code j} of the
+   * frame holds column {@code j} of the design matrix, which is read from its CSC form.
+   *
+   * @param designMatrix Sparse design matrix with one row per bin
+   * @param expectedResults Expected results as target values, one per Bloom filter bit
+   * @return Data frame containing features and the target column
+   */
+  public DataFrame makeFrame(
+      @NotNull SparseDesignMatrix designMatrix, @NotNull double[] expectedResults) {
+    int rows = designMatrix.columns();
+    int cols = designMatrix.rows();
+    if (expectedResults.length != rows) {
+      throw new IllegalArgumentException(
+          "expectedResults length ("
+              + expectedResults.length
+              + ") must equal x.length ("
+              + rows
+              + ")");
+    }
+    int[] columnPointers = designMatrix.columnPointers();
+    int[] rowIndexes = designMatrix.rowIndexes();
+    double[][] xy = new double[rows][cols + 1];
+    for (int i = 0; i < rows; i++) {
+      for (int entry = columnPointers[i]; entry < columnPointers[i + 1]; entry++) {
+        xy[i][rowIndexes[entry]] = 1;
+      }
+      xy[i][cols] = expectedResults[i];
+    }
+    String[] names = new String[cols + 1];
+    for (int j = 0; j < cols; j++) names[j] = "b" + j;
+    names[cols] = "y";
+    return DataFrame.of(xy, names);
+  }
+
   /**
    * Transposes a two-dimensional matrix.
    *
@@ -0,0 +1,15 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+/** LASSO implementation used by the {@link RegressionPipe}. */
+public enum RegressionSolver {
+  /** Smile's {@code LASSO.fit} on a data frame, one independent fit per lambda. */
+  SMILE,
+
+  /** {@link CoordinateDescentLasso} on primitive arrays with a warm-started lambda path. */
+  COORDINATE_DESCENT
+}
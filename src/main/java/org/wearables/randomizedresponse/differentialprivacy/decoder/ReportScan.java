@@ -0,0 +1,219 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import java.util.Arrays;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+
+/**
+ * Statistics collected in a single pass over the reports of a cohort: the per-column bit counts,
+ * the number of reports, the smallest and largest encoded value and a coarse histogram of the
+ * encoded values. Later decode stages read these statistics instead of scanning the reports again,
+ * for example the upper bound of the bin range is derived from {@link #maxValue()}.
+ *
+ * <p>Reports can be added from {@link BitVector}s, from a packed word array or one by one while
+ * iterating a database cursor. The histogram has {@link #HISTOGRAM_BUCKETS} buckets of {@code
+ * bucketWidth} starting at {@code rangeStart}, usually the configured bin range, and one overflow
+ * bucket for all larger values; values below the range are counted in the first bucket. A scan
+ * therefore has a fixed size, whatever values the clients report.
+ *
+ * <p>Instances are not thread-safe; use one scan per thread and {@link #merge merge} them.
+ */
+public final class ReportScan {
+
+  /** Number of histogram buckets inside the range, not counting the overflow bucket. */
+  public static final int HISTOGRAM_BUCKETS = 64;
+
+  /** Default width of a histogram bucket. */
+  public static final int DEFAULT_BUCKET_WIDTH = 1000;
+
+  private final BitColumnCounter counter;
+
+  private final int messageBitSize;
+
+  private final int rangeStart;
+
+  private final int bucketWidth;
+
+  /** Number of reports per bucket; the last entry counts the values beyond the range. */
+  private final long[] histogram = new long[HISTOGRAM_BUCKETS + 1];
+
+  private int minValue = Integer.MAX_VALUE;
+
+  private int maxValue = Integer.MIN_VALUE;
+
+  public ReportScan(int messageBitSize) {
+    this(messageBitSize, 0, DEFAULT_BUCKET_WIDTH);
+  }
+
+  public ReportScan(int messageBitSize, int rangeStart, int bucketWidth) {
+    if (bucketWidth < 1) {
+      throw new IllegalArgumentException("The histogram bucket width must be positive.");
+    }
+    this.counter = new BitColumnCounter(messageBitSize);
+    this.messageBitSize = messageBitSize;
+    this.rangeStart = rangeStart;
+    this.bucketWidth = bucketWidth;
+  }
+
+  /**
+   * Adds one report.
+   *
+   * @param prr Packed permanent response with at least {@code messageBitSize} bits
+   * @param value Encoded value of the report
+   */
+  public void add(BitVector prr, int value) {
+    counter.add(prr);
+    addValue(value);
+  }
+
+  /**
+   * Adds one report stored at the given offset of a packed word array.
+   *
+   * @param words Packed words
+   * @param offset Index of the first word of the report
+   * @param value Encoded value of the report
+   */
+  public void add(long[] words, int offset, int value) {
+    counter.add(words, offset);
+    addValue(value);
+  }
+
+  /**
+   * Adds a batch of reports packed back to back, as filled by a columnar database read.
+   *
+   * @param words Reports packed back to back, {@code BitVector.wordsFor(messageBitSize)} words each
+   * @param values Encoded value of each report
+   * @param reports Number of reports stored in the buffers
+   */
+  public void addAll(long[] words, int[] values, int reports) {
+    int wordsPerReport = BitVector.wordsFor(messageBitSize);
+    for (int r = 0; r < reports; r++) {
+      add(words, r * wordsPerReport, values[r]);
+    }
+  }
+
+  /**
+   * Adds bit counts that were counted elsewhere, for example by a SIMD kernel. The values of those
+   * reports have to be added separately with {@link #addValue(int)}.
+   *
+   * @param totals Number of reports with each bit set
+   * @param numberOfReports Number of reports the totals were counted over
+   */
+  void addTotals(long[] totals, long numberOfReports) {
+    counter.addTotals(totals, numberOfReports);
+  }
+
+  /**
+   * Records the encoded value of a report whose bits are counted elsewhere.
+   *
+   * @param value Encoded value of the report
+   */
+  void addValue(int value) {
+    minValue = Math.min(minValue, value);
+    maxValue = Math.max(maxValue, value);
+    histogram[Math.clamp(((long) value - rangeStart) / bucketWidth, 0, HISTOGRAM_BUCKETS)]++;
+  }
+
+  /**
+   * Adds the statistics of another scan over a disjoint set of reports to this one.
+   *
+   * @param other Scan with the same message bit size and histogram range
+   * @return this scan
+   * @throws IllegalArgumentException if the message bit sizes or histogram ranges differ
+   */
+  public ReportScan merge(ReportScan other) {
+    if (other.rangeStart != rangeStart || other.bucketWidth != bucketWidth) {
+      throw new IllegalArgumentException("Cannot merge scans of different histogram ranges.");
+    }
+    counter.merge(other.counter);
+    minValue = Math.min(minValue, other.minValue);
+    maxValue = Math.max(maxValue, other.maxValue);
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] += other.histogram[i];
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of reports scanned so far.
+   *
+   * @return Number of reports
+   */
+  public long reports() {
+    return counter.reports();
+  }
+
+  /**
+   * Returns the per-column totals. The returned array is live and must not be modified.
+   *
+   * @return Number of reports with each bit set
+   */
+  public long[] bitCounts() {
+    return counter.counts();
+  }
+
+  /**
+   * Returns the per-column totals as integers, the representation used by the {@code Substance}.
+   *
+   * @return Number of reports with each bit set
+   * @throws ArithmeticException if a count exceeds the integer range
+   */
+  public int[] toIntBitCounts() {
+    return counter.toIntCounts();
+  }
+
+  /**
+   * Returns the smallest encoded value, or 0 if no report was scanned.
+   *
+   * @return Smallest encoded value
+   */
+  public int minValue() {
+    return reports() == 0 ? 0 : minValue;
+  }
+
+  /**
+   * Returns the largest encoded value, or 0 if no report was scanned.
+   *
+   * @return Largest encoded value
+   */
+  public int maxValue() {
+    return reports() == 0 ? 0 : maxValue;
+  }
+
+  public int messageBitSize() {
+    return messageBitSize;
+  }
+
+  public int rangeStart() {
+    return rangeStart;
+  }
+
+  public int bucketWidth() {
+    return bucketWidth;
+  }
+
+  /**
+   * Returns the coarse histogram of the encoded values. Bucket {@code i} counts the values in
+   * {@code [rangeStart + i * bucketWidth, rangeStart + (i + 1) * bucketWidth)}, the first bucket
+   * also the values below the range and the last bucket, at index {@link #HISTOGRAM_BUCKETS}, all
+   * values from the end of the range on.
+   *
+   * @return Number of reports per bucket, {@code HISTOGRAM_BUCKETS + 1} entries
+   */
+  public long[] histogram() {
+    return Arrays.copyOf(histogram, histogram.length);
+  }
+
+  /**
+   * Converts the scan into the summary the decoder accepts instead of the entities.
+   *
+   * @return Bit counts, report count and largest value of the scanned reports
+   */
+  public BitCountSummary toSummary() {
+    return new BitCountSummary(bitCounts().clone(), reports(), maxValue());
+  }
+}
@@ -0,0 +1,250 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Binary design matrix with one row per candidate bin and one column per Bloom filter bit, stored
+ * in compressed sparse row (CSR) and compressed sparse column (CSC) form.
+ *
+ * <p>Every row only has the h Bloom filter indexes of its bin set, so the matrix holds {@code bins
+ * * h} integers instead of {@code bins * k} doubles. All stored entries are 1; duplicate indexes of
+ * a row are stored once, matching the dense matrix built by {@link
+ * DebiasPipe#convertClassesToArray}.
+ *
+ * <p>Instances are immutable and safe to share between threads. The arrays returned by the
+ * accessors are shared and must not be modified.
+ */
+public final class SparseDesignMatrix {
+
+  private final int rows;
+
+  private final int columns;
+
+  /** Start of each row in {@link #columnIndexes}, {@code rows + 1} entries. */
+  private final int[] rowPointers;
+
+  /** Column of every entry, sorted within each row. */
+  private final int[] columnIndexes;
+
+  /** Start of each column in {@link #rowIndexes}, {@code columns + 1} entries. */
+  private final int[] columnPointers;
+
+  /** Row of every entry, sorted within each column. */
+  private final int[] rowIndexes;
+
+  private SparseDesignMatrix(int rows, int columns, int[] rowPointers, int[] columnIndexes) {
+    this.rows = rows;
+    this.columns = columns;
+    this.rowPointers = rowPointers;
+    this.columnIndexes = columnIndexes;
+    this.columnPointers = new int[columns + 1];
+    for (int index : columnIndexes) {
+      columnPointers[index + 1]++;
+    }
+    for (int column = 0; column < columns; column++) {
+      columnPointers[column + 1] += columnPointers[column];
+    }
+    this.rowIndexes = new int[columnIndexes.length];
+    int[] next = Arrays.copyOf(columnPointers, columns);
+    for (int row = 0; row < rows; row++) {
+      for (int entry = rowPointers[row]; entry < rowPointers[row + 1]; entry++) {
+        rowIndexes[next[columnIndexes[entry]]++] = row;
+      }
+    }
+  }
+
+  /**
+   * Builds a matrix from the set column indexes of every row.
+   *
+   * @param rowColumns Column indexes per row, in any order and possibly repeated
+   * @param columns Number of columns
+   * @return The sparse matrix
+   * @throws IllegalArgumentException if an index is outside {@code [0, columns)}
+   */
+  public static SparseDesignMatrix fromRows(int[][] rowColumns, int columns) {
+    int[] rowPointers = new int[rowColumns.length + 1];
+    int[] columnIndexes = new int[Arrays.stream(rowColumns).mapToInt(r -> r.length).sum()];
+    int size = 0;
+    for (int row = 0; row < rowColumns.length; row++) {
+      int[] sorted = rowColumns[row].clone();
+      Arrays.sort(sorted);
+      for (int i = 0; i < sorted.length; i++) {
+        if (sorted[i] < 0 || sorted[i] >= columns) {
+          throw new IllegalArgumentException("Column index " + sorted[i] + " is out of range.");
+        }
+        if (i == 0 || sorted[i] != sorted[i - 1]) {
+          columnIndexes[size++] = sorted[i];
+        }
+      }
+      rowPointers[row + 1] = size;
+    }
+    return new SparseDesignMatrix(
+        rowColumns.length, columns, rowPointers, Arrays.copyOf(columnIndexes, size));
+  }
+
+  /**
+   * Builds a matrix from a dense design matrix. Every non-zero entry is stored as 1.
+   *
+   * @param designMatrix Dense matrix with one row per bin
+   * @return The sparse matrix
+   */
+  public static SparseDesignMatrix fromDense(double[][] designMatrix) {
+    int columns = designMatrix.length == 0 ? 0 : designMatrix[0].length;
+    int[][] rowColumns = new int[designMatrix.length][];
+    for (int row = 0; row < designMatrix.length; row++) {
+      double[] values = designMatrix[row];
+      rowColumns[row] = IntStream.range(0, columns).filter(c -> values[c] != 0).toArray();
+    }
+    return fromRows(rowColumns, columns);
+  }
+
+  /**
+   * Computes {@code A * v}: the sum of the entries of {@code v} at the columns of every row.
+   *
+   * @param vector Vector with one entry per column
+   * @return Vector with one entry per row
+   */
+  public double[] multiply(double[] vector) {
+    double[] result = new double[rows];
+    for (int row = 0; row < rows; row++) {
+      double sum = 0;
+      for (int entry = rowPointers[row]; entry < rowPointers[row + 1]; entry++) {
+        sum += vector[columnIndexes[entry]];
+      }
+      result[row] = sum;
+    }
+    return result;
+  }
+
+  /**
+   * Computes {@code w^T * A}: the rows weighted by {@code w} and added up. With the regression
+   * coefficients as weights this yields the fitted bit counts.
+   *
+   * @param weights Vector with one entry per row
+   * @return Vector with one entry per column
+   */
+  public double[] leftMultiply(double[] weights) {
+    double[] result = new double[columns];
+    for (int row = 0; row < rows; row++) {
+      double weight = weights[row];
+      if (weight == 0) {
+        continue;
+      }
+      for (int entry = rowPointers[row]; entry < rowPointers[row + 1]; entry++) {
+        result[columnIndexes[entry]] += weight;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes {@code A * A^T}: the number of columns every pair of rows has in common. Two rows only
+   * share a product through common columns, so the counts are accumulated column by column from the
+   * CSC form.
+   *
+   * @return Row-major {@code rows x rows} matrix
+   */
+  public double[] gram() {
+    double[] gram = new double[rows * rows];
+    for (int column = 0; column < columns; column++) {
+      for (int a = columnPointers[column]; a < columnPointers[column + 1]; a++) {
+        int offset = rowIndexes[a] * rows;
+        for (int b = columnPointers[column]; b < columnPointers[column + 1]; b++) {
+          gram[offset + rowIndexes[b]]++;
+        }
+      }
+    }
+    return gram;
+  }
+
+  /**
+   * Builds the matrix of a subset of the rows, for example the bins that are not constant.
+   *
+   * @param selectedRows Rows to keep, in the order of the new matrix
+   * @return Matrix with {@code selectedRows.length} rows and the same columns
+   */
+  public SparseDesignMatrix selectRows(int[] selectedRows) {
+    int[][] rowColumns = new int[selectedRows.length][];
+    for (int i = 0; i < selectedRows.length; i++) {
+      int row = selectedRows[i];
+      rowColumns[i] = Arrays.copyOfRange(columnIndexes, rowPointers[row], rowPointers[row + 1]);
+    }
+    return fromRows(rowColumns, columns);
+  }
+
+  /**
+   * Builds the matrix of a subset of the columns, for example the Bloom filter bits of one
+   * cross-validation fold. Column {@code i} of the new matrix is column {@code selectedColumns[i]}
+   * of this one.
+   *
+   * @param selectedColumns Columns to keep, in the order of the new matrix
+   * @return Matrix with the same rows and {@code selectedColumns.length} columns
+   */
+  public SparseDesignMatrix selectColumns(int[] selectedColumns) {
+    int[][] rowColumns = new int[rows][];
+    int[] sizes = new int[rows];
+    for (int row = 0; row < rows; row++) {
+      rowColumns[row] = new int[rowPointers[row + 1] - rowPointers[row]];
+    }
+    for (int i = 0; i < selectedColumns.length; i++) {
+      int column = selectedColumns[i];
+      for (int entry = columnPointers[column]; entry < columnPointers[column + 1]; entry++) {
+        int row = rowIndexes[entry];
+        rowColumns[row][sizes[row]++] = i;
+      }
+    }
+    for (int row = 0; row < rows; row++) {
+      rowColumns[row] = Arrays.copyOf(rowColumns[row], sizes[row]);
+    }
+    return fromRows(rowColumns, selectedColumns.length);
+  }
+
+  /**
+   * Materializes the dense matrix.
+   *
+   * @return Dense matrix with one row per bin and one column per Bloom filter bit
+   */
+  public double[][] toDense() {
+    double[][] dense = new double[rows][columns];
+    for (int row = 0; row < rows; row++) {
+      for (int entry = rowPointers[row]; entry < rowPointers[row + 1]; entry++) {
+        dense[row][columnIndexes[entry]] = 1;
+      }
+    }
+    return dense;
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int columns() {
+    return columns;
+  }
+
+  public int nonZeros() {
+    return columnIndexes.length;
+  }
+
+  public int[] rowPointers() {
+    return rowPointers;
+  }
+
+  public int[] columnIndexes() {
+    return columnIndexes;
+  }
+
+  public int[] columnPointers() {
+    return columnPointers;
+  }
+
+  public int[] rowIndexes() {
+    return rowIndexes;
+  }
+}
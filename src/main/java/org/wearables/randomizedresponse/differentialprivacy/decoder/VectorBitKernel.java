@@ -0,0 +1,153 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.decoder;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+
+/**
+ * SIMD kernels for the aggregation step built on the incubating Vector API.
+ *
+ * <p>The counting kernel is the vectorized form of {@link BitColumnCounter}: consecutive report
+ * words are loaded into the lanes of a {@link LongVector} and ripple-added into bit planes that
+ * live in a plain {@code long[]}. The debias kernel evaluates {@code (c - offset * n) /
+ * denominator} for all k bit positions in {@link DoubleVector} lanes.
+ *
+ * <p>This class must only be loaded when the {@code jdk.incubator.vector} module is present; see
+ * {@link AggregationPipe}.
+ */
+final class VectorBitKernel {
+
+  private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+  /**
+   * Integer species used to load the bit counts. It has the preferred shape as well, so it holds
+   * {@link #PARTS} times as many lanes as {@link #DOUBLES}; a half-width integer shape does not
+   * exist when the preferred shape is only 64 bits wide.
+   */
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+  /** Number of double vectors one integer vector is widened into. */
+  private static final int PARTS = INTS.length() / DOUBLES.length();
+
+  private static final int PLANES = 8;
+
+  private static final int FLUSH_INTERVAL = (1 << PLANES) - 1;
+
+  private VectorBitKernel() {}
+
+  /**
+   * Adds the per-column bit counts of packed reports to {@code counts}.
+   *
+   * @param words Reports packed back to back, {@code wordsPerReport} words each
+   * @param wordsPerReport Number of words per report
+   * @param reports Number of reports stored in {@code words}
+   * @param counts Per-column totals, one entry per bit of the message
+   */
+  static void countColumns(long[] words, int wordsPerReport, int reports, long[] counts) {
+    int lanes = LONGS.length();
+    int groups = lcm(wordsPerReport, lanes) / lanes;
+    int step = groups * lanes;
+    int total = wordsPerReport * reports;
+    int rounds = total / step;
+    long[] planes = new long[groups * PLANES * lanes];
+    int pending = 0;
+    for (int round = 0; round < rounds; round++) {
+      int base = round * step;
+      for (int g = 0; g < groups; g++) {
+        LongVector carry = LongVector.fromArray(LONGS, words, base + g * lanes);
+        int planeBase = g * PLANES * lanes;
+        for (int b = 0; b < PLANES; b++) {
+          int offset = planeBase + b * lanes;
+          LongVector plane = LongVector.fromArray(LONGS, planes, offset);
+          plane.lanewise(VectorOperators.XOR, carry).intoArray(planes, offset);
+          carry = plane.and(carry);
+        }
+      }
+      if (++pending == FLUSH_INTERVAL) {
+        flush(planes, groups, lanes, wordsPerReport, counts);
+        pending = 0;
+      }
+    }
+    flush(planes, groups, lanes, wordsPerReport, counts);
+    for (int i = rounds * step; i < total; i++) {
+      addWord(words[i], (i % wordsPerReport) * BitVector.WORD_SIZE, 0, counts);
+    }
+  }
+
+  /**
+   * Estimates the expected true counts of all bit positions.
+   *
+   * @param bitCounts Observed counts of bits set to 1
+   * @param numberOfReports Number of reports in the cohort
+   * @param offset Expected share of ones caused by the randomization
+   * @param denominator Scale of the true signal in the observed counts
+   * @return Expected true count per bit position
+   */
+  static double[] debias(int[] bitCounts, int numberOfReports, double offset, double denominator) {
+    double[] expectedTrueCounts = new double[bitCounts.length];
+    DoubleVector noise = DoubleVector.broadcast(DOUBLES, offset * numberOfReports);
+    int upperBound = INTS.loopBound(bitCounts.length);
+    int i = 0;
+    for (; i < upperBound; i += INTS.length()) {
+      IntVector ints = IntVector.fromArray(INTS, bitCounts, i);
+      for (int part = 0; part < PARTS; part++) {
+        DoubleVector counts = (DoubleVector) ints.convertShape(VectorOperators.I2D, DOUBLES, part);
+        counts
+            .sub(noise)
+            .div(denominator)
+            .intoArray(expectedTrueCounts, i + part * DOUBLES.length());
+      }
+    }
+    for (; i < bitCounts.length; i++) {
+      expectedTrueCounts[i] = (bitCounts[i] - offset * numberOfReports) / denominator;
+    }
+    return expectedTrueCounts;
+  }
+
+  /** Moves the bit planes into the per-column totals and clears them. */
+  private static void flush(
+      long[] planes, int groups, int lanes, int wordsPerReport, long[] counts) {
+    for (int g = 0; g < groups; g++) {
+      for (int b = 0; b < PLANES; b++) {
+        int offset = (g * PLANES + b) * lanes;
+        for (int lane = 0; lane < lanes; lane++) {
+          int column = ((g * lanes + lane) % wordsPerReport) * BitVector.WORD_SIZE;
+          addWord(planes[offset + lane], column, b, counts);
+          planes[offset + lane] = 0;
+        }
+      }
+    }
+  }
+
+  /** Adds {@code 2^weight} to the total of every column whose bit is set in the word. */
+  private static void addWord(long word, int column, int weight, long[] counts) {
+    while (word != 0) {
+      int index = column + Long.numberOfTrailingZeros(word);
+      if (index < counts.length) {
+        counts[index] += 1L << weight;
+      }
+      word &= word - 1;
+    }
+  }
+
+  private static int lcm(int a, int b) {
+    int x = a;
+    int y = b;
+    while (y != 0) {
+      int t = x % y;
+      x = y;
+      y = t;
+    }
+    return a / x * b;
+  }
+}
@@ -6,8 +6,11 @@
 package org.wearables.randomizedresponse.differentialprivacy.decoder.substance;
 
 import java.util.List;
-import java.util.Map;
 import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BinLayout;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlan;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
 
 /**
@@ -41,6 +44,9 @@ public class Substance<T extends ReportEntity> {
   /** Maximum range of values considered for binning. */
   private int maxRange;
 
+  /** Number of reports the bit counts were aggregated over. */
+  private int numberOfReports;
+
   /** Identifier of the cohort being processed. */
   private int cohort;
 
@@ -53,21 +59,33 @@ public class Substance<T extends ReportEntity> {
   /** Size of the randomized message bit string. */
   private int messageBitSize;
 
-  /** Design matrix used for regression analysis. */
+  /** Dense design matrix, only used for regression if no sparse design matrix is set. */
   private double[][] designMatrix;
 
+  /** Sparse design matrix used for regression analysis, one row per bin. */
+  private SparseDesignMatrix sparseDesignMatrix;
+
   /** Counts of bits set to 1 across all entities. */
   private int[] bitCounts;
 
+  /** Statistics of the single pass over the entities, or null if the bit counts were supplied. */
+  private ReportScan reportScan;
+
   /** Bloom filter indexes mapped for candidate ranges. */
   private int[] indexes;
 
-  /** Mapping of value ranges to Bloom filter indexes. */
-  private Map<String, int[]> binMap;
+  /** Layout of the candidate bins. */
+  private BinLayout bins;
+
+  /** Bloom filter indexes of every bin, indexed like the bins. */
+  private int[][] binIndexes;
 
   /** Differential privacy parameter entity associated with this decoding. */
   private ParameterEntity parameterEntity;
 
+  /** Compiled decode plan of the profile and bin layout, set by the debias step. */
+  private DecodePlan decodePlan;
+
   public Substance() {}
 
   public List<T> getEntities() {
@@ -110,6 +128,14 @@ public class Substance<T extends ReportEntity> {
     this.maxRange = maxRange;
   }
 
+  public int getNumberOfReports() {
+    return numberOfReports;
+  }
+
+  public void setNumberOfReports(int numberOfReports) {
+    this.numberOfReports = numberOfReports;
+  }
+
   public int getCohort() {
     return cohort;
   }
@@ -150,6 +176,14 @@ public class Substance<T extends ReportEntity> {
     this.designMatrix = designMatrix;
   }
 
+  public SparseDesignMatrix getSparseDesignMatrix() {
+    return sparseDesignMatrix;
+  }
+
+  public void setSparseDesignMatrix(SparseDesignMatrix sparseDesignMatrix) {
+    this.sparseDesignMatrix = sparseDesignMatrix;
+  }
+
   public int[] getBitCounts() {
     return bitCounts;
   }
@@ -166,12 +200,28 @@ public class Substance<T extends ReportEntity> {
     this.bitCounts = bitCounts;
   }
 
-  public Map<String, int[]> getBinMap() {
-    return binMap;
+  public ReportScan getReportScan() {
+    return reportScan;
   }
 
-  public void setBinMap(Map<String, int[]> binMap) {
-    this.binMap = binMap;
+  public void setReportScan(ReportScan reportScan) {
+    this.reportScan = reportScan;
+  }
+
+  public BinLayout getBins() {
+    return bins;
+  }
+
+  public void setBins(BinLayout bins) {
+    this.bins = bins;
+  }
+
+  public int[][] getBinIndexes() {
+    return binIndexes;
+  }
+
+  public void setBinIndexes(int[][] binIndexes) {
+    this.binIndexes = binIndexes;
   }
 
   public double[] getFinalClassCounts() {
@@ -197,4 +247,12 @@ public class Substance<T extends ReportEntity> {
   public void setParameterEntity(ParameterEntity parameterEntity) {
     this.parameterEntity = parameterEntity;
   }
+
+  public DecodePlan getDecodePlan() {
+    return decodePlan;
+  }
+
+  public void setDecodePlan(DecodePlan decodePlan) {
+    this.decodePlan = decodePlan;
+  }
 }
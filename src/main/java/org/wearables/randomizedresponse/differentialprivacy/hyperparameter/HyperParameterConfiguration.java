@@ -1,14 +1,28 @@
 package org.wearables.randomizedresponse.differentialprivacy.hyperparameter;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.EmPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.Estimator;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.NnlsMode;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.RegressionSolver;
+import org.wearables.randomizedresponse.healthdata.DecodeJobRejection;
+import org.wearables.randomizedresponse.healthdata.DecodeReadMode;
 
 @Configuration
 @ConfigurationProperties(prefix = "default")
 public class HyperParameterConfiguration {
 
+  /** Seed of the first client hash function, also used when no configuration is bound. */
+  public static final int DEFAULT_HASH_SEED_FIRST = 0x12345678;
+
+  /** Seed of the second client hash function, also used when no configuration is bound. */
+  public static final int DEFAULT_HASH_SEED_SECOND = 0x9ABCDEF;
+
   @NotBlank private int rangeIterator;
 
   @Size(min = 5, max = 5)
@@ -16,9 +30,84 @@ public class HyperParameterConfiguration {
 
   @NotBlank private int startRange;
 
-  @NotBlank private int hashSeedFirst;
+  @NotBlank private int hashSeedFirst = DEFAULT_HASH_SEED_FIRST;
+
+  @NotBlank private int hashSeedSecond = DEFAULT_HASH_SEED_SECOND;
+
+  /** Maximum number of compiled candidate index tables kept by the decoder. */
+  @Positive private int candidateIndexCacheSize = 64;
+
+  /** Maximum number of compiled decode plans, with their Gram matrices, kept by the decoder. */
+  @Positive private int decodePlanCacheSize = 16;
+
+  /** Minimum cohort size before the bit counts are aggregated in parallel. */
+  @Positive private int aggregationParallelismThreshold = 100_000;
+
+  /** Number of worker threads used for parallel aggregation. */
+  @Positive private int aggregationPoolSize = Runtime.getRuntime().availableProcessors();
+
+  /** Whether bit counting and debiasing use the SIMD kernels of the Vector API. */
+  private boolean vectorizedAggregation;
+
+  /** LASSO implementation used by the regression step. */
+  private RegressionSolver regressionSolver = RegressionSolver.SMILE;
+
+  /** Whether the coordinate descent solver restricts the class counts to be non-negative. */
+  private boolean nonNegativeLasso;
+
+  /** Number of worker threads that fit lambdas and cross-validation folds concurrently. */
+  @Positive private int lambdaSelectionPoolSize = Runtime.getRuntime().availableProcessors();
+
+  /** Number of cross-validation folds over the Bloom filter bits; below 2 selects in-sample. */
+  private int crossValidationFolds;
+
+  /** Whether non-negative least squares replaces or refines the LASSO. */
+  private NnlsMode nnlsMode = NnlsMode.OFF;
+
+  /** Estimator used after the debias step; the EM estimator ignores the LASSO and NNLS settings. */
+  private Estimator estimator = Estimator.LASSO;
+
+  /** Largest change of a bin probability between EM iterations at which EM stops. */
+  @Positive private double emTolerance = EmPipe.DEFAULT_TOLERANCE;
+
+  /** Maximum number of EM iterations. */
+  @Positive private int emMaxIterations = EmPipe.DEFAULT_MAX_ITERATIONS;
 
-  @NotBlank private int hashSeedSecond;
+  /** Maximum number of decoded distributions kept for repeated identical requests. */
+  @Positive private int decodeResultCacheSize = 256;
+
+  /** Number of cohorts of a batch decode that are decoded at the same time. */
+  @Positive private int batchDecodePoolSize = Runtime.getRuntime().availableProcessors();
+
+  /** Maximum number of cohorts of one batch decode; larger batches are rejected. */
+  @Positive private int batchDecodeMaxCohorts = 1000;
+
+  /** Number of worker threads that run asynchronous decode jobs. */
+  @Positive private int decodeJobPoolSize = 2;
+
+  /** Number of decode jobs that may wait for a worker before new jobs are rejected. */
+  @PositiveOrZero private int decodeJobQueueCapacity = 16;
+
+  /** What happens to a decode job that finds the queue full. */
+  private DecodeJobRejection decodeJobRejection = DecodeJobRejection.REJECT;
+
+  /** Maximum number of finished decode jobs whose results are kept for polling. */
+  @Positive private int decodeJobResultStoreSize = 256;
+
+  /** Seconds a finished decode job is kept for polling. */
+  @Positive private long decodeJobResultTtlSeconds = 600;
+
+  /** How the bit counts are read from the database when no live aggregate can be used. */
+  private DecodeReadMode decodeReadMode = DecodeReadMode.AGGREGATE;
+
+  /** Number of rows fetched per round trip when the reports are streamed. */
+  @Positive private int decodeStreamFetchSize = 1000;
+
+  /** Number of report id ranges streamed concurrently, capped at half of the connection pool. */
+  @Positive private int decodeFetchPartitions = 4;
+
+  /** Number of uploaded reports saved per transaction while an upload is streamed. */
+  @Positive private int uploadBatchSize = 500;
 
   public int getStartRange() {
     return startRange;
@@ -59,4 +148,204 @@ public class HyperParameterConfiguration {
   public void setHashSeedSecond(int hashSeedSecond) {
     this.hashSeedSecond = hashSeedSecond;
   }
+
+  public int getCandidateIndexCacheSize() {
+    return candidateIndexCacheSize;
+  }
+
+  public void setCandidateIndexCacheSize(int candidateIndexCacheSize) {
+    this.candidateIndexCacheSize = candidateIndexCacheSize;
+  }
+
+  public int getDecodePlanCacheSize() {
+    return decodePlanCacheSize;
+  }
+
+  public void setDecodePlanCacheSize(int decodePlanCacheSize) {
+    this.decodePlanCacheSize = decodePlanCacheSize;
+  }
+
+  public int getAggregationParallelismThreshold() {
+    return aggregationParallelismThreshold;
+  }
+
+  public void setAggregationParallelismThreshold(int aggregationParallelismThreshold) {
+    this.aggregationParallelismThreshold = aggregationParallelismThreshold;
+  }
+
+  public int getAggregationPoolSize() {
+    return aggregationPoolSize;
+  }
+
+  public void setAggregationPoolSize(int aggregationPoolSize) {
+    this.aggregationPoolSize = aggregationPoolSize;
+  }
+
+  public boolean isVectorizedAggregation() {
+    return vectorizedAggregation;
+  }
+
+  public void setVectorizedAggregation(boolean vectorizedAggregation) {
+    this.vectorizedAggregation = vectorizedAggregation;
+  }
+
+  public RegressionSolver getRegressionSolver() {
+    return regressionSolver;
+  }
+
+  public void setRegressionSolver(RegressionSolver regressionSolver) {
+    this.regressionSolver = regressionSolver;
+  }
+
+  public boolean isNonNegativeLasso() {
+    return nonNegativeLasso;
+  }
+
+  public void setNonNegativeLasso(boolean nonNegativeLasso) {
+    this.nonNegativeLasso = nonNegativeLasso;
+  }
+
+  public int getLambdaSelectionPoolSize() {
+    return lambdaSelectionPoolSize;
+  }
+
+  public void setLambdaSelectionPoolSize(int lambdaSelectionPoolSize) {
+    this.lambdaSelectionPoolSize = lambdaSelectionPoolSize;
+  }
+
+  public int getCrossValidationFolds() {
+    return crossValidationFolds;
+  }
+
+  public void setCrossValidationFolds(int crossValidationFolds) {
+    this.crossValidationFolds = crossValidationFolds;
+  }
+
+  public NnlsMode getNnlsMode() {
+    return nnlsMode;
+  }
+
+  public void setNnlsMode(NnlsMode nnlsMode) {
+    this.nnlsMode = nnlsMode;
+  }
+
+  public Estimator getEstimator() {
+    return estimator;
+  }
+
+  public void setEstimator(Estimator estimator) {
+    this.estimator = estimator;
+  }
+
+  public double getEmTolerance() {
+    return emTolerance;
+  }
+
+  public void setEmTolerance(double emTolerance) {
+    this.emTolerance = emTolerance;
+  }
+
+  public int getEmMaxIterations() {
+    return emMaxIterations;
+  }
+
+  public void setEmMaxIterations(int emMaxIterations) {
+    this.emMaxIterations = emMaxIterations;
+  }
+
+  public int getDecodeResultCacheSize() {
+    return decodeResultCacheSize;
+  }
+
+  public void setDecodeResultCacheSize(int decodeResultCacheSize) {
+    this.decodeResultCacheSize = decodeResultCacheSize;
+  }
+
+  public int getBatchDecodePoolSize() {
+    return batchDecodePoolSize;
+  }
+
+  public void setBatchDecodePoolSize(int batchDecodePoolSize) {
+    this.batchDecodePoolSize = batchDecodePoolSize;
+  }
+
+  public int getBatchDecodeMaxCohorts() {
+    return batchDecodeMaxCohorts;
+  }
+
+  public void setBatchDecodeMaxCohorts(int batchDecodeMaxCohorts) {
+    this.batchDecodeMaxCohorts = batchDecodeMaxCohorts;
+  }
+
+  public int getDecodeJobPoolSize() {
+    return decodeJobPoolSize;
+  }
+
+  public void setDecodeJobPoolSize(int decodeJobPoolSize) {
+    this.decodeJobPoolSize = decodeJobPoolSize;
+  }
+
+  public int getDecodeJobQueueCapacity() {
+    return decodeJobQueueCapacity;
+  }
+
+  public void setDecodeJobQueueCapacity(int decodeJobQueueCapacity) {
+    this.decodeJobQueueCapacity = decodeJobQueueCapacity;
+  }
+
+  public DecodeJobRejection getDecodeJobRejection() {
+    return decodeJobRejection;
+  }
+
+  public void setDecodeJobRejection(DecodeJobRejection decodeJobRejection) {
+    this.decodeJobRejection = decodeJobRejection;
+  }
+
+  public int getDecodeJobResultStoreSize() {
+    return decodeJobResultStoreSize;
+  }
+
+  public void setDecodeJobResultStoreSize(int decodeJobResultStoreSize) {
+    this.decodeJobResultStoreSize = decodeJobResultStoreSize;
+  }
+
+  public long getDecodeJobResultTtlSeconds() {
+    return decodeJobResultTtlSeconds;
+  }
+
+  public void setDecodeJobResultTtlSeconds(long decodeJobResultTtlSeconds) {
+    this.decodeJobResultTtlSeconds = decodeJobResultTtlSeconds;
+  }
+
+  public DecodeReadMode getDecodeReadMode() {
+    return decodeReadMode;
+  }
+
+  public void setDecodeReadMode(DecodeReadMode decodeReadMode) {
+    this.decodeReadMode = decodeReadMode;
+  }
+
+  public int getDecodeStreamFetchSize() {
+    return decodeStreamFetchSize;
+  }
+
+  public void setDecodeStreamFetchSize(int decodeStreamFetchSize) {
+    this.decodeStreamFetchSize = decodeStreamFetchSize;
+  }
+
+  public int getDecodeFetchPartitions() {
+    return decodeFetchPartitions;
+  }
+
+  public void setDecodeFetchPartitions(int decodeFetchPartitions) {
+    this.decodeFetchPartitions = decodeFetchPartitions;
+  }
+
+  public int getUploadBatchSize() {
+    return uploadBatchSize;
+  }
+
+  public void setUploadBatchSize(int uploadBatchSize) {
+    this.uploadBatchSize = uploadBatchSize;
+  }
 }
@@ -0,0 +1,14 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.differentialprivacy.parameter;
+
+/**
+ * Application event published by the {@link ParameterService} whenever a parameter profile is
+ * saved. Listeners that cache data derived from a profile, such as compiled decode plans, drop it.
+ *
+ * @param parameterEntity The profile that was saved
+ */
+public record ParameterChangedEvent(ParameterEntity parameterEntity) {}
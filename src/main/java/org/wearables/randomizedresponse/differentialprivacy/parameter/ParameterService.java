@@ -10,6 +10,7 @@ import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 /**
@@ -22,9 +23,13 @@ public class ParameterService {
 
   private ParameterRepository parameterRepository;
 
+  private ApplicationEventPublisher eventPublisher;
+
   @Autowired
-  public ParameterService(ParameterRepository parameterRepository) {
+  public ParameterService(
+      ParameterRepository parameterRepository, ApplicationEventPublisher eventPublisher) {
     this.parameterRepository = parameterRepository;
+    this.eventPublisher = eventPublisher;
   }
 
   public ParameterService() {}
@@ -75,11 +80,15 @@ public class ParameterService {
   }
 
   /**
-   * Saves a parameter entity.
+   * Saves a parameter entity and announces the change, so decode plans compiled for the profile are
+   * dropped.
    *
    * @param parameterEntity The parameter entity to persist
    */
   public void save(@NotNull ParameterEntity parameterEntity) {
-    parameterRepository.save(parameterEntity);
+    ParameterEntity saved = parameterRepository.save(parameterEntity);
+    if (eventPublisher != null) {
+      eventPublisher.publishEvent(new ParameterChangedEvent(saved));
+    }
   }
 }
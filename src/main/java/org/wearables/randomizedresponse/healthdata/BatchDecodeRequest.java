@@ -0,0 +1,37 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Body of a batch decode: many cohorts decoded with one parameter profile.
+ *
+ * @param parameterProfile Name of the parameter profile to use for all cohorts
+ * @param numberOfReports Maximum number of reports to include per cohort
+ * @param cohorts Cohorts to decode, each optionally restricted to a time range
+ */
+public record BatchDecodeRequest(
+    @NotBlank String parameterProfile,
+    @Positive int numberOfReports,
+    @NotEmpty List<@Valid @NotNull CohortRange> cohorts) {
+
+  /**
+   * One cohort of a batch decode.
+   *
+   * @param cohort UUID of the cohort
+   * @param from Optional inclusive lower bound of the interval start of the reports
+   * @param to Optional exclusive upper bound of the interval start of the reports
+   */
+  public record CohortRange(@NotNull UUID cohort, LocalDateTime from, LocalDateTime to) {}
+}
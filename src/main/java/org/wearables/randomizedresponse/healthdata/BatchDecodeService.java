@@ -0,0 +1,112 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+
+/**
+ * Fans the cohorts of a batch decode out to a dedicated pool and hands every result to the caller
+ * as soon as it is ready, so a batch takes about as long as its slowest cohorts instead of the sum
+ * of all of them.
+ *
+ * <p>The compiled decode plan of the profile is shared through the decoder's plan cache: the first
+ * cohort builds it and the others wait for and reuse it. The reads of the cohorts reserve their
+ * connections in the {@link DecodeConnectionBudget} shared with the other decodes, so the pool may
+ * be larger than the budget: the surplus workers decode while the others read.
+ */
+@Service
+public class BatchDecodeService implements DisposableBean {
+
+  private final ExecutorService executor;
+
+  /**
+   * Creates the service with the pool size of the hyperparameter configuration.
+   *
+   * @param hyperParameterConfiguration Configuration providing the pool size
+   */
+  @Autowired
+  public BatchDecodeService(HyperParameterConfiguration hyperParameterConfiguration) {
+    this(hyperParameterConfiguration.getBatchDecodePoolSize());
+  }
+
+  public BatchDecodeService(int poolSize) {
+    this.executor =
+        Executors.newFixedThreadPool(
+            poolSize,
+            new ThreadFactoryBuilder().setNameFormat("batch-decode-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Decodes all items in parallel and passes each result to the sink in the order the decodes
+   * finish. The sink is only called from the calling thread. If the sink fails, the remaining
+   * decodes are cancelled.
+   *
+   * @param items Items to decode
+   * @param decode Decode of one item; failures should be reported in its result
+   * @param sink Receiver of the results
+   * @param <T> Type of the items
+   * @param <R> Type of the results
+   * @throws IOException if the sink fails or the calling thread is interrupted
+   */
+  public <T, R> void decodeAll(List<T> items, Function<T, R> decode, ResultSink<R> sink)
+      throws IOException {
+    CompletionService<R> completionService = new ExecutorCompletionService<>(executor);
+    List<Future<R>> futures = new ArrayList<>(items.size());
+    try {
+      for (T item : items) {
+        futures.add(completionService.submit(() -> decode.apply(item)));
+      }
+      for (int i = 0; i < items.size(); i++) {
+        sink.accept(completionService.take().get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Batch decode was interrupted");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Batch decode failed", e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  /** Stops the workers; running decodes are interrupted. */
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Receiver of the results of a batch decode.
+   *
+   * @param <R> Type of the results
+   */
+  @FunctionalInterface
+  public interface ResultSink<R> {
+
+    /**
+     * Receives one result.
+     *
+     * @param result Result of one item
+     * @throws IOException if the result cannot be written
+     */
+    void accept(R result) throws IOException;
+  }
+}
@@ -0,0 +1,23 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+
+/** Repository fragment that counts PRR bits inside the database instead of loading the reports. */
+public interface BitCountAggregationRepository {
+
+  /**
+   * Counts in one query how many of the selected reports have each PRR bit set, together with the
+   * number of reports and their largest step count.
+   *
+   * @param filter Selects the reports to count
+   * @param messageBitSize Number of PRR bits to count
+   * @return The aggregated counts; the report count is 0 if no report matches
+   * @throws UnsupportedOperationException if the database dialect is not supported
+   */
+  BitCountSummary aggregateBitCounts(CohortReportFilter filter, int messageBitSize);
+}
@@ -0,0 +1,108 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+
+/**
+ * Native SQL implementation of {@link BitCountAggregationRepository} for PostgreSQL and H2.
+ *
+ * <p>The query selects one {@code SUM} per bit position over the packed {@code Prr} column, which
+ * stores bit {@code i} in byte {@code i / 8} at position {@code i % 8} counted from the least
+ * significant bit. PostgreSQL's {@code get_bit} and H2's {@code BITGET} both use that numbering, so
+ * only the bit extraction differs between the dialects. A single row with the report count, the
+ * maximum step count and the k bit counts is returned. A report limit keeps the reports with the
+ * lowest report ids, so the same limit selects the same reports as the streamed read.
+ *
+ * <p>Other databases are rejected on startup.
+ */
+public class BitCountAggregationRepositoryImpl implements BitCountAggregationRepository {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public BitCountSummary aggregateBitCounts(CohortReportFilter filter, int messageBitSize) {
+    Query query = entityManager.createNativeQuery(buildQuery(filter, messageBitSize, dialect()));
+    query.setParameter("cohort", filter.cohort());
+    query.setParameter("parameterId", filter.parameterId());
+    if (filter.from() != null) {
+      query.setParameter("from", filter.from());
+    }
+    if (filter.to() != null) {
+      query.setParameter("to", filter.to());
+    }
+    if (filter.limit() > 0) {
+      query.setParameter("limit", filter.limit());
+    }
+    Object[] row = (Object[]) query.getSingleResult();
+    long reportCount = toLong(row[0]);
+    int maxStepCount = (int) toLong(row[1]);
+    long[] bitCounts = new long[messageBitSize];
+    for (int i = 0; i < messageBitSize; i++) {
+      bitCounts[i] = toLong(row[i + 2]);
+    }
+    return new BitCountSummary(bitCounts, reportCount, maxStepCount);
+  }
+
+  /**
+   * Builds the aggregation query for a dialect.
+   *
+   * @param filter Selects the reports to count
+   * @param messageBitSize Number of PRR bits to count
+   * @param dialect Dialect of the database
+   * @return Native SQL with named parameters for the filter
+   */
+  static String buildQuery(CohortReportFilter filter, int messageBitSize, Dialect dialect) {
+    StringBuilder sql = new StringBuilder("SELECT COUNT(*), MAX(r.step_count)");
+    for (int i = 0; i < messageBitSize; i++) {
+      sql.append(", ").append(bitSum(dialect, i));
+    }
+    sql.append(" FROM (SELECT h.prr, h.step_count FROM health_data h")
+        .append(" WHERE h.cohort = :cohort AND h.parameter_id = :parameterId");
+    if (filter.from() != null) {
+      sql.append(" AND h.interval_start >= :from");
+    }
+    if (filter.to() != null) {
+      sql.append(" AND h.interval_start < :to");
+    }
+    if (filter.limit() > 0) {
+      sql.append(" ORDER BY h.report_id LIMIT :limit");
+    }
+    return sql.append(") r").toString();
+  }
+
+  private static String bitSum(Dialect dialect, int index) {
+    if (dialect instanceof PostgreSQLDialect) {
+      return "SUM(get_bit(r.prr, " + index + "))";
+    }
+    if (dialect instanceof H2Dialect) {
+      return "SUM(CASE WHEN BITGET(r.prr, " + index + ") THEN 1 ELSE 0 END)";
+    }
+    throw new UnsupportedOperationException(
+        "Bit count aggregation is not supported for " + dialect.getClass().getSimpleName());
+  }
+
+  /** Fails on startup if the bits cannot be summed in this database. */
+  @PostConstruct
+  void checkDialect() {
+    bitSum(dialect(), 0);
+  }
+
+  private Dialect dialect() {
+    return NativeSqlDialect.of(entityManager);
+  }
+
+  private static long toLong(Object value) {
+    return value == null ? 0 : ((Number) value).longValue();
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+
+/**
+ * Maintains live bit counts per cohort and parameter profile so a decode can start at the debias
+ * step instead of scanning every report.
+ *
+ * <p>Every aggregate holds the counts of its cohort at one data version of the {@link
+ * CohortDataVersionService}. Uploads of this instance are added once their transaction has
+ * committed, advancing the aggregate to the version the upload was written at. An aggregate is only
+ * served while its version equals the persisted one, so it is never served after reports were
+ * removed, after another server instance wrote to the cohort or after uploads were applied out of
+ * order. Such an aggregate is recounted inside the database on the next request, reading the
+ * version and the reports from the same snapshot, and kept live from then on.
+ *
+ * <p>All aggregates are counted on startup, before the web server accepts requests.
+ */
+@Service
+public class CohortAggregateService implements SmartInitializingSingleton {
+
+  /** Version of an aggregate that has to be recounted before it is served again. */
+  private static final long OUTDATED = -1;
+
+  private final Logger logger = LoggerFactory.getLogger(CohortAggregateService.class);
+
+  private final HealthDataRepository healthDataRepository;
+
+  private final CohortDataVersionRepository cohortDataVersionRepository;
+
+  private final CohortDataVersionService cohortDataVersionService;
+
+  /** Reads the versions and the reports they belong to from one snapshot. */
+  private final TransactionTemplate snapshotTemplate;
+
+  /** Live aggregates per cohort and parameter profile. */
+  private final Map<CohortDataVersionId, CohortAggregate> aggregates = new ConcurrentHashMap<>();
+
+  public CohortAggregateService(
+      HealthDataRepository healthDataRepository,
+      CohortDataVersionRepository cohortDataVersionRepository,
+      CohortDataVersionService cohortDataVersionService,
+      PlatformTransactionManager transactionManager) {
+    this.healthDataRepository = healthDataRepository;
+    this.cohortDataVersionRepository = cohortDataVersionRepository;
+    this.cohortDataVersionService = cohortDataVersionService;
+    this.snapshotTemplate = new TransactionTemplate(transactionManager);
+    this.snapshotTemplate.setReadOnly(true);
+    this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+  }
+
+  /**
+   * Counts the aggregates of all persisted reports in a single streaming pass once all beans are
+   * created.
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    Map<CohortDataVersionId, CohortAggregate> counted = new HashMap<>();
+    snapshotTemplate.executeWithoutResult(
+        status -> {
+          Map<CohortDataVersionId, Long> versions = new HashMap<>();
+          cohortDataVersionRepository
+              .findAll()
+              .forEach(version -> versions.put(version.getId(), version.getVersion()));
+          Map<CohortDataVersionId, ReportScan> scans = new HashMap<>();
+          try (Stream<CohortReportRow> rows = healthDataRepository.streamAllCohortReportRows()) {
+            rows.forEach(
+                row ->
+                    scans
+                        .computeIfAbsent(
+                            new CohortDataVersionId(row.cohort(), row.parameterId()),
+                            key -> new ReportScan(row.prr().length()))
+                        .add(row.prr(), row.stepCount()));
+          }
+          scans.forEach(
+              (key, scan) ->
+                  counted.put(
+                      key, new CohortAggregate(versions.getOrDefault(key, 0L), scan.toSummary())));
+        });
+    counted.forEach(this::install);
+    logger.info("Counted live aggregates for {} cohorts", counted.size());
+  }
+
+  /**
+   * Adds the reports of a committed upload to the live aggregates, or marks the touched aggregates
+   * as outdated if the reports were removed. Runs immediately if there was no transaction.
+   *
+   * @param event The reports that were saved or removed and the versions they were written at
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onCohortDataVersionChanged(CohortDataVersionChangedEvent event) {
+    Map<CohortDataVersionId, ReportScan> scans = new HashMap<>();
+    if (!event.removed()) {
+      for (HealthDataEntity entity : event.entities()) {
+        if (entity.getPrrBits() == null) {
+          continue;
+        }
+        scans
+            .computeIfAbsent(
+                new CohortDataVersionId(entity.getCohort(), entity.getParameterId()),
+                key -> new ReportScan(entity.getPrrBits().length()))
+            .add(entity.getPrrBits(), entity.getStepCount());
+      }
+    }
+    event
+        .versions()
+        .forEach(
+            (key, version) -> {
+              CohortAggregate aggregate = aggregates.get(key);
+              if (aggregate != null) {
+                aggregate.apply(version, event.removed(), scans.get(key));
+              }
+            });
+  }
+
+  /**
+   * Returns the aggregate of a cohort and parameter profile at its committed data version. An
+   * aggregate that is missing or behind the persisted version is recounted inside the database.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param messageBitSize Number of PRR bits of the parameter configuration
+   * @return The aggregated bit counts, or empty if the cohort has no reports
+   */
+  public Optional<BitCountSummary> findSummary(UUID cohort, UUID parameterId, int messageBitSize) {
+    CohortDataVersionId key = new CohortDataVersionId(cohort, parameterId);
+    CohortAggregate aggregate = aggregates.get(key);
+    BitCountSummary summary =
+        aggregate == null
+            ? null
+            : aggregate.snapshotAt(cohortDataVersionService.version(cohort, parameterId));
+    if (summary == null || summary.bitCounts().length != messageBitSize) {
+      CohortAggregate counted =
+          snapshotTemplate.execute(
+              status ->
+                  new CohortAggregate(
+                      cohortDataVersionService.version(cohort, parameterId),
+                      healthDataRepository.aggregateBitCounts(
+                          CohortReportFilter.of(cohort, parameterId, 0), messageBitSize)));
+      install(key, counted);
+      summary = counted.snapshot();
+    }
+    return summary.reportCount() == 0 ? Optional.empty() : Optional.of(summary);
+  }
+
+  /** Replaces the aggregate of a cohort unless the current one is more recent. */
+  private void install(CohortDataVersionId key, CohortAggregate counted) {
+    aggregates.merge(
+        key, counted, (current, next) -> current.version() > next.version() ? current : next);
+  }
+
+  /** Bit counts of one cohort and parameter profile at one data version. */
+  private static final class CohortAggregate {
+    private final long[] bitCounts;
+    private long reportCount;
+    private int maxStepCount;
+    private long version;
+
+    private CohortAggregate(long version, BitCountSummary summary) {
+      this.version = version;
+      this.bitCounts = summary.bitCounts().clone();
+      this.reportCount = summary.reportCount();
+      this.maxStepCount = summary.maxStepCount();
+    }
+
+    private synchronized long version() {
+      return version;
+    }
+
+    /**
+     * Advances the aggregate to the version an upload was written at. Versions it already covers
+     * are skipped; removals and versions that skip one outdate it, since it cannot tell which
+     * counts they changed.
+     */
+    private synchronized void apply(long next, boolean removed, ReportScan scan) {
+      if (version == OUTDATED || next <= version) {
+        return;
+      }
+      if (next != version + 1
+          || removed
+          || scan != null && scan.messageBitSize() != bitCounts.length) {
+        version = OUTDATED;
+        return;
+      }
+      if (scan != null) {
+        long[] counts = scan.bitCounts();
+        for (int i = 0; i < counts.length; i++) {
+          bitCounts[i] += counts[i];
+        }
+        reportCount += scan.reports();
+        maxStepCount = Math.max(maxStepCount, scan.maxValue());
+      }
+      version = next;
+    }
+
+    /** Returns the counts if the aggregate is at the persisted version, null otherwise. */
+    private synchronized BitCountSummary snapshotAt(long persistedVersion) {
+      return version == persistedVersion ? snapshot() : null;
+    }
+
+    private synchronized BitCountSummary snapshot() {
+      return new BitCountSummary(bitCounts.clone(), reportCount, maxStepCount);
+    }
+  }
+}
@@ -0,0 +1,22 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application event published by the {@link CohortDataVersionService} once it has incremented the
+ * data versions for a {@link HealthDataChangedEvent}, inside the same transaction. Listeners that
+ * keep derived data in memory use the versions to tell whether they have seen every change of a
+ * cohort.
+ *
+ * @param entities The reports that were written or removed
+ * @param removed true if the reports were deleted, false if they were saved
+ * @param versions The data version each touched cohort and parameter profile was incremented to
+ */
+public record CohortDataVersionChangedEvent(
+    List<HealthDataEntity> entities, boolean removed, Map<CohortDataVersionId, Long> versions) {}
@@ -0,0 +1,37 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+/**
+ * Version of the reports of a cohort and parameter profile. It is incremented in every transaction
+ * that saves or removes reports of the cohort, so it changes whenever the reports do, also when as
+ * many reports are removed as saved.
+ */
+@Entity
+@Table(name = "Cohort_data_version")
+public class CohortDataVersionEntity {
+
+  @EmbeddedId private CohortDataVersionId id;
+
+  /** Number of committed transactions that changed the reports. */
+  @Column(name = "Version")
+  private long version;
+
+  public CohortDataVersionEntity() {}
+
+  public CohortDataVersionId getId() {
+    return id;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+}
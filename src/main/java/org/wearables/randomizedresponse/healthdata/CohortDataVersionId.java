@@ -0,0 +1,50 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/** Composite key of a data version: cohort and parameter profile. */
+@Embeddable
+public class CohortDataVersionId implements Serializable {
+
+  @Column(name = "Cohort")
+  private UUID cohort;
+
+  @Column(name = "Parameter_id")
+  private UUID parameterId;
+
+  public CohortDataVersionId() {}
+
+  public CohortDataVersionId(UUID cohort, UUID parameterId) {
+    this.cohort = cohort;
+    this.parameterId = parameterId;
+  }
+
+  public UUID getCohort() {
+    return cohort;
+  }
+
+  public UUID getParameterId() {
+    return parameterId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof CohortDataVersionId that)) return false;
+    return Objects.equals(cohort, that.cohort) && Objects.equals(parameterId, that.parameterId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(cohort, parameterId);
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/** Repository for the data versions of the cohorts. */
+@Repository
+public interface CohortDataVersionRepository
+    extends JpaRepository<CohortDataVersionEntity, CohortDataVersionId>,
+        DataVersionIncrementRepository {
+
+  /**
+   * Finds the data version of a cohort and parameter profile by its primary key.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterId Identifier of the parameter profile
+   * @return The version, or empty if no report of the cohort was ever saved
+   */
+  @Query(
+      "select v.version from CohortDataVersionEntity v where v.id.cohort = :cohort"
+          + " and v.id.parameterId = :parameterId")
+  Optional<Long> findVersion(UUID cohort, UUID parameterId);
+}
@@ -0,0 +1,81 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains the data version of every cohort and parameter profile, which changes whenever reports
+ * of the cohort are saved or removed. The version is incremented inside the transaction that
+ * changes the reports, so it commits or rolls back together with them and is shared by all server
+ * instances.
+ */
+@Service
+public class CohortDataVersionService {
+
+  /** Order in which the versions of one change are locked. */
+  private static final Comparator<CohortDataVersionId> LOCK_ORDER =
+      Comparator.comparing(CohortDataVersionId::getCohort)
+          .thenComparing(CohortDataVersionId::getParameterId);
+
+  private final CohortDataVersionRepository cohortDataVersionRepository;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  public CohortDataVersionService(
+      CohortDataVersionRepository cohortDataVersionRepository,
+      ApplicationEventPublisher eventPublisher) {
+    this.cohortDataVersionRepository = cohortDataVersionRepository;
+    this.eventPublisher = eventPublisher;
+  }
+
+  /**
+   * Returns the committed data version of a cohort and parameter profile.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterId Identifier of the parameter profile
+   * @return The version, or 0 if no report of the cohort was ever saved
+   */
+  public long version(UUID cohort, UUID parameterId) {
+    return cohortDataVersionRepository.findVersion(cohort, parameterId).orElse(0L);
+  }
+
+  /**
+   * Increments the versions of the cohorts touched by saved or removed reports, inside the
+   * transaction that changed them, and publishes the new versions as a {@link
+   * CohortDataVersionChangedEvent}. Reports without cohort or parameter profile are ignored.
+   *
+   * @param event The reports that were saved or removed
+   */
+  @EventListener
+  @Transactional
+  public void onHealthDataChanged(HealthDataChangedEvent event) {
+    Set<CohortDataVersionId> touched = new TreeSet<>(LOCK_ORDER);
+    for (HealthDataEntity entity : event.entities()) {
+      if (entity.getCohort() == null || entity.getParameterId() == null) {
+        continue;
+      }
+      touched.add(new CohortDataVersionId(entity.getCohort(), entity.getParameterId()));
+    }
+    Map<CohortDataVersionId, Long> versions = new HashMap<>();
+    for (CohortDataVersionId id : touched) {
+      cohortDataVersionRepository.incrementVersion(id.getCohort(), id.getParameterId());
+      // The row stays locked by this transaction, so the version read back is the one it wrote
+      versions.put(id, version(id.getCohort(), id.getParameterId()));
+    }
+    eventPublisher.publishEvent(
+        new CohortDataVersionChangedEvent(event.entities(), event.removed(), versions));
+  }
+}
@@ -0,0 +1,26 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Outcome of one cohort of a batch decode, streamed back as soon as the cohort is decoded.
+ *
+ * @param cohort UUID of the cohort
+ * @param from Inclusive lower bound of the interval start, or null if the cohort was not restricted
+ * @param to Exclusive upper bound of the interval start, or null if the cohort was not restricted
+ * @param probabilities Probability per bin range, or null if the decode failed
+ * @param error Reason the decode failed, or null on success
+ */
+public record CohortDecodeResult(
+    UUID cohort,
+    LocalDateTime from,
+    LocalDateTime to,
+    Map<String, Double> probabilities,
+    String error) {}
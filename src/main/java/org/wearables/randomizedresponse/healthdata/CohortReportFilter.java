@@ -0,0 +1,44 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Selects the reports of a cohort and parameter profile, optionally restricted to an interval start
+ * range and a maximum number of reports.
+ *
+ * @param cohort Cohort identifier
+ * @param parameterId Identifier of the parameter configuration
+ * @param from Inclusive lower bound of the interval start, or null for no bound
+ * @param to Exclusive upper bound of the interval start, or null for no bound
+ * @param limit Maximum number of reports, the ones with the lowest report ids, or 0 for no limit
+ */
+public record CohortReportFilter(
+    UUID cohort, UUID parameterId, LocalDateTime from, LocalDateTime to, int limit) {
+
+  /**
+   * Creates a filter for the first {@code limit} reports of a cohort without a time restriction.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param limit Maximum number of reports, or 0 for no limit
+   * @return The filter
+   */
+  public static CohortReportFilter of(UUID cohort, UUID parameterId, int limit) {
+    return new CohortReportFilter(cohort, parameterId, null, null, limit);
+  }
+
+  /**
+   * Returns this filter without its report limit.
+   *
+   * @return The filter selecting every matching report
+   */
+  public CohortReportFilter withoutLimit() {
+    return new CohortReportFilter(cohort, parameterId, from, to, 0);
+  }
+}
@@ -0,0 +1,23 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+
+/**
+ * Unmanaged projection of a health data row holding only the columns needed to aggregate bit counts
+ * per cohort and parameter profile, and per time bucket for the rollups.
+ *
+ * @param cohort Cohort of the report
+ * @param parameterId Parameter profile the report was encoded with
+ * @param prr Packed permanent randomized response
+ * @param stepCount Number of steps recorded during the interval
+ * @param intervalStart Start timestamp of the reporting interval
+ */
+public record CohortReportRow(
+    UUID cohort, UUID parameterId, BitVector prr, int stepCount, LocalDateTime intervalStart) {}
@@ -0,0 +1,52 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.UUID;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+
+/** Repository fragment that streams the reports of a cohort without keeping them in memory. */
+public interface CohortReportStreamRepository {
+
+  /**
+   * Streams the PRR and step count columns of the selected reports through a forward-only cursor
+   * and adds them to a scan. No entities are created, so memory use does not grow with the number
+   * of reports. Must be called inside a transaction.
+   *
+   * @param filter Selects the reports to stream
+   * @param fetchSize Number of rows the JDBC driver fetches per round trip
+   * @param scan Scan the reports are added to; its message bit size selects the bits to count
+   */
+  default void scanReportColumns(CohortReportFilter filter, int fetchSize, ReportScan scan) {
+    scanReportColumns(filter, null, null, fetchSize, scan);
+  }
+
+  /**
+   * Streams the PRR and step count columns of the selected reports whose report id falls into a key
+   * range, see {@link #scanReportColumns(CohortReportFilter, int, ReportScan)}. Disjoint key ranges
+   * can be scanned concurrently on separate connections.
+   *
+   * @param filter Selects the reports to stream
+   * @param fromReportId Inclusive lower bound of the report id, or null for no bound
+   * @param toReportId Exclusive upper bound of the report id, or null for no bound
+   * @param fetchSize Number of rows the JDBC driver fetches per round trip
+   * @param scan Scan the reports are added to; its message bit size selects the bits to count
+   */
+  void scanReportColumns(
+      CohortReportFilter filter,
+      UUID fromReportId,
+      UUID toReportId,
+      int fetchSize,
+      ReportScan scan);
+
+  /**
+   * Counts the reports matched by a filter, ignoring its report limit.
+   *
+   * @param filter Selects the reports to count
+   * @return Number of matching reports
+   */
+  long countReports(CohortReportFilter filter);
+}
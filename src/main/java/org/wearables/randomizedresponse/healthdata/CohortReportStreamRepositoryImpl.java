@@ -0,0 +1,168 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import org.hibernate.Session;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+
+/**
+ * JDBC implementation of {@link CohortReportStreamRepository}.
+ *
+ * <p>The decoder only needs the packed PRR and the step count of a report, so the query selects
+ * just those two columns on the connection of the current persistence context. Hibernate is not
+ * involved in reading the rows: nothing is registered in the first-level cache or snapshotted for
+ * dirty checking, and no {@link BitVector} is created per row. The PRR bytes are unpacked straight
+ * into a reusable word buffer and the step counts into an {@code int[]}, which are handed to the
+ * scan once per batch.
+ *
+ * <p>The result set is forward-only and read-only, and the fetch size keeps the driver from
+ * buffering the whole result; on PostgreSQL this requires the surrounding transaction.
+ */
+public class CohortReportStreamRepositoryImpl implements CohortReportStreamRepository {
+
+  /** Number of reports buffered before they are added to the scan. */
+  private static final int BATCH_SIZE = 1024;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public void scanReportColumns(
+      CohortReportFilter filter,
+      UUID fromReportId,
+      UUID toReportId,
+      int fetchSize,
+      ReportScan scan) {
+    entityManager
+        .unwrap(Session.class)
+        .doWork(
+            connection -> {
+              try (PreparedStatement statement =
+                  connection.prepareStatement(
+                      buildQuery(filter, fromReportId != null, toReportId != null),
+                      ResultSet.TYPE_FORWARD_ONLY,
+                      ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                bind(statement, filter, fromReportId, toReportId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                  read(resultSet, scan);
+                }
+              }
+            });
+  }
+
+  @Override
+  public long countReports(CohortReportFilter filter) {
+    return entityManager
+        .unwrap(Session.class)
+        .doReturningWork(
+            connection -> {
+              try (PreparedStatement statement =
+                  connection.prepareStatement(buildCountQuery(filter))) {
+                bind(statement, filter.withoutLimit(), null, null);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                  resultSet.next();
+                  return resultSet.getLong(1);
+                }
+              }
+            });
+  }
+
+  /**
+   * Builds the count query for a filter; its report limit is ignored.
+   *
+   * @param filter Selects the reports to count
+   * @return SQL with positional parameters in the order of {@link #bind}
+   */
+  static String buildCountQuery(CohortReportFilter filter) {
+    StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM health_data h");
+    appendConditions(sql, filter);
+    return sql.toString();
+  }
+
+  /**
+   * Builds the column query for a filter and an optional report id range.
+   *
+   * @param filter Selects the reports to stream
+   * @param fromReportId Whether the report id has an inclusive lower bound
+   * @param toReportId Whether the report id has an exclusive upper bound
+   * @return SQL with positional parameters in the order of {@link #bind}
+   */
+  static String buildQuery(CohortReportFilter filter, boolean fromReportId, boolean toReportId) {
+    StringBuilder sql = new StringBuilder("SELECT h.prr, h.step_count FROM health_data h");
+    appendConditions(sql, filter);
+    if (fromReportId) {
+      sql.append(" AND h.report_id >= ?");
+    }
+    if (toReportId) {
+      sql.append(" AND h.report_id < ?");
+    }
+    if (filter.limit() > 0) {
+      sql.append(" ORDER BY h.report_id LIMIT ?");
+    }
+    return sql.toString();
+  }
+
+  private static void appendConditions(StringBuilder sql, CohortReportFilter filter) {
+    sql.append(" WHERE h.cohort = ? AND h.parameter_id = ?");
+    if (filter.from() != null) {
+      sql.append(" AND h.interval_start >= ?");
+    }
+    if (filter.to() != null) {
+      sql.append(" AND h.interval_start < ?");
+    }
+  }
+
+  private static void bind(
+      PreparedStatement statement, CohortReportFilter filter, UUID fromReportId, UUID toReportId)
+      throws SQLException {
+    int index = 1;
+    statement.setObject(index++, filter.cohort());
+    statement.setObject(index++, filter.parameterId());
+    if (filter.from() != null) {
+      statement.setObject(index++, filter.from());
+    }
+    if (filter.to() != null) {
+      statement.setObject(index++, filter.to());
+    }
+    if (fromReportId != null) {
+      statement.setObject(index++, fromReportId);
+    }
+    if (toReportId != null) {
+      statement.setObject(index++, toReportId);
+    }
+    if (filter.limit() > 0) {
+      statement.setInt(index, filter.limit());
+    }
+  }
+
+  /** Unpacks the rows into the batch buffers and adds every full batch to the scan. */
+  private static void read(ResultSet resultSet, ReportScan scan) throws SQLException {
+    int wordsPerReport = BitVector.wordsFor(scan.messageBitSize());
+    long[] words = new long[BATCH_SIZE * wordsPerReport];
+    int[] stepCounts = new int[BATCH_SIZE];
+    int buffered = 0;
+    while (resultSet.next()) {
+      byte[] prr = resultSet.getBytes(1);
+      if (prr == null) {
+        continue;
+      }
+      BitVector.unpackBytes(prr, words, buffered * wordsPerReport, wordsPerReport);
+      stepCounts[buffered] = resultSet.getInt(2);
+      if (++buffered == BATCH_SIZE) {
+        scan.addAll(words, stepCounts, buffered);
+        buffered = 0;
+      }
+    }
+    scan.addAll(words, stepCounts, buffered);
+  }
+}
@@ -0,0 +1,23 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.UUID;
+
+/** Repository fragment that increments data versions without racing other writers. */
+public interface DataVersionIncrementRepository {
+
+  /**
+   * Increments the data version of a cohort and parameter profile, creating it at version 1 if it
+   * does not exist. The row stays locked until the end of the transaction, so concurrent
+   * increments, also from other server instances, are applied one after another.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterId Identifier of the parameter profile
+   * @throws UnsupportedOperationException if the database dialect is not supported
+   */
+  void incrementVersion(UUID cohort, UUID parameterId);
+}
@@ -0,0 +1,68 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.UUID;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+
+/**
+ * Native SQL implementation of {@link DataVersionIncrementRepository} for PostgreSQL and H2; other
+ * databases are rejected on startup.
+ *
+ * <p>Both insert and increment in a single statement: PostgreSQL with {@code ON CONFLICT DO
+ * UPDATE}, H2 with a {@code MERGE} that updates a matching row and inserts otherwise.
+ */
+public class DataVersionIncrementRepositoryImpl implements DataVersionIncrementRepository {
+
+  private static final String POSTGRESQL_UPSERT =
+      "INSERT INTO cohort_data_version (cohort, parameter_id, version) VALUES (?1, ?2, 1)"
+          + " ON CONFLICT (cohort, parameter_id)"
+          + " DO UPDATE SET version = cohort_data_version.version + 1";
+
+  private static final String H2_MERGE =
+      "MERGE INTO cohort_data_version r USING (VALUES (CAST(?1 AS UUID), CAST(?2 AS UUID)))"
+          + " s (cohort, parameter_id) ON r.cohort = s.cohort AND r.parameter_id = s.parameter_id"
+          + " WHEN MATCHED THEN UPDATE SET version = r.version + 1"
+          + " WHEN NOT MATCHED THEN INSERT (cohort, parameter_id, version)"
+          + " VALUES (s.cohort, s.parameter_id, 1)";
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public void incrementVersion(UUID cohort, UUID parameterId) {
+    entityManager
+        .createNativeQuery(incrementStatement(dialect()))
+        .setParameter(1, cohort)
+        .setParameter(2, parameterId)
+        .executeUpdate();
+  }
+
+  static String incrementStatement(Dialect dialect) {
+    if (dialect instanceof PostgreSQLDialect) {
+      return POSTGRESQL_UPSERT;
+    }
+    if (dialect instanceof H2Dialect) {
+      return H2_MERGE;
+    }
+    throw new UnsupportedOperationException(
+        "Data versions are not supported for " + dialect.getClass().getSimpleName());
+  }
+
+  /** Fails on startup if versions cannot be incremented in this database. */
+  @PostConstruct
+  void checkDialect() {
+    incrementStatement(dialect());
+  }
+
+  private Dialect dialect() {
+    return NativeSqlDialect.of(entityManager);
+  }
+}
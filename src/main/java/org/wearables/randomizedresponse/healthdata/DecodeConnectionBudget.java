@@ -0,0 +1,97 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.stereotype.Component;
+
+/**
+ * Number of pooled connections the decodes of this instance may hold at the same time: half of the
+ * Hikari pool, so uploads always find a free connection while decodes read.
+ *
+ * <p>The budget is shared by every thread that reads reports for a decode: request threads, decode
+ * job workers, batch decode workers and the partitions of a streamed read. A read reserves all the
+ * connections it needs before it starts and returns them when it is done, so the pools of these
+ * threads may be larger than the budget; the surplus threads wait for a reservation instead of for
+ * a connection, and a partitioned read never holds some of its connections while waiting for the
+ * rest.
+ */
+@Component
+public class DecodeConnectionBudget {
+
+  /** Number of connections that may be reserved at the same time. */
+  private final int connections;
+
+  private final Semaphore permits;
+
+  /**
+   * Creates the budget from the pool size of the data source.
+   *
+   * @param dataSource Data source of the reports
+   */
+  @Autowired
+  public DecodeConnectionBudget(DataSource dataSource) {
+    this(connectionBudget(dataSource));
+  }
+
+  public DecodeConnectionBudget(int connections) {
+    this.connections = connections;
+    this.permits = new Semaphore(connections, true);
+  }
+
+  /**
+   * Returns how many connections may be reserved at the same time.
+   *
+   * @return Size of the budget
+   */
+  public int connections() {
+    return connections;
+  }
+
+  /**
+   * Runs a read once the connections it needs are reserved. A read that needs more connections than
+   * the budget holds reserves the whole budget.
+   *
+   * @param needed Number of connections the read holds at the same time
+   * @param read The read
+   * @param <T> Type of the result
+   * @return Result of the read
+   * @throws IllegalStateException if the calling thread is interrupted while waiting
+   */
+  public <T> T read(int needed, Supplier<T> read) {
+    int reserved = Math.clamp(needed, 1, connections);
+    try {
+      permits.acquire(reserved);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a database connection", e);
+    }
+    try {
+      return read.get();
+    } finally {
+      permits.release(reserved);
+    }
+  }
+
+  /**
+   * Returns how many connections the decodes may use: half of the Hikari pool, or no limit if the
+   * data source is not pooled by Hikari.
+   *
+   * @param dataSource Data source of the reports
+   * @return Size of the budget
+   */
+  static int connectionBudget(DataSource dataSource) {
+    HikariDataSource hikari =
+        DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class);
+    return hikari == null ? Integer.MAX_VALUE : Math.max(1, hikari.getMaximumPoolSize() / 2);
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Snapshot of an asynchronous decode job. Every state change produces a new snapshot, so a job can
+ * be read by any thread while its worker moves it on.
+ *
+ * @param id Identifier returned to the client
+ * @param state Progress of the job
+ * @param stage Name of the decode stage the job is in, for example {@code fetch} or {@code
+ *     regression}; the last stage it started once it is finished, null before the first stage
+ * @param stageIndex Position of the stage among the stages the job started, counted from 0, or -1
+ *     before the first stage
+ * @param submittedAt Time the job was accepted
+ * @param startedAt Time a worker picked the job up, or null while queued
+ * @param finishedAt Time the job completed or failed, or null while it is not finished
+ * @param result Probability per bin range once the job has completed, otherwise null
+ * @param error Reason of the failure once the job has failed, otherwise null
+ */
+public record DecodeJob(
+    UUID id,
+    DecodeJobState state,
+    String stage,
+    int stageIndex,
+    Instant submittedAt,
+    Instant startedAt,
+    Instant finishedAt,
+    Map<String, Double> result,
+    String error) {
+
+  /**
+   * Creates a job that waits for a worker.
+   *
+   * @param id Identifier of the job
+   * @return Queued job
+   */
+  public static DecodeJob queued(UUID id) {
+    return new DecodeJob(
+        id, DecodeJobState.QUEUED, null, -1, Instant.now(), null, null, null, null);
+  }
+
+  /**
+   * Returns this job as picked up by a worker.
+   *
+   * @return Running job
+   */
+  public DecodeJob running() {
+    return new DecodeJob(
+        id, DecodeJobState.RUNNING, null, -1, submittedAt, Instant.now(), null, null, null);
+  }
+
+  /**
+   * Returns this running job as moved on to the next decode stage.
+   *
+   * @param nextStage Name of the stage that started
+   * @return Running job in the stage
+   */
+  public DecodeJob inStage(String nextStage) {
+    return new DecodeJob(
+        id, state, nextStage, stageIndex + 1, submittedAt, startedAt, null, null, null);
+  }
+
+  /**
+   * Returns this job with its result.
+   *
+   * @param result Probability per bin range
+   * @return Completed job
+   */
+  public DecodeJob completed(Map<String, Double> result) {
+    return new DecodeJob(
+        id,
+        DecodeJobState.COMPLETED,
+        stage,
+        stageIndex,
+        submittedAt,
+        startedAt,
+        Instant.now(),
+        result,
+        null);
+  }
+
+  /**
+   * Returns this job with the reason of its failure.
+   *
+   * @param error Reason of the failure
+   * @return Failed job
+   */
+  public DecodeJob failed(String error) {
+    return new DecodeJob(
+        id,
+        DecodeJobState.FAILED,
+        stage,
+        stageIndex,
+        submittedAt,
+        startedAt,
+        Instant.now(),
+        null,
+        error);
+  }
+}
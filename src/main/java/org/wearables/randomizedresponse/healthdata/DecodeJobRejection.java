@@ -0,0 +1,14 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+/** What happens to a decode job submitted while all workers are busy and the queue is full. */
+public enum DecodeJobRejection {
+  /** The job is refused and the client has to retry later. */
+  REJECT,
+  /** The job runs on the request thread, which slows the client down instead of refusing it. */
+  CALLER_RUNS
+}
@@ -0,0 +1,200 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodeInstrumentation;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+
+/**
+ * Runs decodes in the background so a large cohort does not hold a request thread for the whole
+ * fetch and regression.
+ *
+ * <p>Jobs run on a small dedicated pool with a bounded queue, so heavy analytics cannot take the
+ * threads of the upload endpoints; their reads reserve connections in the {@link
+ * DecodeConnectionBudget} shared with the other decodes, so they cannot take the connections of the
+ * uploads either. A job that finds the queue full is rejected or run on the calling thread,
+ * depending on the configured {@link DecodeJobRejection}. Unfinished jobs are kept until they
+ * finish; finished jobs are kept in a store bounded by size and age, after which polling them
+ * reports an unknown job. A running job reports the decode stage it is in, as observed by the
+ * {@link DecodeInstrumentation} on the worker thread.
+ */
+@Service
+public class DecodeJobService implements DisposableBean {
+
+  private final Logger logger = LoggerFactory.getLogger(DecodeJobService.class);
+
+  private final ThreadPoolExecutor executor;
+
+  /** Reports the stages a job starts on its worker. */
+  private final DecodeInstrumentation instrumentation;
+
+  /** Queued and running jobs; these are never evicted. */
+  private final Map<UUID, DecodeJob> activeJobs = new ConcurrentHashMap<>();
+
+  /** Completed and failed jobs, evicted by size and age. */
+  private final Cache<UUID, DecodeJob> finishedJobs;
+
+  /**
+   * Creates the job service with the pool, queue and store sizes of the hyperparameter
+   * configuration.
+   *
+   * @param hyperParameterConfiguration Configuration providing the job settings
+   * @param instrumentation Instrumentation reporting the stages of the jobs
+   */
+  @Autowired
+  public DecodeJobService(
+      HyperParameterConfiguration hyperParameterConfiguration,
+      DecodeInstrumentation instrumentation) {
+    this(
+        hyperParameterConfiguration.getDecodeJobPoolSize(),
+        hyperParameterConfiguration.getDecodeJobQueueCapacity(),
+        hyperParameterConfiguration.getDecodeJobRejection(),
+        hyperParameterConfiguration.getDecodeJobResultStoreSize(),
+        Duration.ofSeconds(hyperParameterConfiguration.getDecodeJobResultTtlSeconds()),
+        Ticker.systemTicker(),
+        instrumentation);
+  }
+
+  /**
+   * Creates a job service.
+   *
+   * @param poolSize Number of worker threads
+   * @param queueCapacity Number of jobs that may wait for a worker
+   * @param rejection What happens to a job that finds the queue full
+   * @param resultStoreSize Maximum number of finished jobs kept for polling
+   * @param resultTtl How long a finished job is kept for polling
+   * @param ticker Time source of the result store
+   * @param instrumentation Instrumentation reporting the stages of the jobs
+   */
+  public DecodeJobService(
+      int poolSize,
+      int queueCapacity,
+      DecodeJobRejection rejection,
+      int resultStoreSize,
+      Duration resultTtl,
+      Ticker ticker,
+      DecodeInstrumentation instrumentation) {
+    this.instrumentation = instrumentation;
+    BlockingQueue<Runnable> queue =
+        queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+    RejectedExecutionHandler handler =
+        rejection == DecodeJobRejection.CALLER_RUNS
+            ? new ThreadPoolExecutor.CallerRunsPolicy()
+            : new ThreadPoolExecutor.AbortPolicy();
+    this.executor =
+        new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            queue,
+            new ThreadFactoryBuilder().setNameFormat("decode-job-%d").setDaemon(true).build(),
+            handler);
+    this.finishedJobs =
+        CacheBuilder.newBuilder()
+            .maximumSize(resultStoreSize)
+            .expireAfterWrite(resultTtl)
+            .ticker(ticker)
+            .build();
+  }
+
+  /**
+   * Queues a decode.
+   *
+   * @param decode Decode to run; a {@link ResponseStatusException} it throws becomes the reason of
+   *     the failed job
+   * @return The queued job, or the finished job if it ran on the calling thread
+   * @throws RejectedExecutionException if the queue is full and jobs are rejected
+   */
+  public DecodeJob submit(Callable<Map<String, Double>> decode) {
+    DecodeJob job = DecodeJob.queued(UUID.randomUUID());
+    activeJobs.put(job.id(), job);
+    try {
+      executor.execute(() -> run(job, decode));
+    } catch (RejectedExecutionException e) {
+      activeJobs.remove(job.id());
+      throw e;
+    }
+    return find(job.id()).orElse(job);
+  }
+
+  /**
+   * Returns the current snapshot of a job.
+   *
+   * @param id Identifier of the job
+   * @return The job, or empty if it is unknown or its result has expired
+   */
+  public Optional<DecodeJob> find(UUID id) {
+    DecodeJob active = activeJobs.get(id);
+    if (active != null) {
+      return Optional.of(active);
+    }
+    return Optional.ofNullable(finishedJobs.getIfPresent(id));
+  }
+
+  /**
+   * Returns the number of jobs waiting for a worker.
+   *
+   * @return Queue depth
+   */
+  public int queuedJobs() {
+    return executor.getQueue().size();
+  }
+
+  /** Stops the workers; running decodes are interrupted. */
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private void run(DecodeJob queued, Callable<Map<String, Double>> decode) {
+    DecodeJob running = queued.running();
+    activeJobs.put(running.id(), running);
+    Map<String, Double> result = null;
+    String error = null;
+    boolean failed = true;
+    try {
+      result =
+          instrumentation.observeStages(
+              stage -> activeJobs.computeIfPresent(running.id(), (id, job) -> job.inStage(stage)),
+              decode);
+      failed = false;
+    } catch (ResponseStatusException e) {
+      error = e.getReason();
+    } catch (Exception e) {
+      logger.warn("Decode job {} failed", running.id(), e);
+      error = e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+    // Finish the latest snapshot, which holds the last stage the job started
+    DecodeJob last = activeJobs.getOrDefault(running.id(), running);
+    DecodeJob finished = failed ? last.failed(error) : last.completed(result);
+    finishedJobs.put(finished.id(), finished);
+    activeJobs.remove(finished.id());
+  }
+}
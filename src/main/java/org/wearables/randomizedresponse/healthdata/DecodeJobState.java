@@ -0,0 +1,27 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+/** Progress of an asynchronous decode job. */
+public enum DecodeJobState {
+  /** Waiting for a worker. */
+  QUEUED,
+  /** The bit counts are being fetched and decoded. */
+  RUNNING,
+  /** The decode finished and the result is available. */
+  COMPLETED,
+  /** The decode failed; the error describes why. */
+  FAILED;
+
+  /**
+   * Returns whether the job will not change anymore.
+   *
+   * @return true for completed and failed jobs
+   */
+  public boolean isFinished() {
+    return this == COMPLETED || this == FAILED;
+  }
+}
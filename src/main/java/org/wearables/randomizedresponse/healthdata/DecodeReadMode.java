@@ -0,0 +1,17 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+/** How the bit counts of a cohort are read from the database when no live aggregate is used. */
+public enum DecodeReadMode {
+  /** The bits are summed inside the database and only the aggregate is transferred. */
+  AGGREGATE,
+  /**
+   * The reports are streamed through a forward-only cursor and counted while they are read, for
+   * databases without the native bit functions.
+   */
+  STREAM
+}
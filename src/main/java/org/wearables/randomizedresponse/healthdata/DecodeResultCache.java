@@ -0,0 +1,153 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterChangedEvent;
+
+/**
+ * Size-bounded cache of decoded probability distributions, so repeated identical decode requests
+ * skip the fetch, aggregation and regression.
+ *
+ * <p>Results are keyed by the request parameters and the data version of the cohort and parameter
+ * profile kept by the {@link CohortDataVersionService}. Every transaction that saves or removes
+ * reports, through any server instance, increments the version, so stale results are no longer
+ * requested and age out of the cache. Looking up the version reads a single row by its key.
+ *
+ * <p>Concurrent misses on the same key are computed once; the other callers wait for that result.
+ * Hit, miss and eviction counts are recorded.
+ */
+@Service
+public class DecodeResultCache {
+
+  /** Data version per cohort and parameter profile. */
+  private final ToLongBiFunction<UUID, UUID> dataVersion;
+
+  private final Cache<DecodeResultKey, Optional<Map<String, Double>>> cache;
+
+  /**
+   * Creates the cache with the size of the hyperparameter configuration.
+   *
+   * @param hyperParameterConfiguration Configuration providing the cache size
+   * @param cohortDataVersionService Service providing the data versions
+   */
+  @Autowired
+  public DecodeResultCache(
+      HyperParameterConfiguration hyperParameterConfiguration,
+      CohortDataVersionService cohortDataVersionService) {
+    this(hyperParameterConfiguration.getDecodeResultCacheSize(), cohortDataVersionService::version);
+  }
+
+  public DecodeResultCache(long maximumSize, ToLongBiFunction<UUID, UUID> dataVersion) {
+    this.dataVersion = dataVersion;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * Returns the decoded distribution of a request, decoding it if no result of the current data
+   * version is cached.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterId Identifier of the parameter profile
+   * @param numberOfReports Maximum number of reports included in the decode
+   * @param from Optional inclusive lower bound of the interval start of the reports
+   * @param to Optional exclusive upper bound of the interval start of the reports
+   * @param decode Decode to run on a miss; returns empty if no report matches
+   * @return The probability per bin range, or empty if no report matches
+   */
+  public Optional<Map<String, Double>> get(
+      UUID cohort,
+      UUID parameterId,
+      int numberOfReports,
+      LocalDateTime from,
+      LocalDateTime to,
+      Supplier<Optional<Map<String, Double>>> decode) {
+    DecodeResultKey key =
+        new DecodeResultKey(
+            cohort, parameterId, numberOfReports, from, to, dataVersion(cohort, parameterId));
+    try {
+      return cache.get(key, () -> decode.get().map(Collections::unmodifiableMap));
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the current data version of a cohort and parameter profile.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterId Identifier of the parameter profile
+   * @return Committed data version of the cohort and parameter profile
+   */
+  public long dataVersion(UUID cohort, UUID parameterId) {
+    return dataVersion.applyAsLong(cohort, parameterId);
+  }
+
+  /**
+   * Drops all results once a parameter profile has been saved, since a profile may have been
+   * changed in place.
+   *
+   * @param event The saved profile
+   */
+  @EventListener
+  public void onParameterChanged(ParameterChangedEvent event) {
+    invalidateAll();
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts since the cache was created.
+   *
+   * @return Snapshot of the cache statistics
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of cached results.
+   *
+   * @return Approximate number of entries
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Discards all cached results. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Request parameters of a decode together with the data version they were decoded at. */
+  private record DecodeResultKey(
+      UUID cohort,
+      UUID parameterId,
+      int numberOfReports,
+      LocalDateTime from,
+      LocalDateTime to,
+      long dataVersion) {}
+}
@@ -0,0 +1,19 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.util.List;
+
+/**
+ * Application event published by the {@link HealthDataService} whenever health data reports are
+ * written to or removed from the database. Listeners that maintain derived data react to it inside
+ * the surrounding transaction, like the rollups and the {@link CohortDataVersionService}, whose
+ * {@link CohortDataVersionChangedEvent} the live cohort aggregates follow once it has committed.
+ *
+ * @param entities The reports that were written or removed
+ * @param removed true if the reports were deleted, false if they were saved
+ */
+public record HealthDataChangedEvent(List<HealthDataEntity> entities, boolean removed) {}
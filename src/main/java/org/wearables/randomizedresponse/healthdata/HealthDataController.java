@@ -6,18 +6,26 @@
 package org.wearables.randomizedresponse.healthdata;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
-import org.wearables.randomizedresponse.differentialprivacy.Report;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodeInstrumentation;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.DecoderService;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.SubstanceMapper;
@@ -35,6 +43,21 @@ import org.wearables.randomizedresponse.utilities.MappingUtils;
 @RequestMapping("/healthdata")
 public class HealthDataController {
 
+  private static final String DIVISION_BY_ZERO_MESSAGE =
+      "The given Parameter Entity will cause division by zero.";
+
+  private static final String EMPTY_HEALTH_DATA_MESSAGE =
+      "The Health data for your parameters is empty.";
+
+  /** Largest number of reports returned by one slice of {@link #getReportSlice}. */
+  private static final int MAX_SLICE_SIZE = 1000;
+
+  /** Stage name of counting the bits of a cohort inside the database or the rollups. */
+  private static final String FETCH_STAGE = "fetch";
+
+  /** Stage name of writing a decoded distribution as JSON. */
+  private static final String SERIALIZE_STAGE = "serialize";
+
   /** Utility for mapping and JSON (de)serialization support. */
   private final MappingUtils mappingUtils;
 
@@ -50,40 +73,89 @@ public class HealthDataController {
   private final SubstanceMapper substanceMapper;
   private final HyperParameterConfiguration hyperParameterConfiguration;
 
+  /** Live bit counts per cohort, used to skip the scan when they cover the request. */
+  private final CohortAggregateService cohortAggregateService;
+
+  /** Hourly and daily bit counts per cohort, used to decode time ranges. */
+  private final HealthDataRollupService healthDataRollupService;
+
+  /** Runs decodes in the background for the job endpoints. */
+  private final DecodeJobService decodeJobService;
+
+  /** Decoded distributions of repeated requests, keyed by the data version of the cohort. */
+  private final DecodeResultCache decodeResultCache;
+
+  /** Decodes the cohorts of a batch in parallel. */
+  private final BatchDecodeService batchDecodeService;
+
+  /** Timers and JFR events of the fetch and serialization stages. */
+  private final DecodeInstrumentation instrumentation;
+
+  /** Streams the reports of a cohort over several connections in the stream read mode. */
+  private final PartitionedReportScanService partitionedReportScanService;
+
+  /** Parses uploads from the request stream and saves them in batches. */
+  private final HealthDataIngestService healthDataIngestService;
+
+  /** Connections the decode reads of all request, job and batch threads may hold at once. */
+  private final DecodeConnectionBudget connectionBudget;
+
   public HealthDataController(
       MappingUtils mappingUtils,
       DecoderService<HealthDataEntity> decoderService,
       ParameterService parameterService,
       HealthDataService healthDataService,
       SubstanceMapper substanceMapper,
-      HyperParameterConfiguration hyperParameterConfiguration) {
+      HyperParameterConfiguration hyperParameterConfiguration,
+      CohortAggregateService cohortAggregateService,
+      HealthDataRollupService healthDataRollupService,
+      DecodeJobService decodeJobService,
+      DecodeResultCache decodeResultCache,
+      BatchDecodeService batchDecodeService,
+      DecodeInstrumentation instrumentation,
+      PartitionedReportScanService partitionedReportScanService,
+      HealthDataIngestService healthDataIngestService,
+      DecodeConnectionBudget connectionBudget) {
     this.mappingUtils = mappingUtils;
     this.decoderService = decoderService;
     this.parameterService = parameterService;
     this.healthDataService = healthDataService;
     this.substanceMapper = substanceMapper;
     this.hyperParameterConfiguration = hyperParameterConfiguration;
+    this.cohortAggregateService = cohortAggregateService;
+    this.healthDataRollupService = healthDataRollupService;
+    this.decodeJobService = decodeJobService;
+    this.decodeResultCache = decodeResultCache;
+    this.batchDecodeService = batchDecodeService;
+    this.instrumentation = instrumentation;
+    this.partitionedReportScanService = partitionedReportScanService;
+    this.healthDataIngestService = healthDataIngestService;
+    this.connectionBudget = connectionBudget;
   }
 
   /**
-   * Uploads health data in JSON format. The request body is deserialized into a Report containing
-   * HealthData objects, which are then mapped to entities and persisted. Returns 204 No Content if
-   * the parsed report yields no entities.
+   * Uploads health data in JSON format. The request body is parsed as a stream, every HealthData
+   * value is mapped to an entity as it is read, and the entities are persisted in batches of {@code
+   * default.upload-batch-size}. Returns 204 No Content if the report contains no values, and 400
+   * Bad Request if the body is not a valid JSON report or the parameter, device or cohort id is
+   * malformed, repeated or missing.
    *
-   * @param body JSON string containing the health data report
-   * @return ResponseEntity with HTTP 200 OK if saved, HTTP 204 No Content if empty, or HTTP 400 Bad
-   *     Request if the payload cannot be processed
+   * @param body Stream of the JSON health data report
+   * @return ResponseEntity with HTTP 200 OK if saved or HTTP 204 No Content if empty
+   * @throws IOException if the body cannot be read
    */
   @PostMapping(path = "/upload", consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> postHealthData(@RequestBody String body)
-      throws JsonProcessingException {
-    Report<HealthData> report =
-        mappingUtils.objectMapper.readValue(body, new TypeReference<Report<HealthData>>() {});
-    List<HealthDataEntity> entities = healthDataService.mapToHealthDataEntities(report);
-    if (entities.isEmpty()) {
+  public ResponseEntity<Object> postHealthData(InputStream body) throws IOException {
+    int saved;
+    try {
+      saved =
+          healthDataIngestService.ingest(body, hyperParameterConfiguration.getUploadBatchSize());
+    } catch (IllegalArgumentException | JsonProcessingException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+    if (saved == 0) {
       return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
-    healthDataService.saveAll(entities);
     return ResponseEntity.ok().build();
   }
 
@@ -117,13 +189,57 @@ public class HealthDataController {
     return ResponseEntity.ok().body(healthDataEntities);
   }
 
+  /**
+   * Pages through the raw reports of a cohort and parameter profile in report id order. The first
+   * slice is requested without {@code after}; every further slice with the {@code next} token of
+   * the previous one. The response contains no token once the last slice is reached.
+   *
+   * <p>Returns 400 Bad Request if the size is not between 1 and {@value #MAX_SLICE_SIZE} or the
+   * token is malformed.
+   *
+   * @param cohort UUID of the cohort whose reports should be returned
+   * @param parameterProfile name of the parameter profile the reports were randomized with
+   * @param size maximum number of reports in the slice
+   * @param after optional continuation token of the previous slice
+   * @return ResponseEntity with the {@link ReportSlice}
+   */
+  @GetMapping(path = "/reports", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getReportSlice(
+      @RequestParam UUID cohort,
+      @RequestParam String parameterProfile,
+      @RequestParam(defaultValue = "100") int size,
+      @RequestParam(required = false) String after) {
+    if (size < 1 || size > MAX_SLICE_SIZE)
+      return new ResponseEntity<>(
+          "The slice size must be between 1 and " + MAX_SLICE_SIZE + ".", HttpStatus.BAD_REQUEST);
+    ParameterEntity parameterEntity = resolveParameterEntity(parameterProfile);
+    try {
+      return ResponseEntity.ok()
+          .body(
+              healthDataService.getSliceOfCohortAndParameterId(
+                  cohort, parameterEntity.getParameterId(), after, size));
+    } catch (IllegalArgumentException e) {
+      return new ResponseEntity<>("Invalid continuation token.", HttpStatus.BAD_REQUEST);
+    }
+  }
+
   /**
    * Decodes randomized response health data for a cohort using a specified parameter profile.
    *
-   * <p>This endpoint performs the following steps: 1) Resolves the parameter profile. 2) Fetches a
-   * page of cohort entities for the associated parameter id. 3) Builds a Substance describing the
-   * decoding task and runs the decoder pipeline. 4) Returns the resulting probability distribution
-   * as a pretty-printed JSON string.
+   * <p>This endpoint performs the following steps: 1) Resolves the parameter profile. 2) Counts the
+   * bits of up to {@code numberOfReports} cohort reports for the associated parameter id inside the
+   * database. 3) Builds a Substance from the counts and runs the decoder pipeline. 4) Returns the
+   * resulting probability distribution as a pretty-printed JSON string.
+   *
+   * <p>If no time range is given, the live aggregate of the cohort covers all of its reports and
+   * {@code numberOfReports} would include all of them, step 2 is skipped and the pipeline starts
+   * from the live bit counts. If both bounds of the time range are full hours and {@code
+   * numberOfReports} would include all reports in the range, the counts are summed from the hourly
+   * and daily rollups instead, with the same result as counting the reports. Other ranges are
+   * counted exactly from the reports; {@link #getDecodedHealthDataForRange} always reads the
+   * rollups and rounds {@code from} down to the hour. Steps 2 and 3 are skipped altogether if the
+   * same request was decoded since reports of the cohort were last saved; see {@link
+   * DecodeResultCache}.
    *
    * <p>Returns 400 Bad Request if the parameter profile would cause division by zero or if no
    * matching health data exists for the request.
@@ -131,37 +247,387 @@ public class HealthDataController {
    * @param cohort UUID of the cohort whose reports should be decoded
    * @param parameterProfile name of the parameter profile to use
    * @param numberOfReports maximum number of reports to include from the cohort
+   * @param from optional inclusive lower bound of the interval start of the reports
+   * @param to optional exclusive upper bound of the interval start of the reports
    * @return ResponseEntity with the probability distribution as a JSON string on success
    */
   @GetMapping(path = "/decode", produces = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<Object> getDecodedHealthData(
       @RequestParam UUID cohort,
       @RequestParam String parameterProfile,
-      @RequestParam int numberOfReports)
+      @RequestParam int numberOfReports,
+      @RequestParam(required = false) LocalDateTime from,
+      @RequestParam(required = false) LocalDateTime to)
       throws JsonProcessingException {
-    ParameterEntity parameterEntity =
-        parameterService
-            .findParameterEntityByProfile(parameterProfile)
-            .orElseThrow(
-                () ->
-                    new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST, "Parameter Entity not found"));
-    if (parameterEntity.getInstantaneousProbabilityForOne()
-            - parameterEntity.instantaneousProbabilityForZero
-        == 0) {
-      return new ResponseEntity<>(
-          "The given Parameter Entity will cause division by zero.", HttpStatus.BAD_REQUEST);
+    ParameterEntity parameterEntity = resolveParameterEntity(parameterProfile);
+    if (causesDivisionByZero(parameterEntity)) {
+      return new ResponseEntity<>(DIVISION_BY_ZERO_MESSAGE, HttpStatus.BAD_REQUEST);
+    }
+    Optional<Map<String, Double>> probabilities =
+        decodeCohort(cohort, parameterEntity, numberOfReports, from, to);
+    if (probabilities.isEmpty())
+      return new ResponseEntity<>(EMPTY_HEALTH_DATA_MESSAGE, HttpStatus.BAD_REQUEST);
+    return ResponseEntity.ok().body(serializeProbabilities(probabilities.get(), parameterEntity));
+  }
+
+  /**
+   * Starts the decode of {@link #getDecodedHealthData} in the background and returns immediately.
+   * The parameter profile is checked before the job is queued; the bit counts are fetched and
+   * decoded by the job. Poll {@link #getDecodeJob} with the returned id for the result.
+   *
+   * <p>Returns 400 Bad Request if the parameter profile would cause division by zero, and 503
+   * Service Unavailable if too many jobs are queued.
+   *
+   * @param cohort UUID of the cohort whose reports should be decoded
+   * @param parameterProfile name of the parameter profile to use
+   * @param numberOfReports maximum number of reports to include from the cohort
+   * @param from optional inclusive lower bound of the interval start of the reports
+   * @param to optional exclusive upper bound of the interval start of the reports
+   * @return ResponseEntity with HTTP 202 Accepted, the job and its location on success
+   */
+  @PostMapping(path = "/decode/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> postDecodeJob(
+      @RequestParam UUID cohort,
+      @RequestParam String parameterProfile,
+      @RequestParam int numberOfReports,
+      @RequestParam(required = false) LocalDateTime from,
+      @RequestParam(required = false) LocalDateTime to) {
+    ParameterEntity parameterEntity = resolveParameterEntity(parameterProfile);
+    if (causesDivisionByZero(parameterEntity)) {
+      return new ResponseEntity<>(DIVISION_BY_ZERO_MESSAGE, HttpStatus.BAD_REQUEST);
     }
-    List<HealthDataEntity> entities =
-        healthDataService.getPageOfCohortsAndParameterId(
-            cohort, 0, numberOfReports, parameterEntity.getParameterId());
-    if (entities.isEmpty())
+    DecodeJob job;
+    try {
+      job =
+          decodeJobService.submit(
+              () ->
+                  decodeCohort(cohort, parameterEntity, numberOfReports, from, to)
+                      .orElseThrow(
+                          () ->
+                              new ResponseStatusException(
+                                  HttpStatus.BAD_REQUEST, EMPTY_HEALTH_DATA_MESSAGE)));
+    } catch (RejectedExecutionException e) {
       return new ResponseEntity<>(
-          "The Health data for your parameters is empty.", HttpStatus.BAD_REQUEST);
-    decoderService.setSubstance(getHealthDataSubstance(entities, parameterEntity));
-    Substance<HealthDataEntity> res = decoderService.runPipeline();
+          "Too many decode jobs are queued, try again later.", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    return ResponseEntity.accepted()
+        .location(
+            ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .replaceQuery(null)
+                .buildAndExpand(job.id())
+                .toUri())
+        .body(job);
+  }
+
+  /**
+   * Returns the progress of a decode job and, once it has completed, the probability distribution.
+   *
+   * @param id UUID of the job returned by {@link #postDecodeJob}
+   * @return ResponseEntity with the current state of the job, or HTTP 404 Not Found if the job is
+   *     unknown or its result has expired
+   */
+  @GetMapping(path = "/decode/jobs/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getDecodeJob(@PathVariable("id") UUID id) {
+    Optional<DecodeJob> job = decodeJobService.find(id);
+    if (job.isEmpty())
+      return new ResponseEntity<>("No decode job found for that id", HttpStatus.NOT_FOUND);
+    return ResponseEntity.ok().body(job.get());
+  }
+
+  /**
+   * Decodes many cohorts with one parameter profile. The profile is resolved and checked once, the
+   * cohorts are fetched and decoded in parallel, and the result of every cohort is streamed back as
+   * one line of newline-delimited JSON as soon as it is decoded, so the lines arrive in completion
+   * order. A cohort without matching reports yields a line with an error instead of probabilities.
+   *
+   * <p>Returns 400 Bad Request if the parameter profile would cause division by zero or if the
+   * batch has more than {@code default.batch-decode-max-cohorts} cohorts.
+   *
+   * @param request profile, report limit and cohorts to decode
+   * @return ResponseEntity streaming one {@link CohortDecodeResult} per cohort
+   */
+  @PostMapping(
+      path = "/decode/batch",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> postBatchDecode(
+      @Valid @RequestBody BatchDecodeRequest request) {
+    int maxCohorts = hyperParameterConfiguration.getBatchDecodeMaxCohorts();
+    if (request.cohorts().size() > maxCohorts) {
+      String message = "A batch decode may contain at most " + maxCohorts + " cohorts.";
+      return ResponseEntity.badRequest()
+          .contentType(MediaType.TEXT_PLAIN)
+          .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+    ParameterEntity parameterEntity = resolveParameterEntity(request.parameterProfile());
+    if (causesDivisionByZero(parameterEntity)) {
+      return ResponseEntity.badRequest()
+          .contentType(MediaType.TEXT_PLAIN)
+          .body(out -> out.write(DIVISION_BY_ZERO_MESSAGE.getBytes(StandardCharsets.UTF_8)));
+    }
+    StreamingResponseBody body =
+        out ->
+            batchDecodeService.decodeAll(
+                request.cohorts(),
+                range -> decodeCohortRange(range, parameterEntity, request.numberOfReports()),
+                result -> {
+                  byte[] line;
+                  try (DecodeInstrumentation.Measurement measurement =
+                      instrumentation.start(SERIALIZE_STAGE)) {
+                    line = mappingUtils.objectMapper.writeValueAsBytes(result);
+                    measurement.stop(
+                        parameterEntity.getProfile(),
+                        -1,
+                        parameterEntity.getMessageBitSize(),
+                        result.probabilities() != null ? result.probabilities().size() : -1);
+                  }
+                  out.write(line);
+                  out.write('\n');
+                  out.flush();
+                });
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Decodes the reports of a cohort whose interval starts inside a time range. The bit counts are
+   * summed from the hourly and daily rollups, so no raw reports are read. The range is resolved at
+   * hourly granularity: {@code from} is rounded down to the hour, so reports of the first partial
+   * hour before it are included. Use {@link #getDecodedHealthData} with {@code from} and {@code to}
+   * for an exact range or a report limit; it reads the same rollups when both bounds are full
+   * hours.
+   *
+   * <p>Returns 400 Bad Request if the parameter profile would cause division by zero or if no
+   * reports fall into the range.
+   *
+   * @param cohort UUID of the cohort whose reports should be decoded
+   * @param parameterProfile name of the parameter profile to use
+   * @param from start of the time range
+   * @param to end of the time range, exclusive
+   * @return ResponseEntity with the probability distribution as a JSON string on success
+   */
+  @GetMapping(path = "/decode/range", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getDecodedHealthDataForRange(
+      @RequestParam UUID cohort,
+      @RequestParam String parameterProfile,
+      @RequestParam LocalDateTime from,
+      @RequestParam LocalDateTime to)
+      throws JsonProcessingException {
+    ParameterEntity parameterEntity = resolveParameterEntity(parameterProfile);
+    if (causesDivisionByZero(parameterEntity)) {
+      return new ResponseEntity<>(DIVISION_BY_ZERO_MESSAGE, HttpStatus.BAD_REQUEST);
+    }
+    Optional<BitCountSummary> summary;
+    try (DecodeInstrumentation.Measurement fetch = instrumentation.start(FETCH_STAGE)) {
+      summary =
+          connectionBudget.read(
+              1,
+              () ->
+                  healthDataRollupService.findSummary(
+                      cohort, parameterEntity.getParameterId(), from, to));
+      fetch.stop(
+          parameterEntity.getProfile(),
+          summary.map(BitCountSummary::reportCount).orElse(0L),
+          parameterEntity.getMessageBitSize(),
+          -1);
+    }
+    if (summary.isEmpty())
+      return new ResponseEntity<>(EMPTY_HEALTH_DATA_MESSAGE, HttpStatus.BAD_REQUEST);
+    Substance<HealthDataEntity> res =
+        decoderService.decode(getSummarySubstance(summary.get(), parameterEntity));
     return ResponseEntity.ok()
-        .body(getJsonStringFromObject(decoderService.buildOutputRangeToProbabiltiesMap((res))));
+        .body(
+            serializeProbabilities(
+                decoderService.buildOutputRangeToProbabiltiesMap(res), parameterEntity));
+  }
+
+  /**
+   * Looks up a parameter profile by name.
+   *
+   * @param parameterProfile name of the parameter profile
+   * @return the parameter profile
+   * @throws ResponseStatusException with HTTP 400 Bad Request if the profile does not exist
+   */
+  private ParameterEntity resolveParameterEntity(String parameterProfile) {
+    return parameterService
+        .findParameterEntityByProfile(parameterProfile)
+        .orElseThrow(
+            () ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Parameter Entity not found"));
+  }
+
+  private static boolean causesDivisionByZero(ParameterEntity parameterEntity) {
+    return parameterEntity.getInstantaneousProbabilityForOne()
+            - parameterEntity.instantaneousProbabilityForZero
+        == 0;
+  }
+
+  /**
+   * Decodes up to {@code numberOfReports} reports of a cohort, or returns the cached distribution
+   * if the same request was decoded since the last change to the cohort.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterEntity parameter profile the reports were randomized with
+   * @param numberOfReports maximum number of reports to include
+   * @param from optional inclusive lower bound of the interval start of the reports
+   * @param to optional exclusive upper bound of the interval start of the reports
+   * @return the probability per bin range, or empty if no report matches
+   */
+  private Optional<Map<String, Double>> decodeCohort(
+      UUID cohort,
+      ParameterEntity parameterEntity,
+      int numberOfReports,
+      LocalDateTime from,
+      LocalDateTime to) {
+    return decodeResultCache.get(
+        cohort,
+        parameterEntity.getParameterId(),
+        numberOfReports,
+        from,
+        to,
+        () ->
+            findCohortSummary(cohort, parameterEntity, numberOfReports, from, to)
+                .map(
+                    summary ->
+                        decoderService.buildOutputRangeToProbabiltiesMap(
+                            decoderService.decode(getSummarySubstance(summary, parameterEntity)))));
+  }
+
+  /**
+   * Decodes one cohort of a batch, reporting a missing cohort or a failure in the result.
+   *
+   * @param range cohort and optional time range
+   * @param parameterEntity parameter profile the reports were randomized with
+   * @param numberOfReports maximum number of reports to include
+   * @return the probabilities or the reason the cohort could not be decoded
+   */
+  private CohortDecodeResult decodeCohortRange(
+      BatchDecodeRequest.CohortRange range, ParameterEntity parameterEntity, int numberOfReports) {
+    try {
+      return decodeCohort(
+              range.cohort(), parameterEntity, numberOfReports, range.from(), range.to())
+          .map(
+              probabilities ->
+                  new CohortDecodeResult(
+                      range.cohort(), range.from(), range.to(), probabilities, null))
+          .orElseGet(
+              () ->
+                  new CohortDecodeResult(
+                      range.cohort(), range.from(), range.to(), null, EMPTY_HEALTH_DATA_MESSAGE));
+    } catch (RuntimeException e) {
+      return new CohortDecodeResult(range.cohort(), range.from(), range.to(), null, e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the bit counts of up to {@code numberOfReports} reports of a cohort. The live aggregate
+   * is used if no time range is given and it covers all reports of the cohort, the rollups if the
+   * time range is hour-aligned and they hold no more reports than requested; otherwise the bits are
+   * counted inside the database or, depending on the configured {@link DecodeReadMode}, while the
+   * reports are streamed from it over several connections. The read waits until the connections it
+   * needs are reserved in the {@link DecodeConnectionBudget}.
+   *
+   * @param cohort UUID of the cohort
+   * @param parameterEntity parameter profile the reports were randomized with
+   * @param numberOfReports maximum number of reports to include
+   * @param from optional inclusive lower bound of the interval start of the reports
+   * @param to optional exclusive upper bound of the interval start of the reports
+   * @return the bit counts, or empty if no report matches
+   */
+  private Optional<BitCountSummary> findCohortSummary(
+      UUID cohort,
+      ParameterEntity parameterEntity,
+      int numberOfReports,
+      LocalDateTime from,
+      LocalDateTime to) {
+    int connections =
+        hyperParameterConfiguration.getDecodeReadMode() == DecodeReadMode.STREAM
+            ? partitionedReportScanService.partitions()
+            : 1;
+    return connectionBudget.read(
+        connections, () -> readCohortSummary(cohort, parameterEntity, numberOfReports, from, to));
+  }
+
+  private Optional<BitCountSummary> readCohortSummary(
+      UUID cohort,
+      ParameterEntity parameterEntity,
+      int numberOfReports,
+      LocalDateTime from,
+      LocalDateTime to) {
+    if (isHourAligned(from) && isHourAligned(to)) {
+      Optional<BitCountSummary> rollupSummary;
+      try (DecodeInstrumentation.Measurement fetch = instrumentation.start(FETCH_STAGE)) {
+        rollupSummary =
+            healthDataRollupService.findSummary(cohort, parameterEntity.getParameterId(), from, to);
+        fetch.stop(
+            parameterEntity.getProfile(),
+            rollupSummary.map(BitCountSummary::reportCount).orElse(0L),
+            parameterEntity.getMessageBitSize(),
+            -1);
+      }
+      if (rollupSummary.isEmpty() || rollupSummary.get().reportCount() <= numberOfReports) {
+        return rollupSummary;
+      }
+    }
+    Optional<BitCountSummary> liveSummary =
+        from == null && to == null
+            ? cohortAggregateService.findSummary(
+                cohort, parameterEntity.getParameterId(), parameterEntity.getMessageBitSize())
+            : Optional.empty();
+    if (liveSummary.isPresent()
+        && liveSummary.get().reportCount() > 0
+        && liveSummary.get().reportCount() <= numberOfReports) {
+      return liveSummary;
+    }
+    CohortReportFilter filter =
+        new CohortReportFilter(cohort, parameterEntity.getParameterId(), from, to, numberOfReports);
+    BitCountSummary summary;
+    try (DecodeInstrumentation.Measurement fetch = instrumentation.start(FETCH_STAGE)) {
+      summary =
+          switch (hyperParameterConfiguration.getDecodeReadMode()) {
+            case AGGREGATE ->
+                healthDataService.aggregateBitCounts(filter, parameterEntity.getMessageBitSize());
+            case STREAM ->
+                partitionedReportScanService
+                    .scan(
+                        filter,
+                        parameterEntity.getMessageBitSize(),
+                        hyperParameterConfiguration.getDecodeStreamFetchSize())
+                    .toSummary();
+          };
+      fetch.stop(
+          parameterEntity.getProfile(),
+          summary.reportCount(),
+          parameterEntity.getMessageBitSize(),
+          -1);
+    }
+    return summary.reportCount() == 0 ? Optional.empty() : Optional.of(summary);
+  }
+
+  private static boolean isHourAligned(LocalDateTime bound) {
+    return bound != null && bound.equals(bound.truncatedTo(ChronoUnit.HOURS));
+  }
+
+  /**
+   * Serializes a decoded distribution with {@link #getJsonStringFromObject} and times it.
+   *
+   * @param probabilities probability per bin range
+   * @param parameterEntity parameter profile the distribution was decoded with
+   * @return JSON string representation
+   * @throws JsonProcessingException if JSON serialization fails
+   */
+  private String serializeProbabilities(
+      Map<String, Double> probabilities, ParameterEntity parameterEntity)
+      throws JsonProcessingException {
+    try (DecodeInstrumentation.Measurement measurement = instrumentation.start(SERIALIZE_STAGE)) {
+      String json = getJsonStringFromObject(probabilities);
+      measurement.stop(
+          parameterEntity.getProfile(),
+          -1,
+          parameterEntity.getMessageBitSize(),
+          probabilities.size());
+      return json;
+    }
   }
 
   /**
@@ -179,9 +645,10 @@ public class HealthDataController {
   /**
    * Builds a Substance containing inputs and configuration for decoding health data.
    *
-   * <p>The substance includes the entities to decode, the parameter entity, message bit size, start
-   * and maximum ranges for histogram binning, the range iterator step, and the lambda
-   * regularization values.
+   * <p>The substance includes the entities to decode, the parameter entity, message bit size, the
+   * start range for histogram binning, the range iterator step, and the lambda regularization
+   * values. The maximum range is left unset; the aggregation step derives it from the largest step
+   * count while it scans the entities.
    *
    * @param entities list of health data entities to decode
    * @param parameterEntity differential privacy parameters to apply
@@ -192,9 +659,26 @@ public class HealthDataController {
     Substance<HealthDataEntity> substance =
         substanceMapper.convertMulti(parameterEntity, hyperParameterConfiguration);
     substance.setEntities(entities);
+    return substance;
+  }
+
+  /**
+   * Builds a Substance from already aggregated bit counts. The aggregation step of the pipeline
+   * then only estimates the expected true counts.
+   *
+   * @param summary aggregated bit counts, report count and maximum step count
+   * @param parameterEntity differential privacy parameters to apply
+   * @return fully initialized Substance for the decoder service
+   */
+  public Substance<HealthDataEntity> getSummarySubstance(
+      @NotNull BitCountSummary summary, @NotNull ParameterEntity parameterEntity) {
+    Substance<HealthDataEntity> substance =
+        substanceMapper.convertMulti(parameterEntity, hyperParameterConfiguration);
+    substance.setBitCounts(summary.toIntBitCounts());
+    substance.setNumberOfReports(Math.toIntExact(summary.reportCount()));
     substance.setMaxRange(
         decoderService.calculateMaxRangeForStepCountBin(
-            entities, hyperParameterConfiguration.getRangeIterator()));
+            summary.maxStepCount(), hyperParameterConfiguration.getRangeIterator()));
     return substance;
   }
 }
@@ -5,10 +5,13 @@
  */
 package org.wearables.randomizedresponse.healthdata;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.persistence.Entity;
 import java.time.LocalDateTime;
 import java.util.UUID;
+import org.springframework.data.domain.Persistable;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
 import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
 
 /**
@@ -16,10 +19,19 @@ import org.wearables.randomizedresponse.differentialprivacy.ReportEntity;
  *
  * <p>Extends ReportEntity by adding health-specific attributes such as the reporting interval and
  * the recorded step count.
+ *
+ * <p>The report id is assigned by the client, so the entity tells Spring Data itself whether it is
+ * new: a constructed entity is inserted with {@code persist} instead of being merged, which would
+ * first SELECT the id and keep a managed copy. Loaded and saved entities are no longer new.
  */
 @Entity
-@Table(name = "Health_data")
-public class HealthDataEntity extends ReportEntity {
+@Table(
+    name = "Health_data",
+    indexes =
+        @Index(
+            name = "Health_data_cohort_parameter_report_idx",
+            columnList = "Cohort, Parameter_id, Report_Id"))
+public class HealthDataEntity extends ReportEntity implements Persistable<UUID> {
 
   /** Start timestamp of the reporting interval. */
   @Column(name = "Interval_start")
@@ -33,6 +45,9 @@ public class HealthDataEntity extends ReportEntity {
   @Column(name = "Step_count")
   private int stepCount;
 
+  /** Whether the entity has not been stored or loaded yet. */
+  @Transient private boolean isNew = true;
+
   public HealthDataEntity() {}
 
   public HealthDataEntity(
@@ -42,8 +57,8 @@ public class HealthDataEntity extends ReportEntity {
       LocalDateTime intervalStart,
       LocalDateTime intervalEnd,
       int stepCount,
-      String prr,
-      String irr,
+      BitVector prr,
+      BitVector irr,
       UUID parameterId) {
     super.reportId = reportId;
     super.deviceId = deviceId;
@@ -85,6 +100,31 @@ public class HealthDataEntity extends ReportEntity {
     this.stepCount = stepCount;
   }
 
+  /** The step count is the value a health data report encodes. */
+  @Override
+  @JsonIgnore
+  public int getEncodedValue() {
+    return stepCount;
+  }
+
+  @Override
+  @JsonIgnore
+  public UUID getId() {
+    return reportId;
+  }
+
+  @Override
+  @JsonIgnore
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    isNew = false;
+  }
+
   public UUID getParameterId() {
     return parameterId;
   }
@@ -0,0 +1,239 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.annotation.Validated;
+import org.wearables.randomizedresponse.differentialprivacy.Report;
+import org.wearables.randomizedresponse.utilities.MappingUtils;
+
+/**
+ * Reads uploaded {@link Report}s of {@link HealthData} straight from the request stream with
+ * Jackson's streaming parser. Every value is mapped to an entity as soon as it is parsed, and the
+ * entities are saved in batches of a fixed size, so neither the request body nor the whole report
+ * is held in memory.
+ *
+ * <p>Every batch is saved in its own transaction, which flushes and then clears the persistence
+ * context, so the context of the request does not keep the saved entities of earlier batches. If
+ * the upload turns out to be malformed, the batches before the error stay saved. Retrying the
+ * upload is safe, since reports that are already stored are skipped, see {@link
+ * HealthDataService#saveAll}. Each of the parameter, device and cohort ids has to appear exactly
+ * once. The members of the report may come in any order; values that precede the ids are held until
+ * the ids have been read, in memory up to one batch and in a temporary file beyond that, and saved
+ * at the end of the document.
+ */
+@Service
+@Validated
+public class HealthDataIngestService {
+
+  private static final String PARAMETER_ID = "parameter_id";
+
+  private static final String DEVICE_ID = "device_id";
+
+  private static final String COHORT_ID = "cohort_id";
+
+  private static final String VALUES = "values";
+
+  private final MappingUtils mappingUtils;
+
+  private final HealthDataService healthDataService;
+
+  private final TransactionTemplate transactionTemplate;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  public HealthDataIngestService(
+      MappingUtils mappingUtils,
+      HealthDataService healthDataService,
+      PlatformTransactionManager transactionManager) {
+    this.mappingUtils = mappingUtils;
+    this.healthDataService = healthDataService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Parses one report from the stream and saves its values in batches.
+   *
+   * @param body JSON document of a {@code Report<HealthData>}
+   * @param batchSize Number of entities saved per transaction
+   * @return Number of values in the report, including values that were already stored
+   * @throws IOException if the stream cannot be read or is not a valid report
+   * @throws IllegalArgumentException if an id is malformed or repeated, or missing while there are
+   *     values
+   */
+  public int ingest(@NotNull InputStream body, @Positive int batchSize) throws IOException {
+    try (JsonParser parser = mappingUtils.objectMapper.createParser(body);
+        Upload upload = new Upload(parser, batchSize)) {
+      return upload.read();
+    }
+  }
+
+  /** State of a single upload while its document is parsed. */
+  private final class Upload implements Closeable {
+    private final JsonParser parser;
+    private final int batchSize;
+    private UUID parameterId;
+    private UUID deviceId;
+    private UUID cohortId;
+    private List<HealthDataEntity> batch = new ArrayList<>();
+    private int values;
+
+    /** Values read before the ids, up to one batch. */
+    private final List<HealthData> held = new ArrayList<>();
+
+    /** Temporary file with the values read before the ids beyond the first batch. */
+    private Path spool;
+
+    private JsonGenerator spoolGenerator;
+
+    private Upload(JsonParser parser, int batchSize) {
+      this.parser = parser;
+      this.batchSize = batchSize;
+    }
+
+    private int read() throws IOException {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw MismatchedInputException.from(
+            parser, Report.class, "Expected a report object at the start of the upload.");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        JsonToken value = parser.nextToken();
+        switch (field) {
+          case PARAMETER_ID -> parameterId = readUuid(parameterId);
+          case DEVICE_ID -> deviceId = readUuid(deviceId);
+          case COHORT_ID -> cohortId = readUuid(cohortId);
+          case VALUES -> readValues(value);
+          default -> parser.skipChildren();
+        }
+      }
+      addHeldValues();
+      flush();
+      return values;
+    }
+
+    private UUID readUuid(UUID current) throws IOException {
+      if (current != null) {
+        throw new IllegalArgumentException(
+            "The field " + parser.currentName() + " appears more than once.");
+      }
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      if (parser.currentToken() != JsonToken.VALUE_STRING) {
+        throw MismatchedInputException.from(
+            parser, UUID.class, "Expected " + parser.currentName() + " as a string.");
+      }
+      return UUID.fromString(parser.getText());
+    }
+
+    private boolean idsRead() {
+      return parameterId != null && deviceId != null && cohortId != null;
+    }
+
+    private void readValues(JsonToken value) throws IOException {
+      if (value == JsonToken.VALUE_NULL) {
+        return;
+      }
+      if (value != JsonToken.START_ARRAY) {
+        throw MismatchedInputException.from(parser, List.class, "Expected the values as an array.");
+      }
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (idsRead()) {
+          add(parser.readValueAs(HealthData.class));
+        } else {
+          hold();
+        }
+      }
+    }
+
+    /** Keeps a value that was read before the ids until they are known. */
+    private void hold() throws IOException {
+      if (held.size() < batchSize) {
+        held.add(parser.readValueAs(HealthData.class));
+        return;
+      }
+      if (spoolGenerator == null) {
+        spool = Files.createTempFile("upload-", ".json");
+        spoolGenerator = mappingUtils.objectMapper.createGenerator(Files.newOutputStream(spool));
+      }
+      spoolGenerator.copyCurrentStructure(parser);
+    }
+
+    /** Maps the values that were read before the ids, once the whole document has been read. */
+    private void addHeldValues() throws IOException {
+      if (held.isEmpty()) {
+        return;
+      }
+      if (!idsRead()) {
+        throw new IllegalArgumentException(
+            "The report has values but no parameter, device or cohort id.");
+      }
+      for (HealthData healthData : held) {
+        add(healthData);
+      }
+      held.clear();
+      if (spoolGenerator == null) {
+        return;
+      }
+      spoolGenerator.close();
+      try (JsonParser spooled = mappingUtils.objectMapper.createParser(spool.toFile())) {
+        while (spooled.nextToken() == JsonToken.START_OBJECT) {
+          add(spooled.readValueAs(HealthData.class));
+        }
+      }
+    }
+
+    private void add(HealthData healthData) {
+      batch.add(
+          healthDataService.mapToHealthDataEntity(parameterId, deviceId, cohortId, healthData));
+      if (batch.size() == batchSize) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      List<HealthDataEntity> saved = batch;
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            healthDataService.saveAll(saved);
+            entityManager.flush();
+            entityManager.clear();
+          });
+      values += batch.size();
+      batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (spoolGenerator != null) {
+        spoolGenerator.close();
+        Files.deleteIfExists(spool);
+      }
+    }
+  }
+}
@@ -5,23 +5,35 @@
  */
 package org.wearables.randomizedresponse.healthdata;
 
+import jakarta.persistence.QueryHint;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import org.springframework.data.domain.Page;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /**
  * Repository interface for accessing and managing health data entities.
  *
  * <p>Provides query methods for filtering health data by intervals, cohorts, and parameter
- * identifiers, as well as pagination support.
+ * identifiers, as well as pagination support. Bit counts can be aggregated inside the database
+ * through {@link BitCountAggregationRepository}, or the reports of a cohort can be streamed without
+ * hydrating entities through {@link CohortReportStreamRepository}.
  */
 @Repository
-public interface HealthDataRepository extends JpaRepository<HealthDataEntity, UUID> {
+public interface HealthDataRepository
+    extends JpaRepository<HealthDataEntity, UUID>,
+        BitCountAggregationRepository,
+        CohortReportStreamRepository {
 
   /**
    * Finds health data records by their interval start and end dates.
@@ -50,25 +62,79 @@ public interface HealthDataRepository extends JpaRepository<HealthDataEntity, UU
   List<HealthDataEntity> findByIntervalEnd(LocalDate intervalEnd);
 
   /**
-   * Finds paginated health data records for a given cohort.
+   * Finds paginated health data records for a given cohort. The slice is read without counting all
+   * matching records.
    *
    * @param cohort Cohort identifier
    * @param pageable Pageable request for pagination and sorting
-   * @return Page of matching health data entities
+   * @return Slice of matching health data entities
    */
-  Page<HealthDataEntity> findByCohort(UUID cohort, Pageable pageable);
+  Slice<HealthDataEntity> findByCohort(UUID cohort, Pageable pageable);
 
   /**
-   * Finds paginated health data records for a given cohort and parameter ID.
+   * Finds paginated health data records for a given cohort and parameter ID. The slice is read
+   * without counting all matching records.
    *
    * @param cohort Cohort identifier
    * @param pageable Pageable request for pagination and sorting
    * @param parameterId Identifier of the parameter configuration
-   * @return Page of matching health data entities
+   * @return Slice of matching health data entities
    */
-  Page<HealthDataEntity> findByCohortAndParameterId(
+  Slice<HealthDataEntity> findByCohortAndParameterId(
       UUID cohort, Pageable pageable, UUID parameterId);
 
+  /**
+   * Finds the first health data records of a cohort and parameter ID in report id order, the first
+   * slice of a keyset pagination.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param pageable Size of the slice; the page number must be 0
+   * @return Slice of matching health data entities
+   */
+  Slice<HealthDataEntity> findByCohortAndParameterIdOrderByReportIdAsc(
+      UUID cohort, UUID parameterId, Pageable pageable);
+
+  /**
+   * Finds the health data records of a cohort and parameter ID that follow a report id in report id
+   * order. Seeking past the last report id of the previous slice keeps the cost of a slice
+   * independent of how deep into the cohort it is.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param reportId Last report id of the previous slice, exclusive
+   * @param pageable Size of the slice; the page number must be 0
+   * @return Slice of matching health data entities
+   */
+  Slice<HealthDataEntity> findByCohortAndParameterIdAndReportIdGreaterThanOrderByReportIdAsc(
+      UUID cohort, UUID parameterId, UUID reportId, Pageable pageable);
+
+  /**
+   * Finds which of the given report ids are already stored.
+   *
+   * @param reportIds Report ids to look up
+   * @return The stored report ids among them
+   */
+  @Query("select h.reportId from HealthDataEntity h where h.reportId in :reportIds")
+  Set<UUID> findExistingReportIds(Collection<UUID> reportIds);
+
+  /**
+   * Checks whether a cohort has any health data records.
+   *
+   * @param cohort Cohort identifier
+   * @return true if the cohort has at least one record
+   */
+  boolean existsByCohort(UUID cohort);
+
+  /**
+   * Checks whether a cohort has any health data records of a parameter profile.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @return true if the cohort has at least one record of the parameter profile
+   */
+  boolean existsByCohortAndParameterId(UUID cohort, UUID parameterId);
+
   /**
    * Counts the number of health data records in a cohort.
    *
@@ -76,4 +142,17 @@ public interface HealthDataRepository extends JpaRepository<HealthDataEntity, UU
    * @return Number of records in the cohort
    */
   long countByCohort(UUID cohort);
+
+  /**
+   * Streams the columns needed for bit aggregation of every report as unmanaged rows. Must be
+   * consumed inside a transaction and closed afterwards.
+   *
+   * @return Stream of cohort, parameter id, packed PRR, step count and interval start per report
+   */
+  @Query(
+      "select new org.wearables.randomizedresponse.healthdata.CohortReportRow("
+          + "h.cohort, h.parameterId, h.prr, h.stepCount, h.intervalStart)"
+          + " from HealthDataEntity h")
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  Stream<CohortReportRow> streamAllCohortReportRows();
 }
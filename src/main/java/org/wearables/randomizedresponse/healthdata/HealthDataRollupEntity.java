@@ -0,0 +1,89 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import org.wearables.randomizedresponse.differentialprivacy.BitCountsConverter;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+
+/**
+ * Per-bit counts of all reports of a cohort whose interval starts inside one time bucket.
+ *
+ * <p>Rows are mergeable: the counts of any set of disjoint buckets add up to the counts of their
+ * reports, so a decode over a time range only sums the rows covering it.
+ */
+@Entity
+@Table(name = "Health_data_rollup")
+public class HealthDataRollupEntity {
+
+  @EmbeddedId private HealthDataRollupId id;
+
+  /** Number of reports with each PRR bit set, eight bytes per bit for up to 4096 bits. */
+  @Column(name = "Bit_counts", length = 32768)
+  @Convert(converter = BitCountsConverter.class)
+  private long[] bitCounts;
+
+  /** Number of reports in the bucket. */
+  @Column(name = "Report_count")
+  private long reportCount;
+
+  /** Largest step count in the bucket. Removing reports never lowers it. */
+  @Column(name = "Max_step_count")
+  private int maxStepCount;
+
+  public HealthDataRollupEntity() {}
+
+  public HealthDataRollupEntity(HealthDataRollupId id, int messageBitSize) {
+    this.id = id;
+    this.bitCounts = new long[messageBitSize];
+  }
+
+  /**
+   * Adds or removes the reports of a summary.
+   *
+   * @param summary Counts of reports that fall into this bucket
+   * @param removed Whether the reports were removed instead of added
+   * @throws IllegalArgumentException if the message bit sizes differ
+   */
+  public void apply(BitCountSummary summary, boolean removed) {
+    if (summary.bitCounts().length != bitCounts.length) {
+      throw new IllegalArgumentException("Cannot merge rollups of different message bit sizes.");
+    }
+    long sign = removed ? -1 : 1;
+    for (int i = 0; i < bitCounts.length; i++) {
+      bitCounts[i] += sign * summary.bitCounts()[i];
+    }
+    reportCount += sign * summary.reportCount();
+    if (!removed) {
+      maxStepCount = Math.max(maxStepCount, summary.maxStepCount());
+    }
+  }
+
+  /**
+   * Returns the counts of this bucket.
+   *
+   * @return Summary of the reports in the bucket
+   */
+  public BitCountSummary toSummary() {
+    return new BitCountSummary(bitCounts.clone(), reportCount, maxStepCount);
+  }
+
+  public HealthDataRollupId getId() {
+    return id;
+  }
+
+  public long getReportCount() {
+    return reportCount;
+  }
+
+  public int getMaxStepCount() {
+    return maxStepCount;
+  }
+}
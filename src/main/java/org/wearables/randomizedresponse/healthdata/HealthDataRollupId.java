@@ -0,0 +1,74 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/** Composite key of a rollup bucket: cohort, parameter profile, granularity and bucket start. */
+@Embeddable
+public class HealthDataRollupId implements Serializable {
+
+  @Column(name = "Cohort")
+  private UUID cohort;
+
+  @Column(name = "Parameter_id")
+  private UUID parameterId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "Granularity")
+  private RollupGranularity granularity;
+
+  @Column(name = "Bucket_start")
+  private LocalDateTime bucketStart;
+
+  public HealthDataRollupId() {}
+
+  public HealthDataRollupId(
+      UUID cohort, UUID parameterId, RollupGranularity granularity, LocalDateTime bucketStart) {
+    this.cohort = cohort;
+    this.parameterId = parameterId;
+    this.granularity = granularity;
+    this.bucketStart = bucketStart;
+  }
+
+  public UUID getCohort() {
+    return cohort;
+  }
+
+  public UUID getParameterId() {
+    return parameterId;
+  }
+
+  public RollupGranularity getGranularity() {
+    return granularity;
+  }
+
+  public LocalDateTime getBucketStart() {
+    return bucketStart;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof HealthDataRollupId that)) return false;
+    return Objects.equals(cohort, that.cohort)
+        && Objects.equals(parameterId, that.parameterId)
+        && granularity == that.granularity
+        && Objects.equals(bucketStart, that.bucketStart);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(cohort, parameterId, granularity, bucketStart);
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/** Repository for the hourly and daily health data rollups. */
+@Repository
+public interface HealthDataRollupRepository
+    extends JpaRepository<HealthDataRollupEntity, HealthDataRollupId>, RollupBucketRepository {
+
+  /**
+   * Finds a bucket and locks its row until the end of the transaction, so concurrent updates of the
+   * bucket are applied one after another, also across server instances.
+   *
+   * @param id Key of the bucket
+   * @return The locked bucket, or empty if it does not exist
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select r from HealthDataRollupEntity r where r.id = :id")
+  Optional<HealthDataRollupEntity> findForUpdate(HealthDataRollupId id);
+
+  /**
+   * Finds the buckets of a cohort and parameter profile that start inside a time range.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param granularity Width of the buckets
+   * @param from Inclusive lower bound of the bucket start
+   * @param to Exclusive upper bound of the bucket start
+   * @return Matching rollup rows
+   */
+  @Query(
+      "select r from HealthDataRollupEntity r where r.id.cohort = :cohort"
+          + " and r.id.parameterId = :parameterId and r.id.granularity = :granularity"
+          + " and r.id.bucketStart >= :from and r.id.bucketStart < :to")
+  List<HealthDataRollupEntity> findBuckets(
+      UUID cohort,
+      UUID parameterId,
+      RollupGranularity granularity,
+      LocalDateTime from,
+      LocalDateTime to);
+}
@@ -0,0 +1,250 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.annotation.Validated;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitColumnCounter;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+
+/**
+ * Maintains hourly and daily rollups of the PRR bit counts per cohort and parameter profile, keyed
+ * on the interval start of the reports.
+ *
+ * <p>The rollups are updated inside the transaction that saves or removes the reports, so they
+ * commit or roll back together with the {@code Health_data} rows. Every touched bucket is created
+ * if absent and then locked in the database for the rest of the transaction, so concurrent uploads
+ * to the same bucket, also on other server instances, are applied one after another. Buckets are
+ * locked in key order to keep two uploads from deadlocking.
+ *
+ * <p>A decode over a time range sums the daily buckets of all full days and the hourly buckets of
+ * the partial days at its edges, so it reads a few dozen rows at most instead of the raw reports.
+ * If the rollup table is empty on startup while reports exist, for example right after the rollups
+ * were introduced, it is backfilled from the {@code Health_data} table.
+ */
+@Service
+@Validated
+public class HealthDataRollupService implements SmartInitializingSingleton {
+
+  /** Order in which the buckets of one update are locked. */
+  private static final Comparator<HealthDataRollupId> LOCK_ORDER =
+      Comparator.comparing(HealthDataRollupId::getCohort)
+          .thenComparing(HealthDataRollupId::getParameterId)
+          .thenComparing(HealthDataRollupId::getGranularity)
+          .thenComparing(HealthDataRollupId::getBucketStart);
+
+  private final Logger logger = LoggerFactory.getLogger(HealthDataRollupService.class);
+
+  private final HealthDataRollupRepository rollupRepository;
+
+  private final HealthDataRepository healthDataRepository;
+
+  private final TransactionTemplate transactionTemplate;
+
+  public HealthDataRollupService(
+      HealthDataRollupRepository rollupRepository,
+      HealthDataRepository healthDataRepository,
+      PlatformTransactionManager transactionManager) {
+    this.rollupRepository = rollupRepository;
+    this.healthDataRepository = healthDataRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /** Backfills the rollups from the persisted reports if none exist yet. */
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (rollupRepository.count() == 0 && healthDataRepository.count() > 0) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Discards all rollups and recounts them from the {@code Health_data} table in a single streaming
+   * pass and a single transaction. Reports saved by another server instance while the rebuild runs
+   * may be missing afterwards, so it should run while no uploads are accepted.
+   */
+  public void rebuild() {
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          Map<HealthDataRollupId, Bucket> buckets = new HashMap<>();
+          try (Stream<CohortReportRow> rows = healthDataRepository.streamAllCohortReportRows()) {
+            rows.forEach(
+                row ->
+                    addToBuckets(
+                        buckets,
+                        row.cohort(),
+                        row.parameterId(),
+                        row.intervalStart(),
+                        row.prr(),
+                        row.stepCount()));
+          }
+          rollupRepository.deleteAllInBatch();
+          buckets.forEach(
+              (id, bucket) -> {
+                HealthDataRollupEntity row = new HealthDataRollupEntity(id, bucket.messageBitSize);
+                row.apply(bucket.toSummary(), false);
+                rollupRepository.save(row);
+              });
+          logger.info("Rebuilt {} rollup buckets", buckets.size());
+        });
+  }
+
+  /**
+   * Updates the rollups inside the transaction that saved or removed the reports. A failure rolls
+   * back the reports as well.
+   *
+   * @param event The reports that were saved or removed
+   */
+  @EventListener
+  public void onHealthDataChanged(HealthDataChangedEvent event) {
+    apply(event.entities(), event.removed());
+  }
+
+  /**
+   * Adds reports to or removes them from the hourly and daily buckets they fall into. Reports
+   * without interval start or PRR are ignored.
+   *
+   * @param entities The reports to apply
+   * @param removed Whether the reports were removed instead of added
+   */
+  @Transactional
+  public void apply(@NotNull List<HealthDataEntity> entities, boolean removed) {
+    Map<HealthDataRollupId, Bucket> buckets = new TreeMap<>(LOCK_ORDER);
+    for (HealthDataEntity entity : entities) {
+      addToBuckets(
+          buckets,
+          entity.getCohort(),
+          entity.getParameterId(),
+          entity.getIntervalStart(),
+          entity.getPrrBits(),
+          entity.getStepCount());
+    }
+    buckets.forEach((id, bucket) -> update(id, bucket, removed));
+  }
+
+  private static void addToBuckets(
+      Map<HealthDataRollupId, Bucket> buckets,
+      UUID cohort,
+      UUID parameterId,
+      LocalDateTime intervalStart,
+      BitVector prr,
+      int stepCount) {
+    if (intervalStart == null || prr == null) {
+      return;
+    }
+    for (RollupGranularity granularity : RollupGranularity.values()) {
+      HealthDataRollupId id =
+          new HealthDataRollupId(
+              cohort, parameterId, granularity, granularity.bucketStart(intervalStart));
+      buckets.computeIfAbsent(id, key -> new Bucket(prr.length())).add(prr, stepCount);
+    }
+  }
+
+  /**
+   * Sums the rollups of a cohort and parameter profile over a time range. The range is resolved at
+   * hourly granularity: a report is included if its interval start lies in an hour that starts at
+   * or after {@code from} truncated to the hour and before {@code to}.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param from Start of the range
+   * @param to End of the range
+   * @return The summed counts, or empty if no reports fall into the range
+   */
+  public Optional<BitCountSummary> findSummary(
+      @NotNull UUID cohort,
+      @NotNull UUID parameterId,
+      @NotNull LocalDateTime from,
+      @NotNull LocalDateTime to) {
+    LocalDateTime start = RollupGranularity.HOUR.bucketStart(from);
+    if (!to.isAfter(start)) {
+      return Optional.empty();
+    }
+    LocalDateTime firstDay = RollupGranularity.DAY.bucketStart(start);
+    if (firstDay.isBefore(start)) {
+      firstDay = firstDay.plus(1, ChronoUnit.DAYS);
+    }
+    LocalDateTime lastDay = RollupGranularity.DAY.bucketStart(to);
+    BitCountSummary summary = null;
+    if (firstDay.isBefore(lastDay)) {
+      summary = sum(summary, cohort, parameterId, RollupGranularity.HOUR, start, firstDay);
+      summary = sum(summary, cohort, parameterId, RollupGranularity.DAY, firstDay, lastDay);
+      summary = sum(summary, cohort, parameterId, RollupGranularity.HOUR, lastDay, to);
+    } else {
+      summary = sum(summary, cohort, parameterId, RollupGranularity.HOUR, start, to);
+    }
+    if (summary == null || summary.reportCount() <= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(summary);
+  }
+
+  private BitCountSummary sum(
+      BitCountSummary summary,
+      UUID cohort,
+      UUID parameterId,
+      RollupGranularity granularity,
+      LocalDateTime from,
+      LocalDateTime to) {
+    if (!to.isAfter(from)) {
+      return summary;
+    }
+    for (HealthDataRollupEntity row :
+        rollupRepository.findBuckets(cohort, parameterId, granularity, from, to)) {
+      summary = summary == null ? row.toSummary() : summary.merge(row.toSummary());
+    }
+    return summary;
+  }
+
+  private void update(HealthDataRollupId id, Bucket bucket, boolean removed) {
+    rollupRepository.insertBucketIfAbsent(id, bucket.messageBitSize);
+    HealthDataRollupEntity row =
+        rollupRepository
+            .findForUpdate(id)
+            .orElseThrow(() -> new IllegalStateException("Rollup bucket was not created."));
+    row.apply(bucket.toSummary(), removed);
+  }
+
+  /** Counts of the reports of one upload that fall into the same bucket. */
+  private static final class Bucket {
+    private final int messageBitSize;
+    private final BitColumnCounter counter;
+    private int maxStepCount;
+
+    private Bucket(int messageBitSize) {
+      this.messageBitSize = messageBitSize;
+      this.counter = new BitColumnCounter(messageBitSize);
+    }
+
+    private void add(BitVector prr, int stepCount) {
+      counter.add(prr);
+      maxStepCount = Math.max(maxStepCount, stepCount);
+    }
+
+    private BitCountSummary toSummary() {
+      return new BitCountSummary(counter.counts(), counter.reports(), maxStepCount);
+    }
+  }
+}
@@ -1,6 +1,5 @@
 package org.wearables.randomizedresponse.healthdata;
 
-import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
@@ -9,11 +8,16 @@ import java.time.LocalDateTime;
 import java.util.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.Page;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
 import org.wearables.randomizedresponse.differentialprivacy.Report;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
 
 /**
  * Service layer for managing HealthDataEntity objects.
@@ -28,19 +32,27 @@ public class HealthDataService {
   /** Repository for persisting and retrieving health data entities. */
   private final HealthDataRepository healthDataRepository;
 
+  /** Publishes {@link HealthDataChangedEvent}s for listeners maintaining derived data. */
+  private final ApplicationEventPublisher eventPublisher;
+
   @Autowired
-  public HealthDataService(HealthDataRepository healthDataRepository) {
+  public HealthDataService(
+      HealthDataRepository healthDataRepository, ApplicationEventPublisher eventPublisher) {
     this.healthDataRepository = healthDataRepository;
+    this.eventPublisher = eventPublisher;
   }
 
   /**
-   * Saves a new health data entity.
+   * Saves a new health data entity. A report whose id is already stored is not saved again, see
+   * {@link #saveAll(List)}.
    *
    * @param healthDataEntity Entity to persist
-   * @return Saved entity
+   * @return Saved entity, or the given entity if its report id was already stored
    */
+  @Transactional
   public HealthDataEntity saveHealthData(@NotNull HealthDataEntity healthDataEntity) {
-    return healthDataRepository.save(healthDataEntity);
+    List<HealthDataEntity> inserted = insertNewReports(List.of(healthDataEntity));
+    return inserted.isEmpty() ? healthDataEntity : inserted.getFirst();
   }
 
   /**
@@ -88,21 +100,27 @@ public class HealthDataService {
   }
 
   /**
-   * Deletes a health data entity.
+   * Deletes the stored report with the report id of an entity. The derived aggregates are updated
+   * with the stored report, not with the fields of the argument.
    *
-   * @param healthDataEntity Entity to delete
+   * @param healthDataEntity Entity whose report id identifies the report to delete
    * @throws NoSuchElementException if the entity does not exist
    */
+  @Transactional
   public void deleteHealthData(@NotNull HealthDataEntity healthDataEntity) {
-    if (healthDataRepository.existsById(healthDataEntity.getDeviceId())) {
-      healthDataRepository.delete(healthDataEntity);
-      return;
-    }
-    throw new NoSuchElementException("The HealthData Entity is not present in Database");
+    HealthDataEntity stored =
+        healthDataRepository
+            .findById(healthDataEntity.getReportId())
+            .orElseThrow(
+                () ->
+                    new NoSuchElementException("The HealthData Entity is not present in Database"));
+    healthDataRepository.delete(stored);
+    eventPublisher.publishEvent(new HealthDataChangedEvent(List.of(stored), true));
   }
 
   /**
-   * Maps a report into a list of health data entities.
+   * Maps a report into a list of health data entities. The {@code 0b} prefixed bit strings of the
+   * client are packed into {@link BitVector}s.
    *
    * @param report Report containing health data values
    * @return List of mapped entities
@@ -111,20 +129,36 @@ public class HealthDataService {
     List<HealthDataEntity> healthDataEntities = new ArrayList<>();
     for (HealthData healthData : report.values()) {
       healthDataEntities.add(
-          new HealthDataEntity(
-              healthData.reportId(),
-              report.deviceId(),
-              report.cohortId(),
-              healthData.intervalStart().toLocalDateTime(),
-              healthData.intervalEnd().toLocalDateTime(),
-              healthData.steps(),
-              healthData.prr().substring(2),
-              healthData.irr().substring(2),
-              report.parameterId()));
+          mapToHealthDataEntity(
+              report.parameterId(), report.deviceId(), report.cohortId(), healthData));
     }
     return healthDataEntities;
   }
 
+  /**
+   * Maps a single value of a report into a health data entity, see {@link
+   * #mapToHealthDataEntities}.
+   *
+   * @param parameterId Identifier of the parameter configuration of the report
+   * @param deviceId Identifier of the device that sent the report
+   * @param cohortId Identifier of the cohort of the report
+   * @param healthData Value of the report
+   * @return Mapped entity
+   */
+  public HealthDataEntity mapToHealthDataEntity(
+      UUID parameterId, UUID deviceId, UUID cohortId, @NotNull HealthData healthData) {
+    return new HealthDataEntity(
+        healthData.reportId(),
+        deviceId,
+        cohortId,
+        healthData.intervalStart().toLocalDateTime(),
+        healthData.intervalEnd().toLocalDateTime(),
+        healthData.steps(),
+        BitVector.fromBitString(healthData.prr().substring(2)),
+        BitVector.fromBitString(healthData.irr().substring(2)),
+        parameterId);
+  }
+
   /**
    * Finds entities by interval start date.
    *
@@ -158,14 +192,37 @@ public class HealthDataService {
   }
 
   /**
-   * Saves a list of health data entities in a single transaction.
+   * Saves a list of health data entities in a single transaction. Listeners are notified with a
+   * {@link HealthDataChangedEvent} once the transaction has committed.
+   *
+   * <p>Reports are immutable once stored: entities whose report id is already stored, or repeated
+   * within the list, are skipped instead of overwriting the stored report. A client that retries an
+   * upload after a partial failure therefore does not count the reports it had already delivered
+   * twice, and the event only carries the reports that were actually inserted.
    *
    * @param healthDataEntities List of entities to save
+   * @return The entities that were inserted
    * @throws IllegalArgumentException if the list is null
    */
   @Transactional
-  public void saveAll(@NotNull List<HealthDataEntity> healthDataEntities) {
-    healthDataRepository.saveAll(healthDataEntities);
+  public List<HealthDataEntity> saveAll(@NotNull List<HealthDataEntity> healthDataEntities) {
+    return insertNewReports(healthDataEntities);
+  }
+
+  private List<HealthDataEntity> insertNewReports(List<HealthDataEntity> healthDataEntities) {
+    Map<UUID, HealthDataEntity> byReportId = new LinkedHashMap<>();
+    for (HealthDataEntity healthDataEntity : healthDataEntities) {
+      byReportId.putIfAbsent(healthDataEntity.getReportId(), healthDataEntity);
+    }
+    if (byReportId.isEmpty()) {
+      return List.of();
+    }
+    byReportId.keySet().removeAll(healthDataRepository.findExistingReportIds(byReportId.keySet()));
+    List<HealthDataEntity> inserted = healthDataRepository.saveAll(byReportId.values());
+    if (!inserted.isEmpty()) {
+      eventPublisher.publishEvent(new HealthDataChangedEvent(inserted, false));
+    }
+    return inserted;
   }
 
   /**
@@ -174,15 +231,16 @@ public class HealthDataService {
    * @param cohort Cohort identifier
    * @param pageRequestMin Minimum page index
    * @param pageRequestMax Maximum page size
-   * @return List of entities from the requested page
-   * @throws NoSuchElementException if no entities are found
+   * @return List of entities from the requested page, empty if the page is past the last one
+   * @throws NoSuchElementException if the cohort has no entities
    */
   @Cacheable("healthdataEntities")
   public List<HealthDataEntity> getPageOfCohorts(
       @NotNull UUID cohort, @PositiveOrZero int pageRequestMin, @Positive int pageRequestMax) {
     PageRequest pageRequest = PageRequest.of(pageRequestMin, pageRequestMax);
-    Page<HealthDataEntity> healthData = healthDataRepository.findByCohort(cohort, pageRequest);
-    if (healthData.getTotalElements() == 0) {
+    Slice<HealthDataEntity> healthData = healthDataRepository.findByCohort(cohort, pageRequest);
+    if (!healthData.hasContent()
+        && (pageRequestMin == 0 || !healthDataRepository.existsByCohort(cohort))) {
       throw new NoSuchElementException("No HealthDataEntity found");
     }
     return healthData.getContent();
@@ -195,8 +253,8 @@ public class HealthDataService {
    * @param pageRequestMin Minimum page index
    * @param pageRequestMax Maximum page size
    * @param parameterId Identifier of the parameter configuration
-   * @return List of entities from the requested page
-   * @throws NoSuchElementException if no entities are found
+   * @return List of entities from the requested page, empty if the page is past the last one
+   * @throws NoSuchElementException if the cohort has no entities of the parameter configuration
    */
   public List<HealthDataEntity> getPageOfCohortsAndParameterId(
       @NotNull UUID cohort,
@@ -204,14 +262,79 @@ public class HealthDataService {
       @Positive int pageRequestMax,
       @NotNull UUID parameterId) {
     PageRequest pageRequest = PageRequest.of(pageRequestMin, pageRequestMax);
-    Page<HealthDataEntity> healthData =
+    Slice<HealthDataEntity> healthData =
         healthDataRepository.findByCohortAndParameterId(cohort, pageRequest, parameterId);
-    if (healthData.getTotalElements() == 0) {
+    if (!healthData.hasContent()
+        && (pageRequestMin == 0
+            || !healthDataRepository.existsByCohortAndParameterId(cohort, parameterId))) {
       throw new NoSuchElementException("No HealthDataEntity found");
     }
     return healthData.getContent();
   }
 
+  /**
+   * Retrieves a slice of the reports of a cohort and parameter ID in report id order using keyset
+   * pagination. Every slice costs the same regardless of its position in the cohort, and no total
+   * count is computed.
+   *
+   * @param cohort Cohort identifier
+   * @param parameterId Identifier of the parameter configuration
+   * @param continuationToken Token of the previous slice, or null for the first slice
+   * @param size Maximum number of reports in the slice
+   * @return The reports and the token of the next slice
+   * @throws IllegalArgumentException if the continuation token is malformed
+   */
+  public ReportSlice getSliceOfCohortAndParameterId(
+      @NotNull UUID cohort,
+      @NotNull UUID parameterId,
+      String continuationToken,
+      @Positive int size) {
+    PageRequest pageRequest = PageRequest.ofSize(size);
+    Slice<HealthDataEntity> healthData =
+        continuationToken == null
+            ? healthDataRepository.findByCohortAndParameterIdOrderByReportIdAsc(
+                cohort, parameterId, pageRequest)
+            : healthDataRepository
+                .findByCohortAndParameterIdAndReportIdGreaterThanOrderByReportIdAsc(
+                    cohort, parameterId, ReportSlice.decodeToken(continuationToken), pageRequest);
+    List<HealthDataEntity> content = healthData.getContent();
+    String next =
+        healthData.hasNext() ? ReportSlice.encodeToken(content.getLast().getReportId()) : null;
+    return new ReportSlice(content, next);
+  }
+
+  /**
+   * Counts the PRR bits of the selected reports inside the database, so only the aggregate is
+   * transferred instead of the reports.
+   *
+   * @param filter Selects the reports to count
+   * @param messageBitSize Number of PRR bits to count
+   * @return The aggregated counts; the report count is 0 if no report matches
+   */
+  public BitCountSummary aggregateBitCounts(
+      @NotNull CohortReportFilter filter, @Positive int messageBitSize) {
+    return healthDataRepository.aggregateBitCounts(filter, messageBitSize);
+  }
+
+  /**
+   * Counts the PRR bits of the selected reports while streaming them from the database. Only the
+   * PRR and step count columns are read, through a forward-only cursor in a read-only transaction,
+   * and added to the scan in packed batches, so memory use stays flat regardless of the number of
+   * reports.
+   *
+   * @param filter Selects the reports to count
+   * @param messageBitSize Number of PRR bits to count
+   * @param fetchSize Number of rows fetched per database round trip
+   * @return The scan over the selected reports; it holds no reports if none match
+   */
+  @Transactional(readOnly = true)
+  public ReportScan scanReports(
+      @NotNull CohortReportFilter filter, @Positive int messageBitSize, @Positive int fetchSize) {
+    ReportScan scan = new ReportScan(messageBitSize);
+    healthDataRepository.scanReportColumns(filter, fetchSize, scan);
+    return scan;
+  }
+
   /**
    * Counts the number of health data reports for a cohort.
    *
@@ -0,0 +1,34 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Resolves the database dialect for the repositories that build native SQL per dialect. These
+ * repositories support PostgreSQL and H2 only and check the dialect once on startup, so an
+ * unsupported database fails when the application starts instead of on the first upload or decode.
+ */
+final class NativeSqlDialect {
+
+  private NativeSqlDialect() {}
+
+  /**
+   * Returns the dialect of the persistence unit of an entity manager.
+   *
+   * @param entityManager Entity manager of the repository
+   * @return The Hibernate dialect
+   */
+  static Dialect of(EntityManager entityManager) {
+    return entityManager
+        .getEntityManagerFactory()
+        .unwrap(SessionFactoryImplementor.class)
+        .getJdbcServices()
+        .getDialect();
+  }
+}
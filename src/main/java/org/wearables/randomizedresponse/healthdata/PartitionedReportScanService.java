@@ -0,0 +1,198 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+
+/**
+ * Streams the reports of a cohort over several database connections at once. The report id key
+ * space is split into equally wide ranges; every range is read in its own read-only transaction,
+ * and therefore on its own pooled connection, into a private {@link ReportScan}. The partial scans
+ * are merged once all ranges are read. Report ids are random, so the ranges hold about the same
+ * number of reports.
+ *
+ * <p>The number of concurrent partitions is capped at the {@link DecodeConnectionBudget}, half of
+ * the Hikari pool, so uploads always find a free connection while a large decode reads. A report
+ * limit that covers every matching report, which decodes usually ask for, is dropped after a count
+ * query so the read can be split. Reads whose limit actually selects a subset are not split, since
+ * the limit selects the reports with the lowest ids across all partitions; they run on the calling
+ * thread. Reports committed between the count and the read may be included beyond the limit, just
+ * as a split read sees each partition at its own point in time.
+ */
+@Service
+public class PartitionedReportScanService implements DisposableBean {
+
+  private final HealthDataService healthDataService;
+
+  private final HealthDataRepository healthDataRepository;
+
+  /** Read-only transaction of one partition, always on a connection of its own. */
+  private final TransactionTemplate transactionTemplate;
+
+  /** Number of key ranges read concurrently. */
+  private final int partitions;
+
+  /** Workers reading the partitions, or null if the reads are not split. */
+  private final ExecutorService executor;
+
+  /**
+   * Creates the service with the partition count of the hyperparameter configuration, capped at the
+   * connection budget of the decodes.
+   *
+   * @param healthDataService Service used for reads that are not split
+   * @param healthDataRepository Repository reading the partitions
+   * @param transactionManager Transaction manager of the partitions
+   * @param connectionBudget Connection budget that caps the partitions
+   * @param hyperParameterConfiguration Configuration providing the partition count
+   */
+  @Autowired
+  public PartitionedReportScanService(
+      HealthDataService healthDataService,
+      HealthDataRepository healthDataRepository,
+      PlatformTransactionManager transactionManager,
+      DecodeConnectionBudget connectionBudget,
+      HyperParameterConfiguration hyperParameterConfiguration) {
+    this(
+        healthDataService,
+        healthDataRepository,
+        transactionManager,
+        Math.min(
+            hyperParameterConfiguration.getDecodeFetchPartitions(),
+            connectionBudget.connections()));
+  }
+
+  public PartitionedReportScanService(
+      HealthDataService healthDataService,
+      HealthDataRepository healthDataRepository,
+      PlatformTransactionManager transactionManager,
+      int partitions) {
+    this.healthDataService = healthDataService;
+    this.healthDataRepository = healthDataRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.partitions = partitions;
+    this.executor =
+        partitions > 1
+            ? Executors.newFixedThreadPool(
+                partitions,
+                new ThreadFactoryBuilder().setNameFormat("report-scan-%d").setDaemon(true).build())
+            : null;
+  }
+
+  /**
+   * Counts the PRR bits of the selected reports, reading disjoint report id ranges concurrently
+   * unless the report limit of the filter selects fewer than all matching reports.
+   *
+   * @param filter Selects the reports to count
+   * @param messageBitSize Number of PRR bits to count
+   * @param fetchSize Number of rows fetched per database round trip
+   * @return The merged scan over the selected reports
+   * @throws IllegalStateException if a partition fails or the calling thread is interrupted
+   */
+  public ReportScan scan(CohortReportFilter filter, int messageBitSize, int fetchSize) {
+    if (executor == null) {
+      return healthDataService.scanReports(filter, messageBitSize, fetchSize);
+    }
+    if (filter.limit() > 0) {
+      Long matching =
+          transactionTemplate.execute(status -> healthDataRepository.countReports(filter));
+      if (matching == null || matching > filter.limit()) {
+        return healthDataService.scanReports(filter, messageBitSize, fetchSize);
+      }
+    }
+    CohortReportFilter unlimited = filter.withoutLimit();
+    List<Future<ReportScan>> futures = new ArrayList<>(partitions);
+    try {
+      for (ReportIdRange range : ReportIdRange.split(partitions)) {
+        futures.add(
+            executor.submit(() -> scanPartition(unlimited, range, messageBitSize, fetchSize)));
+      }
+      ReportScan scan = new ReportScan(messageBitSize);
+      for (Future<ReportScan> future : futures) {
+        scan.merge(future.get());
+      }
+      return scan;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Partitioned report scan was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Partitioned report scan failed", e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  /**
+   * Returns the number of partitions read concurrently.
+   *
+   * @return Number of partitions, 1 if reads are not split
+   */
+  public int partitions() {
+    return Math.max(1, partitions);
+  }
+
+  private ReportScan scanPartition(
+      CohortReportFilter filter, ReportIdRange range, int messageBitSize, int fetchSize) {
+    ReportScan scan = new ReportScan(messageBitSize);
+    transactionTemplate.executeWithoutResult(
+        status ->
+            healthDataRepository.scanReportColumns(
+                filter, range.from(), range.to(), fetchSize, scan));
+    return scan;
+  }
+
+  /** Stops the workers; running partitions are interrupted. */
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Half-open range of report ids. Ids are compared as unsigned 128-bit numbers, the order used by
+   * PostgreSQL and H2.
+   *
+   * @param from Inclusive lower bound, or null for the start of the key space
+   * @param to Exclusive upper bound, or null for the end of the key space
+   */
+  record ReportIdRange(UUID from, UUID to) {
+
+    /**
+     * Splits the key space into equally wide, disjoint ranges that together cover every id.
+     *
+     * @param count Number of ranges
+     * @return The ranges in ascending order
+     */
+    static List<ReportIdRange> split(int count) {
+      long width = Long.divideUnsigned(-1L, count);
+      List<ReportIdRange> ranges = new ArrayList<>(count);
+      UUID from = null;
+      for (int i = 1; i <= count; i++) {
+        UUID to = i == count ? null : new UUID(width * i, 0L);
+        ranges.add(new ReportIdRange(from, to));
+        from = to;
+      }
+      return ranges;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One slice of the reports of a cohort and parameter profile in report id order, read with keyset
+ * pagination. Instead of a page number the slice carries a continuation token that encodes the last
+ * report id, so the next slice seeks directly behind it and no total count is computed.
+ *
+ * @param content Reports of this slice
+ * @param next Token to pass to get the next slice, or null if this is the last slice
+ */
+public record ReportSlice(List<HealthDataEntity> content, String next) {
+
+  /**
+   * Encodes the report id after which the next slice starts.
+   *
+   * @param reportId Id of the last report of a slice
+   * @return URL-safe continuation token
+   */
+  public static String encodeToken(UUID reportId) {
+    ByteBuffer bytes = ByteBuffer.allocate(2 * Long.BYTES);
+    bytes.putLong(reportId.getMostSignificantBits()).putLong(reportId.getLeastSignificantBits());
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+  }
+
+  /**
+   * Decodes a continuation token created by {@link #encodeToken}.
+   *
+   * @param token Continuation token
+   * @return Id of the last report of the previous slice
+   * @throws IllegalArgumentException if the token is malformed
+   */
+  public static UUID decodeToken(String token) {
+    byte[] bytes = Base64.getUrlDecoder().decode(token);
+    if (bytes.length != 2 * Long.BYTES) {
+      throw new IllegalArgumentException("Invalid continuation token.");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    return new UUID(buffer.getLong(), buffer.getLong());
+  }
+}
@@ -0,0 +1,20 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+/** Repository fragment that creates rollup buckets without racing other writers. */
+public interface RollupBucketRepository {
+
+  /**
+   * Inserts an empty bucket unless a row with the same key exists. Concurrent calls for the same
+   * key, also from other server instances, neither fail nor overwrite each other.
+   *
+   * @param id Key of the bucket
+   * @param messageBitSize Number of PRR bits counted by the bucket
+   * @throws UnsupportedOperationException if the database dialect is not supported
+   */
+  void insertBucketIfAbsent(HealthDataRollupId id, int messageBitSize);
+}
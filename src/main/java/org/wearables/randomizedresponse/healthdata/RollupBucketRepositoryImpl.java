@@ -0,0 +1,76 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.wearables.randomizedresponse.differentialprivacy.BitCountsConverter;
+
+/**
+ * Native SQL implementation of {@link RollupBucketRepository} for PostgreSQL and H2; other
+ * databases are rejected on startup.
+ *
+ * <p>PostgreSQL inserts with {@code ON CONFLICT DO NOTHING}, which waits for a concurrent insert of
+ * the same key instead of failing on the primary key. H2 uses a {@code MERGE} that only inserts
+ * when no row matches.
+ */
+public class RollupBucketRepositoryImpl implements RollupBucketRepository {
+
+  private static final String POSTGRESQL_INSERT =
+      "INSERT INTO health_data_rollup (cohort, parameter_id, granularity, bucket_start,"
+          + " bit_counts, report_count, max_step_count) VALUES (?1, ?2, ?3, ?4, ?5, 0, 0)"
+          + " ON CONFLICT DO NOTHING";
+
+  private static final String H2_MERGE =
+      "MERGE INTO health_data_rollup r USING (VALUES (CAST(?1 AS UUID), CAST(?2 AS UUID), ?3,"
+          + " CAST(?4 AS TIMESTAMP))) s (cohort, parameter_id, granularity, bucket_start)"
+          + " ON r.cohort = s.cohort AND r.parameter_id = s.parameter_id"
+          + " AND r.granularity = s.granularity AND r.bucket_start = s.bucket_start"
+          + " WHEN NOT MATCHED THEN INSERT (cohort, parameter_id, granularity, bucket_start,"
+          + " bit_counts, report_count, max_step_count)"
+          + " VALUES (s.cohort, s.parameter_id, s.granularity, s.bucket_start, ?5, 0, 0)";
+
+  private final BitCountsConverter bitCountsConverter = new BitCountsConverter();
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public void insertBucketIfAbsent(HealthDataRollupId id, int messageBitSize) {
+    entityManager
+        .createNativeQuery(insertStatement(dialect()))
+        .setParameter(1, id.getCohort())
+        .setParameter(2, id.getParameterId())
+        .setParameter(3, id.getGranularity().name())
+        .setParameter(4, id.getBucketStart())
+        .setParameter(5, bitCountsConverter.convertToDatabaseColumn(new long[messageBitSize]))
+        .executeUpdate();
+  }
+
+  static String insertStatement(Dialect dialect) {
+    if (dialect instanceof PostgreSQLDialect) {
+      return POSTGRESQL_INSERT;
+    }
+    if (dialect instanceof H2Dialect) {
+      return H2_MERGE;
+    }
+    throw new UnsupportedOperationException(
+        "Rollup buckets are not supported for " + dialect.getClass().getSimpleName());
+  }
+
+  /** Fails on startup if buckets cannot be inserted in this database. */
+  @PostConstruct
+  void checkDialect() {
+    insertStatement(dialect());
+  }
+
+  private Dialect dialect() {
+    return NativeSqlDialect.of(entityManager);
+  }
+}
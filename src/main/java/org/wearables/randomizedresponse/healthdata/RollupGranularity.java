@@ -0,0 +1,34 @@
+/**
+ * This project was part of the summer semester Term course for computer security and privacy.
+ *
+ * @author Lennart Hahner
+ */
+package org.wearables.randomizedresponse.healthdata;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/** Width of the time buckets of the health data rollups. */
+public enum RollupGranularity {
+  /** Buckets covering one hour, starting at the full hour. */
+  HOUR(ChronoUnit.HOURS),
+
+  /** Buckets covering one day, starting at midnight. */
+  DAY(ChronoUnit.DAYS);
+
+  private final ChronoUnit unit;
+
+  RollupGranularity(ChronoUnit unit) {
+    this.unit = unit;
+  }
+
+  /**
+   * Returns the start of the bucket containing the given time.
+   *
+   * @param time Point in time, usually the interval start of a report
+   * @return Start of the enclosing bucket
+   */
+  public LocalDateTime bucketStart(LocalDateTime time) {
+    return time.truncatedTo(unit);
+  }
+}
@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,6 +15,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.annotation.Import;
 import org.wearables.randomizedresponse.TestUtil;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.AggregationPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterService;
 import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
 
@@ -45,6 +49,114 @@ class AggregationPipeTest {
         expectedCounts, aggregationPipe.countNumberOfIndexInCohort(healthDataEntities, 16));
   }
 
+  @Test
+  void countNumberOfIndexInCohort_manyReports() {
+    List<HealthDataEntity> healthDataEntities = new ArrayList<HealthDataEntity>();
+    for (int i = 0; i < 1000; i++) {
+      healthDataEntities.add(testUtil.mockHealthDataEntity32Bit());
+    }
+    int[] counts = aggregationPipe.countNumberOfIndexInCohort(healthDataEntities, 32);
+    String prr = testUtil.mockHealthDataEntity32Bit().getPrr();
+    for (int i = 0; i < counts.length; i++) {
+      assertEquals(prr.charAt(i) == '1' ? 1000 : 0, counts[i]);
+    }
+  }
+
+  @Test
+  void countNumberOfIndexInCohort_parallelEqualsSequential() {
+    List<HealthDataEntity> healthDataEntities = new ArrayList<HealthDataEntity>();
+    for (int i = 0; i < 50_000; i++) {
+      HealthDataEntity healthDataEntity = testUtil.mockHealthDataEntity32Bit();
+      if (i % 3 != 0) healthDataEntity.setPrr("0000000000000000000000000000001" + i % 2);
+      healthDataEntities.add(healthDataEntity);
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      AggregationPipe<HealthDataEntity> parallelPipe = new AggregationPipe<>(pool, 1);
+      assertArrayEquals(
+          aggregationPipe.countNumberOfIndexInCohort(healthDataEntities, 32),
+          parallelPipe.countNumberOfIndexInCohort(healthDataEntities, 32));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void countNumberOfIndexInCohort_vectorizedEqualsScalar() {
+    Random random = new Random(7);
+    AggregationPipe<HealthDataEntity> vectorPipe = new AggregationPipe<>(null, 1, true);
+    for (int messageBitSize : new int[] {16, 32, 192, 256}) {
+      List<HealthDataEntity> healthDataEntities = new ArrayList<HealthDataEntity>();
+      for (int i = 0; i < 3001; i++) {
+        long[] words = new long[BitVector.wordsFor(messageBitSize)];
+        for (int w = 0; w < words.length; w++) words[w] = random.nextLong();
+        if (messageBitSize % 64 != 0) words[words.length - 1] &= (1L << messageBitSize) - 1;
+        HealthDataEntity healthDataEntity = new HealthDataEntity();
+        healthDataEntity.setPrrBits(BitVector.of(messageBitSize, words));
+        healthDataEntities.add(healthDataEntity);
+      }
+      int[] bitCounts =
+          aggregationPipe.countNumberOfIndexInCohort(healthDataEntities, messageBitSize);
+      assertArrayEquals(
+          bitCounts, vectorPipe.countNumberOfIndexInCohort(healthDataEntities, messageBitSize));
+      assertArrayEquals(
+          aggregationPipe.estimateExpectedTrueCounts(
+              bitCounts, 3001, testUtil.mockParameterEntity()),
+          vectorPipe.estimateExpectedTrueCounts(bitCounts, 3001, testUtil.mockParameterEntity()));
+    }
+  }
+
+  @Test
+  void scan_parallelEqualsSequential() {
+    List<HealthDataEntity> healthDataEntities = new ArrayList<HealthDataEntity>();
+    for (int i = 0; i < 50_000; i++) {
+      HealthDataEntity healthDataEntity = testUtil.mockHealthDataEntity32Bit();
+      healthDataEntity.setStepCount(i % 9_000 + 100);
+      healthDataEntities.add(healthDataEntity);
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      ReportScan sequential = aggregationPipe.scan(healthDataEntities, 32);
+      ReportScan parallel =
+          new AggregationPipe<HealthDataEntity>(pool, 1).scan(healthDataEntities, 32);
+      ReportScan vectorized =
+          new AggregationPipe<HealthDataEntity>(pool, 1, true).scan(healthDataEntities, 32);
+      for (ReportScan scan : List.of(parallel, vectorized)) {
+        assertArrayEquals(sequential.bitCounts(), scan.bitCounts());
+        assertEquals(50_000, scan.reports());
+        assertEquals(100, scan.minValue());
+        assertEquals(9_099, scan.maxValue());
+        assertArrayEquals(sequential.histogram(), scan.histogram());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void process_derivesMaxRangeFromScan() throws Exception {
+    List<HealthDataEntity> healthDataEntities = new ArrayList<HealthDataEntity>();
+    for (int i = 0; i < 10; i++) {
+      HealthDataEntity healthDataEntity = testUtil.mockHealthDataEntity();
+      healthDataEntity.setStepCount(i * 130);
+      healthDataEntities.add(healthDataEntity);
+    }
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setEntities(healthDataEntities);
+    substance.setMessageBitSize(16);
+    substance.setRangeIterator(100);
+    substance.setParameterEntity(testUtil.mockParameterEntity());
+
+    aggregationPipe.process(substance);
+
+    assertEquals(1200, substance.getMaxRange());
+    assertEquals(10, substance.getNumberOfReports());
+    assertEquals(1170, substance.getReportScan().maxValue());
+    assertArrayEquals(
+        aggregationPipe.countNumberOfIndexInCohort(healthDataEntities, 16),
+        substance.getBitCounts());
+  }
+
   @Test
   void estimateExpectedTrueCounts() {
     int[] expectedCounts = {0, 10, 0, 10, 0, 10, 0, 0, 0, 0, 10, 0, 0, 10, 10, 10};
@@ -0,0 +1,90 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class BitVectorTest {
+
+  @Test
+  void fromBitString_roundTripsToString() {
+    String bits = "10111111000010110011111011111111";
+    BitVector bitVector = BitVector.fromBitString(bits);
+    assertEquals(32, bitVector.length());
+    assertEquals(bits, bitVector.toBitString());
+    assertTrue(bitVector.get(0));
+    assertFalse(bitVector.get(1));
+    assertEquals(23, bitVector.cardinality());
+  }
+
+  @Test
+  void toBytes_roundTripsToBitVector() {
+    BitVector bitVector =
+        BitVector.fromBitString(
+            "0101010000100111000100000001111101010100001001110001000000011111"
+                + "0000000000000001");
+    byte[] bytes = bitVector.toBytes();
+    assertEquals(11, bytes.length);
+    assertEquals(bitVector, BitVector.fromBytes(bytes));
+  }
+
+  @Test
+  void toBytes_usesLeastSignificantBitFirst() {
+    byte[] bytes = BitVector.fromBitString("1000000001000000").toBytes();
+    assertArrayEquals(new byte[] {0x01, 0x02, 0x00}, bytes);
+  }
+
+  @Test
+  void toBytes_keepsLengthThatIsNotAMultipleOfEight() {
+    BitVector bitVector = BitVector.fromBitString("1011000000101");
+    byte[] bytes = bitVector.toBytes();
+    assertEquals(3, bytes.length);
+    assertEquals(3, bytes[2]);
+    BitVector restored = new BitVectorConverter().convertToEntityAttribute(bytes);
+    assertEquals(13, restored.length());
+    assertEquals("1011000000101", restored.toBitString());
+    assertEquals(bitVector, restored);
+  }
+
+  @Test
+  void fromBytes_invalidPaddingByte() {
+    assertThrows(IllegalArgumentException.class, () -> BitVector.fromBytes(new byte[] {0x01, 8}));
+    assertThrows(IllegalArgumentException.class, () -> BitVector.fromBytes(new byte[0]));
+  }
+
+  @Test
+  void unpackBytes_fillsSlotOfWordBuffer() {
+    BitVector bitVector =
+        BitVector.fromBitString(
+            "1011111100001011001111101111111100000000000000000000000000000000101");
+    long[] words = {-1L, -1L, -1L, -1L};
+    BitVector.unpackBytes(bitVector.toBytes(), words, 1, 2);
+    assertEquals(-1L, words[0]);
+    assertArrayEquals(bitVector.words(), new long[] {words[1], words[2]});
+    assertEquals(-1L, words[3]);
+  }
+
+  @Test
+  void fromBitString_invalidCharacter() {
+    assertThrows(IllegalArgumentException.class, () -> BitVector.fromBitString("01a1"));
+  }
+
+  @Test
+  void fromBytes_readsTheSeedData() throws IOException {
+    Matcher bytea =
+        Pattern.compile("decode\\('([0-9a-f]+)', 'hex'\\)")
+            .matcher(Files.readString(Path.of("database/seed.sql")));
+    int vectors = 0;
+    while (bytea.find()) {
+      assertEquals(16, BitVector.fromBytes(HexFormat.of().parseHex(bytea.group(1))).length());
+      vectors++;
+    }
+    assertEquals(20, vectors);
+  }
+}
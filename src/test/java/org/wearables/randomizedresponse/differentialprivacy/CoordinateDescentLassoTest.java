@@ -0,0 +1,96 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CoordinateDescentLasso;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.RegressionPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+class CoordinateDescentLassoTest {
+
+  private static final double[] LAMBDAS = {0.01, 0.05, 0.1, 0.2, 0.4};
+
+  /** Random design with two Bloom filter bits per bin and counts of a few true bins plus noise. */
+  private static SparseDesignMatrix randomDesign(Random random, int bins, int k) {
+    int[][] rows = new int[bins][];
+    for (int j = 0; j < bins; j++) {
+      int first = random.nextInt(k);
+      int second = (first + 1 + random.nextInt(k - 1)) % k;
+      rows[j] = new int[] {first, second};
+    }
+    return SparseDesignMatrix.fromRows(rows, k);
+  }
+
+  private static double[] counts(SparseDesignMatrix design, Random random, double[] truth) {
+    double[] y = design.leftMultiply(truth);
+    for (int i = 0; i < y.length; i++) {
+      y[i] += random.nextGaussian() * 3;
+    }
+    return y;
+  }
+
+  @Test
+  void fitBest_matchesSmile() {
+    Random random = new Random(7);
+    SparseDesignMatrix design = randomDesign(random, 12, 64);
+    double[] truth = new double[12];
+    truth[2] = 80;
+    truth[5] = 40;
+    truth[9] = 20;
+    double[] y = counts(design, random, truth);
+
+    double[] smile =
+        new RegressionPipe<HealthDataEntity>().predictMostLikeliestClasses(design, y, LAMBDAS);
+    double[] native_ = new CoordinateDescentLasso(false).fitBest(design, y, LAMBDAS);
+
+    assertArrayEquals(smile, native_, 1e-2);
+  }
+
+  @Test
+  void fitPath_warmStartsMatchColdStarts() {
+    Random random = new Random(11);
+    SparseDesignMatrix design = randomDesign(random, 20, 128);
+    double[] truth = new double[20];
+    truth[0] = 50;
+    truth[13] = 30;
+    double[] y = counts(design, random, truth);
+    CoordinateDescentLasso lasso = new CoordinateDescentLasso(false);
+    CoordinateDescentLasso.Gram gram = CoordinateDescentLasso.Gram.of(design);
+
+    double[][] path = lasso.fitPath(gram, design, y, LAMBDAS);
+
+    for (int i = 0; i < LAMBDAS.length; i++) {
+      double[] cold = lasso.fitPath(gram, design, y, new double[] {LAMBDAS[i]})[0];
+      assertArrayEquals(cold, path[i], 1e-4);
+    }
+  }
+
+  @Test
+  void fitBest_nonNegative() {
+    Random random = new Random(3);
+    SparseDesignMatrix design = randomDesign(random, 15, 64);
+    double[] truth = new double[15];
+    truth[4] = 60;
+    double[] y = counts(design, random, truth);
+
+    double[] coefficients = new CoordinateDescentLasso(true).fitBest(design, y, LAMBDAS);
+
+    for (double coefficient : coefficients) {
+      assertTrue(coefficient >= 0);
+    }
+    assertEquals(60, coefficients[4], 5);
+  }
+
+  @Test
+  void fitPath_rejectsMismatchedTarget() {
+    SparseDesignMatrix design = SparseDesignMatrix.fromRows(new int[][] {{0, 1}, {2, 3}}, 4);
+    CoordinateDescentLasso lasso = new CoordinateDescentLasso(false);
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            lasso.fitPath(CoordinateDescentLasso.Gram.of(design), design, new double[3], LAMBDAS));
+  }
+}
@@ -4,14 +4,26 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.annotation.Import;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BinLayout;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CandidateIndexCache;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CandidateIndexKey;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DebiasConstants;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.DebiasPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlan;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlanCache;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlanKey;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterService;
 import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
 
@@ -33,25 +45,114 @@ class DebiasPipeTest {
   }
 
   @Test
-  void buildBinMap() {
-    Map<String, int[]> binMap = debiasPipe.buildBinMap(1000, 100);
-    assertDoesNotThrow(() -> debiasPipe.buildBinMap(1000, 10));
-    assertEquals(10, binMap.size());
+  void buildBinIndexes() {
+    int[][] binIndexes = debiasPipe.buildBinIndexes(new BinLayout(0, 100, 10));
+    assertDoesNotThrow(() -> debiasPipe.buildBinIndexes(new BinLayout(0, 10, 100)));
+    assertEquals(10, binIndexes.length);
+    assertArrayEquals(
+        debiasPipe.mapNumericCandidateStringsToIndex(300, 400, 32, null), binIndexes[3]);
   }
 
   @Test
   void buildDesignMatrix() {
-    Map<String, int[]> binMap =
-        Map.of(
-            "0-100", new int[] {2, 1},
-            "100-200", new int[] {2, 3},
-            "200-300", new int[] {4, 5});
+    int[][] binIndexes = {{2, 1}, {2, 3}, {4, 5}};
     double[][] expectedResult = {
       {0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
       {0, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
       {0, 0, 0, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}
     };
-    assertDoesNotThrow(() -> debiasPipe.convertClassesToArray(binMap, 16, 100));
-    assertArrayEquals(expectedResult, debiasPipe.convertClassesToArray(binMap, 16, 100));
+    assertDoesNotThrow(() -> debiasPipe.convertClassesToArray(binIndexes, 16));
+    assertArrayEquals(expectedResult, debiasPipe.convertClassesToArray(binIndexes, 16));
+  }
+
+  @Test
+  void mapNumericCandidateStringsToIndex_usesConfiguredSeeds() {
+    DebiasPipe<HealthDataEntity> zeroSeeded = new DebiasPipe<>(new CandidateIndexCache(1), 0, 0);
+    byte[] key = "0-100".getBytes(StandardCharsets.UTF_8);
+    int[] expected = new int[2];
+    debiasPipe.estimateIndexesFromHash(
+        Hashing.murmur3_128(HyperParameterConfiguration.DEFAULT_HASH_SEED_FIRST)
+            .hashBytes(key)
+            .asInt(),
+        Hashing.murmur3_128(HyperParameterConfiguration.DEFAULT_HASH_SEED_SECOND)
+            .hashBytes(key)
+            .asInt(),
+        32,
+        expected);
+    assertArrayEquals(expected, debiasPipe.mapNumericCandidateStringsToIndex(0, 100, 32, null));
+    assertFalse(
+        Arrays.equals(expected, zeroSeeded.mapNumericCandidateStringsToIndex(0, 100, 32, null)));
+  }
+
+  @Test
+  void process_reusesCompiledCandidateIndexTable() throws Exception {
+    DebiasPipe<HealthDataEntity> pipe = new DebiasPipe<>(new CandidateIndexCache(4), 1, 2);
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setMessageBitSize(32);
+    substance.setStartRange(0);
+    substance.setRangeIterator(100);
+    substance.setMaxRange(1000);
+
+    pipe.process(substance);
+    SparseDesignMatrix first = substance.getSparseDesignMatrix();
+    pipe.process(substance);
+
+    assertEquals(1, pipe.getCandidateIndexCache().stats().missCount());
+    assertEquals(1, pipe.getDecodePlanCache().stats().missCount());
+    assertEquals(1, pipe.getDecodePlanCache().stats().hitCount());
+    assertEquals(10, first.rows());
+    assertSame(first, substance.getSparseDesignMatrix());
+    assertArrayEquals(
+        pipe.mapNumericCandidateStringsToIndex(900, 1000, 32, null), substance.getBinIndexes()[9]);
+    assertEquals(new BinLayout(0, 100, 10), substance.getBins());
+
+    substance.setMaxRange(1100);
+    pipe.process(substance);
+    assertEquals(2, pipe.getCandidateIndexCache().stats().missCount());
+    assertEquals(11, substance.getSparseDesignMatrix().rows());
+  }
+
+  @Test
+  void process_sharesDecodePlanPerProfileUntilInvalidated() throws Exception {
+    DecodePlanCache cache = new DecodePlanCache(4);
+    DebiasPipe<HealthDataEntity> pipe = new DebiasPipe<>(cache, 1, 2);
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setMessageBitSize(32);
+    substance.setStartRange(0);
+    substance.setRangeIterator(100);
+    substance.setMaxRange(1000);
+    substance.setParameterEntity(new ParameterEntity(32, 2, 0.5, 0.5, 0.75));
+
+    pipe.process(substance);
+    DecodePlan plan = substance.getDecodePlan();
+    pipe.process(substance);
+
+    assertSame(plan, substance.getDecodePlan());
+    assertSame(plan.getDesignMatrix(), substance.getSparseDesignMatrix());
+    assertEquals(0.5625, plan.getDebiasConstants().offset(), 1e-12);
+    assertEquals(0.125, plan.getDebiasConstants().denominator(), 1e-12);
+
+    substance.setParameterEntity(new ParameterEntity(32, 2, 0.25, 0.5, 0.75));
+    pipe.process(substance);
+    assertNotSame(plan, substance.getDecodePlan());
+    assertSame(plan.getTable(), substance.getDecodePlan().getTable());
+
+    cache.invalidateAll();
+    pipe.process(substance);
+    assertEquals(2, cache.getCandidateIndexCache().stats().missCount());
+    assertEquals(3, cache.stats().missCount());
+  }
+
+  @Test
+  void decodePlan_cachesTheGramMatrix() {
+    DecodePlan plan =
+        new DecodePlanCache(1)
+            .get(
+                new DecodePlanKey(
+                    new CandidateIndexKey(1, 2, 64, 2, 0, 100, 500),
+                    new DebiasConstants(0.5, 0.25)));
+
+    assertArrayEquals(plan.getDesignMatrix().gram(), plan.getGram());
+    assertSame(plan.getGram(), plan.getGram());
   }
 }
@@ -0,0 +1,220 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodeInstrumentation;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodeStagesEndpoint;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecoderService;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+class DecodeInstrumentationTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final DecodeInstrumentation instrumentation = new DecodeInstrumentation(registry);
+
+  private final DecoderService<HealthDataEntity> decoderService =
+      new DecoderService<>(new HyperParameterConfiguration(), instrumentation);
+
+  @AfterEach
+  void tearDown() {
+    decoderService.destroy();
+  }
+
+  private Substance<HealthDataEntity> summarySubstance() {
+    ParameterEntity parameterEntity = new ParameterEntity(32, 2, 0.5, 0.75, 0.5);
+    parameterEntity.setProfile("instrumented");
+    Random random = new Random(3);
+    int[] bitCounts = new int[32];
+    for (int i = 0; i < bitCounts.length; i++) {
+      bitCounts[i] = 2000 + random.nextInt(3000);
+    }
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setBitCounts(bitCounts);
+    substance.setNumberOfReports(8000);
+    substance.setMessageBitSize(32);
+    substance.setParameterEntity(parameterEntity);
+    substance.setStartRange(0);
+    substance.setMaxRange(1000);
+    substance.setRangeIterator(100);
+    substance.setLambdas(new double[] {0.01, 0.05, 0.1, 0.2, 0.4});
+    return substance;
+  }
+
+  @Test
+  void decode_timesEveryPipeWithItsDimensions() {
+    decoderService.decode(summarySubstance());
+
+    for (String stage : List.of("aggregation", "debias", "regression")) {
+      Timer timer =
+          registry
+              .find(DecodeInstrumentation.TIMER_NAME)
+              .tags(
+                  "stage",
+                  stage,
+                  "outcome",
+                  DecodeInstrumentation.SUCCESS,
+                  "profile",
+                  "instrumented",
+                  "reports",
+                  "1e3",
+                  "k",
+                  "32",
+                  "bins",
+                  "1e1")
+              .timer();
+      assertNotNull(timer, stage);
+      assertEquals(1, timer.count());
+    }
+  }
+
+  @Test
+  void measurement_unknownDimensionsAreTaggedAsNone() {
+    instrumentation.start("fetch").stop(null, -1, 0, -1);
+
+    Timer timer = registry.find(DecodeInstrumentation.TIMER_NAME).tag("stage", "fetch").timer();
+    assertNotNull(timer);
+    assertEquals(DecodeInstrumentation.UNKNOWN, timer.getId().getTag("profile"));
+    assertEquals(DecodeInstrumentation.UNKNOWN, timer.getId().getTag("reports"));
+    assertEquals(DecodeInstrumentation.UNKNOWN, timer.getId().getTag("k"));
+    assertEquals(DecodeInstrumentation.UNKNOWN, timer.getId().getTag("bins"));
+  }
+
+  @Test
+  void measurement_closedWithoutStopIsRecordedAsFailure() throws Exception {
+    Path dump = Files.createTempFile("decode-stages", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(DecodeStagesEndpoint.JFR_EVENT_NAME);
+      recording.start();
+      assertThrows(
+          IllegalStateException.class,
+          () -> {
+            try (DecodeInstrumentation.Measurement fetch = instrumentation.start("fetch")) {
+              throw new IllegalStateException("fetch failed");
+            }
+          });
+      recording.stop();
+      recording.dump(dump);
+    }
+    List<RecordedEvent> events =
+        RecordingFile.readAllEvents(dump).stream()
+            .filter(e -> e.getEventType().getName().equals(DecodeStagesEndpoint.JFR_EVENT_NAME))
+            .toList();
+    Files.deleteIfExists(dump);
+
+    Timer timer = registry.find(DecodeInstrumentation.TIMER_NAME).tag("stage", "fetch").timer();
+    assertNotNull(timer);
+    assertEquals(DecodeInstrumentation.FAILURE, timer.getId().getTag("outcome"));
+    assertEquals(1, timer.count());
+    assertEquals(1, events.size());
+    assertEquals(DecodeInstrumentation.FAILURE, events.getFirst().getString("outcome"));
+  }
+
+  @Test
+  void measurement_profileTagsAreBounded() {
+    for (int i = 0; i < DecodeInstrumentation.MAX_PROFILE_TAGS + 8; i++) {
+      instrumentation.start("serialize").stop("profile-" + i, -1, 0, -1);
+    }
+
+    List<String> profiles =
+        registry.find(DecodeInstrumentation.TIMER_NAME).timers().stream()
+            .map(timer -> timer.getId().getTag("profile"))
+            .toList();
+    assertEquals(DecodeInstrumentation.MAX_PROFILE_TAGS + 1, profiles.size());
+    assertTrue(profiles.contains(DecodeInstrumentation.OTHER));
+    assertEquals(
+        8,
+        registry
+            .find(DecodeInstrumentation.TIMER_NAME)
+            .tag("profile", DecodeInstrumentation.OTHER)
+            .timer()
+            .count());
+  }
+
+  @Test
+  void profileTag_concurrentProfilesStayBounded() throws Exception {
+    int profiles = DecodeInstrumentation.MAX_PROFILE_TAGS * 4;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> measurements = new ArrayList<>();
+      for (int i = 0; i < profiles * 2; i++) {
+        String profile = "concurrent-" + (i % profiles);
+        measurements.add(
+            executor.submit(() -> instrumentation.start("serialize").stop(profile, -1, 0, -1)));
+      }
+      for (Future<?> measurement : measurements) {
+        measurement.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Set<String> tagged =
+        registry.find(DecodeInstrumentation.TIMER_NAME).timers().stream()
+            .map(timer -> timer.getId().getTag("profile"))
+            .filter(profile -> !profile.equals(DecodeInstrumentation.OTHER))
+            .collect(Collectors.toSet());
+    assertEquals(DecodeInstrumentation.MAX_PROFILE_TAGS, tagged.size());
+    assertEquals(
+        profiles * 2,
+        registry.find(DecodeInstrumentation.TIMER_NAME).timers().stream()
+            .mapToLong(Timer::count)
+            .sum());
+  }
+
+  @Test
+  void decode_emitsJfrEventPerPipe() throws Exception {
+    Path dump = Files.createTempFile("decode-stages", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(DecodeStagesEndpoint.JFR_EVENT_NAME);
+      recording.start();
+      decoderService.decode(summarySubstance());
+      recording.stop();
+      recording.dump(dump);
+    }
+    List<RecordedEvent> events =
+        RecordingFile.readAllEvents(dump).stream()
+            .filter(e -> e.getEventType().getName().equals(DecodeStagesEndpoint.JFR_EVENT_NAME))
+            .toList();
+    Files.deleteIfExists(dump);
+
+    assertEquals(
+        List.of("aggregation", "debias", "regression"),
+        events.stream().map(e -> e.getString("stage")).toList());
+    assertEquals(8000, events.getFirst().getLong("reports"));
+    assertEquals(32, events.getFirst().getInt("k"));
+    assertEquals(10, events.getFirst().getInt("bins"));
+  }
+
+  @Test
+  void endpoint_listsStageTimings() {
+    decoderService.decode(summarySubstance());
+
+    List<DecodeStagesEndpoint.StageTiming> regression =
+        new DecodeStagesEndpoint(instrumentation).stage("regression");
+    assertEquals(1, regression.size());
+    assertEquals("instrumented", regression.getFirst().profile());
+    assertEquals(1, regression.getFirst().count());
+    assertEquals(3, new DecodeStagesEndpoint(instrumentation).stages().size());
+  }
+}
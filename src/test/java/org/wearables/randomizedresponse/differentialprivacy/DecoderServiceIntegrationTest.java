@@ -7,6 +7,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -14,10 +20,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.wearables.randomizedresponse.TestUtil;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BinLayout;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.DecoderService;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterService;
 import org.wearables.randomizedresponse.healthdata.HealthData;
 import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
@@ -42,6 +49,10 @@ public class DecoderServiceIntegrationTest {
 
   double averageSteps = 0;
 
+  private List<HealthDataEntity> testCohortOne;
+
+  private Substance<HealthDataEntity> substance;
+
   private static String readClasspath(String path) throws IOException {
     Resource resource = new ClassPathResource(path); // no leading slash
     try (var is = resource.getInputStream()) {
@@ -58,30 +69,82 @@ public class DecoderServiceIntegrationTest {
     Report<HealthData> reportCohortOne =
         mappingUtils.objectMapper.readValue(
             testJsonCohortOne, new TypeReference<Report<HealthData>>() {});
-    List<HealthDataEntity> testCohortOne =
-        healthDataService.mapToHealthDataEntities(reportCohortOne);
+    testCohortOne = healthDataService.mapToHealthDataEntities(reportCohortOne);
 
     averageSteps =
         testCohortOne.stream().mapToInt(HealthDataEntity::getStepCount).average().orElse(0);
 
-    Substance<HealthDataEntity> substance = new Substance<>();
-    substance.setEntities(testCohortOne);
-    substance.setMessageBitSize(parameterService.getDefaultParameterEntity().getMessageBitSize());
-    substance.setMaxRange(1000);
-    substance.setRangeIterator(100);
-    substance.setStartRange(0);
-    substance.setCohort(1);
-    substance.setLambdas(new double[] {0.01, 0.05, 0.1, 0.2, 0.4});
-    substance.setParameterEntity(testUtil.mockParameterEntity());
-    ReflectionTestUtils.setField(decoderService, "substance", substance);
+    substance = cohortSubstance(testCohortOne);
+  }
+
+  private Substance<HealthDataEntity> cohortSubstance(List<HealthDataEntity> entities) {
+    Substance<HealthDataEntity> cohortSubstance = new Substance<>();
+    cohortSubstance.setEntities(entities);
+    cohortSubstance.setMessageBitSize(
+        parameterService.getDefaultParameterEntity().getMessageBitSize());
+    cohortSubstance.setMaxRange(1000);
+    cohortSubstance.setRangeIterator(100);
+    cohortSubstance.setStartRange(0);
+    cohortSubstance.setCohort(1);
+    cohortSubstance.setLambdas(new double[] {0.01, 0.05, 0.1, 0.2, 0.4});
+    cohortSubstance.setParameterEntity(testUtil.mockParameterEntity());
+    return cohortSubstance;
   }
 
   @Test
   void decoderPipelineUntilLassoRegression() {
 
-    assertDoesNotThrow(() -> decoderService.runPipeline());
-    Substance<HealthDataEntity> substance = new Substance<>();
-    substance = decoderService.getSubstance();
+    assertDoesNotThrow(() -> decoderService.decode(substance));
+  }
+
+  @Test
+  void decode_parallelDecodesMatchSequentialResults() throws Exception {
+    int cohorts = 8;
+    List<List<HealthDataEntity>> subsets = new ArrayList<>();
+    List<double[]> expected = new ArrayList<>();
+    for (int c = 0; c < cohorts; c++) {
+      List<HealthDataEntity> subset = new ArrayList<>();
+      for (int i = c; i < testCohortOne.size(); i += c + 1) {
+        subset.add(testCohortOne.get(i));
+      }
+      subsets.add(subset);
+      expected.add(decoderService.decode(cohortSubstance(subset)).getProbabilities());
+    }
+
+    int rounds = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(cohorts);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<double[]>> futures = new ArrayList<>();
+      for (int r = 0; r < rounds; r++) {
+        for (int c = 0; c < cohorts; c++) {
+          List<HealthDataEntity> subset = subsets.get(c);
+          futures.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    return decoderService.decode(cohortSubstance(subset)).getProbabilities();
+                  }));
+        }
+      }
+      start.countDown();
+      for (int i = 0; i < futures.size(); i++) {
+        assertArrayEquals(expected.get(i % cohorts), futures.get(i).get(30, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void saveParameterProfile_dropsCompiledDecodePlans() {
+    decoderService.decode(substance);
+    assertTrue(decoderService.getDecodePlanCache().size() > 0);
+
+    parameterService.save(
+        new ParameterEntity(UUID.randomUUID(), "plan-" + UUID.randomUUID(), 32, 2, 0.5, 0.5, 0.75));
+
+    assertEquals(0, decoderService.getDecodePlanCache().size());
   }
 
   @Test
@@ -95,6 +158,16 @@ public class DecoderServiceIntegrationTest {
     assertEquals(1400, decoderService.calculateMaxRangeForStepCountBin(healthDataEntities, 100));
   }
 
+  @Test
+  void buildOutputRangeToProbabiltiesMap_keepsNumericBinOrder() {
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setBins(new BinLayout(0, 5000, 3));
+    substance.setProbabilities(new double[] {0.5, -0.1, 0.6});
+    Map<String, Double> map = decoderService.buildOutputRangeToProbabiltiesMap(substance);
+    assertEquals(List.of("0-5000", "5000-10000", "10000-15000"), List.copyOf(map.keySet()));
+    assertEquals(0, map.get("5000-10000"));
+  }
+
   @Test
   void runPipeline_computeLargeData() throws IOException {
     String testJsonCohortOne = readClasspath(LARGE_DATASET);
@@ -114,9 +187,7 @@ public class DecoderServiceIntegrationTest {
     substance.setCohort(1);
     substance.setLambdas(new double[] {0.01, 0.05, 0.1, 0.2, 0.4});
     substance.setParameterEntity(testUtil.mockParameterEntity());
-    ReflectionTestUtils.setField(decoderService, "substance", substance);
-    assertDoesNotThrow(() -> decoderService.runPipeline());
-    substance = decoderService.getSubstance();
+    assertDoesNotThrow(() -> decoderService.decode(substance));
   }
 
   @Test
@@ -138,9 +209,7 @@ public class DecoderServiceIntegrationTest {
     substance.setCohort(1);
     substance.setLambdas(new double[] {0.01, 0.05, 0.1, 0.2, 0.4});
     substance.setParameterEntity(testUtil.mockParameterEntity());
-    ReflectionTestUtils.setField(decoderService, "substance", substance);
-    assertDoesNotThrow(() -> decoderService.runPipeline());
-    substance = decoderService.getSubstance();
+    assertDoesNotThrow(() -> decoderService.decode(substance));
     Map<String, Double> map = decoderService.buildOutputRangeToProbabiltiesMap(substance);
     assertNotNull(map);
   }
@@ -0,0 +1,108 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.EmPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+class EmPipeTest {
+
+  private static final int REPORTS = 100_000;
+
+  private final ParameterEntity parameterEntity = new ParameterEntity(64, 2, 0.5, 0.25, 0.75);
+
+  private final EmPipe<HealthDataEntity> emPipe = new EmPipe<>();
+
+  private SparseDesignMatrix designMatrix;
+
+  private double[] truth;
+
+  private int[] bitCounts;
+
+  @BeforeEach
+  void setUp() {
+    Random random = new Random(29);
+    int bins = 10;
+    int k = 64;
+    int[][] rows = new int[bins][];
+    for (int j = 0; j < bins; j++) {
+      int first = random.nextInt(k);
+      rows[j] = new int[] {first, (first + 1 + random.nextInt(k - 1)) % k};
+    }
+    designMatrix = SparseDesignMatrix.fromRows(rows, k);
+    truth = new double[bins];
+    truth[0] = 0.5;
+    truth[4] = 0.3;
+    truth[7] = 0.2;
+    // Expected bit counts: p0 = 0.375 outside the Bloom filter, p1 = 0.625 inside.
+    double[] share = designMatrix.leftMultiply(truth);
+    bitCounts = new int[k];
+    for (int j = 0; j < k; j++) {
+      bitCounts[j] = (int) Math.round(REPORTS * (0.375 + 0.25 * share[j]));
+    }
+  }
+
+  @Test
+  void estimateDistribution_recoversExpectedCounts() {
+    double[] estimate =
+        emPipe.estimateDistribution(designMatrix, bitCounts, REPORTS, parameterEntity);
+
+    assertArrayEquals(truth, estimate, 1e-3);
+    assertEquals(1, Arrays.stream(estimate).sum(), 1e-9);
+  }
+
+  @Test
+  void estimateDistribution_staysNonNegativeUnderNoise() {
+    Random random = new Random(31);
+    int[] noisy = bitCounts.clone();
+    for (int j = 0; j < noisy.length; j++) {
+      noisy[j] += (int) (random.nextGaussian() * 150);
+    }
+
+    double[] estimate = emPipe.estimateDistribution(designMatrix, noisy, REPORTS, parameterEntity);
+
+    for (double probability : estimate) {
+      assertTrue(probability >= 0);
+    }
+    assertEquals(1, Arrays.stream(estimate).sum(), 1e-9);
+  }
+
+  @Test
+  void estimateDistribution_stopsAtIterationCap() {
+    double[] oneIteration =
+        new EmPipe<HealthDataEntity>(0, 1)
+            .estimateDistribution(designMatrix, bitCounts, REPORTS, parameterEntity);
+    double[] converged =
+        emPipe.estimateDistribution(designMatrix, bitCounts, REPORTS, parameterEntity);
+
+    assertFalse(Arrays.equals(oneIteration, converged));
+  }
+
+  @Test
+  void estimateDistribution_rejectsMismatchedBitCounts() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> emPipe.estimateDistribution(designMatrix, new int[3], REPORTS, parameterEntity));
+  }
+
+  @Test
+  void process_setsCountsAndProbabilities() throws Exception {
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setSparseDesignMatrix(designMatrix);
+    substance.setBitCounts(bitCounts);
+    substance.setNumberOfReports(REPORTS);
+    substance.setParameterEntity(parameterEntity);
+
+    emPipe.process(substance);
+
+    assertEquals(0.5, substance.getProbabilities()[0], 1e-3);
+    assertEquals(substance.getProbabilities()[4] * REPORTS, substance.getCoefficients()[4], 1e-6);
+  }
+}
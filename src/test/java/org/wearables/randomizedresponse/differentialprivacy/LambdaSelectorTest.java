@@ -0,0 +1,145 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CoordinateDescentLasso;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.LambdaSelector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.LassoFit;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.LassoFitter;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.RegressionPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+class LambdaSelectorTest {
+
+  private static final double[] LAMBDAS = {0.01, 0.05, 0.1, 0.2, 0.4};
+
+  private ExecutorService executor;
+
+  private SparseDesignMatrix designMatrix;
+
+  private double[] expectedTrueCounts;
+
+  @BeforeEach
+  void setUp() {
+    executor = new ForkJoinPool(4);
+    Random random = new Random(5);
+    int bins = 12;
+    int k = 64;
+    int[][] rows = new int[bins][];
+    for (int j = 0; j < bins; j++) {
+      int first = random.nextInt(k);
+      rows[j] = new int[] {first, (first + 1 + random.nextInt(k - 1)) % k};
+    }
+    designMatrix = SparseDesignMatrix.fromRows(rows, k);
+    double[] truth = new double[bins];
+    truth[1] = 70;
+    truth[6] = 30;
+    expectedTrueCounts = designMatrix.leftMultiply(truth);
+    for (int i = 0; i < k; i++) {
+      expectedTrueCounts[i] += random.nextGaussian() * 3;
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  void select_inSampleInParallelMatchesSequentialFitLoop() throws Exception {
+    RegressionPipe<HealthDataEntity> regressionPipe = new RegressionPipe<>();
+    LambdaSelector selector = new LambdaSelector(regressionPipe::fitSmile, executor, 0);
+
+    LambdaSelector.Selection selection = selector.select(designMatrix, expectedTrueCounts, LAMBDAS);
+
+    assertArrayEquals(
+        regressionPipe.predictMostLikeliestClasses(designMatrix, expectedTrueCounts, LAMBDAS),
+        selection.fit().coefficients(),
+        1e-9);
+    assertEquals(LAMBDAS.length, selection.errors().length);
+  }
+
+  @Test
+  void select_crossValidatedInParallelMatchesSequential() throws Exception {
+    CoordinateDescentLasso lasso = new CoordinateDescentLasso(false);
+    double[] lambdas = new double[24];
+    for (int i = 0; i < lambdas.length; i++) {
+      lambdas[i] = Math.pow(2, i - 8);
+    }
+
+    LambdaSelector.Selection parallel =
+        new LambdaSelector(lasso, executor, 4).select(designMatrix, expectedTrueCounts, lambdas);
+    LambdaSelector.Selection sequential =
+        new LambdaSelector(lasso, null, 4).select(designMatrix, expectedTrueCounts, lambdas);
+
+    assertEquals(sequential.lambda(), parallel.lambda());
+    assertArrayEquals(sequential.errors(), parallel.errors(), 1e-12);
+    assertArrayEquals(sequential.fit().coefficients(), parallel.fit().coefficients(), 1e-12);
+  }
+
+  @Test
+  void select_crossValidatedFitsOnePathPerFold() throws Exception {
+    CoordinateDescentLasso lasso = new CoordinateDescentLasso(false);
+    AtomicInteger paths = new AtomicInteger();
+    AtomicInteger singleFits = new AtomicInteger();
+    LassoFitter counting =
+        new LassoFitter() {
+          @Override
+          public LassoFit fit(SparseDesignMatrix matrix, double[] y, double lambda) {
+            singleFits.incrementAndGet();
+            return lasso.fit(matrix, y, lambda);
+          }
+
+          @Override
+          public LassoFit[] fitPath(SparseDesignMatrix matrix, double[] y, double[] lambdas) {
+            paths.incrementAndGet();
+            return lasso.fitPath(matrix, y, lambdas);
+          }
+
+          @Override
+          public boolean fitsPathJointly() {
+            return true;
+          }
+        };
+
+    LambdaSelector.Selection selection =
+        new LambdaSelector(counting, executor, 4).select(designMatrix, expectedTrueCounts, LAMBDAS);
+
+    assertEquals(5, paths.get());
+    assertEquals(0, singleFits.get());
+    int best = Arrays.binarySearch(LAMBDAS, selection.lambda());
+    assertArrayEquals(
+        lasso.fitPath(designMatrix, expectedTrueCounts, LAMBDAS)[best].coefficients(),
+        selection.fit().coefficients(),
+        1e-12);
+  }
+
+  @Test
+  void select_crossValidatedRejectsHeavyRegularization() throws Exception {
+    LambdaSelector selector =
+        new LambdaSelector(new RegressionPipe<HealthDataEntity>()::fitSmile, executor, 4);
+
+    LambdaSelector.Selection selection =
+        selector.select(designMatrix, expectedTrueCounts, new double[] {1e6, 0.1});
+
+    assertEquals(0.1, selection.lambda());
+    assertTrue(selection.errors()[0] > selection.errors()[1]);
+  }
+
+  @Test
+  void select_rejectsMoreFoldsThanBits() {
+    LambdaSelector selector = new LambdaSelector(new CoordinateDescentLasso(false), null, 65);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> selector.select(designMatrix, expectedTrueCounts, LAMBDAS));
+  }
+}
@@ -0,0 +1,161 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.CandidateIndexKey;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlan;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlanCache;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodePlanKey;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.NnlsMode;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.NnlsPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.NonNegativeLeastSquares;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.substance.Substance;
+import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
+
+class NnlsPipeTest {
+
+  private SparseDesignMatrix designMatrix;
+
+  private double[] truth;
+
+  @BeforeEach
+  void setUp() {
+    Random random = new Random(17);
+    int bins = 15;
+    int k = 64;
+    int[][] rows = new int[bins][];
+    for (int j = 0; j < bins; j++) {
+      int first = random.nextInt(k);
+      rows[j] = new int[] {first, (first + 1 + random.nextInt(k - 1)) % k};
+    }
+    designMatrix = SparseDesignMatrix.fromRows(rows, k);
+    truth = new double[bins];
+    truth[3] = 90;
+    truth[8] = 45;
+    truth[11] = 10;
+  }
+
+  @Test
+  void fit_recoversNoiseFreeCounts() {
+    double[] y = designMatrix.leftMultiply(truth);
+    assertArrayEquals(truth, new NonNegativeLeastSquares().fit(designMatrix, y), 1e-6);
+  }
+
+  @Test
+  void fit_satisfiesOptimalityConditions() {
+    Random random = new Random(23);
+    double[] y = designMatrix.leftMultiply(truth);
+    for (int i = 0; i < y.length; i++) {
+      y[i] += random.nextGaussian() * 15 - 5;
+    }
+
+    double[] b = new NonNegativeLeastSquares().fit(designMatrix, y);
+
+    double[] residual = designMatrix.leftMultiply(b);
+    for (int i = 0; i < y.length; i++) {
+      residual[i] = y[i] - residual[i];
+    }
+    double[] gradient = designMatrix.multiply(residual);
+    for (int j = 0; j < b.length; j++) {
+      assertTrue(b[j] >= 0);
+      if (b[j] > 0) {
+        assertEquals(0, gradient[j], 1e-6);
+      } else {
+        assertTrue(gradient[j] <= 1e-6);
+      }
+    }
+  }
+
+  @Test
+  void fitOnSupport_keepsBinsOutsideTheSupportAtZero() {
+    double[] y = designMatrix.leftMultiply(truth);
+    double[] lasso = new double[truth.length];
+    lasso[3] = 80;
+    lasso[8] = 40;
+    lasso[0] = -3;
+
+    double[] counts = new NnlsPipe<HealthDataEntity>().fitOnSupport(designMatrix, y, lasso);
+
+    for (int j = 0; j < counts.length; j++) {
+      if (j != 3 && j != 8) {
+        assertEquals(0, counts[j]);
+      }
+    }
+    assertTrue(counts[3] > 0);
+    assertTrue(counts[8] > 0);
+  }
+
+  @Test
+  void process_replacesLassoWithNonNegativeProbabilities() throws Exception {
+    Substance<HealthDataEntity> substance = new Substance<>();
+    substance.setSparseDesignMatrix(designMatrix);
+    substance.setExpectedTrueCounts(designMatrix.leftMultiply(truth));
+    substance.setCoefficients(new double[truth.length]);
+    substance.setNumberOfReports(300);
+
+    new NnlsPipe<HealthDataEntity>(new NonNegativeLeastSquares(), NnlsMode.REPLACE)
+        .process(substance);
+
+    assertEquals(0.3, substance.getProbabilities()[3], 1e-6);
+    assertArrayEquals(truth, substance.getFinalClassCounts(), 1e-6);
+  }
+
+  @Test
+  void fitOnSupport_withDecodePlanMatchesDesignMatrix() {
+    DecodePlan plan =
+        new DecodePlanCache(1)
+            .get(new DecodePlanKey(new CandidateIndexKey(1, 2, 64, 2, 0, 100, 1200), null));
+    SparseDesignMatrix planDesign = plan.getDesignMatrix();
+    Random random = new Random(37);
+    double[] counts = new double[planDesign.rows()];
+    counts[1] = 70;
+    counts[6] = 20;
+    double[] y = planDesign.leftMultiply(counts);
+    for (int i = 0; i < y.length; i++) {
+      y[i] += random.nextGaussian() * 10;
+    }
+    double[] lasso = new double[planDesign.rows()];
+    lasso[1] = 50;
+    lasso[6] = 10;
+    lasso[9] = 1;
+    NnlsPipe<HealthDataEntity> pipe = new NnlsPipe<>();
+
+    assertArrayEquals(
+        pipe.fitOnSupport(planDesign, y, null), pipe.fitOnSupport(plan, y, null), 1e-6);
+    assertArrayEquals(
+        pipe.fitOnSupport(planDesign, y, lasso), pipe.fitOnSupport(plan, y, lasso), 1e-6);
+  }
+
+  @Test
+  void fitOnSupport_withRankDeficientDecodePlanRunsActiveSet() {
+    DecodePlan plan =
+        new DecodePlanCache(1)
+            .get(new DecodePlanKey(new CandidateIndexKey(1, 2, 8, 2, 0, 100, 1200), null));
+    SparseDesignMatrix planDesign = plan.getDesignMatrix();
+    assertTrue(planDesign.rows() > planDesign.columns());
+    double[] counts = new double[planDesign.rows()];
+    counts[2] = 40;
+    counts[5] = 25;
+    double[] y = planDesign.leftMultiply(counts);
+    NnlsPipe<HealthDataEntity> pipe = new NnlsPipe<>();
+
+    double[] fitted = pipe.fitOnSupport(plan, y, null);
+
+    for (double count : fitted) {
+      assertTrue(Double.isFinite(count) && count >= 0);
+    }
+    assertArrayEquals(y, planDesign.leftMultiply(fitted), 1e-3);
+    assertArrayEquals(pipe.fitOnSupport(planDesign, y, null), fitted, 1e-6);
+  }
+
+  @Test
+  void constructor_rejectsModeOff() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new NnlsPipe<HealthDataEntity>(new NonNegativeLeastSquares(), NnlsMode.OFF));
+  }
+}
@@ -8,6 +8,7 @@ import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.annotation.Import;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.RegressionPipe;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
 import org.wearables.randomizedresponse.healthdata.HealthDataEntity;
 import smile.data.DataFrame;
 
@@ -34,6 +35,24 @@ class RegressionPipeTest {
                 designMatrix, 16, expectedTrueCounts, lambdas));
   }
 
+  @Test
+  void predictMostLikeliestClasses_sparseEqualsDense() {
+    double[][] designMatrix = {
+      {0, 1, 0, 0, 0, 1, 0, 0, 1, 0, 1, 0, 0, 1, 0, 0},
+      {1, 0, 1, 0, 1, 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1},
+      {0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 0, 1, 0, 0, 1, 0}
+    };
+    double[] expectedTrueCounts = {
+      -24, 32, 32, -24, -24, 35, 35, -24, -24, 35, 35, -24, -24, -24, 35, -24
+    };
+    double[] lambdas = {0.01, 0.05, 0.1, 0.2, 0.4};
+    assertArrayEquals(
+        regressionPipe.predictMostLikeliestClasses(designMatrix, 16, expectedTrueCounts, lambdas),
+        regressionPipe.predictMostLikeliestClasses(
+            SparseDesignMatrix.fromDense(designMatrix), expectedTrueCounts, lambdas),
+        1e-9);
+  }
+
   @Test
   void getCoefficientBasedMatrix() {
     double[][] designMatrix = {
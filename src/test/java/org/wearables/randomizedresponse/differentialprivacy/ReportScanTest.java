@@ -0,0 +1,127 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+
+class ReportScanTest {
+
+  @Test
+  void add_collectsBitCountsAndValueStatistics() {
+    ReportScan scan = new ReportScan(16, 0, 100);
+    scan.add(BitVector.fromBitString("1000000000000001"), 250);
+    scan.add(BitVector.fromBitString("1100000000000000"), 40);
+    scan.add(BitVector.fromBitString("0000000000000001"), 420);
+
+    assertEquals(3, scan.reports());
+    assertEquals(40, scan.minValue());
+    assertEquals(420, scan.maxValue());
+    long[] histogram = new long[ReportScan.HISTOGRAM_BUCKETS + 1];
+    histogram[0] = 1;
+    histogram[2] = 1;
+    histogram[4] = 1;
+    assertArrayEquals(histogram, scan.histogram());
+    long[] expected = new long[16];
+    expected[0] = 2;
+    expected[1] = 1;
+    expected[15] = 2;
+    assertArrayEquals(expected, scan.bitCounts());
+    BitCountSummary summary = scan.toSummary();
+    assertArrayEquals(expected, summary.bitCounts());
+    assertEquals(3, summary.reportCount());
+    assertEquals(420, summary.maxStepCount());
+  }
+
+  @Test
+  void add_packedWordsEqualsBitVectors() {
+    Random random = new Random(3);
+    int messageBitSize = 100;
+    int wordsPerReport = BitVector.wordsFor(messageBitSize);
+    long[] packed = new long[500 * wordsPerReport];
+    ReportScan fromVectors = new ReportScan(messageBitSize);
+    ReportScan fromWords = new ReportScan(messageBitSize);
+    for (int r = 0; r < 500; r++) {
+      long[] words = new long[wordsPerReport];
+      for (int w = 0; w < wordsPerReport; w++) words[w] = random.nextLong();
+      words[wordsPerReport - 1] &= (1L << (messageBitSize % 64)) - 1;
+      System.arraycopy(words, 0, packed, r * wordsPerReport, wordsPerReport);
+      int value = random.nextInt(20_000);
+      fromVectors.add(BitVector.of(messageBitSize, words), value);
+      fromWords.add(packed, r * wordsPerReport, value);
+    }
+    assertArrayEquals(fromVectors.bitCounts(), fromWords.bitCounts());
+    assertArrayEquals(fromVectors.histogram(), fromWords.histogram());
+    assertEquals(fromVectors.maxValue(), fromWords.maxValue());
+  }
+
+  @Test
+  void addAll_countsPackedBatch() {
+    BitVector first = BitVector.fromBitString("1000000000000001");
+    BitVector second = BitVector.fromBitString("1100000000000000");
+    long[] words = {first.words()[0], second.words()[0], -1L};
+    ReportScan batch = new ReportScan(16);
+    batch.addAll(words, new int[] {700, 2_300, 99}, 2);
+    ReportScan single = new ReportScan(16);
+    single.add(first, 700);
+    single.add(second, 2_300);
+
+    assertEquals(2, batch.reports());
+    assertArrayEquals(single.bitCounts(), batch.bitCounts());
+    assertArrayEquals(single.histogram(), batch.histogram());
+    assertEquals(700, batch.minValue());
+    assertEquals(2_300, batch.maxValue());
+  }
+
+  @Test
+  void merge_addsDisjointScans() {
+    ReportScan left = new ReportScan(16, 0, 100);
+    left.add(BitVector.fromBitString("1000000000000000"), 50);
+    ReportScan right = new ReportScan(16, 0, 100);
+    right.add(BitVector.fromBitString("1000000000000000"), 1_050);
+    right.add(BitVector.fromBitString("0100000000000000"), 10);
+
+    left.merge(right);
+
+    assertEquals(3, left.reports());
+    assertEquals(2, left.bitCounts()[0]);
+    assertEquals(10, left.minValue());
+    assertEquals(1_050, left.maxValue());
+    assertEquals(2, left.histogram()[0]);
+    assertEquals(1, left.histogram()[10]);
+    assertThrows(IllegalArgumentException.class, () -> left.merge(new ReportScan(8, 0, 100)));
+    assertThrows(IllegalArgumentException.class, () -> left.merge(new ReportScan(16, 0, 50)));
+    assertThrows(IllegalArgumentException.class, () -> left.merge(new ReportScan(16, 10, 100)));
+  }
+
+  @Test
+  void add_valuesOutsideTheRangeStayInTheBoundedHistogram() {
+    ReportScan scan = new ReportScan(8, 1_000, 10);
+    scan.add(BitVector.fromBitString("10000000"), Integer.MAX_VALUE);
+    scan.add(BitVector.fromBitString("10000000"), 1_000 + 10 * ReportScan.HISTOGRAM_BUCKETS);
+    scan.add(BitVector.fromBitString("10000000"), -5);
+    scan.add(BitVector.fromBitString("10000000"), Integer.MIN_VALUE);
+
+    long[] histogram = scan.histogram();
+    assertEquals(ReportScan.HISTOGRAM_BUCKETS + 1, histogram.length);
+    assertEquals(2, histogram[0]);
+    assertEquals(2, histogram[ReportScan.HISTOGRAM_BUCKETS]);
+    assertEquals(Integer.MIN_VALUE, scan.minValue());
+    assertEquals(Integer.MAX_VALUE, scan.maxValue());
+    assertThrows(IllegalArgumentException.class, () -> new ReportScan(8, 0, 0));
+  }
+
+  @Test
+  void emptyScan_hasNoValues() {
+    ReportScan scan = new ReportScan(8);
+    assertEquals(0, scan.reports());
+    assertEquals(0, scan.minValue());
+    assertEquals(0, scan.maxValue());
+    assertEquals(0, Arrays.stream(scan.histogram()).sum());
+  }
+}
@@ -0,0 +1,59 @@
+package org.wearables.randomizedresponse.differentialprivacy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.SparseDesignMatrix;
+
+class SparseDesignMatrixTest {
+
+  private final int[][] rows = {{2, 1}, {3, 3}, {0, 4}};
+
+  @Test
+  void fromRows_storesSortedUniqueIndexes() {
+    SparseDesignMatrix matrix = SparseDesignMatrix.fromRows(rows, 5);
+    assertEquals(3, matrix.rows());
+    assertEquals(5, matrix.columns());
+    assertEquals(5, matrix.nonZeros());
+    assertArrayEquals(new int[] {0, 2, 3, 5}, matrix.rowPointers());
+    assertArrayEquals(new int[] {1, 2, 3, 0, 4}, matrix.columnIndexes());
+    assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, matrix.columnPointers());
+    assertArrayEquals(new int[] {2, 0, 0, 1, 2}, matrix.rowIndexes());
+  }
+
+  @Test
+  void toDense_roundTrip() {
+    double[][] dense = SparseDesignMatrix.fromRows(rows, 5).toDense();
+    assertArrayEquals(new double[] {0, 1, 1, 0, 0}, dense[0]);
+    assertArrayEquals(new double[] {0, 0, 0, 1, 0}, dense[1]);
+    SparseDesignMatrix roundTrip = SparseDesignMatrix.fromDense(dense);
+    assertArrayEquals(
+        SparseDesignMatrix.fromRows(rows, 5).columnIndexes(), roundTrip.columnIndexes());
+  }
+
+  @Test
+  void multiply_matchesDense() {
+    SparseDesignMatrix matrix = SparseDesignMatrix.fromRows(rows, 5);
+    assertArrayEquals(new double[] {5, 4, 6}, matrix.multiply(new double[] {1, 2, 3, 4, 5}), 1e-12);
+    assertArrayEquals(
+        new double[] {3, 1, 1, 2, 3}, matrix.leftMultiply(new double[] {1, 2, 3}), 1e-12);
+  }
+
+  @Test
+  void selectRowsAndColumns_matchDense() {
+    SparseDesignMatrix matrix = SparseDesignMatrix.fromRows(rows, 5);
+    double[][] columns = matrix.selectColumns(new int[] {4, 1, 3}).toDense();
+    assertArrayEquals(new double[] {0, 1, 0}, columns[0]);
+    assertArrayEquals(new double[] {0, 0, 1}, columns[1]);
+    assertArrayEquals(new double[] {1, 0, 0}, columns[2]);
+    double[][] selectedRows = matrix.selectRows(new int[] {2, 0}).toDense();
+    assertArrayEquals(new double[] {1, 0, 0, 0, 1}, selectedRows[0]);
+    assertArrayEquals(new double[] {0, 1, 1, 0, 0}, selectedRows[1]);
+  }
+
+  @Test
+  void fromRows_rejectsIndexOutOfRange() {
+    assertThrows(
+        IllegalArgumentException.class, () -> SparseDesignMatrix.fromRows(new int[][] {{5}}, 5));
+  }
+}
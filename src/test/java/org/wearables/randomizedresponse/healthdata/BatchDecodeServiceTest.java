@@ -0,0 +1,99 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BatchDecodeServiceTest {
+
+  private final BatchDecodeService service = new BatchDecodeService(4);
+
+  @AfterEach
+  void tearDown() {
+    service.destroy();
+  }
+
+  @Test
+  void decodeAll_runsItemsConcurrentlyAndDeliversAllResults() throws IOException {
+    CountDownLatch allRunning = new CountDownLatch(4);
+    List<Integer> results = new ArrayList<>();
+
+    service.decodeAll(
+        List.of(1, 2, 3, 4),
+        item -> {
+          allRunning.countDown();
+          try {
+            // Only returns if the four items run at the same time
+            assertTrue(allRunning.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          return item * 10;
+        },
+        results::add);
+
+    assertEquals(List.of(10, 20, 30, 40), results.stream().sorted().toList());
+  }
+
+  @Test
+  void decodeAll_deliversResultsInCompletionOrder() throws IOException {
+    CountDownLatch firstDelivered = new CountDownLatch(1);
+    List<String> results = new ArrayList<>();
+
+    service.decodeAll(
+        List.of("slow", "fast"),
+        item -> {
+          if (item.equals("slow")) {
+            try {
+              assertTrue(firstDelivered.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+          return item;
+        },
+        result -> {
+          results.add(result);
+          firstDelivered.countDown();
+        });
+
+    assertEquals(List.of("fast", "slow"), results);
+  }
+
+  @Test
+  void decodeAll_failingSinkCancelsRemainingItems() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(2);
+    CountDownLatch never = new CountDownLatch(1);
+    CountDownLatch cancelled = new CountDownLatch(2);
+
+    assertThrows(
+        IOException.class,
+        () ->
+            service.decodeAll(
+                List.of(0, 1, 2),
+                item -> {
+                  try {
+                    if (item == 0) {
+                      // Fail the sink only once the other items are running
+                      assertTrue(blocked.await(10, TimeUnit.SECONDS));
+                      return item;
+                    }
+                    blocked.countDown();
+                    never.await();
+                  } catch (InterruptedException e) {
+                    cancelled.countDown();
+                  }
+                  return -1;
+                },
+                result -> {
+                  throw new IOException("client disconnected");
+                }));
+    assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+  }
+}
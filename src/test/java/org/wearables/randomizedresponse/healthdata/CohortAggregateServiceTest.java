@@ -0,0 +1,196 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.wearables.randomizedresponse.TestUtil;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+
+@DataJpaTest
+@Import({CohortAggregateService.class, CohortDataVersionService.class, HealthDataService.class})
+class CohortAggregateServiceTest {
+
+  @Autowired private EntityManager em;
+
+  @Autowired private CohortAggregateService cohortAggregateService;
+
+  @Autowired private HealthDataService healthDataService;
+
+  @Autowired private CohortDataVersionRepository cohortDataVersionRepository;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @MockitoSpyBean private HealthDataRepository healthDataRepository;
+
+  private TestUtil testUtil;
+
+  private UUID cohort;
+
+  @BeforeEach
+  void setUp() {
+    testUtil = new TestUtil();
+    // The aggregates follow committed uploads, so every test uses its own cohort
+    cohort = UUID.randomUUID();
+  }
+
+  @Test
+  void findSummary_countsPersistedReportsOnDemand() {
+    HealthDataEntity first = report();
+    HealthDataEntity second = report();
+    second.setStepCount(9000);
+    em.persist(first);
+    em.persist(second);
+    em.flush();
+
+    Optional<BitCountSummary> summary =
+        cohortAggregateService.findSummary(cohort, first.getParameterId(), 32);
+
+    assertTrue(summary.isPresent());
+    assertEquals(2, summary.get().reportCount());
+    assertEquals(9000, summary.get().maxStepCount());
+    assertEquals(2, summary.get().bitCounts()[0]);
+    assertEquals(0, summary.get().bitCounts()[1]);
+    assertTrue(
+        cohortAggregateService
+            .findSummary(UUID.randomUUID(), first.getParameterId(), 32)
+            .isEmpty());
+  }
+
+  // The aggregate is updated after commit, so the uploads have to commit
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void onCohortDataVersionChanged_addsCommittedUploadsWithoutRecounting() {
+    List<HealthDataEntity> saved = new ArrayList<>(List.of(report(), report()));
+    try {
+      healthDataService.saveAll(saved);
+      UUID parameterId = saved.getFirst().getParameterId();
+      assertEquals(
+          2, cohortAggregateService.findSummary(cohort, parameterId, 32).get().reportCount());
+      clearInvocations(healthDataRepository);
+
+      HealthDataEntity added = report();
+      saved.add(added);
+      healthDataService.saveAll(List.of(added));
+      BitCountSummary summary = cohortAggregateService.findSummary(cohort, parameterId, 32).get();
+
+      assertEquals(3, summary.reportCount());
+      assertEquals(3, summary.bitCounts()[0]);
+      assertEquals(8448, summary.maxStepCount());
+      verify(healthDataRepository, never()).aggregateBitCounts(any(), anyInt());
+    } finally {
+      healthDataRepository.deleteAllByIdInBatch(
+          saved.stream().map(HealthDataEntity::getReportId).toList());
+    }
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void findSummary_removedReportsAreRecountedOnDemand() {
+    List<HealthDataEntity> saved = List.of(report(), report());
+    try {
+      healthDataService.saveAll(saved);
+      UUID parameterId = saved.getFirst().getParameterId();
+      assertEquals(
+          2, cohortAggregateService.findSummary(cohort, parameterId, 32).get().reportCount());
+
+      healthDataService.deleteHealthData(saved.getFirst());
+      clearInvocations(healthDataRepository);
+
+      assertEquals(
+          1, cohortAggregateService.findSummary(cohort, parameterId, 32).get().reportCount());
+      assertEquals(
+          1, cohortAggregateService.findSummary(cohort, parameterId, 32).get().reportCount());
+      verify(healthDataRepository, times(1)).aggregateBitCounts(any(), anyInt());
+    } finally {
+      healthDataRepository.deleteAllByIdInBatch(
+          saved.stream().map(HealthDataEntity::getReportId).toList());
+    }
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void findSummary_reportsWrittenByAnotherInstanceAreRecounted() {
+    List<HealthDataEntity> saved = new ArrayList<>(List.of(report()));
+    try {
+      healthDataService.saveAll(saved);
+      UUID parameterId = saved.getFirst().getParameterId();
+      assertEquals(
+          1, cohortAggregateService.findSummary(cohort, parameterId, 32).get().reportCount());
+
+      // Another instance saves a report and increments the version without notifying this one
+      HealthDataEntity elsewhere = report();
+      saved.add(elsewhere);
+      new TransactionTemplate(transactionManager)
+          .executeWithoutResult(
+              status -> {
+                healthDataRepository.save(elsewhere);
+                cohortDataVersionRepository.incrementVersion(cohort, parameterId);
+              });
+
+      assertEquals(
+          2, cohortAggregateService.findSummary(cohort, parameterId, 32).get().reportCount());
+    } finally {
+      healthDataRepository.deleteAllByIdInBatch(
+          saved.stream().map(HealthDataEntity::getReportId).toList());
+    }
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void onCohortDataVersionChanged_reUploadedReportsAreNotCountedTwice() {
+    List<HealthDataEntity> upload = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      upload.add(report());
+    }
+    List<HealthDataEntity> retry = new ArrayList<>();
+    for (HealthDataEntity uploaded : upload) {
+      HealthDataEntity entity = report();
+      entity.setReportId(uploaded.getReportId());
+      retry.add(entity);
+    }
+    HealthDataEntity added = report();
+    retry.add(added);
+    retry.add(added);
+    try {
+      assertEquals(2, healthDataService.saveAll(upload).size());
+      cohortAggregateService.findSummary(cohort, added.getParameterId(), 32);
+      assertEquals(1, healthDataService.saveAll(retry).size());
+
+      BitCountSummary summary =
+          cohortAggregateService.findSummary(cohort, added.getParameterId(), 32).orElseThrow();
+      assertEquals(3, summary.reportCount());
+      assertEquals(3, summary.bitCounts()[0]);
+      assertEquals(3, healthDataRepository.countByCohort(cohort));
+    } finally {
+      healthDataRepository.deleteAllByIdInBatch(
+          List.of(upload.get(0).getReportId(), upload.get(1).getReportId(), added.getReportId()));
+    }
+  }
+
+  private HealthDataEntity report() {
+    HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+    entity.setReportId(UUID.randomUUID());
+    entity.setCohort(cohort);
+    return entity;
+  }
+}
@@ -0,0 +1,58 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.wearables.randomizedresponse.TestUtil;
+
+@DataJpaTest
+@Import({CohortDataVersionService.class, HealthDataService.class})
+class CohortDataVersionServiceTest {
+
+  @Autowired private CohortDataVersionService cohortDataVersionService;
+
+  @Autowired private HealthDataService healthDataService;
+
+  private TestUtil testUtil;
+
+  private UUID cohort;
+
+  @BeforeEach
+  void setUp() {
+    testUtil = new TestUtil();
+    cohort = UUID.randomUUID();
+  }
+
+  @Test
+  void onHealthDataChanged_savingAndDeletingIncrementTheVersion() {
+    HealthDataEntity first = report();
+    HealthDataEntity second = report();
+    second.setParameterId(first.getParameterId());
+    UUID parameterId = first.getParameterId();
+    assertEquals(0, cohortDataVersionService.version(cohort, parameterId));
+
+    healthDataService.saveAll(List.of(first, second));
+    assertEquals(1, cohortDataVersionService.version(cohort, parameterId));
+
+    healthDataService.deleteHealthData(first);
+    HealthDataEntity replacement = report();
+    replacement.setParameterId(parameterId);
+    healthDataService.saveAll(List.of(replacement));
+
+    // The number of reports is the same as before, the version is not
+    assertEquals(3, cohortDataVersionService.version(cohort, parameterId));
+    assertEquals(0, cohortDataVersionService.version(UUID.randomUUID(), parameterId));
+  }
+
+  private HealthDataEntity report() {
+    HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+    entity.setCohort(cohort);
+    return entity;
+  }
+}
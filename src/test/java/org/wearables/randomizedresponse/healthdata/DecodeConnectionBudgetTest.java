@@ -0,0 +1,62 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+class DecodeConnectionBudgetTest {
+
+  @Test
+  void connectionBudget_isHalfOfTheHikariPool() {
+    try (HikariDataSource hikari = new HikariDataSource()) {
+      hikari.setMaximumPoolSize(10);
+      assertEquals(5, DecodeConnectionBudget.connectionBudget(hikari));
+      hikari.setMaximumPoolSize(1);
+      assertEquals(1, DecodeConnectionBudget.connectionBudget(hikari));
+    }
+    assertEquals(
+        Integer.MAX_VALUE, DecodeConnectionBudget.connectionBudget(new SimpleDriverDataSource()));
+  }
+
+  @Test
+  void read_neverHoldsMoreConnectionsThanTheBudget() throws Exception {
+    DecodeConnectionBudget budget = new DecodeConnectionBudget(3);
+    AtomicInteger held = new AtomicInteger();
+    AtomicInteger maxHeld = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Integer>> reads = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        // Partitioned reads ask for more connections than the budget holds
+        int needed = i % 4 == 0 ? 5 : 1;
+        reads.add(
+            executor.submit(
+                () ->
+                    budget.read(
+                        needed,
+                        () -> {
+                          int connections = held.addAndGet(Math.min(needed, 3));
+                          maxHeld.accumulateAndGet(connections, Math::max);
+                          Thread.yield();
+                          held.addAndGet(-Math.min(needed, 3));
+                          return needed;
+                        })));
+      }
+      for (Future<Integer> read : reads) {
+        read.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(maxHeld.get() <= 3, "held " + maxHeld.get());
+    assertEquals(0, held.get());
+  }
+}
@@ -0,0 +1,172 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.DecodeInstrumentation;
+
+class DecodeJobServiceTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return nanos.get();
+        }
+      };
+
+  private final DecodeInstrumentation instrumentation = DecodeInstrumentation.noop();
+
+  private DecodeJobService service;
+
+  @AfterEach
+  void tearDown() {
+    service.destroy();
+  }
+
+  private DecodeJob awaitFinished(UUID id) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (System.nanoTime() < deadline) {
+      DecodeJob job = service.find(id).orElseThrow();
+      if (job.state().isFinished()) {
+        return job;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("Decode job did not finish");
+  }
+
+  @Test
+  void submit_completesWithResult() throws Exception {
+    service =
+        new DecodeJobService(
+            1, 4, DecodeJobRejection.REJECT, 8, Duration.ofMinutes(1), ticker, instrumentation);
+
+    DecodeJob job = service.submit(() -> Map.of("0-100", 0.5));
+    DecodeJob finished = awaitFinished(job.id());
+
+    assertEquals(DecodeJobState.COMPLETED, finished.state());
+    assertEquals(Map.of("0-100", 0.5), finished.result());
+    assertNotNull(finished.startedAt());
+    assertNotNull(finished.finishedAt());
+    assertNull(finished.error());
+  }
+
+  @Test
+  void submit_failedDecodeKeepsReason() throws Exception {
+    service =
+        new DecodeJobService(
+            1, 4, DecodeJobRejection.REJECT, 8, Duration.ofMinutes(1), ticker, instrumentation);
+
+    DecodeJob job =
+        service.submit(
+            () -> {
+              throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "empty");
+            });
+    DecodeJob finished = awaitFinished(job.id());
+
+    assertEquals(DecodeJobState.FAILED, finished.state());
+    assertEquals("empty", finished.error());
+    assertNull(finished.result());
+  }
+
+  @Test
+  void submit_fullQueueRejectsOrRunsOnCaller() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    service =
+        new DecodeJobService(
+            1, 1, DecodeJobRejection.REJECT, 8, Duration.ofMinutes(1), ticker, instrumentation);
+    DecodeJob blocking =
+        service.submit(
+            () -> {
+              release.await();
+              return Map.of();
+            });
+    DecodeJob queued = service.submit(Map::of);
+
+    assertThrows(RejectedExecutionException.class, () -> service.submit(Map::of));
+    assertEquals(DecodeJobState.QUEUED, service.find(queued.id()).orElseThrow().state());
+    release.countDown();
+    assertEquals(DecodeJobState.COMPLETED, awaitFinished(blocking.id()).state());
+    assertEquals(DecodeJobState.COMPLETED, awaitFinished(queued.id()).state());
+    service.destroy();
+
+    CountDownLatch releaseCaller = new CountDownLatch(1);
+    service =
+        new DecodeJobService(
+            1,
+            0,
+            DecodeJobRejection.CALLER_RUNS,
+            8,
+            Duration.ofMinutes(1),
+            ticker,
+            instrumentation);
+    service.submit(
+        () -> {
+          releaseCaller.await();
+          return Map.of();
+        });
+    DecodeJob ranOnCaller = service.submit(() -> Map.of("0-100", 1.0));
+    assertEquals(DecodeJobState.COMPLETED, ranOnCaller.state());
+    releaseCaller.countDown();
+  }
+
+  @Test
+  void submit_runningJobReportsItsStage() throws Exception {
+    service =
+        new DecodeJobService(
+            1, 4, DecodeJobRejection.REJECT, 8, Duration.ofMinutes(1), ticker, instrumentation);
+    CountDownLatch inRegression = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    DecodeJob job =
+        service.submit(
+            () -> {
+              instrumentation.start("fetch").stop(null, 10, 32, -1);
+              try (DecodeInstrumentation.Measurement regression =
+                  instrumentation.start("regression")) {
+                inRegression.countDown();
+                release.await();
+                regression.stop(null, 10, 32, 4);
+              }
+              return Map.of("0-100", 1.0);
+            });
+    assertTrue(inRegression.await(10, TimeUnit.SECONDS));
+    DecodeJob running = service.find(job.id()).orElseThrow();
+    release.countDown();
+
+    assertEquals(DecodeJobState.RUNNING, running.state());
+    assertEquals("regression", running.stage());
+    assertEquals(1, running.stageIndex());
+    DecodeJob finished = awaitFinished(job.id());
+    assertEquals("regression", finished.stage());
+    assertNull(service.submit(Map::of).stage());
+  }
+
+  @Test
+  void find_finishedJobsExpire() throws Exception {
+    service =
+        new DecodeJobService(
+            1, 4, DecodeJobRejection.REJECT, 8, Duration.ofMinutes(1), ticker, instrumentation);
+    DecodeJob job = awaitFinished(service.submit(Map::of).id());
+
+    nanos.addAndGet(Duration.ofSeconds(59).toNanos());
+    assertTrue(service.find(job.id()).isPresent());
+    nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+    assertTrue(service.find(job.id()).isEmpty());
+    assertTrue(service.find(UUID.randomUUID()).isEmpty());
+  }
+}
@@ -0,0 +1,139 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class DecodeResultCacheTest {
+
+  private final UUID cohort = UUID.randomUUID();
+
+  private final UUID parameterId = UUID.randomUUID();
+
+  private final AtomicInteger decodes = new AtomicInteger();
+
+  private final Map<UUID, Long> dataVersions = new ConcurrentHashMap<>();
+
+  private final Supplier<Optional<Map<String, Double>>> decode =
+      () -> Optional.of(Map.of("0-100", (double) decodes.incrementAndGet()));
+
+  private DecodeResultCache newCache(long maximumSize) {
+    return new DecodeResultCache(
+        maximumSize, (cohort, parameterId) -> dataVersions.getOrDefault(cohort, 0L));
+  }
+
+  @Test
+  void get_repeatedRequestIsServedFromCache() {
+    DecodeResultCache cache = newCache(8);
+
+    Optional<Map<String, Double>> first = cache.get(cohort, parameterId, 100, null, null, decode);
+    Optional<Map<String, Double>> second = cache.get(cohort, parameterId, 100, null, null, decode);
+
+    assertEquals(first, second);
+    assertEquals(1, decodes.get());
+    assertEquals(1, cache.stats().hitCount());
+    assertEquals(1, cache.stats().missCount());
+    cache.get(cohort, parameterId, 200, null, null, decode);
+    assertEquals(2, decodes.get());
+  }
+
+  @Test
+  void get_dataVersionChangedElsewhereIsNotServedFromCache() {
+    DecodeResultCache cache = newCache(8);
+    UUID otherCohort = UUID.randomUUID();
+    dataVersions.put(cohort, 10L);
+    cache.get(cohort, parameterId, 100, null, null, decode);
+    cache.get(otherCohort, parameterId, 100, null, null, decode);
+
+    dataVersions.put(cohort, 11L);
+
+    assertEquals(11, cache.dataVersion(cohort, parameterId));
+    assertEquals(3.0, cache.get(cohort, parameterId, 100, null, null, decode).get().get("0-100"));
+    assertEquals(3.0, cache.get(cohort, parameterId, 100, null, null, decode).get().get("0-100"));
+    assertEquals(
+        2.0, cache.get(otherCohort, parameterId, 100, null, null, decode).get().get("0-100"));
+    assertEquals(3, decodes.get());
+  }
+
+  @Test
+  void get_emptyResultsAreCachedAndEvictionsCounted() {
+    DecodeResultCache cache = newCache(1);
+    Supplier<Optional<Map<String, Double>>> empty =
+        () -> {
+          decodes.incrementAndGet();
+          return Optional.empty();
+        };
+
+    assertTrue(cache.get(cohort, parameterId, 100, null, null, empty).isEmpty());
+    assertTrue(cache.get(cohort, parameterId, 100, null, null, empty).isEmpty());
+    assertEquals(1, decodes.get());
+    cache.get(cohort, parameterId, 200, null, null, empty);
+    assertEquals(1, cache.stats().evictionCount());
+  }
+
+  @Test
+  void get_concurrentMissesDecodeOnce() throws Exception {
+    DecodeResultCache cache = newCache(8);
+    CountDownLatch decoding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Supplier<Optional<Map<String, Double>>> slow =
+        () -> {
+          decoding.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return decode.get();
+        };
+    int callers = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+    try {
+      List<Future<Optional<Map<String, Double>>>> futures = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        futures.add(executor.submit(() -> cache.get(cohort, parameterId, 100, null, null, slow)));
+      }
+      assertTrue(decoding.await(10, TimeUnit.SECONDS));
+      release.countDown();
+      for (Future<Optional<Map<String, Double>>> future : futures) {
+        assertEquals(1.0, future.get(10, TimeUnit.SECONDS).get().get("0-100"));
+      }
+      assertEquals(1, decodes.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void get_failedDecodeIsNotCached() {
+    DecodeResultCache cache = newCache(8);
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            cache.get(
+                cohort,
+                parameterId,
+                100,
+                null,
+                null,
+                () -> {
+                  throw new IllegalStateException("fetch failed");
+                }));
+
+    assertEquals(1.0, cache.get(cohort, parameterId, 100, null, null, decode).get().get("0-100"));
+  }
+}
@@ -1,36 +1,63 @@
 package org.wearables.randomizedresponse.healthdata;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.wearables.randomizedresponse.TestUtil;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
 import org.wearables.randomizedresponse.differentialprivacy.Report;
 import org.wearables.randomizedresponse.differentialprivacy.decoder.DecoderService;
+import org.wearables.randomizedresponse.differentialprivacy.hyperparameter.HyperParameterConfiguration;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterEntity;
+import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterRepository;
 import org.wearables.randomizedresponse.differentialprivacy.parameter.ParameterService;
 import org.wearables.randomizedresponse.utilities.MappingUtils;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureMockMvc
 @Transactional
 class HealthDataControllerIntegrationTest {
@@ -50,6 +77,16 @@ class HealthDataControllerIntegrationTest {
 
   @Autowired private ParameterService parameterService;
 
+  @Autowired private HyperParameterConfiguration hyperParameterConfiguration;
+
+  @Autowired private ParameterRepository parameterRepository;
+
+  @Autowired private PartitionedReportScanService partitionedReportScanService;
+
+  @MockitoSpyBean private HealthDataRepository healthDataRepository;
+
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
   // Classpath location: src/test/resources/datasets/sample-dataset.json
   private static final String PATH_COHORT_ONE = "datasets/sample-dataset.json";
 
@@ -130,6 +167,387 @@ class HealthDataControllerIntegrationTest {
                 .accept(MediaType.APPLICATION_JSON))
         .andExpect(status().isOk())
         .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+
+    mockMvc
+        .perform(get("/actuator/decodestages/regression").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].stage").value("regression"));
+  }
+
+  @Test
+  void getDecoder_hourAlignedRangeIsReadFromTheRollups() throws Exception {
+    ParameterEntity parameterEntity = testUtil.mockParameterEntity();
+    parameterEntity.setParameterId(UUID.randomUUID());
+    parameterEntity.setProfile("rollup-" + parameterEntity.getParameterId());
+    em.persist(parameterEntity);
+    UUID cohort = UUID.randomUUID();
+    List<HealthDataEntity> entities = new ArrayList<>();
+    for (LocalDateTime intervalStart :
+        List.of(
+            LocalDateTime.of(2024, 3, 1, 10, 15),
+            LocalDateTime.of(2024, 3, 2, 5, 0),
+            LocalDateTime.of(2024, 3, 5, 0, 0))) {
+      HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+      entity.setReportId(UUID.randomUUID());
+      entity.setCohort(cohort);
+      entity.setParameterId(parameterEntity.getParameterId());
+      entity.setIntervalStart(intervalStart);
+      entities.add(entity);
+    }
+    healthDataService.saveAll(entities);
+    em.flush();
+    String decode =
+        "/healthdata/decode?parameterProfile="
+            + parameterEntity.getProfile()
+            + "&cohort="
+            + cohort
+            + "&numberOfReports=1000";
+
+    mockMvc
+        .perform(
+            get(decode + "&from=2024-03-01T10:00:00&to=2024-03-05T00:00:00")
+                .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+    verify(healthDataRepository, never()).aggregateBitCounts(any(), anyInt());
+
+    // A bound inside an hour is counted exactly from the reports
+    mockMvc
+        .perform(
+            get(decode + "&from=2024-03-01T10:30:00&to=2024-03-05T00:00:00")
+                .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+    verify(healthDataRepository, times(1)).aggregateBitCounts(any(), anyInt());
+  }
+
+  // The job runs on another thread, so the report has to be committed
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void postDecodeJob_completesFromLiveAggregate() throws Exception {
+    ParameterEntity parameterEntity = committedParameterEntity("job");
+    UUID cohort = UUID.randomUUID();
+    HealthDataEntity entity = testCohortOne.getFirst();
+    entity.setCohort(cohort);
+    entity.setParameterId(parameterEntity.getParameterId());
+    healthDataService.saveAll(List.of(entity));
+    try {
+      postDecodeJobAndAwaitCompletion(parameterEntity, cohort);
+    } finally {
+      healthDataRepository.deleteAllByIdInBatch(List.of(entity.getReportId()));
+      parameterRepository.delete(parameterEntity);
+    }
+  }
+
+  private void postDecodeJobAndAwaitCompletion(ParameterEntity parameterEntity, UUID cohort)
+      throws Exception {
+    String body =
+        mockMvc
+            .perform(
+                post("/healthdata/decode/jobs?parameterProfile="
+                        + parameterEntity.getProfile()
+                        + "&numberOfReports=1&cohort="
+                        + cohort)
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isAccepted())
+            .andExpect(header().exists("Location"))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    UUID id = mappingUtils.objectMapper.readValue(body, DecodeJob.class).id();
+
+    DecodeJob job = null;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (System.nanoTime() < deadline) {
+      String polled =
+          mockMvc
+              .perform(get("/healthdata/decode/jobs/" + id).accept(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk())
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      job = mappingUtils.objectMapper.readValue(polled, DecodeJob.class);
+      if (job.state().isFinished()) {
+        break;
+      }
+      Thread.sleep(20);
+    }
+    assertNotNull(job);
+    assertEquals(DecodeJobState.COMPLETED, job.state());
+    assertFalse(job.result().isEmpty());
+  }
+
+  @Test
+  void getReportSlice_walksCohortWithContinuationToken() throws Exception {
+    ParameterEntity parameterEntity = testUtil.mockParameterEntity();
+    em.persist(parameterEntity);
+    UUID cohort = UUID.randomUUID();
+    Set<UUID> expected = new HashSet<>();
+    for (int i = 0; i < 5; i++) {
+      HealthDataEntity entity = testUtil.mockHealthDataEntity();
+      entity.setReportId(UUID.randomUUID());
+      entity.setCohort(cohort);
+      entity.setParameterId(parameterEntity.getParameterId());
+      em.persist(entity);
+      expected.add(entity.getReportId());
+    }
+    em.flush();
+
+    List<UUID> seen = new ArrayList<>();
+    String next = null;
+    int slices = 0;
+    do {
+      String body =
+          mockMvc
+              .perform(
+                  get("/healthdata/reports")
+                      .param("cohort", cohort.toString())
+                      .param("parameterProfile", "test")
+                      .param("size", "2")
+                      .param("after", next)
+                      .accept(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk())
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      JsonNode slice = mappingUtils.objectMapper.readTree(body);
+      slice
+          .get("content")
+          .forEach(report -> seen.add(UUID.fromString(report.get("reportId").asText())));
+      next = slice.get("next").isNull() ? null : slice.get("next").asText();
+      slices++;
+    } while (next != null);
+
+    assertEquals(3, slices);
+    assertEquals(expected, new HashSet<>(seen));
+    assertEquals(expected.size(), seen.size());
+
+    mockMvc
+        .perform(
+            get("/healthdata/reports")
+                .param("cohort", cohort.toString())
+                .param("parameterProfile", "test")
+                .param("after", "not-a-token"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void getDecodeJob_unknownIdNotFound() throws Exception {
+    mockMvc
+        .perform(get("/healthdata/decode/jobs/" + UUID.randomUUID()))
+        .andExpect(status().isNotFound());
+  }
+
+  // The cohorts are decoded on other threads, so the reports have to be committed
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void postBatchDecode_streamsOneLinePerCohort() throws Exception {
+    ParameterEntity parameterEntity = committedParameterEntity("batch");
+    List<UUID> liveCohorts = List.of(UUID.randomUUID(), UUID.randomUUID());
+    List<HealthDataEntity> entities = new ArrayList<>();
+    for (UUID cohort : liveCohorts) {
+      HealthDataEntity entity = testCohortOne.get(entities.size());
+      entity.setCohort(cohort);
+      entity.setParameterId(parameterEntity.getParameterId());
+      entities.add(entity);
+    }
+    healthDataService.saveAll(entities);
+    try {
+      postBatchDecode(parameterEntity, liveCohorts);
+    } finally {
+      healthDataRepository.deleteAllByIdInBatch(
+          entities.stream().map(HealthDataEntity::getReportId).toList());
+      parameterRepository.delete(parameterEntity);
+    }
+  }
+
+  private void postBatchDecode(ParameterEntity parameterEntity, List<UUID> liveCohorts)
+      throws Exception {
+    UUID emptyCohort = UUID.randomUUID();
+    String request =
+        mappingUtils.objectMapper.writeValueAsString(
+            new BatchDecodeRequest(
+                parameterEntity.getProfile(),
+                10,
+                List.of(
+                    new BatchDecodeRequest.CohortRange(liveCohorts.get(0), null, null),
+                    new BatchDecodeRequest.CohortRange(emptyCohort, null, null),
+                    new BatchDecodeRequest.CohortRange(liveCohorts.get(1), null, null))));
+
+    MvcResult started =
+        mockMvc
+            .perform(
+                post("/healthdata/decode/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .content(request))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    String body =
+        mockMvc
+            .perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    List<CohortDecodeResult> results = new ArrayList<>();
+    for (String line : body.split("\n")) {
+      results.add(mappingUtils.objectMapper.readValue(line, CohortDecodeResult.class));
+    }
+    assertEquals(3, results.size());
+    for (CohortDecodeResult result : results) {
+      if (result.cohort().equals(emptyCohort)) {
+        assertNotNull(result.error());
+      } else {
+        assertTrue(liveCohorts.contains(result.cohort()));
+        assertFalse(result.probabilities().isEmpty());
+      }
+    }
+  }
+
+  @Test
+  void postBatchDecode_tooManyCohortsBadRequest() throws Exception {
+    List<BatchDecodeRequest.CohortRange> cohorts = new ArrayList<>();
+    for (int i = 0; i <= hyperParameterConfiguration.getBatchDecodeMaxCohorts(); i++) {
+      cohorts.add(new BatchDecodeRequest.CohortRange(UUID.randomUUID(), null, null));
+    }
+    String request =
+        mappingUtils.objectMapper.writeValueAsString(new BatchDecodeRequest("test", 10, cohorts));
+
+    mockMvc
+        .perform(
+            post("/healthdata/decode/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON, MediaType.TEXT_PLAIN)
+                .content(request))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void postHealthData_valuesBeforeIdsAreSaved() throws Exception {
+    String body =
+        "{\"values\":[{\"report_id\":\"d003bbba-7b6a-48fc-82bc-8ab976010d28\","
+            + "\"interval_start\":\"2025-07-21T02:00:00Z\","
+            + "\"interval_end\":\"2025-07-22T02:00:00Z\",\"steps\":1077,"
+            + "\"prr\":\"0b01000100000001110100000000011010\","
+            + "\"irr\":\"0b11000001011011011010110110001010\"}],"
+            + "\"parameter_id\":\"b844cb27-d4af-499d-8332-2061ce481819\","
+            + "\"device_id\":\"7a697099-9acf-4064-bc0e-9196a1c6bb62\","
+            + "\"cohort_id\":\"049ea6d6-b4db-4926-a020-2612264140fa\"}";
+
+    mockMvc
+        .perform(post("/healthdata/upload").contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isOk());
+    assertTrue(
+        healthDataRepository
+            .findById(UUID.fromString("d003bbba-7b6a-48fc-82bc-8ab976010d28"))
+            .isPresent());
+  }
+
+  @Test
+  void postHealthData_malformedJsonBadRequest() throws Exception {
+    mockMvc
+        .perform(
+            post("/healthdata/upload")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"parameter_id\":\"b844cb27-d4af-499d-8332-2061ce481819\",\"values\":["))
+        .andExpect(status().isBadRequest());
+  }
+
+  // Runs outside a test transaction, so every batch of the upload request commits on its own
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void postHealthData_savesEveryBatchWithoutSelects() throws Exception {
+    String testJson = readClasspath(PATH_COHORT_ONE);
+    Report<HealthData> sample =
+        mappingUtils.objectMapper.readValue(testJson, new TypeReference<Report<HealthData>>() {});
+    // All values fall into the same rollup buckets, so the rollups cost the same in every batch
+    HealthData first = sample.values().getFirst();
+    List<HealthData> values = new ArrayList<>();
+    for (HealthData value : sample.values()) {
+      values.add(
+          new HealthData(
+              UUID.randomUUID(),
+              first.intervalStart(),
+              first.intervalEnd(),
+              value.steps(),
+              value.prr(),
+              value.irr()));
+    }
+    Report<HealthData> report =
+        new Report<>(sample.parameterId(), sample.deviceId(), UUID.randomUUID(), values);
+    int batchSize = 10;
+    int previousBatchSize = hyperParameterConfiguration.getUploadBatchSize();
+    hyperParameterConfiguration.setUploadBatchSize(batchSize);
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+    try {
+      mockMvc
+          .perform(
+              post("/healthdata/upload")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(mappingUtils.objectMapper.writeValueAsString(report)))
+          .andExpect(status().isOk());
+
+      assertEquals(values.size(), statistics.getEntityInsertCount());
+      // One lookup of the stored report ids per batch, no SELECT per merged value
+      assertTrue(statistics.getPrepareStatementCount() < 2L * values.size());
+    } finally {
+      hyperParameterConfiguration.setUploadBatchSize(previousBatchSize);
+      healthDataRepository.deleteAllByIdInBatch(values.stream().map(HealthData::reportId).toList());
+    }
+  }
+
+  // The partitions read on their own connections, so the reports have to be committed
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void getDecoder_streamReadModeReadsEveryPartition() throws Exception {
+    ParameterEntity parameterEntity = testUtil.mockParameterEntity();
+    parameterEntity.setParameterId(UUID.randomUUID());
+    parameterEntity.setProfile("partitioned-" + parameterEntity.getParameterId());
+    parameterRepository.save(parameterEntity);
+    UUID cohort = UUID.randomUUID();
+    List<HealthDataEntity> entities = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+      entity.setCohort(cohort);
+      entity.setParameterId(parameterEntity.getParameterId());
+      entity.setPrrBits(BitVector.of(32, new long[] {(i * 0x9E3779B9L) & 0xFFFFFFFFL}));
+      entity.setStepCount(i * 10);
+      entities.add(entity);
+    }
+    healthDataService.saveAll(entities);
+    hyperParameterConfiguration.setDecodeReadMode(DecodeReadMode.STREAM);
+    try {
+      // A range inside the hour keeps the decode off the live aggregate and the rollups
+      mockMvc
+          .perform(
+              get("/healthdata/decode?parameterProfile="
+                      + parameterEntity.getProfile()
+                      + "&cohort="
+                      + cohort
+                      + "&numberOfReports=1000&from=2023-01-01T00:30:00&to=2024-01-01T00:00:00")
+                  .accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk());
+
+      int partitions = partitionedReportScanService.partitions();
+      assertTrue(partitions > 1);
+      verify(healthDataRepository, times(partitions))
+          .scanReportColumns(any(CohortReportFilter.class), any(), any(), anyInt(), any());
+      verify(healthDataRepository, never())
+          .scanReportColumns(any(CohortReportFilter.class), isNull(), isNull(), anyInt(), any());
+    } finally {
+      hyperParameterConfiguration.setDecodeReadMode(DecodeReadMode.AGGREGATE);
+      healthDataRepository.deleteAllByIdInBatch(
+          entities.stream().map(HealthDataEntity::getReportId).toList());
+      parameterRepository.delete(parameterEntity);
+    }
+  }
+
+  private ParameterEntity committedParameterEntity(String prefix) {
+    ParameterEntity parameterEntity = testUtil.mockParameterEntity();
+    parameterEntity.setParameterId(UUID.randomUUID());
+    parameterEntity.setProfile(prefix + "-" + parameterEntity.getParameterId());
+    return parameterRepository.save(parameterEntity);
   }
 
   /**
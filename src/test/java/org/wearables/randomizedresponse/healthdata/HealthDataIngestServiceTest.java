@@ -0,0 +1,125 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.wearables.randomizedresponse.utilities.MappingUtils;
+
+@DataJpaTest
+@Import({HealthDataService.class, HealthDataIngestService.class})
+class HealthDataIngestServiceTest {
+
+  private static final String DATASET = "datasets/sample-dataset.json";
+
+  @Autowired private HealthDataIngestService healthDataIngestService;
+
+  @Autowired private HealthDataRepository healthDataRepository;
+
+  @Autowired private MappingUtils mappingUtils;
+
+  @Autowired private EntityManager em;
+
+  @Test
+  void ingest_savesAllValuesInBatches() throws IOException {
+    int saved;
+    try (InputStream body = new ClassPathResource(DATASET).getInputStream()) {
+      saved = healthDataIngestService.ingest(body, 7);
+    }
+
+    assertEquals(50, saved);
+    assertEquals(50, healthDataRepository.count());
+    HealthDataEntity entity =
+        healthDataRepository
+            .findById(UUID.fromString("d003bbba-7b6a-48fc-82bc-8ab976010d28"))
+            .orElseThrow();
+    assertEquals(UUID.fromString("049ea6d6-b4db-4926-a020-2612264140fa"), entity.getCohort());
+    assertEquals(UUID.fromString("b844cb27-d4af-499d-8332-2061ce481819"), entity.getParameterId());
+    assertEquals(1077, entity.getStepCount());
+  }
+
+  @Test
+  void ingest_clearsThePersistenceContextAfterEveryBatch() throws IOException {
+    try (InputStream body = new ClassPathResource(DATASET).getInputStream()) {
+      healthDataIngestService.ingest(body, 7);
+    }
+
+    assertEquals(0, em.unwrap(Session.class).getStatistics().getEntityCount());
+    assertEquals(50, healthDataRepository.count());
+  }
+
+  @Test
+  void ingest_valuesBeforeHeaderAreSavedOnceTheIdsAreRead() throws IOException {
+    ObjectNode report;
+    try (InputStream dataset = new ClassPathResource(DATASET).getInputStream()) {
+      report = (ObjectNode) mappingUtils.objectMapper.readTree(dataset);
+    }
+    ObjectNode reordered = mappingUtils.objectMapper.createObjectNode();
+    reordered.set("values", report.get("values"));
+    reordered.put("firmware", "1.2.0");
+    reordered.setAll((ObjectNode) report.without("values"));
+
+    // 16 values are held in memory and the other 34 spooled until the ids have been read
+    int saved =
+        healthDataIngestService.ingest(
+            new ByteArrayInputStream(mappingUtils.objectMapper.writeValueAsBytes(reordered)), 16);
+
+    assertEquals(50, saved);
+    assertEquals(50, healthDataRepository.count());
+    HealthDataEntity entity =
+        healthDataRepository
+            .findById(UUID.fromString("d003bbba-7b6a-48fc-82bc-8ab976010d28"))
+            .orElseThrow();
+    assertEquals(UUID.fromString("049ea6d6-b4db-4926-a020-2612264140fa"), entity.getCohort());
+    assertEquals(1077, entity.getStepCount());
+  }
+
+  @Test
+  void ingest_valuesWithoutIdsAreRejected() throws IOException {
+    ObjectNode report;
+    try (InputStream dataset = new ClassPathResource(DATASET).getInputStream()) {
+      report = (ObjectNode) mappingUtils.objectMapper.readTree(dataset);
+    }
+    report.remove("cohort_id");
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            healthDataIngestService.ingest(
+                new ByteArrayInputStream(mappingUtils.objectMapper.writeValueAsBytes(report)), 16));
+    assertEquals(0, healthDataRepository.count());
+  }
+
+  @Test
+  void ingest_repeatedIdDoesNotStandInForAMissingOne() {
+    String body =
+        "{\"parameter_id\":\"b844cb27-d4af-499d-8332-2061ce481819\","
+            + "\"parameter_id\":\"b844cb27-d4af-499d-8332-2061ce481819\","
+            + "\"device_id\":\"7a697099-9acf-4064-bc0e-9196a1c6bb62\",\"values\":[]}";
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> healthDataIngestService.ingest(new ByteArrayInputStream(body.getBytes()), 16));
+  }
+
+  @Test
+  void ingest_emptyValuesSavesNothing() throws IOException {
+    String body =
+        "{\"parameter_id\":\"b844cb27-d4af-499d-8332-2061ce481819\","
+            + "\"device_id\":\"7a697099-9acf-4064-bc0e-9196a1c6bb62\","
+            + "\"cohort_id\":\"049ea6d6-b4db-4926-a020-2612264140fa\",\"values\":[]}";
+
+    assertEquals(0, healthDataIngestService.ingest(new ByteArrayInputStream(body.getBytes()), 16));
+    assertEquals(0, healthDataRepository.count());
+  }
+}
@@ -0,0 +1,172 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.wearables.randomizedresponse.TestUtil;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+
+@DataJpaTest
+@Import({HealthDataRollupService.class, HealthDataService.class})
+class HealthDataRollupServiceTest {
+
+  @Autowired private HealthDataRollupService healthDataRollupService;
+
+  @Autowired private HealthDataService healthDataService;
+
+  @Autowired private HealthDataRepository healthDataRepository;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TestUtil testUtil;
+
+  private UUID cohort;
+
+  @BeforeEach
+  void setUp() {
+    testUtil = new TestUtil();
+    // The rollup table is rebuilt and written by committed uploads, so every test uses its own
+    // cohort
+    cohort = UUID.randomUUID();
+  }
+
+  @Test
+  void findSummary_sumsHourlyAndDailyBuckets() {
+    List<HealthDataEntity> entities = new ArrayList<>();
+    entities.add(report(LocalDateTime.of(2025, 7, 20, 22, 15), 100));
+    entities.add(report(LocalDateTime.of(2025, 7, 21, 2, 0), 300));
+    entities.add(report(LocalDateTime.of(2025, 7, 21, 23, 59), 200));
+    entities.add(report(LocalDateTime.of(2025, 7, 22, 1, 30), 50));
+    entities.add(report(LocalDateTime.of(2025, 7, 22, 3, 0), 400));
+    healthDataRollupService.apply(entities, false);
+    UUID parameterId = entities.getFirst().getParameterId();
+
+    BitCountSummary all =
+        healthDataRollupService
+            .findSummary(
+                cohort,
+                parameterId,
+                LocalDateTime.of(2025, 7, 20, 22, 45),
+                LocalDateTime.of(2025, 7, 22, 2, 0))
+            .orElseThrow();
+    assertEquals(4, all.reportCount());
+    assertEquals(4, all.bitCounts()[0]);
+    assertEquals(300, all.maxStepCount());
+
+    BitCountSummary oneDay =
+        healthDataRollupService
+            .findSummary(
+                cohort,
+                parameterId,
+                LocalDateTime.of(2025, 7, 21, 0, 0),
+                LocalDateTime.of(2025, 7, 22, 0, 0))
+            .orElseThrow();
+    assertEquals(2, oneDay.reportCount());
+  }
+
+  @Test
+  void apply_removedReportsAreSubtracted() {
+    HealthDataEntity first = report(LocalDateTime.of(2025, 7, 21, 2, 0), 300);
+    HealthDataEntity second = report(LocalDateTime.of(2025, 7, 21, 2, 30), 100);
+    healthDataRollupService.apply(List.of(first, second), false);
+    healthDataRollupService.apply(List.of(first), true);
+
+    BitCountSummary summary =
+        healthDataRollupService
+            .findSummary(
+                cohort,
+                first.getParameterId(),
+                LocalDateTime.of(2025, 7, 21, 0, 0),
+                LocalDateTime.of(2025, 7, 22, 0, 0))
+            .orElseThrow();
+    assertEquals(1, summary.reportCount());
+    assertEquals(1, summary.bitCounts()[0]);
+  }
+
+  @Test
+  void findSummary_emptyRangeIsEmpty() {
+    healthDataRollupService.apply(List.of(report(LocalDateTime.of(2025, 7, 21, 2, 0), 1)), false);
+
+    assertTrue(
+        healthDataRollupService
+            .findSummary(
+                cohort,
+                testUtil.mockHealthDataEntity32Bit().getParameterId(),
+                LocalDateTime.of(2025, 7, 21, 3, 0),
+                LocalDateTime.of(2025, 7, 21, 4, 0))
+            .isEmpty());
+  }
+
+  @Test
+  void saveAll_updatesRollupsInsideTheSavingTransaction() {
+    HealthDataEntity entity = report(LocalDateTime.of(2025, 7, 21, 2, 0), 300);
+    healthDataService.saveAll(List.of(entity));
+
+    assertEquals(1, summaryOfDay(entity).reportCount());
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void saveAll_rolledBackUploadLeavesRollupsUnchanged() {
+    HealthDataEntity entity = report(LocalDateTime.of(2025, 7, 21, 2, 0), 300);
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              healthDataService.saveAll(List.of(entity));
+              status.setRollbackOnly();
+            });
+
+    assertTrue(
+        healthDataRollupService
+            .findSummary(
+                cohort,
+                entity.getParameterId(),
+                LocalDateTime.of(2025, 7, 21, 0, 0),
+                LocalDateTime.of(2025, 7, 22, 0, 0))
+            .isEmpty());
+  }
+
+  @Test
+  void rebuild_backfillsPersistedReports() {
+    HealthDataEntity first = report(LocalDateTime.of(2025, 7, 21, 2, 0), 300);
+    HealthDataEntity second = report(LocalDateTime.of(2025, 7, 21, 5, 0), 700);
+    healthDataRepository.saveAllAndFlush(List.of(first, second));
+
+    healthDataRollupService.rebuild();
+
+    BitCountSummary summary = summaryOfDay(first);
+    assertEquals(2, summary.reportCount());
+    assertEquals(2, summary.bitCounts()[0]);
+    assertEquals(700, summary.maxStepCount());
+  }
+
+  private BitCountSummary summaryOfDay(HealthDataEntity entity) {
+    return healthDataRollupService
+        .findSummary(
+            cohort,
+            entity.getParameterId(),
+            LocalDateTime.of(2025, 7, 21, 0, 0),
+            LocalDateTime.of(2025, 7, 22, 0, 0))
+        .orElseThrow();
+  }
+
+  private HealthDataEntity report(LocalDateTime intervalStart, int stepCount) {
+    HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+    entity.setCohort(cohort);
+    entity.setIntervalStart(intervalStart);
+    entity.setStepCount(stepCount);
+    return entity;
+  }
+}
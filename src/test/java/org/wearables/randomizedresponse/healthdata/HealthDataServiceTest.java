@@ -9,21 +9,33 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.UUID;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.wearables.randomizedresponse.TestUtil;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
 import org.wearables.randomizedresponse.differentialprivacy.Report;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitColumnCounter;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.BitCountSummary;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
 import org.wearables.randomizedresponse.utilities.MappingUtils;
 
 @DataJpaTest
 @Import(HealthDataService.class)
+@RecordApplicationEvents
 class HealthDataServiceTest {
 
+  @Autowired private ApplicationEvents applicationEvents;
+
   @Autowired private EntityManager em;
 
   @Autowired private HealthDataService healthDataService;
@@ -49,6 +61,21 @@ class HealthDataServiceTest {
     assertEquals(healthDataEntity, resHealthDataEntity);
   }
 
+  @Test
+  void findHealthDataById_keepsReportLengthThatIsNotAMultipleOfEight() {
+    HealthDataEntity healthDataEntity = testUtil.mockHealthDataEntity();
+    healthDataEntity.setPrr("1011000000101");
+    healthDataEntity.setIrr("0000000000001");
+    em.persist(healthDataEntity);
+    em.flush();
+    em.clear();
+    HealthDataEntity resHealthDataEntity =
+        healthDataService.findHealthDataById(healthDataEntity.getReportId());
+    assertEquals(13, resHealthDataEntity.getPrrBits().length());
+    assertEquals("1011000000101", resHealthDataEntity.getPrr());
+    assertEquals("0000000000001", resHealthDataEntity.getIrr());
+  }
+
   @Test
   void fetchHealthDataListChunk_isPersistentAndShouldBeReturned() {
     for (int i = 0; i < 50; i++) {
@@ -83,6 +110,28 @@ class HealthDataServiceTest {
     assertNull(em.find(HealthDataEntity.class, healthDataEntity.getDeviceId()));
   }
 
+  @Test
+  void deleteHealthData_publishesTheStoredReport() {
+    HealthDataEntity stored = testUtil.mockHealthDataEntity();
+    stored.setDeviceId(UUID.randomUUID());
+    em.persist(stored);
+    em.flush();
+    em.clear();
+    HealthDataEntity argument = testUtil.mockHealthDataEntity();
+    argument.setReportId(stored.getReportId());
+    argument.setCohort(UUID.randomUUID());
+    argument.setStepCount(1);
+
+    healthDataService.deleteHealthData(argument);
+
+    assertNull(em.find(HealthDataEntity.class, stored.getReportId()));
+    HealthDataChangedEvent event =
+        applicationEvents.stream(HealthDataChangedEvent.class).findFirst().orElseThrow();
+    assertTrue(event.removed());
+    assertEquals(stored.getCohort(), event.entities().getFirst().getCohort());
+    assertEquals(stored.getStepCount(), event.entities().getFirst().getStepCount());
+  }
+
   @Test
   void mapToHealthDataEntity_jsonMappedAndObjectReceived() throws IOException {
     String testJson = readClasspath(DATASET);
@@ -115,6 +164,25 @@ class HealthDataServiceTest {
     assertEquals(5, firstPage.size());
   }
 
+  @Test
+  void getPageOfCohort_pagePastTheLastIsEmpty() {
+    for (int i = 0; i < 3; i++) {
+      em.persist(testUtil.mockHealthDataEntity());
+    }
+    UUID cohort = UUID.fromString("fd1a1b2e-8796-4144-b1fc-fa0d1c2d5b74");
+    UUID parameterId = UUID.fromString("4b8f6a22-b0d7-4f31-9b7a-8d2e4b9d1a33");
+
+    assertTrue(healthDataService.getPageOfCohorts(cohort, 100, 5).isEmpty());
+    assertTrue(
+        healthDataService.getPageOfCohortsAndParameterId(cohort, 100, 5, parameterId).isEmpty());
+    assertThrows(
+        NoSuchElementException.class,
+        () -> healthDataService.getPageOfCohorts(UUID.randomUUID(), 100, 5));
+    assertThrows(
+        NoSuchElementException.class,
+        () -> healthDataService.getPageOfCohortsAndParameterId(cohort, 100, 5, UUID.randomUUID()));
+  }
+
   @Test
   void getPageOfCohortAndParameterI() {
     for (int i = 0; i < 50; i++) {
@@ -136,6 +204,93 @@ class HealthDataServiceTest {
     assertEquals(5, firstPage.size());
   }
 
+  @Test
+  void aggregateBitCounts_matchesCountingInJava() {
+    List<HealthDataEntity> entities = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+      entity.setPrrBits(BitVector.of(32, new long[] {(i * 0x9E3779B9L) & 0xFFFFFFFFL}));
+      entity.setStepCount(i * 10);
+      entity.setIntervalStart(LocalDateTime.of(2023, 9, 6, i, 0));
+      entities.add(entity);
+      em.persist(entity);
+    }
+    em.flush();
+    BitColumnCounter counter = new BitColumnCounter(32);
+    entities.forEach(entity -> counter.add(entity.getPrrBits()));
+    UUID cohort = entities.getFirst().getCohort();
+    UUID parameterId = entities.getFirst().getParameterId();
+
+    BitCountSummary summary =
+        healthDataService.aggregateBitCounts(CohortReportFilter.of(cohort, parameterId, 0), 32);
+    assertEquals(20, summary.reportCount());
+    assertEquals(190, summary.maxStepCount());
+    assertArrayEquals(counter.counts(), summary.bitCounts());
+
+    BitCountSummary range =
+        healthDataService.aggregateBitCounts(
+            new CohortReportFilter(
+                cohort,
+                parameterId,
+                LocalDateTime.of(2023, 9, 6, 5, 0),
+                LocalDateTime.of(2023, 9, 6, 10, 0),
+                0),
+            32);
+    assertEquals(5, range.reportCount());
+    assertEquals(90, range.maxStepCount());
+
+    assertEquals(
+        7,
+        healthDataService
+            .aggregateBitCounts(CohortReportFilter.of(cohort, parameterId, 7), 32)
+            .reportCount());
+    assertEquals(
+        0,
+        healthDataService
+            .aggregateBitCounts(CohortReportFilter.of(UUID.randomUUID(), parameterId, 0), 32)
+            .reportCount());
+  }
+
+  @Test
+  void scanReports_matchesDatabaseAggregateWithoutManagingRows() {
+    for (int i = 0; i < 20; i++) {
+      HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+      entity.setPrrBits(BitVector.of(32, new long[] {(i * 0x9E3779B9L) & 0xFFFFFFFFL}));
+      entity.setStepCount(i * 10);
+      entity.setIntervalStart(LocalDateTime.of(2023, 9, 6, i, 0));
+      em.persist(entity);
+    }
+    em.flush();
+    em.clear();
+    HealthDataEntity sample = testUtil.mockHealthDataEntity32Bit();
+    UUID cohort = sample.getCohort();
+    UUID parameterId = sample.getParameterId();
+
+    for (CohortReportFilter filter :
+        List.of(
+            CohortReportFilter.of(cohort, parameterId, 0),
+            CohortReportFilter.of(cohort, parameterId, 7),
+            new CohortReportFilter(
+                cohort,
+                parameterId,
+                LocalDateTime.of(2023, 9, 6, 5, 0),
+                LocalDateTime.of(2023, 9, 6, 10, 0),
+                0))) {
+      BitCountSummary aggregated = healthDataService.aggregateBitCounts(filter, 32);
+      ReportScan scan = healthDataService.scanReports(filter, 32, 4);
+      // A limit keeps the lowest report ids in both read modes
+      assertEquals(aggregated.reportCount(), scan.reports());
+      assertArrayEquals(aggregated.bitCounts(), scan.bitCounts());
+      assertEquals(aggregated.maxStepCount(), scan.maxValue());
+    }
+    assertEquals(0, em.unwrap(Session.class).getStatistics().getEntityCount());
+    assertEquals(
+        0,
+        healthDataService
+            .scanReports(CohortReportFilter.of(UUID.randomUUID(), parameterId, 0), 32, 4)
+            .reports());
+  }
+
   /**
    * Reads a file from the test classpath (src/test/resources) into a String. Use a relative path
    * (e.g., "datasets/file.json") without a leading slash.
@@ -0,0 +1,102 @@
+package org.wearables.randomizedresponse.healthdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.wearables.randomizedresponse.TestUtil;
+import org.wearables.randomizedresponse.differentialprivacy.BitVector;
+import org.wearables.randomizedresponse.differentialprivacy.decoder.ReportScan;
+
+// The partitions read on their own connections, so the reports have to be committed
+@DataJpaTest
+@Import(HealthDataService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PartitionedReportScanServiceTest {
+
+  @Autowired private HealthDataService healthDataService;
+
+  @Autowired private HealthDataRepository healthDataRepository;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private final TestUtil testUtil = new TestUtil();
+
+  @AfterEach
+  void tearDown() {
+    healthDataRepository.deleteAllInBatch();
+  }
+
+  @Test
+  void scan_partitionedEqualsSequential() {
+    List<HealthDataEntity> entities = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      HealthDataEntity entity = testUtil.mockHealthDataEntity32Bit();
+      entity.setPrrBits(BitVector.of(32, new long[] {(i * 0x9E3779B9L) & 0xFFFFFFFFL}));
+      entity.setStepCount(i * 10);
+      entities.add(entity);
+    }
+    healthDataService.saveAll(entities);
+    CohortReportFilter filter =
+        CohortReportFilter.of(
+            entities.getFirst().getCohort(), entities.getFirst().getParameterId(), 0);
+    PartitionedReportScanService service =
+        new PartitionedReportScanService(
+            healthDataService, healthDataRepository, transactionManager, 4);
+    try {
+      ReportScan sequential = healthDataService.scanReports(filter, 32, 16);
+      ReportScan partitioned = service.scan(filter, 32, 16);
+
+      assertEquals(4, service.partitions());
+      assertEquals(200, partitioned.reports());
+      assertArrayEquals(sequential.bitCounts(), partitioned.bitCounts());
+      assertEquals(1990, partitioned.maxValue());
+      assertEquals(
+          7,
+          service
+              .scan(
+                  new CohortReportFilter(filter.cohort(), filter.parameterId(), null, null, 7),
+                  32,
+                  16)
+              .reports());
+    } finally {
+      service.destroy();
+    }
+  }
+
+  @Test
+  void split_coversEveryIdExactlyOnce() {
+    List<PartitionedReportScanService.ReportIdRange> ranges =
+        PartitionedReportScanService.ReportIdRange.split(5);
+    assertEquals(5, ranges.size());
+    assertNull(ranges.getFirst().from());
+    assertNull(ranges.getLast().to());
+    Random random = new Random(11);
+    for (int i = 0; i < 10_000; i++) {
+      UUID id = new UUID(random.nextLong(), random.nextLong());
+      long matches =
+          ranges.stream()
+              .filter(range -> range.from() == null || compareUnsigned(id, range.from()) >= 0)
+              .filter(range -> range.to() == null || compareUnsigned(id, range.to()) < 0)
+              .count();
+      assertEquals(1, matches);
+    }
+  }
+
+  private static int compareUnsigned(UUID a, UUID b) {
+    int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+    return high != 0
+        ? high
+        : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+  }
+}